@@ -10,7 +10,12 @@ package api;
  * YOU_LOSE: Hai perso;<br/>
  * DRAW: Hai pareggiato;<br/>
  * YOUR_TURN: E' il tuo turno per effettuare la mossa;<br/>
- * FOE_TURN: E' il turno dell'avversario per effettuare la mossa.
+ * FOE_TURN: E' il turno dell'avversario per effettuare la mossa;<br/>
+ * MOVE_ACCEPTED: la mossa inviata con un numero di sequenza e' stata accettata;<br/>
+ * MOVE_REJECTED: la mossa inviata con un numero di sequenza e' stata rifiutata;<br/>
+ * REMATCH_OFFERED: l'avversario chiede la rivincita;<br/>
+ * BOARD_RESTORED: la partita e' stata ripresa dopo un riavvio del server e la
+ * griglia va ripristinata.
  * 
  * @author Gennaro Capo
  * @author Mirko Conte
@@ -20,5 +25,5 @@ package api;
  * 
  */
 public enum Event {
-	FOE_MOVED, FOE_DISCONNECTED, YOU_WIN, YOU_LOSE, DRAW, YOUR_TURN, FOE_TURN, MATCH_STARTED
+	FOE_MOVED, FOE_DISCONNECTED, YOU_WIN, YOU_LOSE, DRAW, YOUR_TURN, FOE_TURN, MATCH_STARTED, MOVE_ACCEPTED, MOVE_REJECTED, REMATCH_OFFERED, BOARD_RESTORED
 }
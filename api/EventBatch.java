@@ -0,0 +1,174 @@
+package api;
+
+import java.io.Serializable;
+
+/**
+ * Rappresenta la sequenza ordinata degli eventi che una transizione di stato
+ * della partita produce per un giocatore. Il server consegna l'intera
+ * sequenza con una sola chiamata remota, invece di una chiamata per evento:
+ * ad esempio, dopo una mossa l'avversario riceve FOE_MOVED, YOUR_TURN ed
+ * eventualmente il risultato finale in un'unica notifica.<br/>
+ * 
+ * Gli eventi vanno elaborati nell'ordine in cui compaiono. La mossa
+ * dell'avversario, se presente, e' associata all'evento FOE_MOVED; il numero
+ * di sequenza, se presente, agli eventi MOVE_ACCEPTED e MOVE_REJECTED; la
+ * partita, se presente, all'evento MATCH_STARTED.
+ * 
+ * @author Gennaro Capo
+ * @author Mirko Conte
+ * @author Vincenzo De Notaris
+ * @author Roberto Pacilio
+ * @version 1.0
+ * @see api.Player#receiveEvents(EventBatch)
+ */
+public class EventBatch implements Serializable {
+
+	/**
+	 * Valore della mossa quando la sequenza non contiene l'evento FOE_MOVED.
+	 */
+	public static final int NO_MOVE = -1;
+
+	/**
+	 * Numero di sequenza quando la sequenza non contiene l'esito di una mossa.
+	 */
+	public static final int NO_SEQ = -1;
+
+	// Attributi privati.
+	private static final long serialVersionUID = -2297113546905371468L;
+	private final Event[] events;
+	private final int move;
+	private final int seq;
+	private final int[] cells;
+	private final Game game;
+
+	/**
+	 * Costruttore di classe.
+	 * 
+	 * @param move
+	 *            mossa effettuata dall'avversario, compresa tra 0 e 8, oppure
+	 *            NO_MOVE.
+	 * @param events
+	 *            eventi, nell'ordine in cui devono essere elaborati.
+	 */
+	public EventBatch(int move, Event... events) {
+		this(NO_SEQ, move, events);
+	}
+
+	/**
+	 * Costruttore di classe.
+	 * 
+	 * @param seq
+	 *            numero di sequenza della mossa a cui si riferiscono gli
+	 *            eventi MOVE_ACCEPTED e MOVE_REJECTED, oppure NO_SEQ.
+	 * @param move
+	 *            mossa effettuata dall'avversario, compresa tra 0 e 8, oppure
+	 *            NO_MOVE.
+	 * @param events
+	 *            eventi, nell'ordine in cui devono essere elaborati.
+	 */
+	public EventBatch(int seq, int move, Event... events) {
+		this.seq = seq;
+		this.move = move;
+		this.events = events;
+		this.cells = null;
+		this.game = null;
+	}
+
+	/**
+	 * Costruttore di classe per una sequenza che ripristina la griglia di
+	 * gioco, associata all'evento BOARD_RESTORED.
+	 * 
+	 * @param cells
+	 *            caselle della griglia dal punto di vista del destinatario:
+	 *            FREE_CELL, P1_CELL per le sue mosse, P2_CELL per quelle
+	 *            dell'avversario.
+	 * @param events
+	 *            eventi, nell'ordine in cui devono essere elaborati.
+	 */
+	public EventBatch(int[] cells, Event... events) {
+		this.seq = NO_SEQ;
+		this.move = NO_MOVE;
+		this.events = events;
+		this.cells = cells;
+		this.game = null;
+	}
+
+	/**
+	 * Costruttore di classe per una sequenza che avvia una partita, associata
+	 * all'evento MATCH_STARTED: il destinatario riceve la partita insieme al
+	 * turno, con una sola chiamata.
+	 * 
+	 * @param game
+	 *            partita a cui il destinatario e' stato aggiunto.
+	 * @param events
+	 *            eventi, nell'ordine in cui devono essere elaborati.
+	 */
+	public EventBatch(Game game, Event... events) {
+		this.seq = NO_SEQ;
+		this.move = NO_MOVE;
+		this.events = events;
+		this.cells = null;
+		this.game = game;
+	}
+
+	/**
+	 * Restituisce il numero di eventi contenuti nella sequenza.
+	 * 
+	 * @return numero di eventi.
+	 */
+	public int size() {
+		return events.length;
+	}
+
+	/**
+	 * Restituisce l'evento in posizione <code>i</code>.
+	 * 
+	 * @param i
+	 *            posizione dell'evento nella sequenza.
+	 * @return evento in posizione <code>i</code>.
+	 */
+	public Event getEvent(int i) {
+		return events[i];
+	}
+
+	/**
+	 * Restituisce la mossa effettuata dall'avversario.
+	 * 
+	 * @return mossa dell'avversario, NO_MOVE se la sequenza non contiene
+	 *         l'evento FOE_MOVED.
+	 */
+	public int getMove() {
+		return move;
+	}
+
+	/**
+	 * Restituisce il numero di sequenza della mossa accettata o rifiutata.
+	 * 
+	 * @return numero di sequenza, NO_SEQ se la sequenza non contiene l'esito
+	 *         di una mossa.
+	 */
+	public int getSeq() {
+		return seq;
+	}
+
+	/**
+	 * Restituisce le caselle della griglia ripristinata.
+	 * 
+	 * @return caselle della griglia dal punto di vista del destinatario, null
+	 *         se la sequenza non ripristina la griglia.
+	 */
+	public int[] getCells() {
+		return cells;
+	}
+
+	/**
+	 * Restituisce la partita avviata.
+	 * 
+	 * @return partita a cui il destinatario e' stato aggiunto, null se la
+	 *         sequenza non avvia una nuova partita.
+	 */
+	public Game getGame() {
+		return game;
+	}
+
+}
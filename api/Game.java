@@ -32,8 +32,33 @@ public interface Game extends Remote {
 	
 	/**
 	 * Costante usata per indicare che la dimensione della matrice quadrata.
+	 * E' anche la dimensione e la lunghezza della linea vincente di default.
 	 */
 	static final int GRID_DIMENSION = 3;
+
+	/**
+	 * Restituisce il numero di colonne della griglia di gioco.
+	 * 
+	 * @return numero di colonne.
+	 * @throws RemoteException
+	 */
+	int getWidth() throws RemoteException;
+
+	/**
+	 * Restituisce il numero di righe della griglia di gioco.
+	 * 
+	 * @return numero di righe.
+	 * @throws RemoteException
+	 */
+	int getHeight() throws RemoteException;
+
+	/**
+	 * Restituisce il numero di simboli consecutivi necessari per vincere.
+	 * 
+	 * @return lunghezza della linea vincente.
+	 * @throws RemoteException
+	 */
+	int getWinLength() throws RemoteException;
 	
 	/**
 	 * Consente a un player di inviare la mossa effettuata al server. Consente inoltre di:<br/>
@@ -52,10 +77,57 @@ public interface Game extends Remote {
 	 *        5 rappresenta la mossa in posizione (1,2);<br/>
 	 *        6 rappresenta la mossa in posizione (2,0);<br/>
 	 *        7 rappresenta la mossa in posizione (2,1);<br/>
-	 *        8 rappresenta la mossa in posizione (2,2).
+	 *        8 rappresenta la mossa in posizione (2,2).<br/>
+	 *        Su una griglia di dimensioni diverse la mossa in posizione (r,c) e'
+	 *        rappresentata da r * getWidth() + c.
 	 * @throws RemoteException
 	 * 
 	 */
 	void sendMovement(Player p, int m) throws RemoteException ;
+
+	/**
+	 * Consente a un player, identificato dal token della sessione ottenuto con
+	 * {@link TicTacToeServer#registerSession(Player, String)}, di inviare la
+	 * mossa effettuata al server.
+	 * 
+	 * @param token token della sessione del player che invia la mossa.
+	 * @param m identificativo della mossa da inviare.
+	 * @throws RemoteException
+	 * @see #sendMovement(Player, int)
+	 */
+	void sendMovement(long token, int m) throws RemoteException;
+
+	/**
+	 * Consente a un player, identificato dal token della sua sessione, di
+	 * inviare la mossa effettuata indicandone il numero di sequenza, ovvero il
+	 * numero di mosse gia' effettuate nella partita da entrambi i player.<br/>
+	 * Il server notifica al player l'esito della mossa con l'evento
+	 * MOVE_ACCEPTED o MOVE_REJECTED, accompagnato dal numero di sequenza: il
+	 * client puo' quindi applicare la mossa localmente prima della risposta e
+	 * annullarla se viene rifiutata. Una mossa gia' ricevuta, ad esempio
+	 * perche' ritrasmessa, viene ignorata.
+	 * 
+	 * @param token token della sessione del player che invia la mossa.
+	 * @param seq numero di sequenza della mossa.
+	 * @param m identificativo della mossa da inviare.
+	 * @throws RemoteException
+	 */
+	void sendMovement(long token, int seq, int m) throws RemoteException;
+
+	/**
+	 * Consente a un player, identificato dal token della sua sessione, di
+	 * chiedere la rivincita al termine della partita. La prima richiesta viene
+	 * notificata all'avversario con l'evento REMATCH_OFFERED; quando anche
+	 * l'avversario la chiede, la griglia viene svuotata e una nuova partita
+	 * comincia sullo stesso oggetto, con il primo turno assegnato al player
+	 * che non ha cominciato la partita precedente. Ognuno dei due player
+	 * riceve MATCH_STARTED e il turno in un'unica notifica.<br/>
+	 * Se l'avversario ha gia' lasciato la partita, al player viene notificato
+	 * FOE_DISCONNECTED.
+	 * 
+	 * @param token token della sessione del player che chiede la rivincita.
+	 * @throws RemoteException
+	 */
+	void rematch(long token) throws RemoteException;
 	
 }
@@ -0,0 +1,97 @@
+package api;
+
+import java.io.Serializable;
+import java.rmi.RemoteException;
+
+/**
+ * Riferimento compatto a una partita ospitata dal server. E' cio' che il
+ * player riceve con {@link Player#joinGame(Game)}: contiene l'id della
+ * partita, le dimensioni della griglia e il riferimento all'unico
+ * {@link GameService} esportato dal server, a cui inoltra le mosse.
+ * 
+ * @author Gennaro Capo
+ * @author Mirko Conte
+ * @author Vincenzo De Notaris
+ * @author Roberto Pacilio
+ * @version 1.0
+ * @see api.GameService
+ */
+public class GameHandle implements Game, Serializable {
+
+	// Attributi privati.
+	private static final long serialVersionUID = -6143022815937418803L;
+	private final GameService service;
+	private final String idGame;
+	private final int width;
+	private final int height;
+	private final int winLength;
+
+	/**
+	 * Costruttore di classe.
+	 * 
+	 * @param service
+	 *            servizio che ospita la partita.
+	 * @param idGame
+	 *            id della partita.
+	 * @param width
+	 *            numero di colonne della griglia.
+	 * @param height
+	 *            numero di righe della griglia.
+	 * @param winLength
+	 *            simboli consecutivi necessari per vincere.
+	 */
+	public GameHandle(GameService service, String idGame, int width,
+			int height, int winLength) {
+		this.service = service;
+		this.idGame = idGame;
+		this.width = width;
+		this.height = height;
+		this.winLength = winLength;
+	}
+
+	/**
+	 * Restituisce l'id della partita.
+	 * 
+	 * @return id della partita.
+	 */
+	public String getIdGame() {
+		return idGame;
+	}
+
+	@Override
+	public int getWidth() {
+		return width;
+	}
+
+	@Override
+	public int getHeight() {
+		return height;
+	}
+
+	@Override
+	public int getWinLength() {
+		return winLength;
+	}
+
+	@Override
+	public void sendMovement(Player p, int m) throws RemoteException {
+		service.sendMovement(idGame, p, m);
+	}
+
+	@Override
+	public void sendMovement(long token, int m) throws RemoteException {
+		service.sendMovement(idGame, token, m);
+	}
+
+	@Override
+	public void sendMovement(long token, int seq, int m)
+			throws RemoteException {
+		service.sendMovement(idGame, token, seq, m);
+	}
+
+	@Override
+	public void rematch(long token) throws RemoteException {
+		service.rematch(idGame, token);
+	}
+
+}
@@ -0,0 +1,236 @@
+package api;
+
+import java.io.Serializable;
+
+/**
+ * Pagina di partite archiviate, restituita da un cursore aperto con
+ * {@link TicTacToeServer#openHistory(String, long)}. Le partite sono
+ * memorizzate in array di tipi primitivi: le mosse di una partita occupano un
+ * solo long (4 bit per mossa) e i dati della griglia e del risultato
+ * INFO_BYTES byte, cosi' che la serializzazione di una pagina resti compatta.
+ * Le partite sono ordinate dalla piu' recente alla meno recente.
+ * 
+ * @author Gennaro Capo
+ * @author Mirko Conte
+ * @author Vincenzo De Notaris
+ * @author Roberto Pacilio
+ * @version 1.0
+ * @see api.TicTacToeServer#nextGames(long, int)
+ */
+public class GamePage implements Serializable {
+
+	/**
+	 * Byte di informazioni per partita: numero di mosse, primo player,
+	 * risultato, larghezza, altezza e lunghezza vincente della griglia.
+	 */
+	public static final int INFO_BYTES = 6;
+
+	// Attributi privati.
+	private static final long serialVersionUID = 5523120964387061290L;
+	private final long[] ordinals;
+	private final long[] gameIds;
+	private final String[] names;
+	private final int[] times;
+	private final long[] moves;
+	private final byte[] info;
+	private final boolean last;
+
+	/**
+	 * Costruttore di classe. Gli array contengono, nell'ordine, i dati delle
+	 * partite della pagina.
+	 * 
+	 * @param ordinals
+	 *            posizioni delle partite nell'archivio.
+	 * @param gameIds
+	 *            id delle partite.
+	 * @param names
+	 *            nickname del player 1 e del player 2 di ogni partita.
+	 * @param times
+	 *            inizio e fine di ogni partita, in secondi dal 1/1/1970.
+	 * @param moves
+	 *            mosse di ogni partita, 4 bit ciascuna a partire dai bit meno
+	 *            significativi.
+	 * @param info
+	 *            INFO_BYTES byte di informazioni per ogni partita.
+	 * @param last
+	 *            true se il cursore non ha altre partite da restituire.
+	 */
+	public GamePage(long[] ordinals, long[] gameIds, String[] names,
+			int[] times, long[] moves, byte[] info, boolean last) {
+		this.ordinals = ordinals;
+		this.gameIds = gameIds;
+		this.names = names;
+		this.times = times;
+		this.moves = moves;
+		this.info = info;
+		this.last = last;
+	}
+
+	/**
+	 * Restituisce il numero di partite della pagina.
+	 * 
+	 * @return numero di partite.
+	 */
+	public int size() {
+		return ordinals.length;
+	}
+
+	/**
+	 * Restituisce un flag per sapere se il cursore e' esaurito. Una pagina
+	 * puo' essere vuota anche se il cursore non e' esaurito.
+	 * 
+	 * @return true se non ci sono altre partite, false altrimenti.
+	 */
+	public boolean isLast() {
+		return last;
+	}
+
+	/**
+	 * Restituisce la posizione nell'archivio della partita i-esima, da usare
+	 * per riprendere la lettura con un nuovo cursore.
+	 * 
+	 * @param i
+	 *            indice della partita nella pagina.
+	 * @return posizione della partita nell'archivio.
+	 */
+	public long getOrdinal(int i) {
+		return ordinals[i];
+	}
+
+	/**
+	 * Restituisce l'id a 64 bit della partita i-esima.
+	 * 
+	 * @param i
+	 *            indice della partita nella pagina.
+	 * @return id della partita.
+	 */
+	public long getGameId(int i) {
+		return gameIds[i];
+	}
+
+	/**
+	 * Restituisce il nickname del player 1 della partita i-esima.
+	 * 
+	 * @param i
+	 *            indice della partita nella pagina.
+	 * @return nickname del player 1, null se sconosciuto.
+	 */
+	public String getPlayer1(int i) {
+		return names[2 * i];
+	}
+
+	/**
+	 * Restituisce il nickname del player 2 della partita i-esima.
+	 * 
+	 * @param i
+	 *            indice della partita nella pagina.
+	 * @return nickname del player 2, null se sconosciuto.
+	 */
+	public String getPlayer2(int i) {
+		return names[2 * i + 1];
+	}
+
+	/**
+	 * Restituisce l'inizio della partita i-esima.
+	 * 
+	 * @param i
+	 *            indice della partita nella pagina.
+	 * @return inizio della partita, in millisecondi dal 1/1/1970.
+	 */
+	public long getStartTime(int i) {
+		return (times[2 * i] & 0xFFFFFFFFL) * 1000;
+	}
+
+	/**
+	 * Restituisce la fine della partita i-esima.
+	 * 
+	 * @param i
+	 *            indice della partita nella pagina.
+	 * @return fine della partita, in millisecondi dal 1/1/1970.
+	 */
+	public long getEndTime(int i) {
+		return (times[2 * i + 1] & 0xFFFFFFFFL) * 1000;
+	}
+
+	/**
+	 * Restituisce il numero di mosse della partita i-esima.
+	 * 
+	 * @param i
+	 *            indice della partita nella pagina.
+	 * @return numero di mosse.
+	 */
+	public int getMoveCount(int i) {
+		return info[INFO_BYTES * i];
+	}
+
+	/**
+	 * Restituisce la j-esima mossa della partita i-esima.
+	 * 
+	 * @param i
+	 *            indice della partita nella pagina.
+	 * @param j
+	 *            indice della mossa, a partire da 0.
+	 * @return casella della mossa.
+	 */
+	public int getMove(int i, int j) {
+		return (int) (moves[i] >>> (4 * j)) & 0xF;
+	}
+
+	/**
+	 * Restituisce il player che ha effettuato la prima mossa nella partita
+	 * i-esima.
+	 * 
+	 * @param i
+	 *            indice della partita nella pagina.
+	 * @return 1 o 2.
+	 */
+	public int getFirstPlayer(int i) {
+		return info[INFO_BYTES * i + 1];
+	}
+
+	/**
+	 * Restituisce il risultato della partita i-esima.
+	 * 
+	 * @param i
+	 *            indice della partita nella pagina.
+	 * @return 1: ha vinto il player 1; 2: ha vinto il player 2; 3: pareggio.
+	 */
+	public int getResult(int i) {
+		return info[INFO_BYTES * i + 2];
+	}
+
+	/**
+	 * Restituisce il numero di colonne della griglia della partita i-esima.
+	 * 
+	 * @param i
+	 *            indice della partita nella pagina.
+	 * @return numero di colonne.
+	 */
+	public int getWidth(int i) {
+		return info[INFO_BYTES * i + 3];
+	}
+
+	/**
+	 * Restituisce il numero di righe della griglia della partita i-esima.
+	 * 
+	 * @param i
+	 *            indice della partita nella pagina.
+	 * @return numero di righe.
+	 */
+	public int getHeight(int i) {
+		return info[INFO_BYTES * i + 4];
+	}
+
+	/**
+	 * Restituisce i simboli consecutivi necessari per vincere la partita
+	 * i-esima.
+	 * 
+	 * @param i
+	 *            indice della partita nella pagina.
+	 * @return lunghezza vincente.
+	 */
+	public int getWinLength(int i) {
+		return info[INFO_BYTES * i + 5];
+	}
+
+}
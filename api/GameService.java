@@ -0,0 +1,74 @@
+package api;
+
+import java.rmi.*;
+
+/**
+ * Interfaccia dell'unico oggetto remoto attraverso cui i player interagiscono
+ * con tutte le partite ospitate dal server. Le partite non vengono esportate
+ * singolarmente: il client riceve un {@link GameHandle} che identifica la
+ * partita e inoltra ogni chiamata a questo servizio.
+ * 
+ * @author Gennaro Capo
+ * @author Mirko Conte
+ * @author Vincenzo De Notaris
+ * @author Roberto Pacilio
+ * @version 1.0
+ * @see api.GameHandle
+ */
+public interface GameService extends Remote {
+
+	/**
+	 * Consente a un player di inviare la mossa effettuata nella partita
+	 * <code>idGame</code>. Se la partita non esiste piu' la mossa viene
+	 * ignorata.
+	 * 
+	 * @param idGame id della partita.
+	 * @param p player che invia la mossa.
+	 * @param m identificativo della mossa da inviare.
+	 * @throws RemoteException
+	 * @see api.Game#sendMovement(Player, int)
+	 */
+	void sendMovement(String idGame, Player p, int m) throws RemoteException;
+
+	/**
+	 * Consente a un player, identificato dal token della sua sessione, di
+	 * inviare la mossa effettuata nella partita <code>idGame</code>. Se la
+	 * partita non esiste piu' la mossa viene ignorata.
+	 * 
+	 * @param idGame id della partita.
+	 * @param token token della sessione del player che invia la mossa.
+	 * @param m identificativo della mossa da inviare.
+	 * @throws RemoteException
+	 * @see api.Game#sendMovement(int, int)
+	 */
+	void sendMovement(String idGame, long token, int m) throws RemoteException;
+
+	/**
+	 * Consente a un player, identificato dal token della sua sessione, di
+	 * inviare la mossa effettuata nella partita <code>idGame</code> con il
+	 * suo numero di sequenza. Se la partita non esiste piu' la mossa viene
+	 * ignorata.
+	 * 
+	 * @param idGame id della partita.
+	 * @param token token della sessione del player che invia la mossa.
+	 * @param seq numero di sequenza della mossa.
+	 * @param m identificativo della mossa da inviare.
+	 * @throws RemoteException
+	 * @see api.Game#sendMovement(int, int, int)
+	 */
+	void sendMovement(String idGame, long token, int seq, int m)
+			throws RemoteException;
+
+	/**
+	 * Consente a un player, identificato dal token della sua sessione, di
+	 * chiedere la rivincita nella partita <code>idGame</code>. Se la partita
+	 * non esiste piu' la richiesta viene ignorata.
+	 * 
+	 * @param idGame id della partita.
+	 * @param token token della sessione del player che chiede la rivincita.
+	 * @throws RemoteException
+	 * @see api.Game#rematch(int)
+	 */
+	void rematch(String idGame, long token) throws RemoteException;
+
+}
@@ -0,0 +1,66 @@
+package api;
+
+import java.io.Serializable;
+
+/**
+ * Posizione di un player nella classifica, ordinata per rating decrescente.
+ * 
+ * @author Gennaro Capo
+ * @author Mirko Conte
+ * @author Vincenzo De Notaris
+ * @author Roberto Pacilio
+ * @version 1.0
+ * @see api.TicTacToeServer#getLeaderboard(int, int)
+ */
+public class LeaderboardEntry implements Serializable {
+
+	// Attributi privati.
+	private static final long serialVersionUID = 2291047735820361144L;
+	private final int rank;
+	private final String nickname;
+	private final int rating;
+
+	/**
+	 * Costruttore di classe.
+	 * 
+	 * @param rank
+	 *            posizione in classifica, a partire da 1.
+	 * @param nickname
+	 *            nickname del player.
+	 * @param rating
+	 *            rating del player, arrotondato all'intero.
+	 */
+	public LeaderboardEntry(int rank, String nickname, int rating) {
+		this.rank = rank;
+		this.nickname = nickname;
+		this.rating = rating;
+	}
+
+	/**
+	 * Restituisce la posizione in classifica del player.
+	 * 
+	 * @return posizione, a partire da 1.
+	 */
+	public int getRank() {
+		return rank;
+	}
+
+	/**
+	 * Restituisce il nickname del player.
+	 * 
+	 * @return nickname del player.
+	 */
+	public String getNickname() {
+		return nickname;
+	}
+
+	/**
+	 * Restituisce il rating del player.
+	 * 
+	 * @return rating del player.
+	 */
+	public int getRating() {
+		return rating;
+	}
+
+}
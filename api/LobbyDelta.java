@@ -0,0 +1,158 @@
+package api;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * Rappresenta le modifiche subite dalla lista delle partite (game room) a
+ * partire da una data versione. La lista mantenuta sul server ha una versione
+ * che cresce in maniera monotona ad ogni aggiunta o rimozione di una partita:
+ * il client conserva l'ultima versione ricevuta e chiede soltanto le
+ * differenze rispetto ad essa.<br/>
+ * 
+ * Il delta puo' essere di tre tipi:<br/>
+ * invariato: la lista non e' cambiata rispetto alla versione richiesta;<br/>
+ * incrementale: contiene le partite aggiunte e quelle rimosse;<br/>
+ * completo: la versione richiesta non e' piu' disponibile sul server e le
+ * partite aggiunte rappresentano l'intera lista, che va quindi sostituita.<br/>
+ * 
+ * Per ogni partita aggiunta viene fornita anche l'ora di creazione, espressa
+ * in secondi dalla mezzanotte (-1 se sconosciuta), in modo che il client
+ * possa mantenere la lista ordinata senza doverla ricalcolare.<br/>
+ * Il delta riporta anche la versione da cui parte: un delta invariato o
+ * incrementale va applicato soltanto a una lista che si trova esattamente in
+ * quella versione.
+ * 
+ * @author Gennaro Capo
+ * @author Mirko Conte
+ * @author Vincenzo De Notaris
+ * @author Roberto Pacilio
+ * @version 1.0
+ * @see api.TicTacToeServer#getChallengersSince(long)
+ */
+public class LobbyDelta implements Serializable {
+
+	// Attributi privati.
+	private static final long serialVersionUID = 4130532617782059814L;
+	private static final ArrayList<String> EMPTY = new ArrayList<String>(0);
+	private final long fromVersion;
+	private final long version;
+	private final boolean unchanged;
+	private final boolean snapshot;
+	private final ArrayList<String> added;
+	private final int[] addedTimes;
+	private final ArrayList<String> removed;
+
+	/**
+	 * Costruttore di un delta che indica che la lista non e' cambiata.
+	 * 
+	 * @param version
+	 *            versione corrente della lista.
+	 */
+	public LobbyDelta(long version) {
+		this.fromVersion = version;
+		this.version = version;
+		this.unchanged = true;
+		this.snapshot = false;
+		this.added = EMPTY;
+		this.addedTimes = new int[0];
+		this.removed = EMPTY;
+	}
+
+	/**
+	 * Costruttore di un delta incrementale o completo.
+	 * 
+	 * @param fromVersion
+	 *            versione della lista a cui il delta va applicato.
+	 * @param version
+	 *            versione della lista a cui porta l'applicazione del delta.
+	 * @param snapshot
+	 *            true se il delta contiene l'intera lista, false altrimenti.
+	 * @param added
+	 *            partite aggiunte, ordinate dalla piu' recente alla meno
+	 *            recente.
+	 * @param addedTimes
+	 *            ora di creazione delle partite aggiunte.
+	 * @param removed
+	 *            partite rimosse.
+	 */
+	public LobbyDelta(long fromVersion, long version, boolean snapshot,
+			ArrayList<String> added, int[] addedTimes, ArrayList<String> removed) {
+		this.fromVersion = fromVersion;
+		this.version = version;
+		this.unchanged = false;
+		this.snapshot = snapshot;
+		this.added = added;
+		this.addedTimes = addedTimes;
+		this.removed = removed;
+	}
+
+	/**
+	 * Restituisce la versione della lista a cui il delta va applicato. Un
+	 * delta completo puo' essere applicato a qualunque versione.
+	 * 
+	 * @return versione di partenza del delta.
+	 */
+	public long getFromVersion() {
+		return fromVersion;
+	}
+
+	/**
+	 * Restituisce la versione della lista a cui si riferisce il delta.
+	 * 
+	 * @return versione della lista.
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Restituisce un flag per sapere se la lista e' rimasta invariata.
+	 * 
+	 * @return true se la lista non e' cambiata, false altrimenti.
+	 */
+	public boolean isUnchanged() {
+		return unchanged;
+	}
+
+	/**
+	 * Restituisce un flag per sapere se il delta contiene l'intera lista.
+	 * 
+	 * @return true se la lista locale va sostituita, false se va aggiornata.
+	 */
+	public boolean isSnapshot() {
+		return snapshot;
+	}
+
+	/**
+	 * Restituisce le partite aggiunte, ordinate dalla piu' recente alla meno
+	 * recente.
+	 * 
+	 * @return partite aggiunte.
+	 */
+	public List<String> getAdded() {
+		return Collections.unmodifiableList(added);
+	}
+
+	/**
+	 * Restituisce l'ora di creazione della partita aggiunta in posizione
+	 * <code>i</code>.
+	 * 
+	 * @param i
+	 *            posizione della partita nella lista delle partite aggiunte.
+	 * @return ora di creazione in secondi dalla mezzanotte, -1 se sconosciuta.
+	 */
+	public int getAddedTime(int i) {
+		return addedTimes[i];
+	}
+
+	/**
+	 * Restituisce le partite rimosse.
+	 * 
+	 * @return partite rimosse.
+	 */
+	public List<String> getRemoved() {
+		return Collections.unmodifiableList(removed);
+	}
+
+}
@@ -0,0 +1,30 @@
+package api;
+
+import java.rmi.*;
+
+/**
+ * Interfaccia dell'oggetto di callback LobbyListener. Consente al server di
+ * inviare al client le modifiche subite dalla lista delle partite (game room),
+ * senza che il client debba richiederle esplicitamente.<br/>
+ * Le modifiche che avvengono a breve distanza l'una dall'altra vengono
+ * accorpate dal server in un'unica notifica.
+ * 
+ * @author Gennaro Capo
+ * @author Mirko Conte
+ * @author Vincenzo De Notaris
+ * @author Roberto Pacilio
+ * @version 1.0
+ * @see api.TicTacToeServer#subscribeLobby(LobbyListener, long)
+ */
+public interface LobbyListener extends Remote {
+
+	/**
+	 * Il metodo notifica al client le modifiche subite dalla lista delle
+	 * partite a partire dall'ultima versione ricevuta.
+	 * 
+	 * @param delta modifiche subite dalla lista.
+	 * @throws RemoteException
+	 */
+	void lobbyChanged(LobbyDelta delta) throws RemoteException;
+
+}
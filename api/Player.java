@@ -83,4 +83,14 @@ public interface Player extends Remote {
 	 * @throws RemoteException
 	 */
 	void sendGameResult(Event res) throws RemoteException;
+
+	/**
+	 * Il metodo consegna al giocatore, con una sola chiamata, tutti gli eventi
+	 * prodotti da una transizione di stato della partita. Gli eventi vanno
+	 * elaborati nell'ordine in cui compaiono nella sequenza.
+	 * 
+	 * @param batch sequenza ordinata degli eventi.
+	 * @throws RemoteException
+	 */
+	void receiveEvents(EventBatch batch) throws RemoteException;
 }
@@ -0,0 +1,104 @@
+package api;
+
+import java.io.Serializable;
+
+/**
+ * Statistiche di un player: numero di partite vinte, perse, pareggiate e
+ * abbandonate prima della conclusione. Le statistiche vengono mantenute dal
+ * server per nickname e sopravvivono al suo riavvio.
+ * 
+ * @author Gennaro Capo
+ * @author Mirko Conte
+ * @author Vincenzo De Notaris
+ * @author Roberto Pacilio
+ * @version 1.0
+ * @see api.TicTacToeServer#getStats(String)
+ */
+public class PlayerStats implements Serializable {
+
+	// Attributi privati.
+	private static final long serialVersionUID = 7395024116843921708L;
+	private final String nickname;
+	private final int wins;
+	private final int losses;
+	private final int draws;
+	private final int abandons;
+
+	/**
+	 * Costruttore di classe.
+	 * 
+	 * @param nickname
+	 *            nickname del player.
+	 * @param wins
+	 *            partite vinte.
+	 * @param losses
+	 *            partite perse.
+	 * @param draws
+	 *            partite pareggiate.
+	 * @param abandons
+	 *            partite abbandonate prima della conclusione.
+	 */
+	public PlayerStats(String nickname, int wins, int losses, int draws,
+			int abandons) {
+		this.nickname = nickname;
+		this.wins = wins;
+		this.losses = losses;
+		this.draws = draws;
+		this.abandons = abandons;
+	}
+
+	/**
+	 * Restituisce il nickname del player.
+	 * 
+	 * @return nickname del player.
+	 */
+	public String getNickname() {
+		return nickname;
+	}
+
+	/**
+	 * Restituisce il numero di partite vinte.
+	 * 
+	 * @return partite vinte.
+	 */
+	public int getWins() {
+		return wins;
+	}
+
+	/**
+	 * Restituisce il numero di partite perse.
+	 * 
+	 * @return partite perse.
+	 */
+	public int getLosses() {
+		return losses;
+	}
+
+	/**
+	 * Restituisce il numero di partite pareggiate.
+	 * 
+	 * @return partite pareggiate.
+	 */
+	public int getDraws() {
+		return draws;
+	}
+
+	/**
+	 * Restituisce il numero di partite abbandonate prima della conclusione.
+	 * 
+	 * @return partite abbandonate.
+	 */
+	public int getAbandons() {
+		return abandons;
+	}
+
+	/**
+	 * Restituisce il numero di partite giocate, incluse quelle abbandonate.
+	 * 
+	 * @return partite giocate.
+	 */
+	public int getGames() {
+		return wins + losses + draws + abandons;
+	}
+
+}
@@ -16,6 +16,18 @@ import java.util.*;
  */
 public interface TicTacToeServer extends Remote {
 
+	/**
+	 * Token che non identifica alcuna sessione. Viene restituito da
+	 * registerSession se il nickname e' gia' in uso.
+	 */
+	static final long NO_SESSION = 0;
+
+	/**
+	 * Cursore che non identifica alcuna lettura dell'archivio. Viene
+	 * restituito da openHistory se il server non archivia le partite.
+	 */
+	static final long NO_CURSOR = 0;
+
 	/**
 	 * Consente di registrare un player al server, dato un nickname. All'atto
 	 * della registrazione non possono essere presenti due player con uno stesso
@@ -30,6 +42,19 @@ public interface TicTacToeServer extends Remote {
 	 */
 	boolean register(Player p, String playerName) throws RemoteException;
 
+	/**
+	 * Consente di registrare un player al server, dato un nickname, aprendo
+	 * una sessione. Il token restituito identifica il player nelle chiamate
+	 * successive, al posto del suo oggetto remoto.
+	 * 
+	 * @param p player da registrare.
+	 * @param playerName nickname del player.
+	 * @return token della sessione, NO_SESSION se sono gia' presenti altri
+	 *         player con lo stesso nickname.
+	 * @throws RemoteException
+	 */
+	long registerSession(Player p, String playerName) throws RemoteException;
+
 	/**
 	 * Consente di creare una nuova partita a un player, dato un idGame
 	 * 
@@ -38,9 +63,102 @@ public interface TicTacToeServer extends Remote {
 	 * 			     nickname-ora_di_creazione_partita.<br/>
 	 *               Es: mrossi-12:23:22
 	 * @throws RemoteException
+	 * @throws IllegalStateException
+	 *             se il registro delle partite non e' piu' utilizzabile.
 	 */
 	void createGame(Player p, String idGame) throws RemoteException;
 
+	/**
+	 * Consente di creare una nuova partita al player identificato dal token
+	 * della sua sessione, dato un idGame.
+	 * 
+	 * @param token token della sessione del player che crea la partita.
+	 * @param idGame deve avere il seguente formato:
+	 * 			     nickname-ora_di_creazione_partita.<br/>
+	 *               Es: mrossi-12:23:22
+	 * @throws RemoteException
+	 * @throws IllegalArgumentException
+	 *             se il token non identifica una sessione aperta.
+	 * @throws IllegalStateException
+	 *             se il registro delle partite non e' piu' utilizzabile.
+	 */
+	void createGame(long token, String idGame) throws RemoteException;
+
+	/**
+	 * Consente ad un player di creare una partita su una griglia di
+	 * <code>width</code> colonne e <code>height</code> righe, in cui vince chi
+	 * allinea <code>winLength</code> simboli consecutivi (ad esempio 15, 15, 5
+	 * per il gomoku).
+	 * 
+	 * @param p player che crea la partita.
+	 * @param idGame deve avere il seguente formato:
+	 *               nickname-ora_di_creazione_partita.<br/>
+	 *               Es: mrossi-12:23:22.
+	 * @param width numero di colonne della griglia.
+	 * @param height numero di righe della griglia.
+	 * @param winLength simboli consecutivi necessari per vincere.
+	 * @throws RemoteException
+	 * @throws IllegalArgumentException
+	 *             se le dimensioni della griglia non sono valide.
+	 * @throws IllegalStateException
+	 *             se il registro delle partite non e' piu' utilizzabile.
+	 */
+	void createGame(Player p, String idGame, int width, int height,
+			int winLength) throws RemoteException;
+
+	/**
+	 * Consente al player identificato dal token della sua sessione di creare
+	 * una partita su una griglia di <code>width</code> colonne e
+	 * <code>height</code> righe, in cui vince chi allinea
+	 * <code>winLength</code> simboli consecutivi.
+	 * 
+	 * @param token token della sessione del player che crea la partita.
+	 * @param idGame deve avere il seguente formato:
+	 *               nickname-ora_di_creazione_partita.<br/>
+	 *               Es: mrossi-12:23:22.
+	 * @param width numero di colonne della griglia.
+	 * @param height numero di righe della griglia.
+	 * @param winLength simboli consecutivi necessari per vincere.
+	 * @throws RemoteException
+	 * @throws IllegalArgumentException
+	 *             se il token non identifica una sessione aperta o se le
+	 *             dimensioni della griglia non sono valide.
+	 * @throws IllegalStateException
+	 *             se il registro delle partite non e' piu' utilizzabile.
+	 */
+	void createGame(long token, String idGame, int width, int height,
+			int winLength) throws RemoteException;
+
+	/**
+	 * Consente ad un player di creare una partita contro il bot del server,
+	 * che gioca in maniera perfetta sulla griglia classica 3x3. La partita
+	 * comincia immediatamente e non compare nella lista delle partite in
+	 * attesa di uno sfidante.
+	 * 
+	 * @param p player che crea la partita.
+	 * @param idGame deve avere il seguente formato:
+	 *               nickname-ora_di_creazione_partita.<br/>
+	 *               Es: mrossi-12:23:22.
+	 * @throws RemoteException
+	 */
+	void createBotGame(Player p, String idGame) throws RemoteException;
+
+	/**
+	 * Consente al player identificato dal token della sua sessione di creare
+	 * una partita contro il bot del server, che gioca in maniera perfetta
+	 * sulla griglia classica 3x3. La partita comincia immediatamente e non
+	 * compare nella lista delle partite in attesa di uno sfidante.
+	 * 
+	 * @param token token della sessione del player che crea la partita.
+	 * @param idGame deve avere il seguente formato:
+	 *               nickname-ora_di_creazione_partita.<br/>
+	 *               Es: mrossi-12:23:22.
+	 * @throws RemoteException
+	 * @throws IllegalArgumentException
+	 *             se il token non identifica una sessione aperta.
+	 */
+	void createBotGame(long token, String idGame) throws RemoteException;
+
 	/**
 	 * Consente ad un player di aggiungersi a una partita,avente come id
 	 * <code>idgame</code>, creata da un altro player e cominciare cosi a
@@ -58,6 +176,23 @@ public interface TicTacToeServer extends Remote {
 	void joinGame(Player p, String idGame) throws RemoteException,
 			GameJoiningException;
 
+	/**
+	 * Consente al player identificato dal token della sua sessione di
+	 * aggiungersi a una partita, avente come id <code>idgame</code>, creata
+	 * da un altro player.
+	 * 
+	 * @param token token della sessione del player.
+	 * @param idGame deve avere il seguente formato:
+	 *               nickname-ora_di_creazione_partita.<br/>
+	 *               Es: mrossi-12:23:22.
+	 * @throws RemoteException
+	 * @throws GameJoiningException
+	 *             se la partita e' gia' completa, non e' piu' disponibile
+	 *             oppure il token non identifica una sessione aperta.
+	 */
+	void joinGame(long token, String idGame) throws RemoteException,
+			GameJoiningException;
+
 	/**
 	 * Restituisce la lista di tutti i player che hanno creato una partita e che
 	 * sono in attesa di uno sfidante oppure stanno ancora giocando.
@@ -68,25 +203,143 @@ public interface TicTacToeServer extends Remote {
 	ArrayList<String> getAllChallengers() throws RemoteException;
 
 	/**
-	 * Consente di rimuovere una partita dalla lista delle partite mantenuta sul
-	 * server.
+	 * Restituisce una pagina della lista di tutti i player che hanno creato una
+	 * partita e che sono in attesa di uno sfidante oppure stanno ancora
+	 * giocando. Le partite sono ordinate dalla piu' recente alla meno recente.
+	 * 
+	 * @param offset numero di partite da saltare.
+	 * @param limit numero massimo di partite da restituire.
+	 * @return pagina della lista di player in attesa o con partita in corso.
+	 * @throws RemoteException
+	 */
+	ArrayList<String> getChallengers(int offset, int limit)
+			throws RemoteException;
+
+	/**
+	 * Restituisce le modifiche subite dalla lista delle partite a partire
+	 * dalla versione <code>version</code>: le partite aggiunte e quelle
+	 * rimosse, oppure l'indicazione che la lista e' invariata.
+	 * 
+	 * @param version ultima versione della lista nota al client; 0 se il
+	 *                client non ha ancora ricevuto la lista.
+	 * @return modifiche subite dalla lista.
+	 * @throws RemoteException
+	 */
+	LobbyDelta getChallengersSince(long version) throws RemoteException;
+
+	/**
+	 * Sottoscrive un client alle modifiche della lista delle partite. Il
+	 * server invia le modifiche all'oggetto di callback <code>l</code>,
+	 * accorpando quelle che avvengono a breve distanza l'una dall'altra.
+	 * 
+	 * @param l oggetto di callback del client.
+	 * @param version ultima versione della lista nota al client.
+	 * @throws RemoteException
+	 */
+	void subscribeLobby(LobbyListener l, long version) throws RemoteException;
+
+	/**
+	 * Annulla la sottoscrizione di un client alle modifiche della lista delle
+	 * partite.
 	 * 
+	 * @param l oggetto di callback del client.
+	 * @throws RemoteException
+	 */
+	void unsubscribeLobby(LobbyListener l) throws RemoteException;
+
+	/**
+	 * Consente al player identificato dal token della sua sessione di
+	 * rimuovere una partita a cui partecipa. Se la partita era ancora in
+	 * corso, l'abbandono viene attribuito al player nelle sue statistiche e
+	 * conta come una sconfitta nel calcolo del suo rating. Se il token non
+	 * identifica una sessione aperta oppure il player non partecipa alla
+	 * partita, la partita non viene rimossa.
+	 * 
+	 * @param token token della sessione del player.
 	 * @param idGame id della partita da eliminare.Deve avere il seguente formato:
 	 *               nickname-ora_di_creazione_partita.<br/>
 	 *               Es: mrossi-12:23:22.
-	 * @return lista aggiornata dei player dopo la rimozione.
+	 * @param version ultima versione della lista nota al client.
+	 * @return modifiche subite dalla lista dopo la rimozione.
+	 * @throws RemoteException
+	 */
+	LobbyDelta removeGame(long token, String idGame, long version)
+			throws RemoteException;
+
+	/**
+	 * Restituisce le statistiche del player con il nickname indicato.
+	 * 
+	 * @param nickname nickname del player.
+	 * @return partite vinte, perse, pareggiate e abbandonate dal player; tutte
+	 *         0 se il player non ha mai concluso una partita.
+	 * @throws RemoteException
+	 */
+	PlayerStats getStats(String nickname) throws RemoteException;
+
+	/**
+	 * Restituisce una pagina della classifica dei player, ordinata per rating
+	 * decrescente.
+	 * 
+	 * @param offset numero di player da saltare.
+	 * @param limit numero massimo di player da restituire.
+	 * @return pagina della classifica.
+	 * @throws RemoteException
+	 */
+	ArrayList<LeaderboardEntry> getLeaderboard(int offset, int limit)
+			throws RemoteException;
+
+	/**
+	 * Restituisce la posizione in classifica del player con il nickname
+	 * indicato.
+	 * 
+	 * @param nickname nickname del player.
+	 * @return posizione del player, a partire da 1; 0 se il player non ha
+	 *         ancora concluso una partita.
+	 * @throws RemoteException
+	 */
+	int getRank(String nickname) throws RemoteException;
+
+	/**
+	 * Apre un cursore sulle partite concluse, dalla piu' recente alla meno
+	 * recente. Le partite vengono poi lette a pagine con nextGames; un
+	 * cursore non utilizzato per un certo tempo scade automaticamente.
+	 * 
+	 * @param nickname nickname del player di cui leggere le partite, null per
+	 *            leggere tutte le partite.
+	 * @param before vengono restituite soltanto le partite di posizione minore
+	 *            nell'archivio (v. {@link GamePage#getOrdinal(int)});
+	 *            Long.MAX_VALUE per partire dalla partita piu' recente.
+	 * @return id del cursore, NO_CURSOR se il server non archivia le partite.
+	 * @throws RemoteException
+	 */
+	long openHistory(String nickname, long before) throws RemoteException;
+
+	/**
+	 * Legge la pagina successiva di un cursore. Il cursore viene chiuso
+	 * quando restituisce l'ultima pagina.
+	 * 
+	 * @param cursor id del cursore.
+	 * @param max numero massimo di partite da restituire.
+	 * @return pagina di partite, null se il cursore non esiste o e' scaduto.
+	 * @throws RemoteException
+	 */
+	GamePage nextGames(long cursor, int max) throws RemoteException;
+
+	/**
+	 * Chiude un cursore prima che sia esaurito.
+	 * 
+	 * @param cursor id del cursore.
 	 * @throws RemoteException
 	 */
-	ArrayList<String> removeGame(String idGame) throws RemoteException;
+	void closeCursor(long cursor) throws RemoteException;
 
 	/**
-	 * Consente di deregistrare un player, dato il suo nickname quando questi si
-	 * disconnette dall'applicazione.
+	 * Consente di deregistrare il player identificato dal token della sua
+	 * sessione, chiudendo la sessione.
 	 * 
-	 * @param playerName
-	 *            nickname del player da deregistrare.
+	 * @param token token della sessione del player da deregistrare.
 	 * @throws RemoteException
 	 */
-	void deregister(String playerName) throws RemoteException;
+	void deregister(long token) throws RemoteException;
 
 }
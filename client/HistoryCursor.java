@@ -0,0 +1,89 @@
+package client;
+
+import java.rmi.RemoteException;
+import api.*;
+
+/**
+ * Lettura a pagine delle partite concluse archiviate sul server. Le pagine
+ * vengono richieste una alla volta, soltanto quando servono: il client
+ * conserva in memoria al piu' una pagina, qualunque sia il numero di
+ * partite lette.<br/>
+ * Se il cursore scade sul server tra una pagina e l'altra, viene riaperto
+ * dalla posizione dell'ultima partita ricevuta, senza perdere ne' ripetere
+ * alcuna partita.
+ * 
+ * @author Gennaro Capo
+ * @author Mirko Conte
+ * @author Vincenzo De Notaris
+ * @author Roberto Pacilio
+ * @version 1.0
+ * @see api.TicTacToeServer#openHistory(String, long)
+ */
+public class HistoryCursor {
+
+	// Attributi privati.
+	private final TicTacToeServer server;
+	private final String nickname;
+	private final int pageSize;
+	private long cursor;
+	private long before;
+	private boolean done;
+
+	/**
+	 * Costruttore di classe. Apre un cursore sulle partite archiviate.
+	 * 
+	 * @param server server da cui leggere le partite.
+	 * @param nickname nickname del player di cui leggere le partite, null per
+	 *            leggere tutte le partite.
+	 * @param pageSize numero massimo di partite per pagina.
+	 * @throws RemoteException
+	 */
+	public HistoryCursor(TicTacToeServer server, String nickname, int pageSize)
+			throws RemoteException {
+		this.server = server;
+		this.nickname = nickname;
+		this.pageSize = pageSize;
+		this.before = Long.MAX_VALUE;
+		this.cursor = server.openHistory(nickname, before);
+		this.done = cursor == TicTacToeServer.NO_CURSOR;
+	}
+
+	/**
+	 * Riceve dal server la pagina successiva. Le pagine vuote, restituite dal
+	 * server quando non trova partite del player in un tratto
+	 * dell'archivio, vengono saltate.
+	 * 
+	 * @return pagina di partite, null se non ci sono altre partite.
+	 * @throws RemoteException
+	 */
+	public GamePage next() throws RemoteException {
+		while (!done) {
+			GamePage page = server.nextGames(cursor, pageSize);
+			if (page == null) {
+				// Cursore scaduto: la lettura riprende dall'ultima partita
+				// ricevuta.
+				cursor = server.openHistory(nickname, before);
+				done = cursor == TicTacToeServer.NO_CURSOR;
+				continue;
+			}
+			done = page.isLast();
+			if (page.size() > 0) {
+				before = page.getOrdinal(page.size() - 1);
+				return page;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Chiude il cursore sul server, se non e' gia' esaurito.
+	 * 
+	 * @throws RemoteException
+	 */
+	public void close() throws RemoteException {
+		if (!done)
+			server.closeCursor(cursor);
+		done = true;
+	}
+
+}
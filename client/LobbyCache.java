@@ -0,0 +1,138 @@
+package client;
+
+import java.rmi.RemoteException;
+import java.util.*;
+import api.*;
+
+/**
+ * Copia locale della lista delle partite mantenuta sul server. Viene
+ * aggiornata applicando i delta ricevuti dal server ({@link LobbyDelta}) e
+ * conserva l'ultima versione ricevuta, cosi' che ad ogni aggiornamento
+ * vengano trasferite soltanto le partite aggiunte e rimosse.<br/>
+ * Le partite sono mantenute ordinate dalla piu' recente alla meno recente,
+ * con lo stesso criterio usato dal server.<br/>
+ * Un delta che non parte dalla versione locale, ad esempio perche' una
+ * notifica e una risposta del server si sono incrociate, non viene applicato:
+ * la lista locale non perde ne' ripete alcuna modifica.
+ * 
+ * @author Gennaro Capo
+ * @author Mirko Conte
+ * @author Vincenzo De Notaris
+ * @author Roberto Pacilio
+ * @version 1.0
+ * @see api.TicTacToeServer#getChallengersSince(long)
+ */
+public class LobbyCache {
+
+	// Attributi privati.
+	private long version;
+	private TreeSet<Entry> games;
+	private Map<String, Entry> entries;
+
+	/**
+	 * Costruttore di classe. Crea una lista vuota che non ha ancora ricevuto
+	 * alcuna versione dal server.
+	 */
+	public LobbyCache() {
+		version = 0;
+		games = new TreeSet<Entry>();
+		entries = new HashMap<String, Entry>();
+	}
+
+	/**
+	 * Restituisce l'ultima versione ricevuta dal server.
+	 * 
+	 * @return versione della lista locale.
+	 */
+	public synchronized long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Applica alla lista locale le modifiche ricevute dal server, se il delta
+	 * e' completo oppure parte dalla versione locale.
+	 * 
+	 * @param delta modifiche subite dalla lista sul server.
+	 * @return true se il delta e' stato applicato, false se e' stato ignorato
+	 *         perche' relativo a un'altra versione.
+	 */
+	public synchronized boolean apply(LobbyDelta delta) {
+		if (!delta.isSnapshot() && delta.getFromVersion() != version)
+			return false;
+		if (delta.isUnchanged()) {
+			version = delta.getVersion();
+			return true;
+		}
+		if (delta.isSnapshot()) {
+			games.clear();
+			entries.clear();
+		}
+		for (String id : delta.getRemoved()) {
+			Entry e = entries.remove(id);
+			if (e != null)
+				games.remove(e);
+		}
+		List<String> added = delta.getAdded();
+		for (int i = 0; i < added.size(); i++) {
+			Entry e = new Entry(added.get(i), delta.getAddedTime(i));
+			Entry old = entries.put(e.id, e);
+			if (old != null)
+				games.remove(old);
+			games.add(e);
+		}
+		version = delta.getVersion();
+		return true;
+	}
+
+	/**
+	 * Applica alla lista locale le modifiche ricevute dal server. Se il delta
+	 * non parte dalla versione locale viene ignorato e al server viene chiesto
+	 * un nuovo delta a partire da essa.
+	 * 
+	 * @param delta modifiche subite dalla lista sul server.
+	 * @param server server da cui richiedere un nuovo delta.
+	 * @throws RemoteException
+	 */
+	public void apply(LobbyDelta delta, TicTacToeServer server)
+			throws RemoteException {
+		while (!apply(delta))
+			delta = server.getChallengersSince(getVersion());
+	}
+
+	/**
+	 * Restituisce la lista locale delle partite, ordinate dalla piu' recente
+	 * alla meno recente.
+	 * 
+	 * @return lista delle partite.
+	 */
+	public synchronized ArrayList<String> list() {
+		ArrayList<String> list = new ArrayList<String>(games.size());
+		for (Entry e : games)
+			list.add(e.id);
+		return list;
+	}
+
+	/*
+	 * Elemento della lista: le partite sono ordinate per ora di creazione
+	 * decrescente e, a parita' di ora, per id.
+	 */
+	private static class Entry implements Comparable<Entry> {
+
+		private final String id;
+		private final int time;
+
+		public Entry(String id, int time) {
+			this.id = id;
+			this.time = time;
+		}
+
+		@Override
+		public int compareTo(Entry o) {
+			if (time != o.time)
+				return (time > o.time) ? -1 : 1;
+			return id.compareTo(o.id);
+		}
+
+	} // Chiusura della inner-class.
+
+}
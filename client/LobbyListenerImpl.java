@@ -0,0 +1,93 @@
+package client;
+
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.*;
+import api.*;
+
+/**
+ * Rappresenta l'implementazione dell'oggetto remoto {@link LobbyListener}.
+ * Riceve dal server le modifiche subite dalla lista delle partite, le applica
+ * alla copia locale ({@link LobbyCache}) e ne informa gli osservatori
+ * registrati.
+ * 
+ * @author Gennaro Capo
+ * @author Mirko Conte
+ * @author Vincenzo De Notaris
+ * @author Roberto Pacilio
+ * @version 1.0
+ * @see api.LobbyListener
+ */
+public class LobbyListenerImpl extends UnicastRemoteObject implements
+		LobbyListener, Subject {
+
+	// Attributi privati.
+	private static final long serialVersionUID = 1L;
+	private LobbyCache lobby;
+	private TicTacToeServer server;
+	private List<Watcher> wrs;
+
+	/**
+	 * Costruttore della classe LobbyListenerImpl.
+	 * 
+	 * @param lobby copia locale della lista delle partite da aggiornare.
+	 * @param server server da cui richiedere un nuovo delta, se quello
+	 *            ricevuto non parte dalla versione locale.
+	 * @throws RemoteException
+	 */
+	public LobbyListenerImpl(LobbyCache lobby, TicTacToeServer server)
+			throws RemoteException {
+		this.lobby = lobby;
+		this.server = server;
+		wrs = new LinkedList<Watcher>();
+	}
+
+	// Metodi ridefiniti dell'interfaccia LobbyListener.
+
+	/**
+	 * Il metodo notifica al client le modifiche subite dalla lista delle
+	 * partite a partire dall'ultima versione ricevuta.
+	 * 
+	 * @param delta modifiche subite dalla lista.
+	 * @throws RemoteException
+	 */
+	@Override
+	public void lobbyChanged(LobbyDelta delta) throws RemoteException {
+		lobby.apply(delta, server);
+		sendNotification();
+	}
+
+	// Metodi ridefiniti dell'interfaccia Subject.
+
+	/**
+	 * Consente di aggiungere un osservatore al subject.
+	 * 
+	 * @param aWatcher osservatore da aggiungere.
+	 */
+	@Override
+	public void add(Watcher aWatcher) {
+		wrs.add(aWatcher);
+	}
+
+	/**
+	 * Consente di rimuovere un osservatore che era stato precedentemente
+	 * aggiunto.
+	 * 
+	 * @param aWatcher osservatore da rimuovere.
+	 */
+	@Override
+	public void remove(Watcher aWatcher) {
+		wrs.remove(aWatcher);
+	}
+
+	/**
+	 * Consente di notificare il cambiamento di stato del subject a tutti gli
+	 * osservatori aggiunti.
+	 */
+	@Override
+	public void sendNotification() {
+		for (Watcher w : wrs)
+			w.update();
+	}
+
+}
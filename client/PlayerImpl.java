@@ -26,6 +26,8 @@ public class PlayerImpl extends UnicastRemoteObject implements Player, Subject {
 	private String name;
 	private Game game;
 	private int foeSelectedMove;
+	private int lastSeq = EventBatch.NO_SEQ;
+	private int[] restoredCells;
 	private List<Watcher> wrs;
 	private Event event;
 
@@ -94,6 +96,27 @@ public class PlayerImpl extends UnicastRemoteObject implements Player, Subject {
 		this.foeSelectedMove = foeSelectedMove;
 	}
 
+	/**
+	 * Il metodo restituisce il numero di sequenza dell'ultima mossa accettata
+	 * o rifiutata dal server.
+	 * 
+	 * @return numero di sequenza dell'ultima mossa confermata o rifiutata.
+	 */
+	public int getLastSeq() {
+		return lastSeq;
+	}
+
+	/**
+	 * Il metodo restituisce le caselle della griglia ripristinata dal server
+	 * con l'ultimo evento BOARD_RESTORED.
+	 * 
+	 * @return caselle della griglia, null se la griglia non e' mai stata
+	 *         ripristinata.
+	 */
+	public int[] getRestoredCells() {
+		return restoredCells;
+	}
+
 	/**
 	 * Il metodo restituisce l'evento verificatosi sul giocatore.
 	 *
@@ -213,6 +236,31 @@ public class PlayerImpl extends UnicastRemoteObject implements Player, Subject {
 		sendNotification();
 	}
 
+	/**
+	 * Il metodo consegna al giocatore, con una sola chiamata, tutti gli eventi
+	 * prodotti da una transizione di stato della partita. Ogni evento viene
+	 * notificato agli osservatori come se fosse arrivato singolarmente.
+	 * 
+	 * @param batch sequenza ordinata degli eventi.
+	 * @throws RemoteException
+	 */
+	@Override
+	public void receiveEvents(EventBatch batch) {
+		if (batch.getGame() != null)
+			game = batch.getGame();
+		for (int i = 0; i < batch.size(); i++) {
+			event = batch.getEvent(i);
+			if (event == Event.FOE_MOVED)
+				foeSelectedMove = batch.getMove();
+			else if (event == Event.MOVE_ACCEPTED
+					|| event == Event.MOVE_REJECTED)
+				lastSeq = batch.getSeq();
+			else if (event == Event.BOARD_RESTORED)
+				restoredCells = batch.getCells();
+			sendNotification();
+		}
+	}
+
 	// Metodi ridefiniti dell'interfaccia Subject.
 
 	/**
@@ -3,7 +3,9 @@ package client;
 import api.*;
 import java.net.*;
 import java.rmi.*;
+import java.rmi.server.UnicastRemoteObject;
 import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * E' la classe che si interfaccia direttamente con il server.Fornisce tutti i
@@ -29,6 +31,11 @@ public class TicTacToeClient implements Watcher,Subject {
 
 	// Attributi ptivati.
 	private static final String IP_SERVER = "localhost";
+	// Numero di tentativi di invio di una mossa.
+	private static final int SEND_ATTEMPTS = 3;
+	// Attesa prima del secondo tentativo, in millisecondi; raddoppia ad ogni
+	// tentativo successivo.
+	private static final long RETRY_DELAY = 100;
 	private Game g;
 	private PlayerImpl p;
 	private int grid[][];
@@ -38,6 +45,15 @@ public class TicTacToeClient implements Watcher,Subject {
 	private boolean creator;
 	private String idGameCreated;
 	private String idGameJoined;
+	private LobbyCache lobby;
+	private LobbyListenerImpl lobbyListener;
+	private long token;
+	private int moves;
+	private final Map<Integer, Integer> pending = new HashMap<Integer, Integer>();
+	private final Map<Integer, Integer> rolledBack = new HashMap<Integer, Integer>();
+	private ExecutorService sender;
+	private int rejectedMove = -1;
+	private final Object notifications = new Object();
 
 	/**
 	 * Costruttore di classe. Inizializza la griglia e si collega al server.
@@ -54,11 +70,19 @@ public class TicTacToeClient implements Watcher,Subject {
 			for (int j=0;j<Game.GRID_DIMENSION;j++)
 				grid[i][j] = Game.FREE_CELL;
 		wrs = new LinkedList<Watcher>();
+		lobby = new LobbyCache();
 		server = (TicTacToeServer)Naming.lookup("rmi://"+IP_SERVER+"/tictactoe");
 	}
 
 	/**
-	 * Consente di inviare al server la mossa effettuata dal player.
+	 * Consente di inviare al server la mossa effettuata dal player. La mossa
+	 * viene applicata subito alla griglia locale e inviata in background con
+	 * il suo numero di sequenza, ritentando fino a SEND_ATTEMPTS volte con
+	 * attese crescenti. Se il server la rifiuta, oppure non e' mai stato
+	 * possibile inviarla, la mossa viene annullata e lo stato diventa
+	 * MOVE_REJECTED. Se invece l'esito dell'invio e' incerto (il server
+	 * potrebbe averla ricevuta), la mossa resta in attesa fino alla risposta
+	 * del server o alla risincronizzazione della griglia.
 	 * 
 	 * @param m identificativo della mossa da inviare.
 	 * 		  E' un intero e deve essere compreso tra 0 e 8. 
@@ -73,10 +97,134 @@ public class TicTacToeClient implements Watcher,Subject {
 	 *        8 rappresenta la mossa in posizione (2,2).
 	 * @throws RemoteException
 	 */
-	public void sendMove(int m) throws RemoteException{
-		g.sendMovement(p, m);
+	public void sendMove(final int m) throws RemoteException{
+		final int seq;
+		synchronized (this) {
+			grid[m/Game.GRID_DIMENSION][m%Game.GRID_DIMENSION]=Game.P1_CELL;
+			seq = moves++;
+			pending.put(seq, m);
+			if (sender == null)
+				sender = Executors.newSingleThreadExecutor(new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread t = new Thread(r, "move-sender");
+						t.setDaemon(true);
+						return t;
+					}
+				});
+		}
+		sender.execute(new Runnable() {
+			@Override
+			public void run() {
+				// Le ritrasmissioni vengono ignorate dal server grazie al
+				// numero di sequenza.
+				boolean uncertain = false;
+				for (int i = 0; i < SEND_ATTEMPTS; i++) {
+					if (i > 0) {
+						try {
+							Thread.sleep(RETRY_DELAY << (i - 1));
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+							return;
+						}
+					}
+					try {
+						Game game = g;
+						if (game != null) {
+							game.sendMovement(token, seq, m);
+							return;
+						}
+					} catch (RemoteException e) {
+						uncertain = true;
+						System.out.println("Impossible to send the move."+e.getMessage());
+					}
+				}
+				int cell = uncertain ? -1 : rollback(seq);
+				if (cell >= 0)
+					publish(Event.MOVE_REJECTED, cell);
+			}
+		});
+	}
+
+	/*
+	 * Annulla la mossa con numero di sequenza seq, se non e' ancora stata
+	 * confermata dal server. Restituisce la casella liberata, -1 se la mossa
+	 * non era in attesa.
+	 */
+	private synchronized int rollback(int seq) {
+		Integer m = pending.remove(seq);
+		if (m == null)
+			return -1;
+		grid[m/Game.GRID_DIMENSION][m%Game.GRID_DIMENSION]=Game.FREE_CELL;
+		moves = seq;
+		rolledBack.put(seq, m);
+		return m;
+	}
+
+	/*
+	 * Notifica agli osservatori il nuovo stato e. Le notifiche del thread di
+	 * invio delle mosse e di quello che riceve gli eventi dal server non si
+	 * sovrappongono: durante update() gli osservatori leggono lo stato e la
+	 * mossa annullata della propria notifica.
+	 */
+	private void publish(Event e, int rejected) {
+		synchronized (notifications) {
+			state = e;
+			rejectedMove = rejected;
+			sendNotification();
+		}
+	}
+
+	/*
+	 * Registra la conferma della mossa con numero di sequenza seq. Se la
+	 * mossa era gia' stata annullata, viene riapplicata alla griglia.
+	 */
+	private synchronized void accept(int seq) {
+		if (pending.remove(seq) != null)
+			return;
+		Integer m = rolledBack.remove(seq);
+		if (m == null)
+			return;
 		grid[m/Game.GRID_DIMENSION][m%Game.GRID_DIMENSION]=Game.P1_CELL;
+		moves = Math.max(moves, seq + 1);
+	}
+
+	/*
+	 * Dimentica le mosse in attesa e quelle annullate, dopo che la griglia e'
+	 * stata risincronizzata con il server.
+	 */
+	private synchronized void resync() {
+		pending.clear();
+		rolledBack.clear();
+	}
+
+	/**
+	 * Chiede la rivincita al termine della partita corrente. La nuova partita
+	 * comincia, sullo stesso oggetto, non appena anche l'avversario la chiede:
+	 * il client riceve allora MATCH_STARTED e la griglia viene svuotata.
+	 * 
+	 * @throws RemoteException
+	 */
+	public void rematch() throws RemoteException {
+		g.rematch(token);
+	}
 
+	/**
+	 * Ricollega il client al server, ad esempio dopo un suo riavvio, aprendo
+	 * una nuova sessione con lo stesso nickname. Se il server ha ricostruito
+	 * una partita del player, questa riprende quando anche l'avversario si e'
+	 * ricollegato: il client riceve MATCH_STARTED e BOARD_RESTORED.
+	 * 
+	 * @return true se la nuova sessione e' stata aperta, false altrimenti.
+	 * @throws MalformedURLException
+	 * @throws RemoteException
+	 * @throws NotBoundException
+	 */
+	public boolean reconnect() throws MalformedURLException, RemoteException,
+			NotBoundException {
+		server = (TicTacToeServer)Naming.lookup("rmi://"+IP_SERVER+"/tictactoe");
+		token = server.registerSession(p, p.getName());
+		return token != TicTacToeServer.NO_SESSION;
 	}
 
 	/**
@@ -108,7 +256,7 @@ public class TicTacToeClient implements Watcher,Subject {
 	public void createGame(String idGame) throws MalformedURLException, RemoteException, NotBoundException{
 		idGameCreated=idGame;
 		creator=true;
-		server.createGame(p, idGame);
+		server.createGame(token, idGame);
 	}
 	/**
 	 * Consente a un player di aggiungersi a una partita creata precedentemente da un altro player.
@@ -123,12 +271,14 @@ public class TicTacToeClient implements Watcher,Subject {
 	public void joinGame(String idGame) throws MalformedURLException, RemoteException, NotBoundException, GameJoiningException{
 		idGameJoined=idGame;
 		creator=false;
-		server.joinGame(p, idGame);
+		server.joinGame(token, idGame);
 	}
 
 	/**
 	 * Consente a un player di registrarsi presso il server. Il nickname deve
-	 * essere univoco nel sistema fino alla deregistrazione del player.
+	 * essere univoco nel sistema fino alla deregistrazione del player. Il
+	 * token della sessione ottenuto identifica il player in tutte le chiamate
+	 * successive.
 	 * 
 	 * @param nickname
 	 *            nome con cui registrarsi.
@@ -136,20 +286,71 @@ public class TicTacToeClient implements Watcher,Subject {
 	 * @throws RemoteException
 	 */
 	public boolean registerPlayer(String nickname) throws RemoteException {
-		p = new PlayerImpl();
-		p.setName(nickname);
-		p.add(this);// mi aggiungo come osservatore di p
-		return server.register(p, nickname);
+		PlayerImpl candidate = new PlayerImpl();
+		candidate.setName(nickname);
+		candidate.add(this);// mi aggiungo come osservatore di p
+		long t = server.registerSession(candidate, nickname);
+		if (t == TicTacToeServer.NO_SESSION)
+			// Una registrazione rifiutata non chiude la sessione corrente.
+			return false;
+		p = candidate;
+		token = t;
+		return true;
 	}
 	
+	/**
+	 * Sottoscrive il client alle modifiche della lista delle partite: il
+	 * server le inviera' non appena si verificano, senza che il client debba
+	 * richiederle. L'osservatore <code>w</code> viene notificato ad ogni
+	 * aggiornamento della lista locale, ottenibile con {@link #getLobbyList()}.
+	 * 
+	 * @param w osservatore da notificare ad ogni aggiornamento.
+	 * @throws RemoteException
+	 */
+	public void subscribeLobby(Watcher w) throws RemoteException {
+		if (lobbyListener == null)
+			lobbyListener = new LobbyListenerImpl(lobby, server);
+		lobbyListener.add(w);
+		server.subscribeLobby(lobbyListener, lobby.getVersion());
+	}
+
+	/**
+	 * Annulla la sottoscrizione del client alle modifiche della lista delle
+	 * partite.
+	 */
+	public void unsubscribeLobby() {
+		if (lobbyListener == null)
+			return;
+		try {
+			server.unsubscribeLobby(lobbyListener);
+			UnicastRemoteObject.unexportObject(lobbyListener, true);
+		} catch (RemoteException e) {
+			System.out.println("Impossible to unsubscribe."+e.getMessage());
+		}
+		lobbyListener = null;
+	}
+
+	/**
+	 * Restituisce la copia locale della lista delle partite, cosi' come
+	 * ricevuta dall'ultimo aggiornamento.
+	 * 
+	 * @return lista delle partite.
+	 */
+	public ArrayList<String> getLobbyList() {
+		return lobby.list();
+	}
+
 	/**
 	 * Deregistra un player dal server, rendendo nuovamente disponibile il nickname ad altri player.
 	 * 
 	 * @param nickname nome del player da deregistrare
 	 */
 	public void deregisterPlayer(String nickname) {
+		unsubscribeLobby();
 		try {
-			 server.deregister(nickname);
+			if (token != TicTacToeServer.NO_SESSION)
+				server.deregister(token);
+			token = TicTacToeServer.NO_SESSION;
 		} catch (RemoteException e) {
 			System.out.println("Impossible to logout."+e.getMessage());
 
@@ -158,6 +359,8 @@ public class TicTacToeClient implements Watcher,Subject {
 
 	/**
 	 * Riceve la lista delle partite create che sono in attesa di uno sfidante.
+	 * Dal server vengono trasferite soltanto le modifiche subite dalla lista
+	 * rispetto all'ultima versione ricevuta.
 	 * 
 	 * @return lista delle partite
 	 * @throws MalformedURLException
@@ -166,7 +369,8 @@ public class TicTacToeClient implements Watcher,Subject {
 	 */
 	public ArrayList<String> receiveList() throws MalformedURLException,
 			RemoteException, NotBoundException {
-		return (ArrayList<String>) server.getAllChallengers();
+		lobby.apply(server.getChallengersSince(lobby.getVersion()), server);
+		return lobby.list();
 	}
 
 	/**
@@ -179,13 +383,65 @@ public class TicTacToeClient implements Watcher,Subject {
 	 */
 	public ArrayList<String> removeGame() throws MalformedURLException,
 			RemoteException, NotBoundException {
-		if (creator)
-			return (ArrayList<String>) server.removeGame(idGameCreated);
-		else
-			return (ArrayList<String>) server.removeGame(idGameJoined);
+		String idGame = creator ? idGameCreated : idGameJoined;
+		lobby.apply(server.removeGame(token, idGame, lobby.getVersion()),
+				server);
+		return lobby.list();
 
 	}
 
+	/**
+	 * Riceve dal server le statistiche del player con il nickname indicato.
+	 * 
+	 * @param nickname nickname del player.
+	 * @return partite vinte, perse, pareggiate e abbandonate dal player.
+	 * @throws RemoteException
+	 */
+	public PlayerStats getStats(String nickname) throws RemoteException {
+		return server.getStats(nickname);
+	}
+
+	/**
+	 * Riceve dal server una pagina della classifica dei player.
+	 * 
+	 * @param offset numero di player da saltare.
+	 * @param limit numero massimo di player da ricevere.
+	 * @return pagina della classifica, ordinata per rating decrescente.
+	 * @throws RemoteException
+	 */
+	public ArrayList<LeaderboardEntry> getLeaderboard(int offset, int limit)
+			throws RemoteException {
+		return server.getLeaderboard(offset, limit);
+	}
+
+	/**
+	 * Riceve dal server la posizione in classifica del player con il
+	 * nickname indicato.
+	 * 
+	 * @param nickname nickname del player.
+	 * @return posizione del player, a partire da 1; 0 se non e' in
+	 *         classifica.
+	 * @throws RemoteException
+	 */
+	public int getRank(String nickname) throws RemoteException {
+		return server.getRank(nickname);
+	}
+
+	/**
+	 * Apre un cursore sulle partite concluse archiviate sul server, dalla
+	 * piu' recente alla meno recente.
+	 * 
+	 * @param nickname nickname del player di cui leggere le partite, null per
+	 *            leggere tutte le partite.
+	 * @param pageSize numero massimo di partite per pagina.
+	 * @return cursore da cui leggere le pagine di partite.
+	 * @throws RemoteException
+	 */
+	public HistoryCursor getHistory(String nickname, int pageSize)
+			throws RemoteException {
+		return new HistoryCursor(server, nickname, pageSize);
+	}
+
 	// Metodi di get e set.
 
 	/**
@@ -235,6 +491,31 @@ public class TicTacToeClient implements Watcher,Subject {
 		return grid;
 	}
 
+	/**
+	 * Restituisce una copia della griglia di gioco, che non viene modificata
+	 * dalle notifiche successive.
+	 * 
+	 * @return copia della griglia di gioco.
+	 */
+	public synchronized int[][] getGridCopy() {
+		int[][] copy = new int[Game.GRID_DIMENSION][];
+		for (int i = 0; i < Game.GRID_DIMENSION; i++)
+			copy[i] = grid[i].clone();
+		return copy;
+	}
+
+	/**
+	 * Restituisce la mossa del player annullata perche' rifiutata dal server,
+	 * se lo stato corrente e' MOVE_REJECTED. Gli osservatori devono leggerla
+	 * durante la notifica dello stato.
+	 * 
+	 * @return identificativo della mossa annullata, -1 se lo stato corrente
+	 *         non e' MOVE_REJECTED.
+	 */
+	public int getRejectedMove() {
+		return rejectedMove;
+	}
+
 	/**
 	 * Restituisce lo stato corrente in cui si trova il player.
 	 * 
@@ -304,14 +585,43 @@ public class TicTacToeClient implements Watcher,Subject {
 	public void update() {
 		switch (p.getEvent()) {
 		case FOE_MOVED:
-			receiveMove();
+			synchronized (this) {
+				receiveMove();
+				moves++;
+			}
 			break;
 		case MATCH_STARTED:
+			synchronized (this) {
+				resetGrid();
+				moves = 0;
+			}
+			resync();
 			setGame(p.getGame());
 			break;
+		case MOVE_ACCEPTED:
+			accept(p.getLastSeq());
+			break;
+		case MOVE_REJECTED:
+			// Se la mossa non era piu' in attesa non c'e' nulla da annullare
+			// e gli osservatori non vengono notificati.
+			int cell = rollback(p.getLastSeq());
+			if (cell >= 0)
+				publish(Event.MOVE_REJECTED, cell);
+			return;
+		case BOARD_RESTORED:
+			synchronized (this) {
+				int[] cells = p.getRestoredCells();
+				moves = 0;
+				for (int i = 0; i < cells.length; i++) {
+					grid[i/Game.GRID_DIMENSION][i%Game.GRID_DIMENSION] = cells[i];
+					if (cells[i] != Game.FREE_CELL)
+						moves++;
+				}
+			}
+			resync();
+			break;
 		}
-		state = p.getEvent();
-		sendNotification();
+		publish(p.getEvent(), -1);
 	}
 
 	// Metodi ridefiniti dell'interfaccia Subject.
@@ -38,6 +38,9 @@ public class GUIController implements Watcher {
 	private GameBoardGUI gameBoardGUI;
 	private TicTacToeClient client;
 	private String playerNickName;
+	private boolean rematch;
+	// Turno del giocatore corrente; letto e scritto solo dal thread della GUI.
+	private boolean myTurn;
 
 	/**
 	 * Costruttore della classe GUI Controller.
@@ -97,8 +100,13 @@ public class GUIController implements Watcher {
 	public void quitActionPerformed(ActionEvent e, boolean deregister) {
 		try {
 			if (deregister) {
-				client.deregisterPlayer(playerNickName);
-				client.removeGame();
+				// La partita viene rimossa prima di chiudere la sessione, il
+				// cui token autorizza la rimozione.
+				try {
+					client.removeGame();
+				} finally {
+					client.deregisterPlayer(playerNickName);
+				}
 			}
 		} catch (MalformedURLException e1) {
 			e1.printStackTrace();
@@ -134,6 +142,14 @@ public class GUIController implements Watcher {
 				setVisibleGameList(true);
 				ArrayList<String> c = client.receiveList();
 				gameListGUI.showList(c);
+				// Gli aggiornamenti successivi della lista vengono inviati
+				// dal server.
+				client.subscribeLobby(new Watcher() {
+					@Override
+					public void update() {
+						lobbyChanged();
+					}
+				});
 			}
 		} catch (MalformedURLException e1) {
 			gameInitGUI.showConnectionRefusedMessage();
@@ -163,7 +179,7 @@ public class GUIController implements Watcher {
 			client.createGame(idGame);
 			gameListGUI.setButtonsEnabled(false, true, false);
 			gameListGUI.showGameSuccAddedMessage();
-			refreshListActionPerformed(e);
+			// La lista aggiornata viene inviata dal server.
 		} catch (MalformedURLException e1) {
 			gameListGUI.showConnectionErrorMessage();
 			e1.printStackTrace();
@@ -277,6 +293,24 @@ public class GUIController implements Watcher {
 
 	}
 
+	/**
+	 * Metodo per gestire la richiesta di rivincita al termine di una partita.
+	 * La nuova partita viene giocata nella stessa finestra.
+	 * 
+	 * @param e evento generato mediante l'interazione con la GUI.
+	 */
+	public void rematchActionPerformed(ActionEvent e) {
+		try {
+			rematch = true;
+			gameBoardGUI.setRematchEnabled(false);
+			gameBoardGUI.showRematchWaitMessage();
+			client.rematch();
+		} catch (RemoteException e1) {
+			gameBoardGUI.showConnectionErrorMessage();
+			e1.printStackTrace();
+		}
+	}
+
 	/**
 	 * Metodo per gestire una mossa di gioco da parte di un partecipante ad una
 	 * partita.
@@ -305,12 +339,40 @@ public class GUIController implements Watcher {
 
 	/**
 	 * Metodo per la gestione dei diversi stati in cui puo' trovarsi il client.
+	 * Lo stato viene letto durante la notifica, insieme ai dati che lo
+	 * accompagnano, e mostrato dal thread della GUI: le notifiche arrivano dai
+	 * thread del client, che non possono modificare le finestre.
 	 */
 	@Override
 	public void update() {
+		final Event state = client.getState();
+		final int rejected = client.getRejectedMove();
+		final int foeMove = client.getPlayer().getFoeSelectedMove();
+		final int[][] grid = client.getGridCopy();
+		EventQueue.invokeLater(new Runnable() {
+			public void run() {
+				show(state, rejected, foeMove, grid);
+			}
+		});
+	}
 
-		switch (client.getState()) {
+	/*
+	 * Aggiorna le finestre in base allo stato del client. rejected e' la
+	 * mossa annullata se lo stato e' MOVE_REJECTED, foeMove l'ultima mossa
+	 * dell'avversario e grid la griglia al momento della notifica.
+	 */
+	private void show(Event state, int rejected, int foeMove, int[][] grid) {
+
+		switch (state) {
 		case MATCH_STARTED: // Inizio della partita.
+			myTurn = false;
+			if (rematch) {
+				// La rivincita si gioca nella finestra gia' aperta.
+				rematch = false;
+				gameBoardGUI.resetBoard();
+				gameBoardGUI.setRematchEnabled(false);
+				break;
+			}
 			gameListGUI.close();
 			gameInitGUI.close();
 			setVisibleGameBoard(true);
@@ -318,63 +380,109 @@ public class GUIController implements Watcher {
 			break;
 
 		case YOUR_TURN: // Turno del giocatore corrente.
+			myTurn = true;
 			gameBoardGUI.setReady();
-			enableButtons(client.getGrid(), true);
+			enableButtons(grid, true);
 			break;
 
 		case FOE_TURN: // Turno del giocatore avversario.
+			myTurn = false;
 			gameBoardGUI.setBusy();
-			enableButtons(client.getGrid(), false);
+			enableButtons(grid, false);
+			break;
+
+		case MOVE_ACCEPTED: // Mossa confermata, anche se gia' annullata.
+			showGrid(grid);
+			break;
+
+		case MOVE_REJECTED: // Mossa annullata perche' rifiutata dal server.
+			if (rejected >= 0
+					&& grid[rejected / GameBoardGUI.DIM][rejected % GameBoardGUI.DIM] == Game.FREE_CELL)
+				gameBoardGUI.clearButton(rejected);
+			// La griglia torna utilizzabile solo se il turno e' ancora del
+			// giocatore corrente.
+			if (myTurn)
+				gameBoardGUI.setReady();
+			enableButtons(grid, myTurn);
 			break;
 
 		case FOE_DISCONNECTED: // Disconnessione del giocatore avversario.
+			myTurn = false;
+			rematch = false;
 			gameBoardGUI.showLeftFoeMessage();
 			gameBoardGUI.disableAllButtons();
+			gameBoardGUI.setRematchEnabled(false);
 			break;
 
-		case FOE_MOVED: // Mossa da parte del giocatore avversario.
-			client.receiveMove();
-			int move = client.getPlayer().getFoeSelectedMove();
+		case BOARD_RESTORED: // Partita ripresa dopo un riavvio del server.
+			showGrid(grid);
+			break;
 
+		case REMATCH_OFFERED: // Richiesta di rivincita da parte dell'avversario.
+			rematch = true;
+			gameBoardGUI.showRematchOfferedMessage();
+			break;
+
+		case FOE_MOVED: // Mossa da parte del giocatore avversario.
+			// La mossa e' gia' stata applicata alla griglia dal client; il
+			// turno passa al giocatore corrente con l'evento YOUR_TURN che
+			// la segue.
 			MovementLabel l;
 			if (client.isCreator()) {
-				if (client.getGrid()[move / GameBoardGUI.DIM][move % GameBoardGUI.DIM] == Game.P1_CELL)
+				if (grid[foeMove / GameBoardGUI.DIM][foeMove % GameBoardGUI.DIM] == Game.P1_CELL)
 					l = MovementLabel.X;
 				else
 					l = MovementLabel.O;
 			} else {
-				if (client.getGrid()[move / GameBoardGUI.DIM][move % GameBoardGUI.DIM] == Game.P1_CELL)
+				if (grid[foeMove / GameBoardGUI.DIM][foeMove % GameBoardGUI.DIM] == Game.P1_CELL)
 					l = MovementLabel.O;
 				else
 					l = MovementLabel.X;
 			}
 
-			gameBoardGUI.setButtonLabelXO(move, l);
-			client.getPlayer().isYourTurn();
+			gameBoardGUI.setButtonLabelXO(foeMove, l);
 			break;
 
 		case DRAW: // Pareggio della partita.
+			myTurn = false;
 			gameBoardGUI.disableAllButtons();
 			gameBoardGUI.setBusy();
 			gameBoardGUI.showDrawMessage();
+			gameBoardGUI.setRematchEnabled(true);
 			break;
 
 		case YOU_WIN: // Vittoria della partita da parte del giocatore corrente.
+			myTurn = false;
 			gameBoardGUI.disableAllButtons();
 			gameBoardGUI.setBusy();
 			gameBoardGUI.showWonMessage();
+			gameBoardGUI.setRematchEnabled(true);
 			break;
 
 		case YOU_LOSE: // Sconfitta della partita da parte del giocatore
 						// corrente.
+			myTurn = false;
 			gameBoardGUI.disableAllButtons();
 			gameBoardGUI.setBusy();
 			gameBoardGUI.showLoseMessage();
+			gameBoardGUI.setRematchEnabled(true);
 			break;
 		}
 
 	}
 
+	/**
+	 * Metodo per la gestione degli aggiornamenti della lista di partite inviati
+	 * dal server. La lista viene mostrata dal thread della GUI.
+	 */
+	public void lobbyChanged() {
+		EventQueue.invokeLater(new Runnable() {
+			public void run() {
+				gameListGUI.showList(client.getLobbyList());
+			}
+		});
+	}
+
 	/**
 	 * Main dell'applicazione lato client.
 	 */
@@ -397,6 +505,18 @@ public class GUIController implements Watcher {
 		});
 	}
 
+	/*
+	 * Mostra sulla griglia grafica le caselle occupate di grid.
+	 */
+	private void showGrid(int grid[][]) {
+		for (int i = 0; i < GameBoardGUI.DIM; i++)
+			for (int j = 0; j < GameBoardGUI.DIM; j++)
+				if (grid[i][j] != Game.FREE_CELL)
+					gameBoardGUI.setButtonLabelXO(i * GameBoardGUI.DIM + j,
+							(grid[i][j] == Game.P1_CELL) == client.isCreator()
+									? MovementLabel.X : MovementLabel.O);
+	}
+
 	/*
 	 * Metodo per abilitare i pulsanti della griglia durante l'alternarsi delle
 	 * fasi di gioco.
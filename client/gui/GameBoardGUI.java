@@ -52,6 +52,8 @@ public class GameBoardGUI extends GameGUI {
 	private final static String LOSE_MSG = "You lost";
 	private final static String FOE_DISC_MSG = "Your foe disconnected";
 	private final static String FOE_LEFT_MSG = "Your foe has left the game";
+	private final static String REMATCH_OFFERED_MSG = "Your foe wants a rematch";
+	private final static String REMATCH_WAIT_MSG = "Waiting for your foe to accept the rematch";
 	private static final String WAIT_MOVE_MSG = "Waiting for opponent move";
 	private static final String DO_MOVE_MSG = "You can now make your move";
 	private static final String LABEL = "Ivan Drago says: I must break you!";
@@ -65,6 +67,7 @@ public class GameBoardGUI extends GameGUI {
 	private JLabel labelReady, labelBusy;
 	private JLabel lblGameBoard;
 	private JButton buttons[][];
+	private JButton btnRematch;
 
 	/**
 	 * Costruttore della classe GameBoardGUI.
@@ -118,6 +121,44 @@ public class GameBoardGUI extends GameGUI {
 		setStatusBar(FOE_LEFT_MSG);
 	}
 
+	/**
+	 * Metodo che mostra nella statusbar il messaggio di richiesta della
+	 * rivincita da parte dell'avversario.
+	 */
+	public void showRematchOfferedMessage() {
+		setStatusBar(REMATCH_OFFERED_MSG);
+	}
+
+	/**
+	 * Metodo che mostra nella statusbar il messaggio di attesa della risposta
+	 * dell'avversario alla richiesta di rivincita.
+	 */
+	public void showRematchWaitMessage() {
+		setStatusBar(REMATCH_WAIT_MSG);
+	}
+
+	/**
+	 * Metodo per abilitare o disabilitare il pulsante della rivincita.
+	 * 
+	 * @param enable true per abilitare, false altrimenti.
+	 */
+	public void setRematchEnabled(boolean enable) {
+		btnRematch.setEnabled(enable);
+	}
+
+	/**
+	 * Metodo per svuotare tutte le caselle della griglia di gioco all'inizio
+	 * della rivincita. Le caselle restano disabilitate fino all'assegnazione
+	 * del turno.
+	 */
+	public void resetBoard() {
+		for (int i = 0; i < DIM; i++)
+			for (int j = 0; j < DIM; j++) {
+				buttons[i][j].setIcon(null);
+				buttons[i][j].setEnabled(false);
+			}
+	}
+
 	/**
 	 * Metodo per abilitare l'icona che segnala al giocatore la possibilita' di
 	 * effettuare la sua mossa. Viene impostato anche un apposito messaggio
@@ -187,6 +228,18 @@ public class GameBoardGUI extends GameGUI {
 		buttons[i][j].setEnabled(false);
 	}
 	
+	/**
+	 * Metodo per svuotare una casella della griglia di gioco, ad esempio
+	 * quando una mossa viene rifiutata dal server. La casella viene
+	 * riabilitata.
+	 * 
+	 * @param m indice della mossa da annullare.
+	 */
+	public void clearButton(int m) {
+		buttons[m / DIM][m % DIM].setIcon(null);
+		buttons[m / DIM][m % DIM].setEnabled(true);
+	}
+	
 	/**
 	 * Metodo che imposta l'icona ed il testo della label dell'header della
 	 * finestra a seconda del simbolo associato al giocatore.
@@ -427,6 +480,19 @@ public class GameBoardGUI extends GameGUI {
 		});
 		toolBar.add(btnLeaveGame);
 		
+		btnRematch = new JButton("Rematch");
+		btnRematch.setIcon(new ImageIcon(GameBoardGUI.class.getResource("/client/gui/icons/list-refresh.png")));
+		btnRematch.setMinimumSize(new Dimension(175, 29));
+		btnRematch.setMaximumSize(new Dimension(175, 29));
+		btnRematch.setHorizontalAlignment(SwingConstants.LEFT);
+		btnRematch.setEnabled(false);
+		btnRematch.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				ctrl.rematchActionPerformed(e);
+			}
+		});
+		toolBar.add(btnRematch);
+		
 		JSeparator separator_2 = new JSeparator();
 		separator_2.setForeground(UIManager.getColor("Button.background"));
 		toolBar.add(separator_2);
@@ -0,0 +1,73 @@
+package client.test;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+
+import api.*;
+import client.*;
+
+public class LobbyCacheTest {
+
+	private LobbyCache cache;
+
+	@Before
+	public void init() {
+
+		cache = new LobbyCache();
+		ArrayList<String> added = new ArrayList<String>();
+		added.add("genni-15:50:20");
+		added.add("mirko-15:47:22");
+		cache.apply(new LobbyDelta(0, 10, true, added, new int[] { 57020,
+				56842 }, new ArrayList<String>()));
+	}
+
+	@Test
+	public void testSnapshot() {
+
+		assertEquals(10, cache.getVersion());
+		ArrayList<String> l = cache.list();
+		assertEquals(2, l.size());
+		assertEquals("genni-15:50:20", l.get(0));
+	}
+
+	@Test
+	public void testDelta() {
+
+		ArrayList<String> added = new ArrayList<String>();
+		added.add("bappo-15:48:00");
+		ArrayList<String> removed = new ArrayList<String>();
+		removed.add("genni-15:50:20");
+		cache.apply(new LobbyDelta(10, 12, false, added, new int[] { 56880 },
+				removed));
+
+		ArrayList<String> l = cache.list();
+		assertEquals(12, cache.getVersion());
+		assertEquals(2, l.size());
+		assertEquals("bappo-15:48:00", l.get(0));
+		assertEquals("mirko-15:47:22", l.get(1));
+
+		cache.apply(new LobbyDelta(12));
+		assertEquals(2, cache.list().size());
+	}
+
+	@Test
+	public void testStaleDelta() {
+
+		// Un delta che parte da un'altra versione viene ignorato.
+		ArrayList<String> added = new ArrayList<String>();
+		added.add("bappo-15:48:00");
+		assertFalse(cache.apply(new LobbyDelta(11, 12, false, added,
+				new int[] { 56880 }, new ArrayList<String>())));
+		assertFalse(cache.apply(new LobbyDelta(12)));
+		assertEquals(10, cache.getVersion());
+		assertEquals(2, cache.list().size());
+
+		// Un delta completo viene applicato a qualunque versione.
+		assertTrue(cache.apply(new LobbyDelta(11, 12, true, added,
+				new int[] { 56880 }, new ArrayList<String>())));
+		assertEquals(12, cache.getVersion());
+		assertEquals(1, cache.list().size());
+	}
+}
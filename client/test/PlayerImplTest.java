@@ -116,6 +116,27 @@ public class PlayerImplTest {
 		assertEquals(Event.YOU_WIN, p1.getEvent());
 	}
 	
+	@Test
+	public void testReceiveEvents(){
+		
+		final java.util.List<Event> seen = new java.util.ArrayList<Event>();
+		Watcher w = new Watcher() {
+			@Override
+			public void update() {
+				seen.add(p2.getEvent());
+			}
+		};
+		p2.add(w);
+		p2.receiveEvents(new EventBatch(6, Event.FOE_MOVED, Event.YOUR_TURN, Event.YOU_LOSE));
+		p2.remove(w);
+		
+		assertEquals(6, p2.getFoeSelectedMove());
+		assertEquals(Event.YOU_LOSE, p2.getEvent());
+		assertEquals(3, seen.size());
+		assertEquals(Event.FOE_MOVED, seen.get(0));
+		assertEquals(Event.YOUR_TURN, seen.get(1));
+	}
+	
 	
 
 }
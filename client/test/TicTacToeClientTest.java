@@ -99,7 +99,7 @@ public class TicTacToeClientTest {
 	}
 	
 	@Test
-	public void testSendReceiveMove() throws RemoteException, MalformedURLException, NotBoundException, GameJoiningException{
+	public void testSendReceiveMove() throws RemoteException, MalformedURLException, NotBoundException, GameJoiningException, InterruptedException{
 		
 		cl.registerPlayer("bappo");
 		cl2.registerPlayer("gennaro");
@@ -107,14 +107,23 @@ public class TicTacToeClientTest {
 		cl.createGame("bappo-15:50:20");
 		
 		cl2.joinGame("bappo-15:50:20");
+		
+		// L'inizio della partita viene notificato in maniera asincrona e il
+		// primo a muovere e' scelto a caso.
+		for (int i = 0; i < 100 && cl.getState() != Event.YOUR_TURN && cl2.getState() != Event.YOUR_TURN; i++)
+			Thread.sleep(20);
+		TicTacToeClient first = (cl.getState() == Event.YOUR_TURN) ? cl : cl2;
+		TicTacToeClient second = (first == cl) ? cl2 : cl;
 			
-		cl.sendMove(0);
+		first.sendMove(0);
 		
-		int grid1[][]=cl.getGrid();
+		int grid1[][]=first.getGrid();
 		assertEquals(Game.P1_CELL, grid1[0/Game.GRID_DIMENSION][0%Game.GRID_DIMENSION]);
 		
-		cl2.receiveMove();
-		int grid2[][]=cl2.getGrid();
+		for (int i = 0; i < 100 && second.getState() != Event.YOUR_TURN; i++)
+			Thread.sleep(20);
+		second.receiveMove();
+		int grid2[][]=second.getGrid();
 		assertEquals(Game.P2_CELL, grid2[0/Game.GRID_DIMENSION][0%Game.GRID_DIMENSION]);
 	}
 	
@@ -144,6 +153,31 @@ public class TicTacToeClientTest {
 		assertTrue(l.contains("bappo-15:50:20"));
 	}
 	
+	@Test
+	public void testLateAck() throws RemoteException, InterruptedException{
+		
+		// Senza partita la mossa non viene mai inviata e, dopo i tentativi,
+		// viene annullata.
+		cl.registerPlayer("bappo");
+		cl.sendMove(4);
+		assertEquals(Game.P1_CELL, cl.getGrid()[1][1]);
+		for (int i = 0; i < 100 && cl.getState() != Event.MOVE_REJECTED; i++)
+			Thread.sleep(20);
+		assertEquals(Event.MOVE_REJECTED, cl.getState());
+		assertEquals(Game.FREE_CELL, cl.getGrid()[1][1]);
+		assertEquals(4, cl.getRejectedMove());
+		
+		// Una conferma tardiva riapplica la mossa annullata.
+		cl.getPlayer().receiveEvents(new EventBatch(0, EventBatch.NO_MOVE, Event.MOVE_ACCEPTED));
+		assertEquals(Game.P1_CELL, cl.getGrid()[1][1]);
+		assertEquals(-1, cl.getRejectedMove());
+		
+		// Un rifiuto di una mossa non piu' in attesa non viene notificato.
+		cl.getPlayer().receiveEvents(new EventBatch(0, EventBatch.NO_MOVE, Event.MOVE_REJECTED));
+		assertEquals(Event.MOVE_ACCEPTED, cl.getState());
+		assertEquals(Game.P1_CELL, cl.getGrid()[1][1]);
+	}
+	
 	@Test
 	public void testGetSet() throws RemoteException{
 		
@@ -0,0 +1,350 @@
+package server;
+
+import java.io.*;
+import java.util.concurrent.*;
+
+/**
+ * Statistiche sulle aperture delle partite archiviate: percentuale di
+ * vittorie di chi muove per primo in base alla prima mossa, durata media
+ * delle partite e percentuale di pareggi in base al player che muove per
+ * primo. Quest'ultima, insieme al numero di partite iniziate da ciascun
+ * player, permette di verificare che la scelta casuale del primo player
+ * ({@link GameImpl}) sia equa.<br/>
+ * L'archivio viene letto in parallelo su un {@link ForkJoinPool}: ogni task
+ * scorre un segmento dell'archivio e accumula i conteggi in un proprio
+ * {@link Totals}, fatto soltanto di array di tipi primitivi; i conteggi dei
+ * segmenti vengono poi sommati. I record vengono letti direttamente dalla
+ * memoria mappata, senza creare alcun oggetto per partita.<br/>
+ * Vengono considerate soltanto le partite giocate sulla griglia indicata.
+ * 
+ * Uso: java server.ArchiveAnalytics archivio [larghezza altezza lunghezza
+ * [thread]]
+ * 
+ * @author Gennaro Capo
+ * @author Mirko Conte
+ * @author Vincenzo De Notaris
+ * @author Roberto Pacilio
+ * @version 1.0
+ * @see server.GameArchive
+ */
+public class ArchiveAnalytics {
+
+	/**
+	 * Main del comando.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.out.println("Usage: java server.ArchiveAnalytics archive"
+					+ " [width height winLength [threads]]");
+			return;
+		}
+		int width = (args.length > 3) ? Integer.parseInt(args[1]) : 3;
+		int height = (args.length > 3) ? Integer.parseInt(args[2]) : 3;
+		int winLength = (args.length > 3) ? Integer.parseInt(args[3]) : 3;
+		int threads = (args.length > 4) ? Integer.parseInt(args[4]) : Runtime
+				.getRuntime().availableProcessors();
+		// I conteggi per prima mossa coprono soltanto le griglie che
+		// possono essere archiviate.
+		if (!GameArchive.fits(width, height)) {
+			System.out.println("Only boards of at most "
+					+ GameArchive.MAX_CELLS + " cells are archived.");
+			return;
+		}
+		GameArchive archive = new GameArchive(new File(args[0]));
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		long t = System.nanoTime();
+		Totals totals = analyze(archive, width, height, winLength, pool);
+		long ms = (System.nanoTime() - t) / 1000000;
+		pool.shutdown();
+		archive.close();
+
+		System.out.printf("%d games on %dx%d (k=%d), %d skipped, %d ms%n",
+				totals.getGames(), width, height, winLength,
+				totals.getSkipped(), ms);
+		if (totals.getGames() == 0)
+			return;
+		System.out.printf("average length: %.2f moves%n",
+				totals.getAverageLength());
+		System.out.println("first move   games   first wins   draws");
+		for (int c = 0; c < width * height; c++)
+			if (totals.getOpeningGames(c) > 0)
+				System.out.printf("%4d %12d %11.1f%% %6.1f%%%n", c,
+						totals.getOpeningGames(c),
+						percent(totals.getOpeningWins(c),
+								totals.getOpeningGames(c)),
+						percent(totals.getOpeningDraws(c),
+								totals.getOpeningGames(c)));
+		System.out.println("first mover  games   first wins   draws");
+		for (int p = 1; p <= 2; p++)
+			System.out.printf("P%d %14d %11.1f%% %6.1f%%%n", p,
+					totals.getMoverGames(p),
+					percent(totals.getMoverWins(p), totals.getMoverGames(p)),
+					percent(totals.getMoverDraws(p), totals.getMoverGames(p)));
+	}
+
+	/**
+	 * Calcola le statistiche delle partite archiviate.
+	 * 
+	 * @param archive
+	 *            archivio delle partite.
+	 * @param width
+	 *            numero di colonne della griglia delle partite considerate.
+	 * @param height
+	 *            numero di righe della griglia delle partite considerate.
+	 * @param winLength
+	 *            lunghezza vincente delle partite considerate.
+	 * @param pool
+	 *            pool su cui eseguire i task di lettura.
+	 * @return conteggi delle partite archiviate.
+	 */
+	public static Totals analyze(GameArchive archive, int width, int height,
+			int winLength, ForkJoinPool pool) {
+		return pool.invoke(new Scan(archive, width, height, winLength, 0,
+				archive.size()));
+	}
+
+	private static double percent(long n, long total) {
+		return (total == 0) ? 0 : 100.0 * n / total;
+	}
+
+	/**
+	 * Conteggi delle partite di una porzione dell'archivio.
+	 */
+	public static class Totals {
+
+		// Attributi privati.
+		private long games;
+		private long skipped;
+		private long moves;
+		// Indicizzati dalla casella della prima mossa.
+		private final long[] openingGames;
+		private final long[] openingWins;
+		private final long[] openingDraws;
+		// Indicizzati dal player che ha mosso per primo (1 o 2).
+		private final long[] moverGames;
+		private final long[] moverWins;
+		private final long[] moverDraws;
+
+		/**
+		 * Costruttore della classe Totals. Crea conteggi nulli.
+		 */
+		public Totals() {
+			openingGames = new long[GameArchive.MAX_CELLS];
+			openingWins = new long[GameArchive.MAX_CELLS];
+			openingDraws = new long[GameArchive.MAX_CELLS];
+			moverGames = new long[3];
+			moverWins = new long[3];
+			moverDraws = new long[3];
+		}
+
+		/**
+		 * Somma ai conteggi quelli di un'altra porzione dell'archivio.
+		 * 
+		 * @param o
+		 *            conteggi da sommare.
+		 */
+		public void add(Totals o) {
+			games += o.games;
+			skipped += o.skipped;
+			moves += o.moves;
+			for (int i = 0; i < openingGames.length; i++) {
+				openingGames[i] += o.openingGames[i];
+				openingWins[i] += o.openingWins[i];
+				openingDraws[i] += o.openingDraws[i];
+			}
+			for (int i = 0; i < moverGames.length; i++) {
+				moverGames[i] += o.moverGames[i];
+				moverWins[i] += o.moverWins[i];
+				moverDraws[i] += o.moverDraws[i];
+			}
+		}
+
+		/**
+		 * Restituisce il numero di partite considerate.
+		 * 
+		 * @return numero di partite.
+		 */
+		public long getGames() {
+			return games;
+		}
+
+		/**
+		 * Restituisce il numero di partite scartate perche' giocate su
+		 * un'altra griglia.
+		 * 
+		 * @return numero di partite scartate.
+		 */
+		public long getSkipped() {
+			return skipped;
+		}
+
+		/**
+		 * Restituisce il numero medio di mosse per partita.
+		 * 
+		 * @return durata media delle partite, in mosse.
+		 */
+		public double getAverageLength() {
+			return (games == 0) ? 0 : (double) moves / games;
+		}
+
+		/**
+		 * Restituisce il numero di partite aperte nella casella indicata.
+		 * 
+		 * @param cell
+		 *            casella della prima mossa.
+		 * @return numero di partite.
+		 */
+		public long getOpeningGames(int cell) {
+			return openingGames[cell];
+		}
+
+		/**
+		 * Restituisce il numero di partite aperte nella casella indicata e
+		 * vinte da chi ha mosso per primo.
+		 * 
+		 * @param cell
+		 *            casella della prima mossa.
+		 * @return numero di partite vinte dal primo player.
+		 */
+		public long getOpeningWins(int cell) {
+			return openingWins[cell];
+		}
+
+		/**
+		 * Restituisce il numero di partite aperte nella casella indicata e
+		 * concluse in pareggio.
+		 * 
+		 * @param cell
+		 *            casella della prima mossa.
+		 * @return numero di pareggi.
+		 */
+		public long getOpeningDraws(int cell) {
+			return openingDraws[cell];
+		}
+
+		/**
+		 * Restituisce il numero di partite in cui il player indicato ha
+		 * mosso per primo.
+		 * 
+		 * @param player
+		 *            1 o 2.
+		 * @return numero di partite.
+		 */
+		public long getMoverGames(int player) {
+			return moverGames[player];
+		}
+
+		/**
+		 * Restituisce il numero di partite vinte dal player indicato avendo
+		 * mosso per primo.
+		 * 
+		 * @param player
+		 *            1 o 2.
+		 * @return numero di partite vinte.
+		 */
+		public long getMoverWins(int player) {
+			return moverWins[player];
+		}
+
+		/**
+		 * Restituisce il numero di pareggi nelle partite in cui il player
+		 * indicato ha mosso per primo.
+		 * 
+		 * @param player
+		 *            1 o 2.
+		 * @return numero di pareggi.
+		 */
+		public long getMoverDraws(int player) {
+			return moverDraws[player];
+		}
+
+		/*
+		 * Conteggia una partita.
+		 */
+		private void count(long packedMoves, int moveCount, int first,
+				int result) {
+			games++;
+			moves += moveCount;
+			boolean draw = result == 3;
+			boolean firstWins = result == first;
+			if (first == 1 || first == 2) {
+				moverGames[first]++;
+				if (firstWins)
+					moverWins[first]++;
+				else if (draw)
+					moverDraws[first]++;
+			}
+			if (moveCount > 0) {
+				int cell = (int) packedMoves & 0xF;
+				openingGames[cell]++;
+				if (firstWins)
+					openingWins[cell]++;
+				else if (draw)
+					openingDraws[cell]++;
+			}
+		}
+
+	} // Chiusura della inner-class.
+
+	/*
+	 * Task di lettura di un intervallo dell'archivio: gli intervalli piu'
+	 * lunghi di un segmento vengono divisi in corrispondenza del confine tra
+	 * due segmenti.
+	 */
+	private static class Scan extends RecursiveTask<Totals> {
+
+		private static final long serialVersionUID = 1L;
+		private final GameArchive archive;
+		private final int width;
+		private final int height;
+		private final int winLength;
+		private final long from;
+		private final long to;
+
+		public Scan(GameArchive archive, int width, int height,
+				int winLength, long from, long to) {
+			this.archive = archive;
+			this.width = width;
+			this.height = height;
+			this.winLength = winLength;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected Totals compute() {
+			long segment = archive.getSegmentSize();
+			if (to - from > segment) {
+				long segments = (to - from + segment - 1) / segment;
+				long mid = from + (segments / 2) * segment;
+				Scan right = new Scan(archive, width, height, winLength, mid,
+						to);
+				right.fork();
+				Totals t = new Scan(archive, width, height, winLength, from,
+						mid).compute();
+				t.add(right.join());
+				return t;
+			}
+			Totals t = new Totals();
+			if (from == to)
+				return t;
+			try {
+				GameArchive.Record r = archive.get(from);
+				for (long i = from; i < to; i++) {
+					r.moveTo(i);
+					if (r.getWidth() != width || r.getHeight() != height
+							|| r.getWinLength() != winLength)
+						t.skipped++;
+					else
+						t.count(r.getPackedMoves(), r.getMoveCount(),
+								r.getFirstPlayer(), r.getResult());
+				}
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+			return t;
+		}
+
+	} // Chiusura della inner-class.
+
+}
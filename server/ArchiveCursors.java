@@ -0,0 +1,233 @@
+package server;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import api.GamePage;
+
+/**
+ * Cursori per la lettura a pagine dell'archivio delle partite concluse. Un
+ * cursore memorizza soltanto la posizione raggiunta nell'archivio: ogni
+ * richiesta legge al piu' MAX_PAGE partite, scorrendo al piu' SCAN_BUDGET
+ * record, e le copia in una {@link GamePage}. La memoria occupata sul server
+ * non dipende quindi dal numero di partite restituite da un cursore.<br/>
+ * Le partite vengono restituite dalla piu' recente alla meno recente; un
+ * cursore puo' essere limitato alle partite di un player. I cursori non
+ * utilizzati per piu' di <code>ttl</code> millisecondi scadono e vengono
+ * eliminati all'apertura di un nuovo cursore; se i cursori aperti sono gia'
+ * <code>maxCursors</code> viene eliminato quello inutilizzato da piu' tempo.
+ * Un cursore scaduto puo' essere riaperto dalla posizione dell'ultima partita
+ * ricevuta.
+ * 
+ * @author Gennaro Capo
+ * @author Mirko Conte
+ * @author Vincenzo De Notaris
+ * @author Roberto Pacilio
+ * @version 1.0
+ * @see server.GameArchive
+ */
+public class ArchiveCursors {
+
+	/**
+	 * Numero massimo di partite di una pagina.
+	 */
+	public static final int MAX_PAGE = 256;
+
+	/**
+	 * Numero massimo di record dell'archivio scorsi per una pagina: se il
+	 * cursore e' limitato alle partite di un player, la pagina puo'
+	 * contenere meno partite di quelle richieste anche se il cursore non e'
+	 * esaurito.
+	 */
+	public static final int SCAN_BUDGET = 1 << 16;
+
+	// Attributi privati.
+	private final GameArchive archive;
+	private final StatsTable stats;
+	private final long ttl;
+	private final int maxCursors;
+	private final ConcurrentMap<Long, Cursor> cursors;
+	private final Random random;
+
+	/**
+	 * Costruttore di classe.
+	 * 
+	 * @param archive
+	 *            archivio delle partite.
+	 * @param stats
+	 *            tabella da cui leggere i nickname dei player.
+	 * @param ttl
+	 *            millisecondi di inattivita' dopo i quali un cursore scade.
+	 * @param maxCursors
+	 *            numero massimo di cursori aperti.
+	 */
+	public ArchiveCursors(GameArchive archive, StatsTable stats, long ttl,
+			int maxCursors) {
+		this.archive = archive;
+		this.stats = stats;
+		this.ttl = ttl;
+		this.maxCursors = maxCursors;
+		this.cursors = new ConcurrentHashMap<Long, Cursor>();
+		this.random = new Random();
+	}
+
+	/**
+	 * Apre un cursore sulle partite archiviate.
+	 * 
+	 * @param player
+	 *            id del player di cui leggere le partite, 0 per leggere tutte
+	 *            le partite.
+	 * @param before
+	 *            vengono restituite soltanto le partite di posizione minore;
+	 *            Long.MAX_VALUE per partire dalla partita piu' recente.
+	 * @return id del cursore, diverso da 0.
+	 */
+	public long open(long player, long before) {
+		long now = System.currentTimeMillis();
+		expire(now);
+		Cursor c = new Cursor(player, Math.min(before, archive.size()) - 1,
+				now);
+		long id;
+		do {
+			id = random.nextLong();
+		} while (id == 0 || cursors.putIfAbsent(id, c) != null);
+		return id;
+	}
+
+	/**
+	 * Legge la pagina successiva di un cursore. Un cursore esaurito viene
+	 * chiuso.
+	 * 
+	 * @param cursor
+	 *            id del cursore.
+	 * @param max
+	 *            numero massimo di partite da restituire; viene ridotto a
+	 *            MAX_PAGE.
+	 * @return pagina di partite, null se il cursore non esiste o e' scaduto.
+	 * @throws IOException
+	 */
+	public GamePage next(long cursor, int max) throws IOException {
+		Cursor c = cursors.get(cursor);
+		if (c == null)
+			return null;
+		synchronized (c) {
+			if (cursors.get(cursor) != c)
+				return null;
+			c.lastAccess = System.currentTimeMillis();
+			int n = Math.max(0, Math.min(max, MAX_PAGE));
+			long[] ordinals = new long[n];
+			long[] gameIds = new long[n];
+			String[] names = new String[2 * n];
+			int[] times = new int[2 * n];
+			long[] moves = new long[n];
+			byte[] info = new byte[GamePage.INFO_BYTES * n];
+			// I nickname ripetuti nella pagina vengono letti una sola volta e
+			// serializzati come riferimenti allo stesso oggetto.
+			Map<Long, String> pageNames = new HashMap<Long, String>();
+			GameArchive.Record r = null;
+			int count = 0;
+			for (int scanned = 0; count < n && c.next >= 0
+					&& scanned < SCAN_BUDGET; scanned++, c.next--) {
+				r = (r == null) ? archive.get(c.next) : r.moveTo(c.next);
+				if (c.player != 0 && r.getPlayer1() != c.player
+						&& r.getPlayer2() != c.player)
+					continue;
+				ordinals[count] = c.next;
+				gameIds[count] = r.getGameId();
+				names[2 * count] = name(pageNames, r.getPlayer1());
+				names[2 * count + 1] = name(pageNames, r.getPlayer2());
+				times[2 * count] = (int) (r.getStartTime() / 1000);
+				times[2 * count + 1] = (int) (r.getEndTime() / 1000);
+				moves[count] = r.getPackedMoves();
+				int i = GamePage.INFO_BYTES * count;
+				info[i] = (byte) r.getMoveCount();
+				info[i + 1] = (byte) r.getFirstPlayer();
+				info[i + 2] = (byte) r.getResult();
+				info[i + 3] = (byte) r.getWidth();
+				info[i + 4] = (byte) r.getHeight();
+				info[i + 5] = (byte) r.getWinLength();
+				count++;
+			}
+			boolean last = c.next < 0;
+			if (last)
+				cursors.remove(cursor, c);
+			if (count < n) {
+				ordinals = Arrays.copyOf(ordinals, count);
+				gameIds = Arrays.copyOf(gameIds, count);
+				names = Arrays.copyOf(names, 2 * count);
+				times = Arrays.copyOf(times, 2 * count);
+				moves = Arrays.copyOf(moves, count);
+				info = Arrays.copyOf(info, GamePage.INFO_BYTES * count);
+			}
+			return new GamePage(ordinals, gameIds, names, times, moves, info,
+					last);
+		}
+	}
+
+	/**
+	 * Chiude un cursore.
+	 * 
+	 * @param cursor
+	 *            id del cursore.
+	 */
+	public void close(long cursor) {
+		cursors.remove(cursor);
+	}
+
+	/**
+	 * Restituisce il numero di cursori aperti.
+	 * 
+	 * @return numero di cursori aperti.
+	 */
+	public int size() {
+		return cursors.size();
+	}
+
+	/*
+	 * Elimina i cursori scaduti e, se i cursori aperti sono troppi, quello
+	 * inutilizzato da piu' tempo.
+	 */
+	private void expire(long now) {
+		Long oldest = null;
+		long oldestAccess = Long.MAX_VALUE;
+		for (Map.Entry<Long, Cursor> e : cursors.entrySet()) {
+			long access = e.getValue().lastAccess;
+			if (now - access > ttl)
+				cursors.remove(e.getKey(), e.getValue());
+			else if (access < oldestAccess) {
+				oldest = e.getKey();
+				oldestAccess = access;
+			}
+		}
+		if (oldest != null && cursors.size() >= maxCursors)
+			cursors.remove(oldest);
+	}
+
+	private String name(Map<Long, String> pageNames, long player) {
+		String name = pageNames.get(player);
+		if (name == null && !pageNames.containsKey(player)) {
+			name = stats.getName(player);
+			pageNames.put(player, name);
+		}
+		return name;
+	}
+
+	/*
+	 * Stato di un cursore: la posizione della prossima partita da leggere,
+	 * che decresce fino a -1.
+	 */
+	private static class Cursor {
+
+		private final long player;
+		private long next;
+		private volatile long lastAccess;
+
+		public Cursor(long player, long next, long lastAccess) {
+			this.player = player;
+			this.next = next;
+			this.lastAccess = lastAccess;
+		}
+
+	} // Chiusura della inner-class.
+
+}
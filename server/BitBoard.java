@@ -0,0 +1,137 @@
+package server;
+
+import api.Game;
+
+/**
+ * Griglia di gioco 3x3 rappresentata da due maschere di 9 bit, una per
+ * ciascun player: il bit <code>m</code> corrisponde alla mossa
+ * <code>m</code> (riga m / 3, colonna m % 3).<br/>
+ * L'inserimento di una mossa e' un singolo test-and-set di un bit; la
+ * vittoria si verifica con un accesso a una tabella precalcolata che, per
+ * ognuna delle 512 maschere possibili, indica se essa contiene una delle otto
+ * combinazioni vincenti; il pareggio e' un unico confronto con la maschera
+ * della griglia piena. Nessuna operazione alloca memoria.<br/>
+ * E' la griglia usata per le partite classiche 3x3 con tre in fila.
+ * 
+ * @author Gennaro Capo
+ * @author Mirko Conte
+ * @author Vincenzo De Notaris
+ * @author Roberto Pacilio
+ * @version 1.0
+ * @see server.Board
+ */
+public class BitBoard implements Board {
+
+	/**
+	 * Maschera della griglia piena.
+	 */
+	public static final int FULL = 0x1FF;
+
+	/**
+	 * Combinazioni vincenti: tre righe, tre colonne e due diagonali.
+	 */
+	public static final int[] WIN_MASKS = { 0x007, 0x038, 0x1C0, 0x049, 0x092,
+			0x124, 0x111, 0x054 };
+
+	// Attributi privati.
+	private static final boolean[] WINNING = new boolean[FULL + 1];
+	private int p1;
+	private int p2;
+
+	static {
+		for (int mask = 0; mask <= FULL; mask++)
+			for (int w : WIN_MASKS)
+				if ((mask & w) == w)
+					WINNING[mask] = true;
+	}
+
+	@Override
+	public int getWidth() {
+		return Game.GRID_DIMENSION;
+	}
+
+	@Override
+	public int getHeight() {
+		return Game.GRID_DIMENSION;
+	}
+
+	@Override
+	public int getWinLength() {
+		return Game.GRID_DIMENSION;
+	}
+
+	/**
+	 * Inserisce nella griglia la mossa <code>m</code> del player indicato,
+	 * se la casella e' libera.
+	 * 
+	 * @param m
+	 *            mossa da inserire, compresa tra 0 e 8.
+	 * @param value
+	 *            Game.P1_CELL o Game.P2_CELL.
+	 * @return true se la mossa e' stata inserita, false se la casella era
+	 *         occupata.
+	 */
+	@Override
+	public boolean play(int m, int value) {
+		int bit = 1 << m;
+		if (((p1 | p2) & bit) != 0)
+			return false;
+		if (value == Game.P1_CELL)
+			p1 |= bit;
+		else
+			p2 |= bit;
+		return true;
+	}
+
+	/**
+	 * Restituisce il contenuto della casella <code>m</code>.
+	 * 
+	 * @param m
+	 *            casella, compresa tra 0 e 8.
+	 * @return Game.FREE_CELL, Game.P1_CELL o Game.P2_CELL.
+	 */
+	@Override
+	public int cell(int m) {
+		if ((p1 >> m & 1) != 0)
+			return Game.P1_CELL;
+		if ((p2 >> m & 1) != 0)
+			return Game.P2_CELL;
+		return Game.FREE_CELL;
+	}
+
+	/**
+	 * Restituisce lo stato della partita.
+	 * 
+	 * @return 0: partita ancora in gioco; 1: player 1 ha vinto; 2: player 2
+	 *         ha vinto; 3: pareggio.
+	 */
+	@Override
+	public int result() {
+		if (WINNING[p1])
+			return Game.P1_CELL;
+		if (WINNING[p2])
+			return Game.P2_CELL;
+		return ((p1 | p2) == FULL) ? 3 : 0;
+	}
+
+	/**
+	 * Restituisce la maschera delle caselle occupate dal player indicato.
+	 * 
+	 * @param value
+	 *            Game.P1_CELL o Game.P2_CELL.
+	 * @return maschera delle caselle occupate.
+	 */
+	public int getMask(int value) {
+		return (value == Game.P1_CELL) ? p1 : p2;
+	}
+
+	/**
+	 * Svuota la griglia.
+	 */
+	@Override
+	public void clear() {
+		p1 = 0;
+		p2 = 0;
+	}
+
+}
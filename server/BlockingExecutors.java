@@ -0,0 +1,121 @@
+package server;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Crea gli esecutori usati dal server per il lavoro bloccante: le chiamate di
+ * callback verso i player (mosse, turni, risultati, disconnessioni), i ping
+ * di monitoraggio e le notifiche della game room.<br/>
+ * Sono disponibili due modalita':<br/>
+ * PLATFORM: un pool di thread di piattaforma, di cui <code>threads</code>
+ * restano sempre attivi. Un'operazione non attende mai in coda dietro a
+ * quelle bloccate: se i thread sono tutti occupati ne viene creato un altro,
+ * che termina dopo KEEP_ALIVE millisecondi di inattivita'. Il numero di
+ * thread e' quindi limitato dal numero di operazioni bloccate in quel
+ * momento;<br/>
+ * VIRTUAL: un thread virtuale per ogni operazione (richiede Java 21). Un
+ * thread virtuale bloccato sull'I/O di rete non occupa un thread del sistema
+ * operativo, quindi il numero di chiamate in corso non e' limitato dalla
+ * dimensione del pool.<br/>
+ * I thread virtuali vengono creati tramite reflection, in modo che il server
+ * possa essere compilato ed eseguito anche con versioni precedenti di Java.
+ * 
+ * @author Gennaro Capo
+ * @author Mirko Conte
+ * @author Vincenzo De Notaris
+ * @author Roberto Pacilio
+ * @version 1.0
+ * @see server.StartServer
+ */
+public class BlockingExecutors {
+
+	/**
+	 * Modalita' di esecuzione del lavoro bloccante.
+	 */
+	public enum Mode {
+		PLATFORM, VIRTUAL
+	}
+
+	// Attributi privati.
+	// Inattivita' (in millisecondi) dopo la quale termina un thread in piu'.
+	private static final long KEEP_ALIVE = 60000;
+	private static final Method NEW_VIRTUAL_EXECUTOR = lookupVirtualExecutor();
+
+	/*
+	 * Classe di sole utilita', non istanziabile.
+	 */
+	private BlockingExecutors() {
+	}
+
+	/**
+	 * Restituisce un flag per sapere se la JVM corrente supporta i thread
+	 * virtuali.
+	 * 
+	 * @return true se i thread virtuali sono disponibili, false altrimenti.
+	 */
+	public static boolean isVirtualSupported() {
+		return NEW_VIRTUAL_EXECUTOR != null;
+	}
+
+	/**
+	 * Crea un esecutore per il lavoro bloccante.
+	 * 
+	 * @param mode
+	 *            modalita' di esecuzione.
+	 * @param name
+	 *            prefisso del nome dei thread di piattaforma.
+	 * @param threads
+	 *            numero di thread di piattaforma sempre attivi (ignorato in
+	 *            modalita' VIRTUAL).
+	 * @return esecutore creato.
+	 * @throws UnsupportedOperationException
+	 *             se e' richiesta la modalita' VIRTUAL e la JVM non supporta
+	 *             i thread virtuali.
+	 */
+	public static ExecutorService create(Mode mode, String name, int threads) {
+		if (mode == Mode.VIRTUAL) {
+			if (NEW_VIRTUAL_EXECUTOR == null)
+				throw new UnsupportedOperationException(
+						"Virtual threads require Java 21.");
+			try {
+				return (ExecutorService) NEW_VIRTUAL_EXECUTOR.invoke(null);
+			} catch (Exception e) {
+				throw new UnsupportedOperationException(e);
+			}
+		}
+		return new ThreadPoolExecutor(threads, Integer.MAX_VALUE, KEEP_ALIVE,
+				TimeUnit.MILLISECONDS, new SynchronousQueue<Runnable>(),
+				daemon(name));
+	}
+
+	/**
+	 * Crea una factory di thread di piattaforma daemon con il prefisso
+	 * <code>name</code>.
+	 * 
+	 * @param name
+	 *            prefisso del nome dei thread.
+	 * @return factory di thread.
+	 */
+	public static ThreadFactory daemon(final String name) {
+		final AtomicInteger count = new AtomicInteger();
+		return new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, name + "-" + count.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		};
+	}
+
+	private static Method lookupVirtualExecutor() {
+		try {
+			return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+		} catch (NoSuchMethodException e) {
+			return null;
+		}
+	}
+
+}
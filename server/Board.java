@@ -0,0 +1,76 @@
+package server;
+
+/**
+ * Griglia di gioco di una partita m,n,k: <code>width</code> colonne,
+ * <code>height</code> righe, vince chi allinea <code>winLength</code>
+ * simboli consecutivi in orizzontale, verticale o diagonale. La casella in
+ * riga <code>r</code> e colonna <code>c</code> corrisponde alla mossa
+ * <code>r * width + c</code>.
+ * 
+ * @author Gennaro Capo
+ * @author Mirko Conte
+ * @author Vincenzo De Notaris
+ * @author Roberto Pacilio
+ * @version 1.0
+ * @see server.BitBoard
+ * @see server.MnkBoard
+ */
+public interface Board {
+
+	/**
+	 * Restituisce il numero di colonne della griglia.
+	 * 
+	 * @return numero di colonne.
+	 */
+	int getWidth();
+
+	/**
+	 * Restituisce il numero di righe della griglia.
+	 * 
+	 * @return numero di righe.
+	 */
+	int getHeight();
+
+	/**
+	 * Restituisce il numero di simboli consecutivi necessari per vincere.
+	 * 
+	 * @return lunghezza della linea vincente.
+	 */
+	int getWinLength();
+
+	/**
+	 * Inserisce nella griglia la mossa <code>m</code> del player indicato,
+	 * se la casella e' libera.
+	 * 
+	 * @param m
+	 *            mossa da inserire, compresa tra 0 e width * height - 1.
+	 * @param value
+	 *            Game.P1_CELL o Game.P2_CELL.
+	 * @return true se la mossa e' stata inserita, false se la casella era
+	 *         occupata.
+	 */
+	boolean play(int m, int value);
+
+	/**
+	 * Restituisce il contenuto della casella <code>m</code>.
+	 * 
+	 * @param m
+	 *            casella, compresa tra 0 e width * height - 1.
+	 * @return Game.FREE_CELL, Game.P1_CELL o Game.P2_CELL.
+	 */
+	int cell(int m);
+
+	/**
+	 * Restituisce lo stato della partita.
+	 * 
+	 * @return 0: partita ancora in gioco; 1: player 1 ha vinto; 2: player 2
+	 *         ha vinto; 3: pareggio.
+	 */
+	int result();
+
+	/**
+	 * Svuota la griglia.
+	 */
+	void clear();
+
+}
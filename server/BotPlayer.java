@@ -0,0 +1,137 @@
+package server;
+
+import java.rmi.RemoteException;
+import java.util.concurrent.Executor;
+import api.*;
+
+/**
+ * Avversario automatico che gioca in maniera perfetta sulla griglia classica
+ * 3x3. Vive interamente sul server: non viene esportato e non effettua
+ * chiamate remote, per cui un nodo puo' ospitare migliaia di partite contro
+ * il bot.<br/>
+ * Il bot mantiene la posizione corrente gia' codificata per
+ * {@link PerfectPlayTable}, aggiornandola ad ogni mossa: la scelta della
+ * propria mossa e' quindi un unico accesso alla tabella. La mossa viene
+ * inviata alla partita dall'esecutore indicato alla creazione, mai dal thread
+ * che ha consegnato la notifica.
+ * 
+ * @author Gennaro Capo
+ * @author Mirko Conte
+ * @author Vincenzo De Notaris
+ * @author Roberto Pacilio
+ * @version 1.0
+ * @see server.TicTacToeServerImpl#createBotGame(Player, String)
+ */
+public class BotPlayer implements Player, Runnable {
+
+	// Attributi privati.
+	private final PerfectPlayTable table;
+	private final Executor executor;
+	private Game game;
+	private int position;
+	private Event result;
+
+	/**
+	 * Costruttore di classe.
+	 * 
+	 * @param table
+	 *            tabella di gioco perfetto.
+	 * @param executor
+	 *            esecutore su cui inviare le mosse del bot.
+	 */
+	public BotPlayer(PerfectPlayTable table, Executor executor) {
+		this.table = table;
+		this.executor = executor;
+	}
+
+	/**
+	 * Restituisce l'esito della partita dal punto di vista del bot.
+	 * 
+	 * @return YOU_WIN, YOU_LOSE, DRAW o FOE_DISCONNECTED; null se la partita
+	 *         e' ancora in corso.
+	 */
+	public synchronized Event getResult() {
+		return result;
+	}
+
+	// Metodi ridefiniti dell'interfaccia Player.
+
+	@Override
+	public synchronized void joinGame(Game g) {
+		game = g;
+		position = 0;
+		result = null;
+	}
+
+	@Override
+	public void isYourTurn() {
+		executor.execute(this);
+	}
+
+	@Override
+	public void foeTurn() {
+		// Metodo vuoto.
+	}
+
+	@Override
+	public void ping() {
+		// Metodo vuoto.
+	}
+
+	@Override
+	public synchronized void foeDisconnected() {
+		result = Event.FOE_DISCONNECTED;
+		game = null;
+	}
+
+	@Override
+	public synchronized void foeHasMoved(int m) {
+		position += 2 * PerfectPlayTable.POW3[m];
+	}
+
+	@Override
+	public synchronized void sendGameResult(Event res) {
+		result = res;
+		game = null;
+	}
+
+	@Override
+	public void receiveEvents(EventBatch batch) {
+		if (batch.getGame() != null)
+			joinGame(batch.getGame());
+		for (int i = 0; i < batch.size(); i++) {
+			Event e = batch.getEvent(i);
+			if (e == Event.FOE_MOVED)
+				foeHasMoved(batch.getMove());
+			else if (e == Event.YOUR_TURN)
+				isYourTurn();
+			else if (e == Event.FOE_DISCONNECTED)
+				foeDisconnected();
+			else if (e == Event.YOU_WIN || e == Event.YOU_LOSE
+					|| e == Event.DRAW)
+				sendGameResult(e);
+		}
+	}
+
+	/**
+	 * Sceglie e invia la mossa del bot.
+	 */
+	@Override
+	public void run() {
+		Game g;
+		int m;
+		synchronized (this) {
+			g = game;
+			m = table.bestMove(position);
+			if (g == null || m == PerfectPlayTable.NO_MOVE)
+				return;
+			position += PerfectPlayTable.POW3[m];
+		}
+		try {
+			g.sendMovement(this, m);
+		} catch (RemoteException e) {
+			// La partita e' locale: non si verificano errori di comunicazione.
+		}
+	}
+
+}
@@ -0,0 +1,456 @@
+package server;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Archivio delle partite concluse, memorizzato in un file mappato in memoria.
+ * Ogni partita occupa un record di lunghezza fissa (RECORD_SIZE byte), per
+ * cui la partita di posizione <code>n</code> si trova con un semplice calcolo
+ * dell'indirizzo, in tempo costante.<br/>
+ * Il file e' mappato a segmenti di dimensione fissa, creati al primo accesso:
+ * l'archivio puo' contenere centinaia di milioni di partite senza superare il
+ * limite di 2 GB di un singolo {@link MappedByteBuffer}. La lettura di un
+ * record avviene tramite {@link Record}, che legge i campi direttamente dalla
+ * memoria mappata senza copiarli.<br/>
+ * 
+ * Formato del record:<br/>
+ * 0: id della partita (long);<br/>
+ * 8: id del player 1 (long);<br/>
+ * 16: id del player 2 (long);<br/>
+ * 24: inizio della partita, in secondi dal 1/1/1970 (int senza segno);<br/>
+ * 28: fine della partita, in secondi dal 1/1/1970 (int senza segno);<br/>
+ * 32: mosse, 4 bit ciascuna a partire dai bit meno significativi (long);<br/>
+ * 40: numero di mosse, primo player (1 o 2), risultato (1: vince il player
+ * 1; 2: vince il player 2; 3: pareggio), larghezza, altezza e lunghezza
+ * vincente della griglia (un byte ciascuno).<br/>
+ * Poiche' ogni mossa occupa 4 bit, vengono archiviate soltanto le partite su
+ * griglie di al piu' MAX_CELLS caselle.
+ * 
+ * @author Gennaro Capo
+ * @author Mirko Conte
+ * @author Vincenzo De Notaris
+ * @author Roberto Pacilio
+ * @version 1.0
+ * @see server.GameObserver
+ */
+public class GameArchive {
+
+	/**
+	 * Lunghezza in byte di un record.
+	 */
+	public static final int RECORD_SIZE = 48;
+
+	/**
+	 * Numero massimo di caselle della griglia di una partita archiviabile.
+	 */
+	public static final int MAX_CELLS = 16;
+
+	// Attributi privati.
+	private static final int MAGIC = 0x54545441;
+	private static final int VERSION = 1;
+	private static final int HEADER = 64;
+	private static final int COUNT_OFFSET = 16;
+	private static final int DEFAULT_SEGMENT_BITS = 21;
+	private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+	private final RandomAccessFile file;
+	private final FileChannel channel;
+	private final MappedByteBuffer header;
+	private final int segmentBits;
+	private final long segmentMask;
+	private volatile MappedByteBuffer[] segments;
+	private volatile long count;
+
+	/**
+	 * Costruttore di classe. Apre, o crea, l'archivio.
+	 * 
+	 * @param file
+	 *            file dell'archivio.
+	 * @throws IOException
+	 */
+	public GameArchive(File file) throws IOException {
+		this(file, DEFAULT_SEGMENT_BITS);
+	}
+
+	/**
+	 * Costruttore di classe. Apre, o crea, l'archivio mappandolo a segmenti
+	 * di 2^segmentBits record. Un archivio va sempre riaperto con la stessa
+	 * dimensione dei segmenti.
+	 * 
+	 * @param file
+	 *            file dell'archivio.
+	 * @param segmentBits
+	 *            logaritmo in base 2 del numero di record per segmento.
+	 * @throws IOException
+	 */
+	public GameArchive(File file, int segmentBits) throws IOException {
+		if (segmentBits < 0 || (long) RECORD_SIZE << segmentBits > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Segment bits: " + segmentBits);
+		this.file = new RandomAccessFile(file, "rw");
+		this.channel = this.file.getChannel();
+		this.segmentBits = segmentBits;
+		this.segmentMask = (1L << segmentBits) - 1;
+		this.segments = new MappedByteBuffer[0];
+		boolean empty = channel.size() == 0;
+		header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER);
+		if (empty) {
+			header.putInt(0, MAGIC);
+			header.putInt(4, VERSION);
+			header.putInt(8, RECORD_SIZE);
+			header.putLong(COUNT_OFFSET, 0);
+		} else if (header.getInt(0) != MAGIC || header.getInt(8) != RECORD_SIZE)
+			throw new IOException("Not a game archive: " + file);
+		count = header.getLong(COUNT_OFFSET);
+	}
+
+	/**
+	 * Calcola l'id di un player, a partire dal suo nickname, o di una
+	 * partita, a partire dal suo id testuale (FNV-1a a 64 bit).
+	 * 
+	 * @param name
+	 *            nickname del player o id della partita.
+	 * @return id a 64 bit.
+	 */
+	public static long id(String name) {
+		long h = FNV_OFFSET;
+		for (int i = 0; i < name.length(); i++) {
+			h ^= name.charAt(i);
+			h *= FNV_PRIME;
+		}
+		return h;
+	}
+
+	/**
+	 * Restituisce true se le partite su una griglia di
+	 * <code>width x height</code> caselle possono essere archiviate.
+	 * 
+	 * @param width
+	 *            numero di colonne della griglia.
+	 * @param height
+	 *            numero di righe della griglia.
+	 * @return true se ogni mossa puo' essere rappresentata con 4 bit.
+	 */
+	public static boolean fits(int width, int height) {
+		return width * height <= MAX_CELLS;
+	}
+
+	/**
+	 * Aggiunge una partita conclusa in coda all'archivio.
+	 * 
+	 * @param gameId
+	 *            id della partita.
+	 * @param player1
+	 *            id del player 1.
+	 * @param player2
+	 *            id del player 2.
+	 * @param start
+	 *            inizio della partita, in millisecondi dal 1/1/1970.
+	 * @param end
+	 *            fine della partita, in millisecondi dal 1/1/1970.
+	 * @param first
+	 *            player che ha effettuato la prima mossa (1 o 2).
+	 * @param result
+	 *            1: ha vinto il player 1; 2: ha vinto il player 2; 3:
+	 *            pareggio.
+	 * @param width
+	 *            numero di colonne della griglia.
+	 * @param height
+	 *            numero di righe della griglia.
+	 * @param winLength
+	 *            simboli consecutivi necessari per vincere.
+	 * @param moves
+	 *            mosse della partita, nell'ordine in cui sono state
+	 *            effettuate.
+	 * @param moveCount
+	 *            numero di mosse.
+	 * @return posizione della partita nell'archivio.
+	 * @throws IOException
+	 * @throws IllegalArgumentException
+	 *             se la griglia ha piu' di MAX_CELLS caselle.
+	 */
+	public synchronized long append(long gameId, long player1, long player2,
+			long start, long end, int first, int result, int width,
+			int height, int winLength, int[] moves, int moveCount)
+			throws IOException {
+		if (!fits(width, height) || moveCount > MAX_CELLS)
+			throw new IllegalArgumentException("Board too large: " + width
+					+ "x" + height);
+		long packed = 0;
+		for (int i = 0; i < moveCount; i++)
+			packed |= (long) (moves[i] & 0xF) << (4 * i);
+		long n = count;
+		MappedByteBuffer b = segment(n >>> segmentBits);
+		int off = offset(n);
+		b.putLong(off, gameId);
+		b.putLong(off + 8, player1);
+		b.putLong(off + 16, player2);
+		b.putInt(off + 24, (int) (start / 1000));
+		b.putInt(off + 28, (int) (end / 1000));
+		b.putLong(off + 32, packed);
+		b.put(off + 40, (byte) moveCount);
+		b.put(off + 41, (byte) first);
+		b.put(off + 42, (byte) result);
+		b.put(off + 43, (byte) width);
+		b.put(off + 44, (byte) height);
+		b.put(off + 45, (byte) winLength);
+		// Il contatore viene aggiornato dopo il record: un lettore non vede
+		// mai un record incompleto.
+		header.putLong(COUNT_OFFSET, n + 1);
+		count = n + 1;
+		return n;
+	}
+
+	/**
+	 * Restituisce il numero di partite archiviate.
+	 * 
+	 * @return numero di partite archiviate.
+	 */
+	public long size() {
+		return count;
+	}
+
+	/**
+	 * Restituisce il numero di record per segmento.
+	 * 
+	 * @return numero di record mappati da ogni segmento.
+	 */
+	public int getSegmentSize() {
+		return 1 << segmentBits;
+	}
+
+	/**
+	 * Crea una vista su un record dell'archivio. La vista e' riutilizzabile:
+	 * {@link Record#moveTo(long)} la sposta su un'altra partita senza creare
+	 * oggetti. Una vista non va condivisa tra thread.
+	 * 
+	 * @param ordinal
+	 *            posizione della partita nell'archivio.
+	 * @return vista sul record della partita.
+	 * @throws IOException
+	 */
+	public Record get(long ordinal) throws IOException {
+		Record r = new Record();
+		r.moveTo(ordinal);
+		return r;
+	}
+
+	/**
+	 * Scrive su disco le modifiche apportate all'archivio.
+	 */
+	public synchronized void force() {
+		MappedByteBuffer[] s = segments;
+		for (int i = 0; i < s.length; i++)
+			if (s[i] != null)
+				s[i].force();
+		header.force();
+	}
+
+	/**
+	 * Scrive su disco le modifiche e chiude il file dell'archivio.
+	 * 
+	 * @throws IOException
+	 */
+	public synchronized void close() throws IOException {
+		force();
+		file.close();
+	}
+
+	private int offset(long ordinal) {
+		return (int) (ordinal & segmentMask) * RECORD_SIZE;
+	}
+
+	/*
+	 * Restituisce il segmento di indice i, mappandolo al primo accesso.
+	 */
+	private MappedByteBuffer segment(long i) throws IOException {
+		MappedByteBuffer[] s = segments;
+		if (i < s.length && s[(int) i] != null)
+			return s[(int) i];
+		synchronized (this) {
+			s = segments;
+			if (i < s.length && s[(int) i] != null)
+				return s[(int) i];
+			// L'array viene sempre ricopiato e ripubblicato, cosi' che i
+			// lettori senza lock vedano il segmento completamente inizializzato.
+			MappedByteBuffer[] copy = new MappedByteBuffer[Math.max(s.length,
+					(int) i + 1)];
+			System.arraycopy(s, 0, copy, 0, s.length);
+			long bytes = (long) RECORD_SIZE << segmentBits;
+			copy[(int) i] = channel.map(FileChannel.MapMode.READ_WRITE,
+					HEADER + i * bytes, bytes);
+			segments = copy;
+			return copy[(int) i];
+		}
+	}
+
+	/**
+	 * Vista su un record dell'archivio: i campi vengono letti direttamente
+	 * dalla memoria mappata, senza copiare il record.
+	 */
+	public class Record {
+
+		// Attributi privati.
+		private MappedByteBuffer buffer;
+		private int offset;
+		private long ordinal;
+
+		/*
+		 * Costruttore della classe Record.
+		 */
+		private Record() {
+		}
+
+		/**
+		 * Sposta la vista sulla partita di posizione <code>ordinal</code>.
+		 * 
+		 * @param ordinal
+		 *            posizione della partita nell'archivio.
+		 * @return la vista stessa.
+		 * @throws IOException
+		 * @throws IndexOutOfBoundsException
+		 *             se la partita non e' presente nell'archivio.
+		 */
+		public Record moveTo(long ordinal) throws IOException {
+			if (ordinal < 0 || ordinal >= count)
+				throw new IndexOutOfBoundsException("Game " + ordinal);
+			this.buffer = segment(ordinal >>> segmentBits);
+			this.offset = offset(ordinal);
+			this.ordinal = ordinal;
+			return this;
+		}
+
+		/**
+		 * Restituisce la posizione della partita nell'archivio.
+		 * 
+		 * @return posizione della partita.
+		 */
+		public long getOrdinal() {
+			return ordinal;
+		}
+
+		/**
+		 * Restituisce l'id della partita.
+		 * 
+		 * @return id della partita.
+		 */
+		public long getGameId() {
+			return buffer.getLong(offset);
+		}
+
+		/**
+		 * Restituisce l'id del player 1.
+		 * 
+		 * @return id del player 1.
+		 */
+		public long getPlayer1() {
+			return buffer.getLong(offset + 8);
+		}
+
+		/**
+		 * Restituisce l'id del player 2.
+		 * 
+		 * @return id del player 2.
+		 */
+		public long getPlayer2() {
+			return buffer.getLong(offset + 16);
+		}
+
+		/**
+		 * Restituisce l'inizio della partita.
+		 * 
+		 * @return inizio della partita, in millisecondi dal 1/1/1970.
+		 */
+		public long getStartTime() {
+			return (buffer.getInt(offset + 24) & 0xFFFFFFFFL) * 1000;
+		}
+
+		/**
+		 * Restituisce la fine della partita.
+		 * 
+		 * @return fine della partita, in millisecondi dal 1/1/1970.
+		 */
+		public long getEndTime() {
+			return (buffer.getInt(offset + 28) & 0xFFFFFFFFL) * 1000;
+		}
+
+		/**
+		 * Restituisce le mosse della partita, 4 bit ciascuna a partire dai
+		 * bit meno significativi.
+		 * 
+		 * @return mosse impacchettate.
+		 */
+		public long getPackedMoves() {
+			return buffer.getLong(offset + 32);
+		}
+
+		/**
+		 * Restituisce la mossa <code>i</code> della partita.
+		 * 
+		 * @param i
+		 *            indice della mossa, compreso tra 0 e getMoveCount() - 1.
+		 * @return casella della mossa.
+		 */
+		public int getMove(int i) {
+			return (int) (getPackedMoves() >>> (4 * i)) & 0xF;
+		}
+
+		/**
+		 * Restituisce il numero di mosse della partita.
+		 * 
+		 * @return numero di mosse.
+		 */
+		public int getMoveCount() {
+			return buffer.get(offset + 40);
+		}
+
+		/**
+		 * Restituisce il player che ha effettuato la prima mossa.
+		 * 
+		 * @return 1 o 2.
+		 */
+		public int getFirstPlayer() {
+			return buffer.get(offset + 41);
+		}
+
+		/**
+		 * Restituisce il risultato della partita.
+		 * 
+		 * @return 1: ha vinto il player 1; 2: ha vinto il player 2; 3:
+		 *         pareggio.
+		 */
+		public int getResult() {
+			return buffer.get(offset + 42);
+		}
+
+		/**
+		 * Restituisce il numero di colonne della griglia.
+		 * 
+		 * @return numero di colonne.
+		 */
+		public int getWidth() {
+			return buffer.get(offset + 43);
+		}
+
+		/**
+		 * Restituisce il numero di righe della griglia.
+		 * 
+		 * @return numero di righe.
+		 */
+		public int getHeight() {
+			return buffer.get(offset + 44);
+		}
+
+		/**
+		 * Restituisce il numero di simboli consecutivi necessari per vincere.
+		 * 
+		 * @return lunghezza della linea vincente.
+		 */
+		public int getWinLength() {
+			return buffer.get(offset + 45);
+		}
+
+	} // Chiusura della inner-class.
+
+}
@@ -1,16 +1,32 @@
 package server;
 
+import java.io.*;
 import java.rmi.RemoteException;
-import java.rmi.server.*;
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
 import api.*;
 
 /**
- * Implementazione dell'oggetto remoto {@link Game}. Offre metodi per gestire
+ * Implementazione dell'interfaccia {@link Game}. Offre metodi per gestire
  * tutte le operazioni necessarie al corretto svolgimento della partita tra due
  * player:<br/>
  * consentendo di inviare la mossa effettuata da un giocatore al server;<br/>
  * gestendo la corretta turnazione tra i due player;<br/>
- * verificando il punteggio finale.
+ * verificando il punteggio finale.<br/>
+ * Le notifiche verso i player durante la partita non vengono effettuate
+ * dal thread che invia la mossa: ogni player ha una propria coda ordinata di
+ * notifiche ({@link OutboundQueue}), cosi' che la mossa venga registrata e
+ * confermata senza attendere la rete dell'avversario.<br/>
+ * Al termine della partita i due player possono giocare la rivincita sullo
+ * stesso oggetto, riutilizzando il monitoraggio della connessione.<br/>
+ * Se alla partita e' associato un {@link MoveLog}, inizio, mosse e risultato
+ * vengono registrati e le relative notifiche consegnate soltanto dopo che il
+ * registro le ha rese persistenti. Dopo un riavvio del server la partita puo'
+ * essere ricostruita dal registro e ripresa quando i player si ricollegano.<br/>
+ * La partita non viene esportata: quando viene inviata a un player e' sostituita
+ * da un {@link GameHandle} che inoltra le mosse al {@link GameRouter} del
+ * server.
  * 
  * @author Gennaro Capo
  * @author Mirko Conte
@@ -20,19 +36,47 @@ import api.*;
  * @see api.Game
  * 
  */
-public class GameImpl extends UnicastRemoteObject implements Game {
+public class GameImpl implements Game, Serializable {
 
 	// Attributi privati.
 	private static final long serialVersionUID = 1L;
-	private static final int MIN_NUMBER_OF_MOVES_TO_CHECK_WIN = 5;
 	private static final int MIN_MOVE_ALLOWED = 0;
-	private static final int MAX_MOVE_ALLOWED = 8;
 	private PlayerNumber currentPlayer;
-	private Player player1, player2;
+	private PlayerNumber firstPlayer;
+	private boolean closed;
+	private boolean rematch1;
+	private boolean rematch2;
+	private Player player1;
+	private final AtomicReference<Player> player2;
 	private int numberOfMovements;
-	private boolean endGame;
-	private int grid[][];
+	private volatile boolean endGame;
+	private final Board board;
 	private String idGame;
+	private HeartbeatScheduler.Heartbeat heartbeat;
+	private GameService router;
+	private long token1;
+	private long token2;
+	private final Executor callbacks;
+	private volatile OutboundQueue queue1;
+	private MoveLog log;
+	private int logGame;
+	private long logged;
+	private GameObserver observer;
+	private String name1;
+	private String name2;
+	private long startTime;
+	private final int[] history;
+	private volatile OutboundQueue queue2;
+	// Notifiche in attesa della persistenza dei record che le precedono.
+	private final Deque<Outgoing> outbox;
+
+	// Notifica priva di parametri, condivisa da tutte le partite.
+	private static final OutboundQueue.Callback FOE_DISCONNECTED = new OutboundQueue.Callback() {
+		@Override
+		public void deliver(Player p) throws RemoteException {
+			p.foeDisconnected();
+		}
+	};
 
 	/*
 	 * Variabile usata per poter distinguere il player 1, P1 dal player 2, P2
@@ -53,10 +97,56 @@ public class GameImpl extends UnicastRemoteObject implements Game {
 	 * @throws RemoteException
 	 */
 	public GameImpl(Player p1, String id) throws RemoteException {
-		grid = new int[GRID_DIMENSION][GRID_DIMENSION];
+		this(p1, id, OutboundQueue.DIRECT);
+	}
+
+	/**
+	 * Costruttore di classe.Consente di creare una nuova partita (senza
+	 * avviarla) mettendosi in attesa dell'arrivo di uno sfidante.
+	 * 
+	 * @param p1
+	 *            player che crea la partita
+	 * @param id
+	 *            id della partita da creare. Formato richiesto:
+	 *            nickNameCreatorePartita-oraCreazione. Es: mrossi-12:23:22
+	 * @param callbacks
+	 *            esecutore su cui consegnare le notifiche ai player. Con
+	 *            {@link OutboundQueue#DIRECT} le notifiche vengono consegnate
+	 *            prima che <code>sendMovement</code> restituisca il controllo.
+	 * @throws RemoteException
+	 */
+	public GameImpl(Player p1, String id, Executor callbacks)
+			throws RemoteException {
+		this(p1, id, callbacks, new BitBoard());
+	}
+
+	/**
+	 * Costruttore di classe.Consente di creare una nuova partita su una
+	 * griglia di dimensioni arbitrarie (senza avviarla) mettendosi in attesa
+	 * dell'arrivo di uno sfidante.
+	 * 
+	 * @param p1
+	 *            player che crea la partita
+	 * @param id
+	 *            id della partita da creare. Formato richiesto:
+	 *            nickNameCreatorePartita-oraCreazione. Es: mrossi-12:23:22
+	 * @param callbacks
+	 *            esecutore su cui consegnare le notifiche ai player.
+	 * @param board
+	 *            griglia vuota su cui giocare la partita.
+	 * @throws RemoteException
+	 */
+	public GameImpl(Player p1, String id, Executor callbacks, Board board)
+			throws RemoteException {
+		this.board = board;
+		this.history = new int[board.getWidth() * board.getHeight()];
 		this.player1 = p1;
+		this.player2 = new AtomicReference<Player>();
 		numberOfMovements = 0;
 		this.idGame = id;
+		this.callbacks = callbacks;
+		this.queue1 = newQueue(p1);
+		this.outbox = new ArrayDeque<Outgoing>();
 	}
 
 	/**
@@ -68,6 +158,36 @@ public class GameImpl extends UnicastRemoteObject implements Game {
 		return idGame;
 	}
 
+	/**
+	 * Restituisce il numero di colonne della griglia di gioco.
+	 * 
+	 * @return numero di colonne.
+	 */
+	@Override
+	public int getWidth() {
+		return board.getWidth();
+	}
+
+	/**
+	 * Restituisce il numero di righe della griglia di gioco.
+	 * 
+	 * @return numero di righe.
+	 */
+	@Override
+	public int getHeight() {
+		return board.getHeight();
+	}
+
+	/**
+	 * Restituisce il numero di simboli consecutivi necessari per vincere.
+	 * 
+	 * @return lunghezza della linea vincente.
+	 */
+	@Override
+	public int getWinLength() {
+		return board.getWinLength();
+	}
+
 	/**
 	 * Assegna un id alla partita.
 	 * 
@@ -129,17 +249,226 @@ public class GameImpl extends UnicastRemoteObject implements Game {
 	 * @throws RemoteException
 	 */
 	public void setPlayer2(Player p) throws RemoteException {
-		player2 = p;
+		player2.set(p);
+		queue2 = newQueue(p);
 		matchCanStart();
 	}
 
+	/**
+	 * Prenota in maniera atomica il posto di sfidante della partita. Se due
+	 * player tentano di aggiungersi contemporaneamente solo uno dei due
+	 * ottiene il posto. Il metodo non effettua alcuna chiamata remota: per
+	 * avviare la partita occorre invocare {@link #startMatch()}.
+	 * 
+	 * @param p
+	 *            sfidante da associare alla partita.
+	 * @return true se il posto era libero ed e' stato assegnato a
+	 *         <code>p</code>, false altrimenti.
+	 */
+	public boolean claimPlayer2(Player p) {
+		if (!player2.compareAndSet(null, p))
+			return false;
+		queue2 = newQueue(p);
+		return true;
+	}
+
+	/**
+	 * Avvia una partita il cui sfidante e' stato gia' prenotato mediante
+	 * {@link #claimPlayer2(Player)}, notificando l'inizio ai due player.
+	 * 
+	 * @throws RemoteException
+	 */
+	public void startMatch() throws RemoteException {
+		matchCanStart();
+	}
+
+	/**
+	 * Associa alla partita il servizio remoto attraverso cui i player la
+	 * raggiungono.
+	 * 
+	 * @param router
+	 *            servizio che instrada le chiamate alla partita.
+	 */
+	public void setRouter(GameService router) {
+		this.router = router;
+	}
+
+	/**
+	 * Associa alla partita il registro persistente su cui annotarne l'inizio,
+	 * le mosse e il risultato.
+	 * 
+	 * @param log
+	 *            registro delle partite.
+	 * @param game
+	 *            numero della partita nel registro.
+	 */
+	public synchronized void setLog(MoveLog log, int game) {
+		this.log = log;
+		this.logGame = game;
+	}
+
+	/**
+	 * Associa alla partita l'osservatore da notificare al suo termine.
+	 * 
+	 * @param observer
+	 *            osservatore della partita.
+	 */
+	public synchronized void setObserver(GameObserver observer) {
+		this.observer = observer;
+	}
+
+	/**
+	 * Assegna il nickname di uno dei due player della partita.
+	 * 
+	 * @param n
+	 *            player a cui assegnare il nickname.
+	 * @param name
+	 *            nickname del player.
+	 */
+	public synchronized void setPlayerName(PlayerNumber n, String name) {
+		if (n == PlayerNumber.P1)
+			name1 = name;
+		else
+			name2 = name;
+	}
+
+	/**
+	 * Restituisce il nickname di uno dei due player della partita.
+	 * 
+	 * @param n
+	 *            player di cui si vuole il nickname.
+	 * @return nickname del player, null se non e' noto.
+	 */
+	public synchronized String getPlayerName(PlayerNumber n) {
+		return (n == PlayerNumber.P1) ? name1 : name2;
+	}
+
+	/**
+	 * Restituisce il player che ha effettuato, o deve effettuare, la prima
+	 * mossa della partita in corso o dell'ultima conclusa.
+	 * 
+	 * @return player che ha cominciato la partita.
+	 */
+	public synchronized PlayerNumber getFirstPlayer() {
+		return firstPlayer;
+	}
+
+	/**
+	 * Restituisce l'ora di inizio della partita in corso o dell'ultima
+	 * conclusa.
+	 * 
+	 * @return ora di inizio, in millisecondi dal 1/1/1970.
+	 */
+	public synchronized long getStartTime() {
+		return startTime;
+	}
+
+	/**
+	 * Restituisce le mosse effettuate nella partita in corso o nell'ultima
+	 * conclusa, nell'ordine in cui sono state effettuate.
+	 * 
+	 * @return copia delle mosse effettuate.
+	 */
+	public synchronized int[] getMoves() {
+		return Arrays.copyOf(history, numberOfMovements);
+	}
+
+	/**
+	 * Restituisce il numero della partita nel registro persistente.
+	 * 
+	 * @return numero della partita, 0 se la partita non viene registrata.
+	 */
+	public synchronized int getLogGame() {
+		return logGame;
+	}
+
+	/**
+	 * Associa alla partita il monitoraggio della connessione dei due player,
+	 * che verra' annullato non appena la partita finisce o viene rimossa.
+	 * 
+	 * @param h
+	 *            monitoraggio della connessione dei player.
+	 */
+	public void setHeartbeat(HeartbeatScheduler.Heartbeat h) {
+		synchronized (this) {
+			heartbeat = h;
+			if (!endGame)
+				return;
+		}
+		h.cancel();
+	}
+
+	/**
+	 * Termina la partita a seguito della sua rimozione dal server, annullando
+	 * il monitoraggio della connessione dei player.
+	 * 
+	 * @return true se la partita era in corso, ovvero se e' stata abbandonata
+	 *         da uno dei due player prima della sua conclusione.
+	 */
+	public boolean abandon() {
+		return abandon(null);
+	}
+
+	/**
+	 * Notifica all'avversario del player che ha smesso di rispondere ai ping
+	 * la sua disconnessione. La notifica passa dalla coda ordinata
+	 * dell'avversario: non puo' precedere gli eventi gia' accodati.
+	 * 
+	 * @param lost
+	 *            player non piu' raggiungibile.
+	 * @see HeartbeatScheduler.LossHandler
+	 */
+	public synchronized void playerLost(Player lost) {
+		OutboundQueue foe = lost.equals(player1) ? queue2 : queue1;
+		if (foe != null)
+			post(foe, FOE_DISCONNECTED);
+	}
+
+	/**
+	 * Termina la partita a seguito della sua rimozione dal server da parte
+	 * di uno dei suoi player, annullando il monitoraggio della connessione.
+	 * Se la partita era in corso l'abbandono viene notificato all'osservatore
+	 * e a entrambi i player, attraverso le loro code ordinate: viene
+	 * attribuito al player che non rispondeva piu' ai ping, se ve n'e' uno,
+	 * altrimenti al player che ha rimosso la partita.
+	 * 
+	 * @param player
+	 *            player che ha rimosso la partita, null se sconosciuto.
+	 * @return true se la partita era in corso, ovvero se e' stata abbandonata
+	 *         da uno dei due player prima della sua conclusione.
+	 */
+	public boolean abandon(PlayerNumber player) {
+		boolean inProgress;
+		synchronized (this) {
+			inProgress = player2.get() != null && !endGame;
+			endGame = true;
+			closed = true;
+			if (log != null)
+				log.remove(logGame);
+			Player lost = (heartbeat != null) ? heartbeat.getLostPlayer()
+					: null;
+			if (lost != null)
+				player = lost.equals(player1) ? PlayerNumber.P1
+						: PlayerNumber.P2;
+			if (inProgress && player != null && observer != null)
+				observer.gameAbandoned(this, player);
+			if (inProgress) {
+				post(queue1, FOE_DISCONNECTED);
+				if (queue2 != null)
+					post(queue2, FOE_DISCONNECTED);
+			}
+		}
+		cancelHeartbeat();
+		return inProgress;
+	}
+
 	/**
 	 * Restituisce il player 2 della partita.
 	 * 
 	 * @return player 2 della partita.
 	 */
 	public Player getPlayer2() {
-		return player2;
+		return player2.get();
 	}
 
 	/**
@@ -158,7 +487,10 @@ public class GameImpl extends UnicastRemoteObject implements Game {
 	 * - inoltrare le mosse tra i due player; <br/>
 	 * - verificare l'eventuale vincita e notificarla; <br/>
 	 * - verificare eventuali disconnessioni dei player e notificarle; <br/>
-	 * - gestire il turno dei due player.
+	 * - gestire il turno dei due player.<br/>
+	 * Il metodo aggiorna soltanto lo stato della partita e accoda, per ognuno
+	 * dei due player, un'unica notifica contenente tutti gli eventi prodotti
+	 * dalla mossa, senza attenderne la consegna.
 	 * 
 	 * @param p player che invia la mossa.
 	 * @param m identificativo della mossa da inviare. E' un intero e deve essere compreso tra 0 e 8.<br/> 
@@ -178,19 +510,279 @@ public class GameImpl extends UnicastRemoteObject implements Game {
 	public synchronized void sendMovement(Player p, int m)
 			throws RemoteException {
 
-		if (!endGame && m >= MIN_MOVE_ALLOWED && m <= MAX_MOVE_ALLOWED) {
-			int res = -1;
-			if (p.equals(player1))
-				checkMove(player1, player2, PlayerNumber.P1, m);
-			else if (p.equals(player2))
-				checkMove(player2, player1, PlayerNumber.P2, m);
-
-			if (numberOfMovements >= MIN_NUMBER_OF_MOVES_TO_CHECK_WIN)
-				res = checkWinner();
-			if (res > 0)
-				notifyFinalResult(res);
+		// Chi invia una mossa dimostra di essere connesso.
+		if (heartbeat != null)
+			heartbeat.touch(p);
+		if (p.equals(player1))
+			move(PlayerNumber.P1, m);
+		else if (p.equals(player2.get()))
+			move(PlayerNumber.P2, m);
+	}
+
+	/**
+	 * Consente a un player, identificato dal token della sua sessione, di
+	 * inviare la mossa effettuata. L'identificazione del player e' un
+	 * confronto tra interi.
+	 * 
+	 * @param token token della sessione del player che invia la mossa.
+	 * @param m identificativo della mossa da inviare.
+	 * @throws RemoteException
+	 * @see #sendMovement(Player, int)
+	 */
+	@Override
+	public synchronized void sendMovement(long token, int m)
+			throws RemoteException {
+
+		PlayerNumber turn;
+		Player p;
+		if (token == SessionTable.NO_SESSION)
+			return;
+		if (token == token1) {
+			turn = PlayerNumber.P1;
+			p = player1;
+		} else if (token == token2) {
+			turn = PlayerNumber.P2;
+			p = player2.get();
+		} else
+			return;
+		if (heartbeat != null)
+			heartbeat.touch(p);
+		move(turn, m);
+	}
+
+	/**
+	 * Consente a un player, identificato dal token della sua sessione, di
+	 * inviare la mossa effettuata indicandone il numero di sequenza. La mossa
+	 * viene accettata soltanto se il numero di sequenza coincide con il numero
+	 * di mosse gia' effettuate, e' il turno del player e la casella e' libera;
+	 * l'esito viene accodato al player insieme agli altri eventi della mossa.
+	 * Le mosse con un numero di sequenza gia' superato sono ritrasmissioni e
+	 * vengono ignorate.
+	 * 
+	 * @param token token della sessione del player che invia la mossa.
+	 * @param seq numero di sequenza della mossa.
+	 * @param m identificativo della mossa da inviare.
+	 * @throws RemoteException
+	 */
+	@Override
+	public synchronized void sendMovement(long token, int seq, int m)
+			throws RemoteException {
+
+		PlayerNumber turn;
+		Player p;
+		if (token == SessionTable.NO_SESSION)
+			return;
+		if (token == token1) {
+			turn = PlayerNumber.P1;
+			p = player1;
+		} else if (token == token2) {
+			turn = PlayerNumber.P2;
+			p = player2.get();
+		} else
+			return;
+		if (heartbeat != null)
+			heartbeat.touch(p);
+		if (seq < numberOfMovements)
+			return;
+
+		if (endGame || seq != numberOfMovements || turn != currentPlayer
+				|| m < MIN_MOVE_ALLOWED
+				|| m >= board.getWidth() * board.getHeight()
+				|| !checkMove(turn, m)) {
+			post(queue(turn), batch(new EventBatch(seq, EventBatch.NO_MOVE,
+					Event.MOVE_REJECTED)));
+			return;
+		}
+		notifyMove(turn, m, checkWinner(), seq);
+	}
+
+	/**
+	 * Consente a un player, identificato dal token della sua sessione, di
+	 * chiedere la rivincita al termine della partita. Quando entrambi i player
+	 * l'hanno chiesta la griglia viene svuotata e la nuova partita comincia
+	 * dal player che non ha cominciato la precedente; il monitoraggio della
+	 * connessione viene ripreso.
+	 * 
+	 * @param token token della sessione del player che chiede la rivincita.
+	 * @throws RemoteException
+	 */
+	@Override
+	public void rematch(long token) throws RemoteException {
+		HeartbeatScheduler.Heartbeat h;
+		synchronized (this) {
+			PlayerNumber turn = turnOf(token);
+			if (turn == null || !endGame || player2.get() == null)
+				return;
+			if (closed) {
+				post(queue(turn), FOE_DISCONNECTED);
+				return;
+			}
+			if (turn == PlayerNumber.P1)
+				rematch1 = true;
+			else
+				rematch2 = true;
+			if (!rematch1 || !rematch2) {
+				post(queue(other(turn)), batch(new EventBatch(
+						EventBatch.NO_MOVE, Event.REMATCH_OFFERED)));
+				return;
+			}
+			board.clear();
+			numberOfMovements = 0;
+			rematch1 = false;
+			rematch2 = false;
+			firstPlayer = other(firstPlayer);
+			currentPlayer = firstPlayer;
+			endGame = false;
+			startTime = System.currentTimeMillis();
+			h = heartbeat;
+			logStart();
+			post(queue(firstPlayer), batch(new EventBatch(EventBatch.NO_MOVE,
+					Event.MATCH_STARTED, Event.YOUR_TURN)));
+			post(queue(other(firstPlayer)), batch(new EventBatch(
+					EventBatch.NO_MOVE, Event.MATCH_STARTED, Event.FOE_TURN)));
+		}
+		if (h != null)
+			h.resume();
+	}
+
+	/**
+	 * Riporta la partita, ricostruita dal registro, all'inizio di una nuova
+	 * manche su una griglia vuota.
+	 * 
+	 * @param player1First
+	 *            true se la prima mossa spetta al player 1.
+	 * @see MoveLog.Handler#started(int, boolean)
+	 */
+	public synchronized void restoreStart(boolean player1First) {
+		board.clear();
+		numberOfMovements = 0;
+		rematch1 = false;
+		rematch2 = false;
+		firstPlayer = player1First ? PlayerNumber.P1 : PlayerNumber.P2;
+		currentPlayer = firstPlayer;
+		endGame = false;
+		startTime = System.currentTimeMillis();
+	}
+
+	/**
+	 * Applica alla partita, ricostruita dal registro, una mossa del player di
+	 * turno, senza notificarla.
+	 * 
+	 * @param m
+	 *            casella della mossa.
+	 * @see MoveLog.Handler#moved(int, int)
+	 */
+	public synchronized void restoreMove(int m) {
+		if (endGame || currentPlayer == null || m < MIN_MOVE_ALLOWED
+				|| m >= board.getWidth() * board.getHeight())
+			return;
+		if (checkMove(currentPlayer, m) && checkWinner() > 0)
+			endGame = true;
+	}
+
+	/**
+	 * Conclude la partita, ricostruita dal registro, se l'ultima mossa
+	 * rigiocata l'ha terminata ma il risultato non era stato registrato,
+	 * perche' il server si e' arrestato subito dopo la mossa. Il risultato
+	 * viene registrato e notificato all'osservatore come al termine di una
+	 * partita giocata; i player lo ricevono alla ripresa della partita.
+	 * 
+	 * @return true se la partita e' stata conclusa.
+	 * @see #resume()
+	 */
+	public synchronized boolean restoreEnd() {
+		int res = board.result();
+		if (!endGame || res == 0)
+			return false;
+		if (log != null)
+			logged = log.result(logGame, res);
+		if (observer != null)
+			observer.gameEnded(this, res);
+		return true;
+	}
+
+	/**
+	 * Associa a uno dei due posti della partita, ricostruita dal registro, il
+	 * player che si e' ricollegato con il token della sua nuova sessione.
+	 * 
+	 * @param n
+	 *            posto del player nella partita.
+	 * @param p
+	 *            player ricollegato.
+	 * @param token
+	 *            token della sessione del player.
+	 */
+	public synchronized void attach(PlayerNumber n, Player p, long token) {
+		if (n == PlayerNumber.P1) {
+			player1 = p;
+			queue1 = newQueue(p);
+			token1 = token;
+		} else {
+			player2.set(p);
+			queue2 = newQueue(p);
+			token2 = token;
+		}
+	}
+
+	/**
+	 * Riprende la partita, ricostruita dal registro, dopo che entrambi i
+	 * player si sono ricollegati. Ogni player riceve la partita, la griglia
+	 * dal proprio punto di vista (evento BOARD_RESTORED) e il turno, oppure
+	 * il risultato se la partita era gia' conclusa.
+	 */
+	public synchronized void resume() {
+		for (PlayerNumber n : PlayerNumber.values()) {
+			int[] cells = new int[board.getWidth() * board.getHeight()];
+			int own = (n == PlayerNumber.P1) ? P1_CELL : P2_CELL;
+			for (int i = 0; i < cells.length; i++) {
+				int c = board.cell(i);
+				if (c != FREE_CELL)
+					cells[i] = (c == own) ? P1_CELL : P2_CELL;
+			}
+			Event turn;
+			if (endGame)
+				turn = result(n, board.result());
+			else
+				turn = (n == currentPlayer) ? Event.YOUR_TURN
+						: Event.FOE_TURN;
+			post(queue(n), new OutboundQueue.Callback() {
+				@Override
+				public void deliver(Player p) throws RemoteException {
+					p.joinGame(GameImpl.this);
+				}
+			});
+			post(queue(n), batch(new EventBatch(cells, Event.BOARD_RESTORED,
+					turn)));
 		}
+	}
 
+	/**
+	 * Associa a uno dei due player della partita il token della sua sessione.
+	 * 
+	 * @param n
+	 *            player a cui associare il token.
+	 * @param token
+	 *            token della sessione del player.
+	 */
+	public synchronized void setToken(PlayerNumber n, long token) {
+		if (n == PlayerNumber.P1)
+			token1 = token;
+		else
+			token2 = token;
+	}
+
+	/*
+	 * Registra la mossa m del player turn e accoda le notifiche.
+	 */
+	private void move(PlayerNumber turn, int m) {
+		if (!endGame && m >= MIN_MOVE_ALLOWED
+				&& m < board.getWidth() * board.getHeight()) {
+			// Il risultato viene mantenuto dalla griglia ad ogni mossa: va
+			// letto sempre, anche sulle griglie troppo piccole per una
+			// vittoria, che si riempiono prima di 2k - 1 mosse.
+			if (checkMove(turn, m))
+				notifyMove(turn, m, checkWinner(), EventBatch.NO_SEQ);
+		}
 	}
 
 	/*
@@ -201,55 +793,7 @@ public class GameImpl extends UnicastRemoteObject implements Game {
 	 * vinto; 3: pareggio.
 	 */
 	private int checkWinner() {
-		int gridValue = 0;
-		int result = 0;
-		int i;
-		boolean winner = false;
-
-		// Controllo delle righe.
-		for (i = 0; i < GRID_DIMENSION; i++) {
-			if ((grid[i][0] == grid[i][1]) && (grid[i][1] == grid[i][2])) {
-				gridValue = grid[i][0];
-				if (gridValue != Game.FREE_CELL) {
-					winner = true;
-					result = gridValue;
-				}
-			}
-		}
-		if (!winner) {
-			// Controllo delle colonne.
-			for (i = 0; i < GRID_DIMENSION; i++) {
-				if ((grid[0][i] == grid[1][i]) && (grid[1][i] == grid[2][i])) {
-					gridValue = grid[0][i];
-					if (gridValue != Game.FREE_CELL) {
-						winner = true;
-						result = gridValue;
-					}
-				}
-			}
-		}
-		// Controllo delle diagonali.
-		if (!winner) {
-			if ((grid[0][0] == grid[1][1] && grid[1][1] == grid[2][2])
-					|| (grid[0][2] == grid[1][1] && grid[1][1] == grid[2][0])) {
-				gridValue = grid[1][1];
-				if (gridValue != Game.FREE_CELL) {
-					winner = true;
-					result = gridValue;
-				}
-			}
-		}
-		// Si controlla se la partita e' finita in parita'
-		if (!winner) {
-			result = 3;
-			for (i = 0; i < GRID_DIMENSION; i++) {
-				for (int j = 0; j < GRID_DIMENSION; j++) {
-					if (grid[j][i] == 0)
-						result = 0;
-				}
-			}
-		}
-		return result;
+		return board.result();
 	}
 
 	/*
@@ -257,23 +801,15 @@ public class GameImpl extends UnicastRemoteObject implements Game {
 	 * 1 se player1 ha inviato la mossa e 2 se la ha inviata player2.
 	 */
 	private boolean updateGrids(int m, int val) {
-		boolean updated = false;
-		int i = (int) m / GRID_DIMENSION;
-		int j = (int) m % GRID_DIMENSION;
-		if (grid[i][j] == 0) {
-			grid[i][j] = val;
-			updated = true;
-		}
-		return updated;
+		return board.play(m, val);
 	}
 
 	/*
 	 * Aggiorna i valori della griglia di gioco a seconda del player che sta
-	 * effettuando la mossa e gestisce il turno per la prossima mossa,
-	 * notificando l'evento al client interessato.
+	 * effettuando la mossa e gestisce il turno per la prossima mossa.
+	 * Restituisce false se la mossa non e' valida.
 	 */
-	private void checkMove(Player p1, Player p2, PlayerNumber turn, int m)
-			throws RemoteException {
+	private boolean checkMove(PlayerNumber turn, int m) {
 		int value;
 
 		if (currentPlayer.equals(PlayerNumber.P1)) {
@@ -286,57 +822,262 @@ public class GameImpl extends UnicastRemoteObject implements Game {
 			value = P2_CELL;
 		}
 
-		if (updateGrids(m, value)) {
-			numberOfMovements++;
-			p2.foeHasMoved(m);
-			if (turn.equals(PlayerNumber.P1))
-				currentPlayer = PlayerNumber.P2;
-			else if (turn.equals(PlayerNumber.P2))
-				currentPlayer = PlayerNumber.P1;
-			p1.foeTurn();
-			p2.isYourTurn();
+		if (!updateGrids(m, value))
+			return false;
+		if (log != null)
+			logged = log.move(logGame, m);
+		history[numberOfMovements] = m;
+		numberOfMovements++;
+		if (turn.equals(PlayerNumber.P1))
+			currentPlayer = PlayerNumber.P2;
+		else if (turn.equals(PlayerNumber.P2))
+			currentPlayer = PlayerNumber.P1;
+		return true;
+	}
+
+	/*
+	 * Accoda per ognuno dei due player un'unica notifica con gli eventi
+	 * prodotti dalla mossa ed eventualmente il risultato finale della partita:
+	 * res = 1 => player 1 ha vinto res = 2 => player 2 ha vinto res = 3 =>
+	 * pareggio
+	 */
+	private void notifyMove(PlayerNumber turn, int m, int res, int seq) {
+		OutboundQueue mover = queue(turn);
+		OutboundQueue foe = (turn == PlayerNumber.P1) ? queue2 : queue1;
+		PlayerNumber other = (turn == PlayerNumber.P1) ? PlayerNumber.P2
+				: PlayerNumber.P1;
+
+		// Le mosse con numero di sequenza vengono confermate al mittente
+		// nella stessa notifica.
+		Event[] events;
+		if (res > 0) {
+			endGame = true;
+			if (log != null)
+				logged = log.result(logGame, res);
+			if (observer != null)
+				observer.gameEnded(this, res);
+			events = new Event[] { Event.MOVE_ACCEPTED, Event.FOE_TURN,
+					result(turn, res) };
+		} else
+			events = new Event[] { Event.MOVE_ACCEPTED, Event.FOE_TURN };
+		if (seq == EventBatch.NO_SEQ)
+			events = Arrays.copyOfRange(events, 1, events.length);
+		post(mover, batch(new EventBatch(seq, EventBatch.NO_MOVE, events)));
+		if (res > 0) {
+			post(foe, batch(new EventBatch(m, Event.FOE_MOVED,
+					Event.YOUR_TURN, result(other, res))));
+			cancelHeartbeat();
+		} else
+			post(foe, batch(new EventBatch(m, Event.FOE_MOVED,
+					Event.YOUR_TURN)));
+	}
+
+	private OutboundQueue queue(PlayerNumber n) {
+		return (n == PlayerNumber.P1) ? queue1 : queue2;
+	}
+
+	private static PlayerNumber other(PlayerNumber n) {
+		return (n == PlayerNumber.P1) ? PlayerNumber.P2 : PlayerNumber.P1;
+	}
+
+	/*
+	 * Restituisce il player a cui e' associato il token, null se il token non
+	 * appartiene alla partita.
+	 */
+	private PlayerNumber turnOf(long token) {
+		if (token == SessionTable.NO_SESSION)
+			return null;
+		if (token == token1)
+			return PlayerNumber.P1;
+		if (token == token2)
+			return PlayerNumber.P2;
+		return null;
+	}
+
+	/*
+	 * Traduce il risultato restituito da checkWinner nell'evento da notificare
+	 * al player n.
+	 */
+	private static Event result(PlayerNumber n, int res) {
+		if (res == 1)
+			return (n == PlayerNumber.P1) ? Event.YOU_WIN : Event.YOU_LOSE;
+		if (res == 2)
+			return (n == PlayerNumber.P2) ? Event.YOU_WIN : Event.YOU_LOSE;
+		return Event.DRAW;
+	}
+
+	/*
+	 * Crea la coda delle notifiche per un player. Se la consegna di una
+	 * notifica fallisce la partita termina e l'avversario viene informato
+	 * della disconnessione.
+	 */
+	private OutboundQueue newQueue(Player p) {
+		return new OutboundQueue(p, callbacks, new OutboundQueue.FailureHandler() {
+			@Override
+			public void unreachable(OutboundQueue q) {
+				playerUnreachable(q);
+			}
+		});
+	}
+
+	/*
+	 * Gestisce un player non piu' raggiungibile durante la partita.
+	 */
+	private void playerUnreachable(OutboundQueue q) {
+		OutboundQueue foe;
+		synchronized (this) {
+			// Dopo la fine della partita basta impedire la rivincita.
+			boolean ended = endGame;
+			endGame = true;
+			closed = true;
+			if (ended)
+				return;
+			foe = (q == queue1) ? queue2 : queue1;
+			if (observer != null && foe != null)
+				observer.gameAbandoned(this, (q == queue1) ? PlayerNumber.P1
+						: PlayerNumber.P2);
+			if (foe != null)
+				post(foe, FOE_DISCONNECTED);
 		}
+		cancelHeartbeat();
 	}
 
 	/*
-	 * Notifica il risultato finale della partita ai due player res = 1 =>
-	 * player 1 ha vinto res = 2 => player 2 ha vinto res = 3 => pareggio
-	 */
-	private void notifyFinalResult(int res) throws RemoteException {
-		if (res == 1) {
-			player1.sendGameResult(Event.YOU_WIN);
-			player2.sendGameResult(Event.YOU_LOSE);
-		} else if (res == 2) {
-			player1.sendGameResult(Event.YOU_LOSE);
-			player2.sendGameResult(Event.YOU_WIN);
-		} else {
-			player1.sendGameResult(Event.DRAW);
-			player2.sendGameResult(Event.DRAW);
+	 * Accoda la notifica c nella coda q soltanto dopo che il registro ha reso
+	 * persistente l'ultimo record registrato dalla partita: nessun player
+	 * riceve un evento che un riavvio del server potrebbe cancellare. Le
+	 * notifiche in attesa restano nell'ordine di invio e vengono passate alle
+	 * code dal thread di scrittura del registro, al termine della scrittura:
+	 * i thread che consegnano le notifiche non attendono mai il registro. Va
+	 * invocato detenendo il lock della partita.
+	 */
+	private void post(OutboundQueue q, OutboundQueue.Callback c) {
+		if (log == null && outbox.isEmpty()) {
+			q.send(c);
+			return;
+		}
+		outbox.add(new Outgoing(q, c, logged));
+		if (log == null) {
+			release(null, Long.MAX_VALUE);
+			return;
+		}
+		final MoveLog l = log;
+		final long position = logged;
+		l.whenDurable(position, new Runnable() {
+			@Override
+			public void run() {
+				release(l, position);
+			}
+		});
+	}
+
+	/*
+	 * Passa alle code le notifiche in attesa dei record fino alla posizione
+	 * position, ormai persistenti. Se il registro l non e' piu' utilizzabile
+	 * le notifiche vengono passate comunque e la partita smette di usarlo:
+	 * le notifiche successive non attendono una persistenza che non puo'
+	 * avvenire. L'errore e' segnalato, una sola volta, dal registro stesso.
+	 */
+	private synchronized void release(MoveLog l, long position) {
+		if (l != null && l.isFailed()) {
+			if (log == l)
+				log = null;
+			position = Long.MAX_VALUE;
+		}
+		while (!outbox.isEmpty() && outbox.peek().position <= position) {
+			Outgoing o = outbox.poll();
+			o.queue.send(o.callback);
+		}
+	}
+
+	/*
+	 * Registra l'inizio della partita. Va invocato detenendo il lock della
+	 * partita.
+	 */
+	private void logStart() {
+		if (log != null)
+			logged = log.start(logGame, firstPlayer == PlayerNumber.P1);
+	}
+
+	private static OutboundQueue.Callback batch(final EventBatch b) {
+		return new OutboundQueue.Callback() {
+			@Override
+			public void deliver(Player p) throws RemoteException {
+				p.receiveEvents(b);
+			}
+		};
+	}
+
+	/*
+	 * Annulla il monitoraggio della connessione dei player, se presente.
+	 */
+	private void cancelHeartbeat() {
+		HeartbeatScheduler.Heartbeat h;
+		synchronized (this) {
+			h = heartbeat;
 		}
-		
-		endGame = true;
+		if (h != null)
+			h.cancel();
 	}
 
 	/*
-	 * Invia le notifiche a entrambi i player per avvisarli che la partita sta
+	 * Accoda le notifiche a entrambi i player per avvisarli che la partita sta
 	 * per cominciare e assegna il turno in maniera casuale a uno dei due player
-	 * per consentirgli di fare la prima mossa.
+	 * per consentirgli di fare la prima mossa. Il turno viene assegnato prima
+	 * di accodare le notifiche, in modo che una mossa giunta subito dopo la
+	 * notifica trovi la partita gia' inizializzata. Le notifiche vengono
+	 * consegnate dalle code dei player: il thread del player che si aggiunge
+	 * alla partita non attende alcuna chiamata remota.
 	 */
 	private void matchCanStart() throws RemoteException {
-		// aggiungo i due player alla partita
-		player1.joinGame(this);
-		player2.joinGame(this);
 		// scelgo randomicamente chi deve essere il primo a giocare
-		int x = (Math.random() < 0.5) ? 0 : 1;
-		if (x == 1) {
-			currentPlayer = PlayerNumber.P1;
-			player2.foeTurn();
-			player1.isYourTurn();
-		} else {
-			currentPlayer = PlayerNumber.P2;
-			player1.foeTurn();
-			player2.isYourTurn();
+		boolean p1First = Math.random() < 0.5;
+		synchronized (this) {
+			currentPlayer = p1First ? PlayerNumber.P1 : PlayerNumber.P2;
+			firstPlayer = currentPlayer;
+			endGame = false;
+			startTime = System.currentTimeMillis();
+			logStart();
+			// aggiungo i due player alla partita: ciascuno riceve la partita
+			// e il turno in una sola notifica
+			for (PlayerNumber n : PlayerNumber.values()) {
+				Event turn = (n == currentPlayer) ? Event.YOUR_TURN
+						: Event.FOE_TURN;
+				post(queue(n), batch(new EventBatch(this,
+						Event.MATCH_STARTED, turn)));
+			}
 		}
-		endGame = false;
 	}
+
+	/*
+	 * Al posto della partita viene inviato ai player un riferimento compatto,
+	 * instradato dal servizio remoto del server.
+	 */
+	private Object writeReplace() throws ObjectStreamException {
+		if (router == null)
+			throw new NotSerializableException("Game " + idGame
+					+ " has no router");
+		return new GameHandle(router, idGame, board.getWidth(),
+				board.getHeight(), board.getWinLength());
+	}
+
+	/*
+	 * Notifica in attesa della persistenza dei record del registro fino alla
+	 * posizione indicata.
+	 */
+	private static class Outgoing {
+
+		private final OutboundQueue queue;
+		private final OutboundQueue.Callback callback;
+		private final long position;
+
+		public Outgoing(OutboundQueue queue, OutboundQueue.Callback callback,
+				long position) {
+			this.queue = queue;
+			this.callback = callback;
+			this.position = position;
+		}
+
+	} // Chiusura della inner-class.
+
 }
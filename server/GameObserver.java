@@ -0,0 +1,40 @@
+package server;
+
+/**
+ * Osservatore delle partite, notificato dal server al termine di ogni partita
+ * e quando una partita in corso viene abbandonata. I metodi vengono invocati detenendo il lock della partita: l'osservatore non
+ * deve effettuare chiamate remote ne' attendere altre partite.
+ * 
+ * @author Gennaro Capo
+ * @author Mirko Conte
+ * @author Vincenzo De Notaris
+ * @author Roberto Pacilio
+ * @version 1.0
+ * @see server.GameImpl#setObserver(GameObserver)
+ */
+public interface GameObserver {
+
+	/**
+	 * Notifica la conclusione di una partita.
+	 * 
+	 * @param game
+	 *            partita conclusa; le sue mosse e i nickname dei player sono
+	 *            ancora disponibili.
+	 * @param result
+	 *            1: ha vinto il player 1; 2: ha vinto il player 2; 3:
+	 *            pareggio.
+	 */
+	void gameEnded(GameImpl game, int result);
+
+	/**
+	 * Notifica l'abbandono di una partita in corso da parte di uno dei suoi
+	 * player, che ha lasciato la partita oppure non e' piu' raggiungibile.
+	 * 
+	 * @param game
+	 *            partita abbandonata.
+	 * @param player
+	 *            player che ha abbandonato la partita.
+	 */
+	void gameAbandoned(GameImpl game, GameImpl.PlayerNumber player);
+
+}
@@ -0,0 +1,111 @@
+package server;
+
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.Map;
+import api.*;
+
+/**
+ * Implementazione dell'oggetto remoto {@link GameService}. E' l'unico oggetto
+ * esportato per tutte le partite: ogni chiamata viene instradata alla
+ * partita indicata, cercandola nella mappa delle partite del server. Creare o
+ * rimuovere una partita e' quindi un inserimento o una rimozione nella mappa,
+ * senza esportare nuovi oggetti remoti.
+ * 
+ * @author Gennaro Capo
+ * @author Mirko Conte
+ * @author Vincenzo De Notaris
+ * @author Roberto Pacilio
+ * @version 1.0
+ * @see server.GameImpl
+ */
+public class GameRouter extends UnicastRemoteObject implements GameService {
+
+	// Attributi privati.
+	private static final long serialVersionUID = 5018470622913985141L;
+	private final Map<String, Game> games;
+
+	/**
+	 * Costruttore di classe.
+	 * 
+	 * @param games
+	 *            partite ospitate dal server, indicizzate per id.
+	 * @throws RemoteException
+	 */
+	public GameRouter(Map<String, Game> games) throws RemoteException {
+		this.games = games;
+	}
+
+	/**
+	 * Consente a un player di inviare la mossa effettuata nella partita
+	 * <code>idGame</code>. Se la partita non esiste piu' la mossa viene
+	 * ignorata.
+	 * 
+	 * @param idGame id della partita.
+	 * @param p player che invia la mossa.
+	 * @param m identificativo della mossa da inviare.
+	 * @throws RemoteException
+	 */
+	@Override
+	public void sendMovement(String idGame, Player p, int m)
+			throws RemoteException {
+		Game g = games.get(idGame);
+		if (g != null)
+			g.sendMovement(p, m);
+	}
+
+	/**
+	 * Consente a un player, identificato dal token della sua sessione, di
+	 * inviare la mossa effettuata nella partita <code>idGame</code>. Se la
+	 * partita non esiste piu' la mossa viene ignorata.
+	 * 
+	 * @param idGame id della partita.
+	 * @param token token della sessione del player che invia la mossa.
+	 * @param m identificativo della mossa da inviare.
+	 * @throws RemoteException
+	 */
+	@Override
+	public void sendMovement(String idGame, long token, int m)
+			throws RemoteException {
+		Game g = games.get(idGame);
+		if (g != null)
+			g.sendMovement(token, m);
+	}
+
+	/**
+	 * Consente a un player, identificato dal token della sua sessione, di
+	 * inviare la mossa effettuata nella partita <code>idGame</code> con il
+	 * suo numero di sequenza. Se la partita non esiste piu' la mossa viene
+	 * ignorata.
+	 * 
+	 * @param idGame id della partita.
+	 * @param token token della sessione del player che invia la mossa.
+	 * @param seq numero di sequenza della mossa.
+	 * @param m identificativo della mossa da inviare.
+	 * @throws RemoteException
+	 */
+	@Override
+	public void sendMovement(String idGame, long token, int seq, int m)
+			throws RemoteException {
+		Game g = games.get(idGame);
+		if (g != null)
+			g.sendMovement(token, seq, m);
+	}
+
+	/**
+	 * Consente a un player, identificato dal token della sua sessione, di
+	 * chiedere la rivincita nella partita <code>idGame</code>. Se la partita
+	 * non esiste piu' la richiesta viene ignorata.
+	 * 
+	 * @param idGame id della partita.
+	 * @param token token della sessione del player che chiede la rivincita.
+	 * @throws RemoteException
+	 */
+	@Override
+	public void rematch(String idGame, long token) throws RemoteException {
+		Game g = games.get(idGame);
+		if (g != null)
+			g.rematch(token);
+	}
+
+}
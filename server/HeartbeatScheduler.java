@@ -0,0 +1,449 @@
+package server;
+
+import java.rmi.RemoteException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import api.*;
+
+/**
+ * Effettua il monitoraggio dei player impegnati in una partita per avere un
+ * riscontro del loro stato di connessione. Tutte le partite condividono un
+ * unico pool con un numero fisso di thread: il numero di thread non dipende
+ * dal numero di partite in corso. I ping, che bloccano il thread sull'I/O di
+ * rete, possono essere affidati a un esecutore separato (ad esempio a thread
+ * virtuali), cosi' che un player lento non ritardi i controlli degli altri.<br/>
+ * Il monitoraggio e' effettuato per player e non per partita: per ogni player
+ * si conserva l'istante dell'ultima chiamata ricevuta dal server (mossa,
+ * creazione o iscrizione a una partita, ecc.) e il player viene interrogato
+ * soltanto se e' rimasto in silenzio per piu' di un intervallo. Un player
+ * attivo, quindi, non viene mai interrogato.<br/>
+ * Se un player non risponde, il gestore di ciascuna partita monitorata
+ * ({@link LossHandler}) ne viene informato, cosi' che la partita possa
+ * notificare la disconnessione all'avversario attraverso la sua coda ordinata
+ * di notifiche, e il monitoraggio di tali partite termina. Il monitoraggio di una partita va annullato esplicitamente quando
+ * la partita finisce o viene rimossa.
+ * 
+ * @author Gennaro Capo
+ * @author Mirko Conte
+ * @author Vincenzo De Notaris
+ * @author Roberto Pacilio
+ * @version 1.0
+ * @see server.TicTacToeServerImpl
+ */
+public class HeartbeatScheduler {
+
+	/**
+	 * Gestore della perdita della connessione con un player monitorato.
+	 */
+	public interface LossHandler {
+
+		/**
+		 * Invocato, una sola volta per partita, quando un player smette di
+		 * rispondere ai ping. Viene eseguito da un thread dei ping: non deve
+		 * bloccarsi.
+		 * 
+		 * @param lost
+		 *            player non piu' raggiungibile.
+		 */
+		void playerLost(Player lost);
+	}
+
+	// Attributi privati.
+	// Intervallo di interrogazione predefinito verso i giocatori.
+	private static final long DEFAULT_INTERVAL = 5000;
+	private static final int DEFAULT_WORKERS = 4;
+	private final long interval;
+	private final ScheduledThreadPoolExecutor pool;
+	private final Executor pinger;
+	private final ConcurrentMap<Player, Liveness> players;
+	private final AtomicInteger watched;
+	private final AtomicLong pings;
+
+	/**
+	 * Costruttore di classe con intervallo di interrogazione e numero di
+	 * thread predefiniti.
+	 */
+	public HeartbeatScheduler() {
+		this(DEFAULT_INTERVAL, DEFAULT_WORKERS);
+	}
+
+	/**
+	 * Costruttore di classe.
+	 * 
+	 * @param interval
+	 *            intervallo di interrogazione dei player (in millisecondi).
+	 *            Un player viene interrogato solo se e' rimasto in silenzio
+	 *            per almeno un intervallo.
+	 * @param workers
+	 *            numero di thread del pool.
+	 */
+	public HeartbeatScheduler(long interval, int workers) {
+		this(interval, workers, null);
+	}
+
+	/**
+	 * Costruttore di classe.
+	 * 
+	 * @param interval
+	 *            intervallo di interrogazione dei player (in millisecondi).
+	 *            Un player viene interrogato solo se e' rimasto in silenzio
+	 *            per almeno un intervallo.
+	 * @param workers
+	 *            numero di thread del pool.
+	 * @param pinger
+	 *            esecutore su cui effettuare i ping e le notifiche di
+	 *            disconnessione; se null vengono effettuati dai thread del
+	 *            pool.
+	 */
+	public HeartbeatScheduler(long interval, int workers, Executor pinger) {
+		this.interval = interval;
+		this.players = new ConcurrentHashMap<Player, Liveness>();
+		this.watched = new AtomicInteger();
+		this.pings = new AtomicLong();
+		this.pool = new ScheduledThreadPoolExecutor(workers,
+				BlockingExecutors.daemon("heartbeat"));
+		// I monitoraggi annullati vengono rimossi subito dalla coda.
+		this.pool.setRemoveOnCancelPolicy(true);
+		this.pinger = (pinger != null) ? pinger : pool;
+	}
+
+	/**
+	 * Registra l'arrivo di una chiamata dal player <code>p</code>, che si
+	 * dimostra quindi connesso. Il costo e' quello di un accesso alla mappa
+	 * dei player monitorati.
+	 * 
+	 * @param p
+	 *            player che ha effettuato una chiamata al server.
+	 */
+	public void touch(Player p) {
+		Liveness l = players.get(p);
+		if (l != null)
+			l.lastSeen = System.nanoTime();
+	}
+
+	/**
+	 * Inizia a tenere traccia dell'ultima chiamata effettuata da un player
+	 * registrato. Il player non viene interrogato finche' non partecipa a una
+	 * partita.
+	 * 
+	 * @param p
+	 *            player registrato.
+	 */
+	public void track(Player p) {
+		liveness(p);
+	}
+
+	/**
+	 * Smette di tenere traccia di un player che si e' deregistrato. Le
+	 * partite eventualmente in corso restano monitorate.
+	 * 
+	 * @param p
+	 *            player deregistrato.
+	 */
+	public void untrack(Player p) {
+		Liveness l = players.get(p);
+		if (l != null) {
+			synchronized (l) {
+				if (l.games.isEmpty())
+					players.remove(p, l);
+			}
+		}
+	}
+
+	/**
+	 * Avvia il monitoraggio dei due player di una partita. Un player
+	 * impegnato in piu' partite viene comunque interrogato una sola volta per
+	 * intervallo.
+	 * 
+	 * @param player1
+	 *            primo player della partita.
+	 * @param player2
+	 *            secondo player della partita.
+	 * @return monitoraggio avviato, da annullare alla fine della partita.
+	 */
+	public Heartbeat watch(final Player player1, final Player player2) {
+		// Senza una coda di notifiche, l'avversario viene avvisato
+		// direttamente.
+		return watch(player1, player2, new LossHandler() {
+			@Override
+			public void playerLost(Player lost) {
+				foeDisconnected(lost.equals(player1) ? player2 : player1);
+			}
+		});
+	}
+
+	/**
+	 * Avvia il monitoraggio dei due player di una partita, affidando a
+	 * <code>handler</code> la perdita della connessione con uno dei due.
+	 * 
+	 * @param player1
+	 *            primo player della partita.
+	 * @param player2
+	 *            secondo player della partita.
+	 * @param handler
+	 *            gestore della perdita della connessione.
+	 * @return monitoraggio avviato, da annullare alla fine della partita.
+	 */
+	public Heartbeat watch(Player player1, Player player2,
+			LossHandler handler) {
+		Heartbeat h = new Heartbeat(player1, player2, handler);
+		watched.incrementAndGet();
+		attach(player1, h);
+		attach(player2, h);
+		return h;
+	}
+
+	/**
+	 * Restituisce il numero di partite correntemente monitorate.
+	 * 
+	 * @return numero di partite monitorate.
+	 */
+	public int getWatchedCount() {
+		return watched.get();
+	}
+
+	/**
+	 * Restituisce il numero di ping effettuati dall'avvio.
+	 * 
+	 * @return numero di ping effettuati.
+	 */
+	public long getPingCount() {
+		return pings.get();
+	}
+
+	/**
+	 * Restituisce il numero di thread del pool.
+	 * 
+	 * @return numero di thread.
+	 */
+	public int getWorkerCount() {
+		return pool.getCorePoolSize();
+	}
+
+	/**
+	 * Arresta il monitoraggio di tutte le partite.
+	 */
+	public void shutdown() {
+		pool.shutdownNow();
+	}
+
+	/*
+	 * Restituisce lo stato di connessione di un player, creandolo se non
+	 * presente.
+	 */
+	private Liveness liveness(Player p) {
+		Liveness l = players.get(p);
+		if (l == null) {
+			Liveness created = new Liveness(p);
+			l = players.putIfAbsent(p, created);
+			if (l == null)
+				l = created;
+		}
+		return l;
+	}
+
+	/*
+	 * Associa una partita al monitoraggio di un player, avviando le
+	 * interrogazioni se e' la prima partita del player.
+	 */
+	private void attach(Player p, Heartbeat h) {
+		while (true) {
+			Liveness l = liveness(p);
+			synchronized (l) {
+				// Lo stato potrebbe essere stato rimosso nel frattempo.
+				if (players.get(p) != l)
+					continue;
+				l.games.add(h);
+				if (l.future == null)
+					l.future = pool.scheduleWithFixedDelay(l, interval,
+							interval, TimeUnit.MILLISECONDS);
+				return;
+			}
+		}
+	}
+
+	/*
+	 * Dissocia una partita dal monitoraggio di un player, arrestando le
+	 * interrogazioni se non restano altre partite.
+	 */
+	private void detach(Player p, Heartbeat h) {
+		Liveness l = players.get(p);
+		if (l == null)
+			return;
+		synchronized (l) {
+			l.games.remove(h);
+			if (l.games.isEmpty() && l.future != null) {
+				l.future.cancel(false);
+				l.future = null;
+			}
+		}
+	}
+
+	/*
+	 * Notifica a un player la disconnessione dell'avversario, ignorando un
+	 * eventuale errore di comunicazione.
+	 */
+	private static void foeDisconnected(Player p) {
+		try {
+			p.foeDisconnected();
+		} catch (RemoteException e) {
+			// Anche questo player non e' piu' raggiungibile.
+		}
+	}
+
+	/*
+	 * Stato di connessione di un player: istante dell'ultima chiamata ricevuta
+	 * e partite monitorate in cui il player e' impegnato. Ad ogni intervallo il
+	 * player viene interrogato solo se e' rimasto in silenzio.
+	 */
+	private class Liveness implements Runnable {
+
+		private final Player player;
+		private final Set<Heartbeat> games;
+		private final AtomicBoolean pinging;
+		private volatile long lastSeen;
+		private ScheduledFuture<?> future;
+
+		public Liveness(Player player) {
+			this.player = player;
+			this.games = new HashSet<Heartbeat>();
+			this.pinging = new AtomicBoolean();
+			this.lastSeen = System.nanoTime();
+		}
+
+		/*
+		 * Eseguito ad ogni intervallo dal pool: se il player e' rimasto in
+		 * silenzio affida il ping all'esecutore, a meno che il precedente non
+		 * sia ancora in corso.
+		 */
+		@Override
+		public void run() {
+			long silence = System.nanoTime() - lastSeen;
+			if (silence < TimeUnit.MILLISECONDS.toNanos(interval))
+				return;
+			if (!pinging.compareAndSet(false, true))
+				return;
+			pinger.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						ping();
+					} finally {
+						pinging.set(false);
+					}
+				}
+			});
+		}
+
+		private void ping() {
+			try {
+				pings.incrementAndGet();
+				player.ping(); // Operazione di ping verso il giocatore.
+				lastSeen = System.nanoTime();
+			} catch (RemoteException e) {
+				// Il player non risponde: si notifica l'evento agli
+				// avversari di tutte le sue partite.
+				List<Heartbeat> lost;
+				synchronized (this) {
+					lost = new ArrayList<Heartbeat>(games);
+				}
+				for (Heartbeat h : lost)
+					h.playerLost(player);
+				players.remove(player, this);
+			}
+		}
+
+	} // Chiusura della inner-class.
+
+	/**
+	 * Monitoraggio di una partita. Se uno dei due player non risponde,
+	 * l'evento viene notificato all'altro e il monitoraggio termina.
+	 */
+	public class Heartbeat {
+
+		// Attributi privati.
+		private final Player player1;
+		private final Player player2;
+		private final LossHandler handler;
+		private boolean cancelled;
+		private Player lost;
+
+		/*
+		 * Costruttore della classe Heartbeat.
+		 */
+		private Heartbeat(Player player1, Player player2, LossHandler handler) {
+			this.player1 = player1;
+			this.player2 = player2;
+			this.handler = handler;
+		}
+
+		/**
+		 * Registra l'arrivo di una chiamata da uno dei player della partita.
+		 * 
+		 * @param p
+		 *            player che ha effettuato una chiamata al server.
+		 */
+		public void touch(Player p) {
+			HeartbeatScheduler.this.touch(p);
+		}
+
+		/**
+		 * Annulla il monitoraggio della partita. Il metodo puo' essere
+		 * invocato piu' volte.
+		 */
+		public void cancel() {
+			synchronized (this) {
+				if (cancelled)
+					return;
+				cancelled = true;
+			}
+			watched.decrementAndGet();
+			detach(player1, this);
+			detach(player2, this);
+		}
+
+		/**
+		 * Riprende il monitoraggio della partita dopo che e' stato annullato,
+		 * ad esempio quando i due player giocano la rivincita. Il metodo non ha
+		 * effetto se il monitoraggio e' ancora attivo.
+		 */
+		public void resume() {
+			synchronized (this) {
+				if (!cancelled)
+					return;
+				cancelled = false;
+			}
+			watched.incrementAndGet();
+			attach(player1, this);
+			attach(player2, this);
+		}
+
+		/**
+		 * Restituisce il player che ha smesso di rispondere ai ping durante la
+		 * partita.
+		 * 
+		 * @return player non piu' raggiungibile, null se entrambi i player
+		 *         hanno risposto.
+		 */
+		public synchronized Player getLostPlayer() {
+			return lost;
+		}
+
+		/*
+		 * Affida al gestore della partita la perdita del player p e annulla il
+		 * monitoraggio.
+		 */
+		private void playerLost(Player p) {
+			synchronized (this) {
+				if (cancelled)
+					return;
+				lost = p;
+			}
+			handler.playerLost(p);
+			cancel();
+		}
+
+	} // Chiusura della inner-class.
+
+}
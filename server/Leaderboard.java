@@ -0,0 +1,280 @@
+package server;
+
+import java.util.*;
+
+/**
+ * Classifica dei player ordinata per rating decrescente e, a parita' di
+ * rating, per id crescente. La classifica e' un albero di ricerca bilanciato
+ * (treap) in cui ogni nodo conosce la dimensione del proprio sottoalbero: la
+ * posizione di un player e la pagina che comincia da una data posizione si
+ * ottengono in tempo O(log n), senza scorrere i player che precedono.<br/>
+ * I nodi sono memorizzati in array di tipi primitivi, indicizzati dal numero
+ * del nodo: la classifica non alloca alcun oggetto per player. I nodi liberati
+ * dalla rimozione di un player vengono riutilizzati.<br/>
+ * Tutti i metodi sono sincronizzati: la classifica viene modificata da un
+ * solo thread ({@link RatingEngine}) e letta dai thread delle chiamate
+ * remote.
+ * 
+ * @author Gennaro Capo
+ * @author Mirko Conte
+ * @author Vincenzo De Notaris
+ * @author Roberto Pacilio
+ * @version 1.0
+ * @see server.RatingEngine
+ */
+public class Leaderboard {
+
+	// Attributi privati.
+	// Nodo sentinella: rappresenta il sottoalbero vuoto.
+	private static final int NIL = 0;
+	private static final int INITIAL_CAPACITY = 1024;
+	private final Random random;
+	private int[] left;
+	private int[] right;
+	private int[] size;
+	private int[] priority;
+	private double[] rating;
+	private long[] player;
+	private int root;
+	private int used;
+	private int free;
+
+	/**
+	 * Costruttore di classe. Crea una classifica vuota.
+	 */
+	public Leaderboard() {
+		random = new Random();
+		left = new int[INITIAL_CAPACITY];
+		right = new int[INITIAL_CAPACITY];
+		size = new int[INITIAL_CAPACITY];
+		priority = new int[INITIAL_CAPACITY];
+		rating = new double[INITIAL_CAPACITY];
+		player = new long[INITIAL_CAPACITY];
+		root = NIL;
+		used = 1;
+		free = NIL;
+	}
+
+	/**
+	 * Aggiorna il rating di un player, inserendolo nella classifica se non e'
+	 * ancora presente.
+	 * 
+	 * @param p
+	 *            id del player.
+	 * @param oldRating
+	 *            rating con cui il player e' presente nella classifica, 0 se
+	 *            non e' presente.
+	 * @param newRating
+	 *            nuovo rating del player.
+	 */
+	public synchronized void put(long p, double oldRating, double newRating) {
+		if (oldRating != 0)
+			root = remove(root, oldRating, p);
+		int n = allocate();
+		left[n] = NIL;
+		right[n] = NIL;
+		size[n] = 1;
+		priority[n] = random.nextInt();
+		rating[n] = newRating;
+		player[n] = p;
+		root = insert(root, n);
+	}
+
+	/**
+	 * Restituisce la posizione in classifica di un player.
+	 * 
+	 * @param p
+	 *            id del player.
+	 * @param r
+	 *            rating del player.
+	 * @return posizione del player, a partire da 1.
+	 */
+	public synchronized int rank(long p, double r) {
+		int before = 0;
+		int t = root;
+		while (t != NIL) {
+			int c = compare(r, p, t);
+			if (c == 0)
+				return before + size[left[t]] + 1;
+			if (c < 0)
+				t = left[t];
+			else {
+				before += size[left[t]] + 1;
+				t = right[t];
+			}
+		}
+		return before + 1;
+	}
+
+	/**
+	 * Copia negli array forniti una pagina della classifica.
+	 * 
+	 * @param offset
+	 *            numero di player da saltare.
+	 * @param players
+	 *            array in cui copiare gli id dei player; la sua lunghezza
+	 *            stabilisce il numero massimo di player della pagina.
+	 * @param ratings
+	 *            array in cui copiare i rating, lungo almeno quanto
+	 *            <code>players</code>.
+	 * @return numero di player copiati.
+	 */
+	public synchronized int page(int offset, long[] players, double[] ratings) {
+		if (offset < 0 || offset >= size[root])
+			return 0;
+		// Discesa fino al nodo di posizione offset: restano sulla pila gli
+		// antenati che lo seguono nell'ordine della classifica.
+		int[] stack = new int[64];
+		int top = 0;
+		int t = root;
+		int k = offset;
+		while (true) {
+			int l = size[left[t]];
+			if (k < l) {
+				stack = push(stack, top++, t);
+				t = left[t];
+			} else if (k == l) {
+				stack = push(stack, top++, t);
+				break;
+			} else {
+				k -= l + 1;
+				t = right[t];
+			}
+		}
+		int count = 0;
+		while (top > 0 && count < players.length) {
+			int n = stack[--top];
+			players[count] = player[n];
+			ratings[count] = rating[n];
+			count++;
+			for (t = right[n]; t != NIL; t = left[t])
+				stack = push(stack, top++, t);
+		}
+		return count;
+	}
+
+	/**
+	 * Restituisce il numero di player in classifica.
+	 * 
+	 * @return numero di player.
+	 */
+	public synchronized int size() {
+		return size[root];
+	}
+
+	/*
+	 * Confronta la chiave (r, p) con quella del nodo t: negativo se la chiave
+	 * precede il nodo in classifica, positivo se lo segue.
+	 */
+	private int compare(double r, long p, int t) {
+		if (r != rating[t])
+			return (r > rating[t]) ? -1 : 1;
+		if (p != player[t])
+			return (p < player[t]) ? -1 : 1;
+		return 0;
+	}
+
+	private int insert(int t, int n) {
+		if (t == NIL)
+			return n;
+		if (compare(rating[n], player[n], t) < 0) {
+			left[t] = insert(left[t], n);
+			if (priority[left[t]] > priority[t])
+				t = rotateRight(t);
+		} else {
+			right[t] = insert(right[t], n);
+			if (priority[right[t]] > priority[t])
+				t = rotateLeft(t);
+		}
+		update(t);
+		return t;
+	}
+
+	private int remove(int t, double r, long p) {
+		if (t == NIL)
+			return NIL;
+		int c = compare(r, p, t);
+		if (c < 0)
+			left[t] = remove(left[t], r, p);
+		else if (c > 0)
+			right[t] = remove(right[t], r, p);
+		else {
+			int n = merge(left[t], right[t]);
+			left[t] = free;
+			free = t;
+			return n;
+		}
+		update(t);
+		return t;
+	}
+
+	/*
+	 * Unisce due sottoalberi, i cui nodi di a precedono tutti quelli di b.
+	 */
+	private int merge(int a, int b) {
+		if (a == NIL)
+			return b;
+		if (b == NIL)
+			return a;
+		if (priority[a] > priority[b]) {
+			right[a] = merge(right[a], b);
+			update(a);
+			return a;
+		}
+		left[b] = merge(a, left[b]);
+		update(b);
+		return b;
+	}
+
+	private int rotateRight(int t) {
+		int l = left[t];
+		left[t] = right[l];
+		right[l] = t;
+		update(t);
+		update(l);
+		return l;
+	}
+
+	private int rotateLeft(int t) {
+		int r = right[t];
+		right[t] = left[r];
+		left[r] = t;
+		update(t);
+		update(r);
+		return r;
+	}
+
+	private void update(int t) {
+		size[t] = 1 + size[left[t]] + size[right[t]];
+	}
+
+	/*
+	 * Restituisce un nodo libero, riutilizzando quelli rimossi o ingrandendo
+	 * gli array.
+	 */
+	private int allocate() {
+		if (free != NIL) {
+			int n = free;
+			free = left[n];
+			return n;
+		}
+		if (used == left.length) {
+			int capacity = 2 * used;
+			left = Arrays.copyOf(left, capacity);
+			right = Arrays.copyOf(right, capacity);
+			size = Arrays.copyOf(size, capacity);
+			priority = Arrays.copyOf(priority, capacity);
+			rating = Arrays.copyOf(rating, capacity);
+			player = Arrays.copyOf(player, capacity);
+		}
+		return used++;
+	}
+
+	private static int[] push(int[] stack, int top, int n) {
+		if (top == stack.length)
+			stack = Arrays.copyOf(stack, 2 * top);
+		stack[top] = n;
+		return stack;
+	}
+
+}
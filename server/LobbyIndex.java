@@ -0,0 +1,440 @@
+package server;
+
+import java.util.*;
+import java.util.concurrent.*;
+import api.LobbyDelta;
+
+/**
+ * Indice delle partite presenti nella game room, mantenuto ordinato per ora di
+ * creazione (dalla piu' recente alla meno recente). L'ora di creazione viene
+ * estratta dall'id della partita una sola volta, all'atto dell'inserimento,
+ * cosi' che la lettura della lista non richieda alcun ordinamento.<br/>
+ * Le partite sono ordinate in un albero di ricerca bilanciato (treap) in cui
+ * ogni nodo conosce la dimensione del proprio sottoalbero, come in
+ * {@link Leaderboard}: la lettura di una pagina di <code>limit</code> partite
+ * costa O(log n + limit), qualunque sia la sua posizione nella lista.<br/>
+ * L'indice ha inoltre una versione che cresce ad ogni modifica: le ultime
+ * modifiche vengono conservate in un registro circolare, cosi' da poter
+ * fornire ai client soltanto le differenze rispetto all'ultima versione da
+ * essi ricevuta. Le modifiche e le letture dell'albero acquisiscono
+ * brevemente il lock del registro, senza effettuare I/O; la lettura della
+ * versione non acquisisce alcun lock.
+ * 
+ * @author Gennaro Capo
+ * @author Mirko Conte
+ * @author Vincenzo De Notaris
+ * @author Roberto Pacilio
+ * @version 1.0
+ * @see server.TicTacToeServerImpl
+ */
+public class LobbyIndex {
+
+	// Attributi privati.
+	private static final int UNKNOWN_TIME = -1;
+	// Numero di modifiche conservate nel registro (potenza di 2).
+	private static final int LOG_CAPACITY = 4096;
+	// Nodo sentinella dell'albero: rappresenta il sottoalbero vuoto.
+	private static final int NIL = 0;
+	private static final int INITIAL_CAPACITY = 64;
+	private final ConcurrentMap<String, Entry> entries;
+	private final Object logLock;
+	private final String[] logIds;
+	private final boolean[] logAdded;
+	private volatile long version;
+	private final Random random;
+	private int[] left;
+	private int[] right;
+	private int[] size;
+	private int[] priority;
+	private Entry[] node;
+	private int root;
+	private int used;
+	private int free;
+
+	/**
+	 * Costruttore di classe. Crea un indice vuoto. La versione iniziale e'
+	 * derivata dall'ora di avvio, cosi' che le versioni ricevute da un client
+	 * prima di un riavvio del server non vengano confuse con quelle correnti.
+	 */
+	public LobbyIndex() {
+		entries = new ConcurrentHashMap<String, Entry>();
+		logLock = new Object();
+		logIds = new String[LOG_CAPACITY];
+		logAdded = new boolean[LOG_CAPACITY];
+		version = System.currentTimeMillis() * 1000;
+		random = new Random();
+		left = new int[INITIAL_CAPACITY];
+		right = new int[INITIAL_CAPACITY];
+		size = new int[INITIAL_CAPACITY];
+		priority = new int[INITIAL_CAPACITY];
+		node = new Entry[INITIAL_CAPACITY];
+		root = NIL;
+		used = 1;
+		free = NIL;
+	}
+
+	/**
+	 * Aggiunge una partita all'indice.
+	 * 
+	 * @param idGame
+	 *            id della partita. Formato richiesto:
+	 *            nickname-ora_di_creazione_partita. Es: mrossi-12:23:22
+	 */
+	public void add(String idGame) {
+		Entry e = new Entry(idGame, creationTime(idGame));
+		synchronized (logLock) {
+			if (entries.putIfAbsent(idGame, e) == null) {
+				int n = allocate();
+				left[n] = NIL;
+				right[n] = NIL;
+				size[n] = 1;
+				priority[n] = random.nextInt();
+				node[n] = e;
+				root = insert(root, n);
+				append(idGame, true);
+			}
+		}
+	}
+
+	/**
+	 * Rimuove una partita dall'indice.
+	 * 
+	 * @param idGame
+	 *            id della partita da rimuovere.
+	 */
+	public void remove(String idGame) {
+		synchronized (logLock) {
+			Entry e = entries.remove(idGame);
+			if (e != null) {
+				root = remove(root, e);
+				append(idGame, false);
+			}
+		}
+	}
+
+	/**
+	 * Restituisce la versione corrente dell'indice.
+	 * 
+	 * @return versione corrente.
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Restituisce le modifiche subite dall'indice a partire dalla versione
+	 * <code>from</code>. Una partita aggiunta e poi rimossa nello stesso
+	 * intervallo non compare nel delta. Se la versione richiesta non e' piu'
+	 * presente nel registro viene restituita l'intera lista.
+	 * 
+	 * @param from
+	 *            ultima versione nota al client.
+	 * @return delta tra la versione <code>from</code> e quella corrente.
+	 */
+	public LobbyDelta since(long from) {
+		if (from == version)
+			return new LobbyDelta(from);
+		synchronized (logLock) {
+			long current = version;
+			if (from == current)
+				return new LobbyDelta(current);
+			if (from > current || from < current - LOG_CAPACITY)
+				return snapshot(from, current);
+
+			// Per ogni partita si confronta la presenza prima e dopo
+			// l'intervallo di versioni considerato.
+			Map<String, boolean[]> net = new HashMap<String, boolean[]>();
+			for (long v = from + 1; v <= current; v++) {
+				int slot = (int) (v & (LOG_CAPACITY - 1));
+				boolean[] state = net.get(logIds[slot]);
+				if (state == null) {
+					state = new boolean[] { !logAdded[slot], false };
+					net.put(logIds[slot], state);
+				}
+				state[1] = logAdded[slot];
+			}
+			List<Entry> added = new ArrayList<Entry>();
+			ArrayList<String> removed = new ArrayList<String>();
+			for (Map.Entry<String, boolean[]> n : net.entrySet()) {
+				boolean before = n.getValue()[0];
+				boolean after = n.getValue()[1];
+				if (before)
+					removed.add(n.getKey());
+				if (after)
+					added.add(entries.get(n.getKey()));
+			}
+			Collections.sort(added);
+			return delta(from, current, false, added, removed);
+		}
+	}
+
+	/**
+	 * Restituisce il numero di partite presenti nell'indice.
+	 * 
+	 * @return numero di partite indicizzate.
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Restituisce una pagina della lista delle partite, ordinate dalla piu'
+	 * recente alla meno recente, in tempo O(log n + limit).
+	 * 
+	 * @param offset
+	 *            numero di partite da saltare.
+	 * @param limit
+	 *            numero massimo di partite da restituire.
+	 * @return pagina della lista delle partite.
+	 */
+	public ArrayList<String> page(int offset, int limit) {
+		ArrayList<String> page = new ArrayList<String>();
+		if (offset < 0 || limit <= 0)
+			return page;
+		synchronized (logLock) {
+			for (Entry e : range(offset, limit))
+				page.add(e.id);
+		}
+		return page;
+	}
+
+	/**
+	 * Restituisce la lista completa delle partite, ordinate dalla piu' recente
+	 * alla meno recente.
+	 * 
+	 * @return lista delle partite.
+	 */
+	public ArrayList<String> all() {
+		ArrayList<String> all = new ArrayList<String>(entries.size());
+		synchronized (logLock) {
+			for (Entry e : range(0, Integer.MAX_VALUE))
+				all.add(e.id);
+		}
+		return all;
+	}
+
+	/*
+	 * Registra una modifica nel registro circolare, incrementando la versione.
+	 * Va invocato detenendo il lock del registro.
+	 */
+	private void append(String idGame, boolean added) {
+		long v = version + 1;
+		int slot = (int) (v & (LOG_CAPACITY - 1));
+		logIds[slot] = idGame;
+		logAdded[slot] = added;
+		version = v;
+	}
+
+	/*
+	 * Costruisce un delta contenente l'intera lista. Va invocato detenendo il
+	 * lock del registro.
+	 */
+	private LobbyDelta snapshot(long from, long current) {
+		return delta(from, current, true, range(0, Integer.MAX_VALUE),
+				new ArrayList<String>(0));
+	}
+
+	/*
+	 * Restituisce le partite dalla posizione offset, al piu' limit. Va
+	 * invocato detenendo il lock del registro.
+	 */
+	private List<Entry> range(int offset, int limit) {
+		List<Entry> range = new ArrayList<Entry>();
+		if (offset >= size[root])
+			return range;
+		// Discesa fino al nodo di posizione offset: restano sulla pila gli
+		// antenati che lo seguono nell'ordine della lista.
+		int[] stack = new int[64];
+		int top = 0;
+		int t = root;
+		int k = offset;
+		while (true) {
+			int l = size[left[t]];
+			if (k < l) {
+				stack = push(stack, top++, t);
+				t = left[t];
+			} else if (k == l) {
+				stack = push(stack, top++, t);
+				break;
+			} else {
+				k -= l + 1;
+				t = right[t];
+			}
+		}
+		while (top > 0 && range.size() < limit) {
+			int n = stack[--top];
+			range.add(node[n]);
+			for (t = right[n]; t != NIL; t = left[t])
+				stack = push(stack, top++, t);
+		}
+		return range;
+	}
+
+	private int insert(int t, int n) {
+		if (t == NIL)
+			return n;
+		if (node[n].compareTo(node[t]) < 0) {
+			left[t] = insert(left[t], n);
+			if (priority[left[t]] > priority[t])
+				t = rotateRight(t);
+		} else {
+			right[t] = insert(right[t], n);
+			if (priority[right[t]] > priority[t])
+				t = rotateLeft(t);
+		}
+		update(t);
+		return t;
+	}
+
+	private int remove(int t, Entry e) {
+		if (t == NIL)
+			return NIL;
+		int c = e.compareTo(node[t]);
+		if (c < 0)
+			left[t] = remove(left[t], e);
+		else if (c > 0)
+			right[t] = remove(right[t], e);
+		else {
+			int n = merge(left[t], right[t]);
+			node[t] = null;
+			left[t] = free;
+			free = t;
+			return n;
+		}
+		update(t);
+		return t;
+	}
+
+	/*
+	 * Unisce due sottoalberi, i cui nodi di a precedono tutti quelli di b.
+	 */
+	private int merge(int a, int b) {
+		if (a == NIL)
+			return b;
+		if (b == NIL)
+			return a;
+		if (priority[a] > priority[b]) {
+			right[a] = merge(right[a], b);
+			update(a);
+			return a;
+		}
+		left[b] = merge(a, left[b]);
+		update(b);
+		return b;
+	}
+
+	private int rotateRight(int t) {
+		int l = left[t];
+		left[t] = right[l];
+		right[l] = t;
+		update(t);
+		update(l);
+		return l;
+	}
+
+	private int rotateLeft(int t) {
+		int r = right[t];
+		right[t] = left[r];
+		left[r] = t;
+		update(t);
+		update(r);
+		return r;
+	}
+
+	private void update(int t) {
+		size[t] = 1 + size[left[t]] + size[right[t]];
+	}
+
+	/*
+	 * Restituisce un nodo libero, riutilizzando quelli rimossi o ingrandendo
+	 * gli array.
+	 */
+	private int allocate() {
+		if (free != NIL) {
+			int n = free;
+			free = left[n];
+			return n;
+		}
+		if (used == left.length) {
+			int capacity = 2 * used;
+			left = Arrays.copyOf(left, capacity);
+			right = Arrays.copyOf(right, capacity);
+			size = Arrays.copyOf(size, capacity);
+			priority = Arrays.copyOf(priority, capacity);
+			node = Arrays.copyOf(node, capacity);
+		}
+		return used++;
+	}
+
+	private static int[] push(int[] stack, int top, int n) {
+		if (top == stack.length)
+			stack = Arrays.copyOf(stack, 2 * top);
+		stack[top] = n;
+		return stack;
+	}
+
+	private static LobbyDelta delta(long from, long version,
+			boolean snapshot, List<Entry> added, ArrayList<String> removed) {
+		ArrayList<String> ids = new ArrayList<String>(added.size());
+		int[] times = new int[added.size()];
+		for (int i = 0; i < times.length; i++) {
+			ids.add(added.get(i).id);
+			times[i] = added.get(i).time;
+		}
+		return new LobbyDelta(from, version, snapshot, ids, times, removed);
+	}
+
+	/*
+	 * Estrae dall'id della partita l'ora di creazione espressa in secondi dalla
+	 * mezzanotte. Se l'id non rispetta il formato richiesto restituisce
+	 * UNKNOWN_TIME e la partita viene posta in fondo alla lista.
+	 */
+	static int creationTime(String idGame) {
+		int dash = idGame.indexOf('-');
+		if (dash < 0)
+			return UNKNOWN_TIME;
+		int seconds = 0;
+		int field = 0;
+		int fields = 1;
+		for (int i = dash + 1; i < idGame.length(); i++) {
+			char c = idGame.charAt(i);
+			if (c >= '0' && c <= '9')
+				field = field * 10 + (c - '0');
+			else if (c == ':') {
+				seconds = seconds * 60 + field;
+				field = 0;
+				fields++;
+			} else if (c == '-')
+				break;
+			else if (c != ' ')
+				return UNKNOWN_TIME;
+		}
+		if (fields != 3)
+			return UNKNOWN_TIME;
+		return seconds * 60 + field;
+	}
+
+	/*
+	 * Elemento dell'indice: le partite sono ordinate per ora di creazione
+	 * decrescente e, a parita' di ora, per id.
+	 */
+	private static class Entry implements Comparable<Entry> {
+
+		private final String id;
+		private final int time;
+
+		public Entry(String id, int time) {
+			this.id = id;
+			this.time = time;
+		}
+
+		@Override
+		public int compareTo(Entry o) {
+			if (time != o.time)
+				return (time > o.time) ? -1 : 1;
+			return id.compareTo(o.id);
+		}
+
+	} // Chiusura della inner-class.
+
+}
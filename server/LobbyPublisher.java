@@ -0,0 +1,183 @@
+package server;
+
+import java.rmi.RemoteException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import api.*;
+
+/**
+ * Invia ai client sottoscritti le modifiche subite dalla lista delle partite.
+ * Le modifiche non vengono inviate singolarmente: ad ogni intervallo di
+ * notifica, se la versione della lista e' cambiata, ogni sottoscrittore riceve
+ * un unico delta che accorpa tutte le modifiche avvenute dall'ultima versione
+ * ricevuta.<br/>
+ * Le notifiche sono effettuate dall'esecutore del lavoro bloccante del server
+ * e ogni sottoscrittore ha al piu' una notifica in corso: un client lento non
+ * rallenta gli altri. I sottoscrittori che non rispondono vengono rimossi.
+ * 
+ * @author Gennaro Capo
+ * @author Mirko Conte
+ * @author Vincenzo De Notaris
+ * @author Roberto Pacilio
+ * @version 1.0
+ * @see api.LobbyListener
+ */
+public class LobbyPublisher {
+
+	// Attributi privati.
+	// Intervallo di accorpamento delle notifiche (in millisecondi).
+	private static final long FLUSH_INTERVAL = 100;
+	private final LobbyIndex lobby;
+	private final ConcurrentMap<LobbyListener, Subscription> subscribers;
+	private final Executor senders;
+	private ScheduledExecutorService flusher;
+	private long lastFlushed;
+	private boolean stopped;
+
+	/**
+	 * Costruttore di classe. Il thread che accorpa le notifiche viene creato
+	 * alla prima sottoscrizione.
+	 * 
+	 * @param lobby
+	 *            lista delle partite da notificare.
+	 * @param senders
+	 *            esecutore su cui effettuare le notifiche.
+	 */
+	public LobbyPublisher(LobbyIndex lobby, Executor senders) {
+		this.lobby = lobby;
+		this.senders = senders;
+		this.subscribers = new ConcurrentHashMap<LobbyListener, Subscription>();
+	}
+
+	/**
+	 * Sottoscrive un client alle modifiche della lista delle partite. Se la
+	 * versione nota al client non e' quella corrente, il client riceve subito
+	 * il delta che lo aggiorna, senza attendere una nuova modifica della
+	 * lista.
+	 * 
+	 * @param l
+	 *            oggetto di callback del client.
+	 * @param version
+	 *            ultima versione della lista nota al client.
+	 */
+	public void subscribe(LobbyListener l, long version) {
+		if (!start())
+			return;
+		Subscription s = new Subscription(l, version);
+		subscribers.put(l, s);
+		if (version != lobby.getVersion()
+				&& s.inFlight.compareAndSet(false, true))
+			senders.execute(s);
+	}
+
+	/**
+	 * Annulla la sottoscrizione di un client.
+	 * 
+	 * @param l
+	 *            oggetto di callback del client.
+	 */
+	public void unsubscribe(LobbyListener l) {
+		subscribers.remove(l);
+	}
+
+	/**
+	 * Restituisce il numero di client sottoscritti.
+	 * 
+	 * @return numero di sottoscrittori.
+	 */
+	public int getSubscriberCount() {
+		return subscribers.size();
+	}
+
+	/**
+	 * Arresta il thread che accorpa le notifiche e annulla tutte le
+	 * sottoscrizioni. Le sottoscrizioni successive vengono ignorate.
+	 */
+	public synchronized void shutdown() {
+		stopped = true;
+		subscribers.clear();
+		if (flusher != null) {
+			flusher.shutdownNow();
+			flusher = null;
+		}
+	}
+
+	/*
+	 * Avvia il thread che accorpa le notifiche, se non e' gia' attivo.
+	 * Restituisce false se il publisher e' stato arrestato.
+	 */
+	private synchronized boolean start() {
+		if (stopped)
+			return false;
+		if (flusher != null)
+			return true;
+		flusher = Executors.newSingleThreadScheduledExecutor(BlockingExecutors
+				.daemon("lobby-flush"));
+		lastFlushed = lobby.getVersion();
+		flusher.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				flush();
+			}
+		}, FLUSH_INTERVAL, FLUSH_INTERVAL, TimeUnit.MILLISECONDS);
+		return true;
+	}
+
+	/*
+	 * Se la lista e' cambiata dall'ultimo intervallo, invia un delta a ogni
+	 * sottoscrittore che non ha gia' una notifica in corso. I sottoscrittori
+	 * saltati verranno aggiornati all'intervallo successivo.
+	 */
+	private void flush() {
+		long current = lobby.getVersion();
+		if (current == lastFlushed)
+			return;
+		boolean pending = false;
+		for (Subscription s : subscribers.values()) {
+			if (s.version == current)
+				continue;
+			if (s.inFlight.compareAndSet(false, true))
+				senders.execute(s);
+			else
+				pending = true;
+		}
+		if (!pending)
+			lastFlushed = current;
+	}
+
+	/*
+	 * Sottoscrizione di un client: conserva l'ultima versione inviata e
+	 * impedisce che vi sia piu' di una notifica in corso verso lo stesso
+	 * client.
+	 */
+	private class Subscription implements Runnable {
+
+		private final LobbyListener listener;
+		private final AtomicBoolean inFlight;
+		private volatile long version;
+
+		public Subscription(LobbyListener listener, long version) {
+			this.listener = listener;
+			this.inFlight = new AtomicBoolean();
+			this.version = version;
+		}
+
+		@Override
+		public void run() {
+			try {
+				LobbyDelta delta = lobby.since(version);
+				if (!delta.isUnchanged())
+					listener.lobbyChanged(delta);
+				version = delta.getVersion();
+			} catch (RemoteException e) {
+				// Il client non e' piu' raggiungibile.
+				subscribers.remove(listener, this);
+			} finally {
+				inFlight.set(false);
+			}
+		}
+
+	} // Chiusura della inner-class.
+
+}
@@ -0,0 +1,202 @@
+package server;
+
+import api.Game;
+
+/**
+ * Griglia di gioco di dimensioni arbitrarie (ad esempio 15x15 con cinque in
+ * fila). Il risultato della partita viene aggiornato in maniera incrementale
+ * ad ogni mossa: si esaminano soltanto le quattro linee che passano per la
+ * casella appena occupata, per al piu' <code>winLength - 1</code> caselle in
+ * ciascun verso, cosi' che una mossa costi O(k) e non O(n<sup>2</sup>).
+ * 
+ * @author Gennaro Capo
+ * @author Mirko Conte
+ * @author Vincenzo De Notaris
+ * @author Roberto Pacilio
+ * @version 1.0
+ * @see server.Board
+ */
+public class MnkBoard implements Board {
+
+	/**
+	 * Dimensione massima di un lato della griglia.
+	 */
+	public static final int MAX_DIMENSION = 64;
+
+	// Attributi privati.
+	// Direzioni esaminate: orizzontale, verticale e le due diagonali.
+	private static final int[] DR = { 0, 1, 1, 1 };
+	private static final int[] DC = { 1, 0, 1, -1 };
+	private final int width;
+	private final int height;
+	private final int winLength;
+	private final byte[] cells;
+	private int filled;
+	private int result;
+
+	/**
+	 * Costruttore di classe.
+	 * 
+	 * @param width
+	 *            numero di colonne, compreso tra 1 e MAX_DIMENSION.
+	 * @param height
+	 *            numero di righe, compreso tra 1 e MAX_DIMENSION.
+	 * @param winLength
+	 *            simboli consecutivi necessari per vincere, compreso tra 1 e
+	 *            il lato maggiore della griglia.
+	 * @throws IllegalArgumentException
+	 *             se le dimensioni non sono valide.
+	 */
+	public MnkBoard(int width, int height, int winLength) {
+		if (width < 1 || width > MAX_DIMENSION || height < 1
+				|| height > MAX_DIMENSION || winLength < 1
+				|| winLength > Math.max(width, height))
+			throw new IllegalArgumentException("Invalid board " + width + "x"
+					+ height + " k=" + winLength);
+		this.width = width;
+		this.height = height;
+		this.winLength = winLength;
+		this.cells = new byte[width * height];
+	}
+
+	/**
+	 * Costruttore di copia.
+	 * 
+	 * @param other
+	 *            griglia da copiare.
+	 */
+	public MnkBoard(MnkBoard other) {
+		this.width = other.width;
+		this.height = other.height;
+		this.winLength = other.winLength;
+		this.cells = other.cells.clone();
+		this.filled = other.filled;
+		this.result = other.result;
+	}
+
+	/**
+	 * Crea la griglia piu' adatta alle dimensioni richieste: per la griglia
+	 * classica 3x3 con tre in fila viene usata {@link BitBoard}.
+	 * 
+	 * @param width
+	 *            numero di colonne.
+	 * @param height
+	 *            numero di righe.
+	 * @param winLength
+	 *            simboli consecutivi necessari per vincere.
+	 * @return griglia vuota.
+	 * @throws IllegalArgumentException
+	 *             se le dimensioni non sono valide.
+	 */
+	public static Board create(int width, int height, int winLength) {
+		if (width == Game.GRID_DIMENSION && height == Game.GRID_DIMENSION
+				&& winLength == Game.GRID_DIMENSION)
+			return new BitBoard();
+		return new MnkBoard(width, height, winLength);
+	}
+
+	@Override
+	public int getWidth() {
+		return width;
+	}
+
+	@Override
+	public int getHeight() {
+		return height;
+	}
+
+	@Override
+	public int getWinLength() {
+		return winLength;
+	}
+
+	@Override
+	public boolean play(int m, int value) {
+		if (cells[m] != Game.FREE_CELL)
+			return false;
+		cells[m] = (byte) value;
+		filled++;
+		if (result == 0) {
+			if (longestLine(m, value) >= winLength)
+				result = value;
+			else if (filled == cells.length)
+				result = 3;
+		}
+		return true;
+	}
+
+	@Override
+	public int cell(int m) {
+		return cells[m];
+	}
+
+	@Override
+	public int result() {
+		return result;
+	}
+
+	/**
+	 * Annulla la mossa <code>m</code>, che deve essere l'ultima inserita. Se
+	 * la mossa aveva concluso la partita, la partita torna in corso. Usato
+	 * dalla ricerca per esplorare le varianti senza copiare la griglia.
+	 * 
+	 * @param m
+	 *            ultima mossa inserita.
+	 */
+	public void undo(int m) {
+		cells[m] = (byte) Game.FREE_CELL;
+		filled--;
+		result = 0;
+	}
+
+	/**
+	 * Restituisce il numero di caselle occupate.
+	 * 
+	 * @return numero di caselle occupate.
+	 */
+	public int getFilled() {
+		return filled;
+	}
+
+	@Override
+	public void clear() {
+		java.util.Arrays.fill(cells, (byte) Game.FREE_CELL);
+		filled = 0;
+		result = 0;
+	}
+
+	/*
+	 * Restituisce la linea piu' lunga di simboli value passante per la casella
+	 * m, fermandosi non appena raggiunge winLength.
+	 */
+	private int longestLine(int m, int value) {
+		int r = m / width;
+		int c = m % width;
+		int longest = 1;
+		for (int d = 0; d < DR.length && longest < winLength; d++) {
+			int count = 1 + run(r, c, DR[d], DC[d], value)
+					+ run(r, c, -DR[d], -DC[d], value);
+			if (count > longest)
+				longest = count;
+		}
+		return longest;
+	}
+
+	/*
+	 * Conta i simboli value consecutivi a partire dalla casella (r, c),
+	 * esclusa, nel verso (dr, dc).
+	 */
+	private int run(int r, int c, int dr, int dc, int value) {
+		int count = 0;
+		r += dr;
+		c += dc;
+		while (count < winLength - 1 && r >= 0 && r < height && c >= 0
+				&& c < width && cells[r * width + c] == value) {
+			count++;
+			r += dr;
+			c += dc;
+		}
+		return count;
+	}
+
+}
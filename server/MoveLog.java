@@ -0,0 +1,1020 @@
+package server;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.CRC32;
+
+/**
+ * Registro persistente, in sola aggiunta, degli eventi della game room e delle
+ * partite: creazione, ingresso dello sfidante, inizio, mossa, risultato e
+ * rimozione. Al riavvio del server il registro viene riletto per ricostruire
+ * le partite in corso.<br/>
+ * I record vengono accumulati in memoria e scritti su disco da un unico thread
+ * (group commit): tutti i record accodati durante una scrittura, da qualsiasi
+ * partita, vengono resi persistenti con la scrittura successiva, cosi' che
+ * la durabilita' costi una sola fsync per finestra di scrittura e non una per
+ * mossa. Chi deve attendere la persistenza di un record usa la posizione
+ * restituita dall'aggiunta con {@link #sync(long)}; chi non deve bloccarsi
+ * la usa con {@link #whenDurable(long, Runnable)}, che esegue un'azione al
+ * termine della scrittura.<br/>
+ * 
+ * Il registro e' diviso in segmenti numerati (<code>moves.N.log</code>) nella
+ * propria directory. Quando il segmento corrente supera la dimensione
+ * stabilita, il thread di scrittura passa al successivo e un thread di
+ * compattazione ricostruisce, a partire dall'ultima istantanea e dai segmenti
+ * ormai chiusi, lo stato delle partite non rimosse: il risultato viene scritto
+ * in una nuova istantanea (<code>snapshot.N.snap</code>), che contiene soltanto
+ * i record necessari a ricostruire ogni partita, dopodiche' i segmenti e
+ * l'istantanea precedenti vengono eliminati. L'istantanea N descrive lo stato
+ * all'inizio del segmento N: essendo ricavata da file che non vengono piu'
+ * modificati, e' consistente senza che le partite o le scritture del registro
+ * debbano essere sospese. All'apertura vengono riletti l'istantanea piu'
+ * recente e i segmenti successivi, cosi' che il tempo di riavvio dipenda dal
+ * numero di partite aperte e non dalla durata del servizio.<br/>
+ * 
+ * Segmenti e istantanee sono sequenze di blocchi, ognuno scritto con una sola
+ * fsync: lunghezza (int), CRC32 (int) e record del blocco. Un blocco
+ * incompleto o corrotto, dovuto a un arresto durante la scrittura, viene
+ * scartato insieme a quelli successivi. Formato dei record (la partita e' un
+ * intero assegnato dal registro, per non ripetere l'id in ogni record):<br/>
+ * CREATE: tipo, partita, larghezza, altezza, lunghezza vincente (byte), id e
+ * creatore (UTF);<br/>
+ * JOIN: tipo, partita, sfidante (UTF);<br/>
+ * START: tipo, partita, primo player (byte);<br/>
+ * MOVE: tipo, partita, casella (short), 7 byte in tutto;<br/>
+ * RESULT: tipo, partita, risultato (byte);<br/>
+ * REMOVE: tipo, partita.
+ * 
+ * @author Gennaro Capo
+ * @author Mirko Conte
+ * @author Vincenzo De Notaris
+ * @author Roberto Pacilio
+ * @version 1.0
+ * @see server.TicTacToeServerImpl
+ */
+public class MoveLog {
+
+	/**
+	 * Destinatario dei record letti dal registro all'apertura, nell'ordine in
+	 * cui sono stati scritti.
+	 */
+	public interface Handler {
+
+		/**
+		 * Una partita e' stata creata.
+		 * 
+		 * @param game
+		 *            numero della partita nel registro.
+		 * @param idGame
+		 *            id della partita.
+		 * @param player1
+		 *            nickname del player che ha creato la partita.
+		 * @param width
+		 *            numero di colonne della griglia.
+		 * @param height
+		 *            numero di righe della griglia.
+		 * @param winLength
+		 *            simboli consecutivi necessari per vincere.
+		 */
+		void created(int game, String idGame, String player1, int width,
+				int height, int winLength);
+
+		/**
+		 * Uno sfidante si e' aggiunto alla partita.
+		 * 
+		 * @param game
+		 *            numero della partita nel registro.
+		 * @param player2
+		 *            nickname dello sfidante.
+		 */
+		void joined(int game, String player2);
+
+		/**
+		 * La partita, o la sua rivincita, e' cominciata su una griglia vuota.
+		 * 
+		 * @param game
+		 *            numero della partita nel registro.
+		 * @param player1First
+		 *            true se la prima mossa spetta al player 1.
+		 */
+		void started(int game, boolean player1First);
+
+		/**
+		 * E' stata accettata una mossa del player di turno.
+		 * 
+		 * @param game
+		 *            numero della partita nel registro.
+		 * @param m
+		 *            casella della mossa.
+		 */
+		void moved(int game, int m);
+
+		/**
+		 * La partita e' terminata.
+		 * 
+		 * @param game
+		 *            numero della partita nel registro.
+		 * @param result
+		 *            1: player 1 ha vinto; 2: player 2 ha vinto; 3: pareggio.
+		 */
+		void ended(int game, int result);
+
+		/**
+		 * La partita e' stata rimossa dal server.
+		 * 
+		 * @param game
+		 *            numero della partita nel registro.
+		 */
+		void removed(int game);
+	}
+
+	// Attributi privati.
+	private static final byte CREATE = 1;
+	private static final byte JOIN = 2;
+	private static final byte START = 3;
+	private static final byte MOVE = 4;
+	private static final byte RESULT = 5;
+	private static final byte REMOVE = 6;
+	private static final int HEADER = 8;
+	// Dimensione oltre la quale si passa a un nuovo segmento (8 MB).
+	private static final long SEGMENT_BYTES = 8L << 20;
+	// Dimensione dei blocchi in cui viene scritta un'istantanea.
+	private static final int SNAPSHOT_BLOCK = 1 << 20;
+	private static final String LOG_PREFIX = "moves.";
+	private static final String LOG_SUFFIX = ".log";
+	private static final String SNAPSHOT_PREFIX = "snapshot.";
+	private static final String SNAPSHOT_SUFFIX = ".snap";
+	private static final String TEMP_SUFFIX = ".tmp";
+	private final File dir;
+	private final long window;
+	private final long segmentBytes;
+	private final Object lock;
+	private final Object fileLock;
+	private final Object compactLock;
+	private final ByteArrayOutputStream buffer;
+	private final DataOutputStream out;
+	// Azioni in attesa della persistenza dei record, per posizione.
+	private final TreeMap<Long, List<Runnable>> waiters;
+	private final Thread flusher;
+	private final ExecutorService compactor;
+	private FileChannel channel;
+	private int segment;
+	private int snapshot;
+	private long appended;
+	private long durable;
+	private long flushes;
+	private long records;
+	private int games;
+	private boolean closed;
+	private IOException failure;
+
+	/**
+	 * Costruttore di classe. Apre, o crea, il registro nella directory
+	 * <code>dir</code> con la dimensione dei segmenti predefinita.
+	 * 
+	 * @param dir
+	 *            directory del registro.
+	 * @param window
+	 *            millisecondi di attesa, dopo il primo record di un blocco,
+	 *            per raccogliere altri record nella stessa scrittura; 0 per
+	 *            scrivere non appena il disco e' libero.
+	 * @param h
+	 *            destinatario dei record gia' presenti; puo' essere null.
+	 * @throws IOException
+	 * @see #MoveLog(File, long, long, Handler)
+	 */
+	public MoveLog(File dir, long window, Handler h) throws IOException {
+		this(dir, window, SEGMENT_BYTES, h);
+	}
+
+	/**
+	 * Costruttore di classe. Apre, o crea, il registro nella directory
+	 * <code>dir</code>; i record dell'ultima istantanea e dei segmenti
+	 * successivi vengono consegnati a <code>h</code> prima che il costruttore
+	 * restituisca il controllo.
+	 * 
+	 * @param dir
+	 *            directory del registro.
+	 * @param window
+	 *            millisecondi di attesa, dopo il primo record di un blocco,
+	 *            per raccogliere altri record nella stessa scrittura; 0 per
+	 *            scrivere non appena il disco e' libero.
+	 * @param segmentBytes
+	 *            dimensione in byte oltre la quale si passa a un nuovo
+	 *            segmento e si compattano quelli precedenti.
+	 * @param h
+	 *            destinatario dei record gia' presenti; puo' essere null.
+	 * @throws IOException
+	 */
+	public MoveLog(File dir, long window, long segmentBytes, Handler h)
+			throws IOException {
+		if (!dir.isDirectory() && !dir.mkdirs())
+			throw new IOException("Cannot create " + dir);
+		this.dir = dir;
+		this.window = window;
+		this.segmentBytes = segmentBytes;
+		this.lock = new Object();
+		this.fileLock = new Object();
+		this.compactLock = new Object();
+		this.buffer = new ByteArrayOutputStream();
+		this.waiters = new TreeMap<Long, List<Runnable>>();
+		this.out = new DataOutputStream(buffer);
+
+		TreeSet<Integer> snapshots = list(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+		snapshot = snapshots.isEmpty() ? 0 : snapshots.last();
+		if (snapshot > 0)
+			games = load(file(SNAPSHOT_PREFIX, snapshot, SNAPSHOT_SUFFIX), h,
+					false);
+		segment = Math.max(snapshot, 1);
+		for (int s : list(LOG_PREFIX, LOG_SUFFIX).tailSet(snapshot)) {
+			// Un eventuale blocco incompleto in coda viene eliminato.
+			games = Math.max(games,
+					load(file(LOG_PREFIX, s, LOG_SUFFIX), h, true));
+			segment = s;
+		}
+		discard(snapshot);
+		channel = new RandomAccessFile(file(LOG_PREFIX, segment, LOG_SUFFIX),
+				"rw").getChannel();
+		channel.position(channel.size());
+
+		compactor = Executors.newSingleThreadExecutor(BlockingExecutors
+				.daemon("move-log-compactor"));
+		// Segmenti chiusi rimasti da compattare, per un arresto avvenuto
+		// prima della fine della compattazione.
+		if (segment > Math.max(snapshot, 1))
+			schedule(segment);
+		flusher = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				flushLoop();
+			}
+		}, "move-log");
+		flusher.setDaemon(true);
+		flusher.start();
+	}
+
+	/**
+	 * Assegna il numero con cui una nuova partita viene identificata nei
+	 * record del registro.
+	 * 
+	 * @return numero della partita.
+	 */
+	public int newGame() {
+		synchronized (lock) {
+			return ++games;
+		}
+	}
+
+	/**
+	 * Registra la creazione di una partita.
+	 * 
+	 * @param game
+	 *            numero della partita, ottenuto con {@link #newGame()}.
+	 * @param idGame
+	 *            id della partita.
+	 * @param player1
+	 *            nickname del player che crea la partita.
+	 * @param width
+	 *            numero di colonne della griglia.
+	 * @param height
+	 *            numero di righe della griglia.
+	 * @param winLength
+	 *            simboli consecutivi necessari per vincere.
+	 * @return posizione del registro successiva al record.
+	 */
+	public long create(int game, String idGame, String player1, int width,
+			int height, int winLength) {
+		synchronized (lock) {
+			long start = buffer.size();
+			try {
+				writeCreate(out, game, idGame, player1, width, height,
+						winLength);
+			} catch (IOException e) {
+				// Scrittura in memoria: non si verificano errori.
+			}
+			return end(start);
+		}
+	}
+
+	/**
+	 * Registra l'ingresso dello sfidante in una partita.
+	 * 
+	 * @param game
+	 *            numero della partita.
+	 * @param player2
+	 *            nickname dello sfidante.
+	 * @return posizione del registro successiva al record.
+	 */
+	public long join(int game, String player2) {
+		synchronized (lock) {
+			long start = buffer.size();
+			try {
+				writeJoin(out, game, player2);
+			} catch (IOException e) {
+				// Scrittura in memoria: non si verificano errori.
+			}
+			return end(start);
+		}
+	}
+
+	/**
+	 * Registra l'inizio di una partita, o della sua rivincita.
+	 * 
+	 * @param game
+	 *            numero della partita.
+	 * @param player1First
+	 *            true se la prima mossa spetta al player 1.
+	 * @return posizione del registro successiva al record.
+	 */
+	public long start(int game, boolean player1First) {
+		synchronized (lock) {
+			long start = buffer.size();
+			try {
+				writeStart(out, game, player1First);
+			} catch (IOException e) {
+				// Scrittura in memoria: non si verificano errori.
+			}
+			return end(start);
+		}
+	}
+
+	/**
+	 * Registra una mossa accettata.
+	 * 
+	 * @param game
+	 *            numero della partita.
+	 * @param m
+	 *            casella della mossa.
+	 * @return posizione del registro successiva al record.
+	 */
+	public long move(int game, int m) {
+		synchronized (lock) {
+			long start = buffer.size();
+			try {
+				writeMove(out, game, m);
+			} catch (IOException e) {
+				// Scrittura in memoria: non si verificano errori.
+			}
+			return end(start);
+		}
+	}
+
+	/**
+	 * Registra il risultato di una partita.
+	 * 
+	 * @param game
+	 *            numero della partita.
+	 * @param result
+	 *            1: player 1 ha vinto; 2: player 2 ha vinto; 3: pareggio.
+	 * @return posizione del registro successiva al record.
+	 */
+	public long result(int game, int result) {
+		synchronized (lock) {
+			long start = buffer.size();
+			try {
+				writeResult(out, game, result);
+			} catch (IOException e) {
+				// Scrittura in memoria: non si verificano errori.
+			}
+			return end(start);
+		}
+	}
+
+	/**
+	 * Registra la rimozione di una partita.
+	 * 
+	 * @param game
+	 *            numero della partita.
+	 * @return posizione del registro successiva al record.
+	 */
+	public long remove(int game) {
+		synchronized (lock) {
+			long start = buffer.size();
+			try {
+				writeHeader(out, REMOVE, game);
+			} catch (IOException e) {
+				// Scrittura in memoria: non si verificano errori.
+			}
+			return end(start);
+		}
+	}
+
+	/**
+	 * Attende che i record fino alla posizione <code>position</code> siano
+	 * stati resi persistenti.
+	 * 
+	 * @param position
+	 *            posizione restituita dall'aggiunta di un record.
+	 * @return true se i record sono persistenti, false se il registro non e'
+	 *         piu' utilizzabile a causa di un errore di scrittura.
+	 */
+	public boolean sync(long position) {
+		synchronized (lock) {
+			boolean interrupted = false;
+			while (durable < position && failure == null) {
+				try {
+					lock.wait();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if (interrupted)
+				Thread.currentThread().interrupt();
+			return durable >= position;
+		}
+	}
+
+	/**
+	 * Esegue un'azione non appena i record fino alla posizione
+	 * <code>position</code> sono stati resi persistenti, oppure il registro
+	 * non e' piu' utilizzabile. L'azione viene eseguita dal thread di
+	 * scrittura al termine della scrittura che rende persistenti i record, o
+	 * subito dal chiamante se lo sono gia': non deve quindi bloccarsi. Le
+	 * azioni vengono eseguite in ordine di posizione e, a parita' di
+	 * posizione, nell'ordine in cui sono state indicate.
+	 * 
+	 * @param position
+	 *            posizione restituita dall'aggiunta di un record.
+	 * @param action
+	 *            azione da eseguire.
+	 */
+	public void whenDurable(long position, Runnable action) {
+		synchronized (lock) {
+			if (durable < position && failure == null) {
+				List<Runnable> l = waiters.get(position);
+				if (l == null) {
+					l = new ArrayList<Runnable>(2);
+					waiters.put(position, l);
+				}
+				l.add(action);
+				return;
+			}
+		}
+		action.run();
+	}
+
+	/**
+	 * Indica se il registro non e' piu' utilizzabile a causa di un errore di
+	 * scrittura: i record aggiunti da quel momento non verranno resi
+	 * persistenti.
+	 * 
+	 * @return true se il registro non e' piu' utilizzabile.
+	 */
+	public boolean isFailed() {
+		synchronized (lock) {
+			return failure != null;
+		}
+	}
+
+	/**
+	 * Passa a un nuovo segmento e compatta quelli precedenti in una nuova
+	 * istantanea, senza attendere che il segmento corrente raggiunga la
+	 * dimensione stabilita. La compattazione avviene nel thread chiamante;
+	 * le aggiunte di record e le scritture proseguono nel frattempo.
+	 * 
+	 * @throws IOException
+	 *             se l'istantanea non puo' essere scritta; in tal caso i
+	 *             segmenti precedenti vengono conservati.
+	 */
+	public void checkpoint() throws IOException {
+		int target;
+		synchronized (fileLock) {
+			if (!channel.isOpen())
+				throw new IOException("Move log closed");
+			target = rotate();
+		}
+		compact(target);
+	}
+
+	/**
+	 * Restituisce il numero dell'ultima istantanea scritta, cioe' del primo
+	 * segmento non ancora compattato.
+	 * 
+	 * @return numero dell'istantanea, 0 se non ne e' stata scritta alcuna.
+	 */
+	public int getSnapshot() {
+		synchronized (compactLock) {
+			return snapshot;
+		}
+	}
+
+	/**
+	 * Restituisce il numero di scritture (fsync) effettuate.
+	 * 
+	 * @return numero di scritture.
+	 */
+	public long getFlushCount() {
+		synchronized (lock) {
+			return flushes;
+		}
+	}
+
+	/**
+	 * Restituisce il numero di record aggiunti dall'apertura del registro.
+	 * 
+	 * @return numero di record aggiunti.
+	 */
+	public long getRecordCount() {
+		synchronized (lock) {
+			return records;
+		}
+	}
+
+	/**
+	 * Rende persistenti i record accodati e chiude il registro, dopo aver
+	 * atteso la fine di un'eventuale compattazione in corso.
+	 * 
+	 * @throws IOException
+	 */
+	public void close() throws IOException {
+		synchronized (lock) {
+			closed = true;
+			lock.notifyAll();
+		}
+		try {
+			flusher.join();
+			compactor.shutdown();
+			compactor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		synchronized (fileLock) {
+			channel.close();
+		}
+		synchronized (lock) {
+			if (failure != null)
+				throw failure;
+		}
+	}
+
+	/*
+	 * Conclude un record iniziato alla posizione start del buffer e risveglia
+	 * il thread di scrittura. Va invocato detenendo il lock del registro.
+	 */
+	private long end(long start) {
+		appended += buffer.size() - start;
+		records++;
+		lock.notifyAll();
+		return appended;
+	}
+
+	/*
+	 * Ciclo del thread di scrittura: ogni iterazione scrive in un unico
+	 * blocco tutti i record accodati fino a quel momento.
+	 */
+	private void flushLoop() {
+		try {
+			while (true) {
+				synchronized (lock) {
+					while (buffer.size() == 0 && !closed)
+						lock.wait();
+					if (buffer.size() == 0)
+						return;
+				}
+				if (window > 0)
+					Thread.sleep(window);
+				byte[] data;
+				long end;
+				synchronized (lock) {
+					data = buffer.toByteArray();
+					buffer.reset();
+					end = appended;
+				}
+				int rotated = 0;
+				synchronized (fileLock) {
+					writeBlock(channel, data, data.length);
+					channel.force(false);
+					if (channel.position() >= segmentBytes)
+						rotated = rotate();
+				}
+				List<Runnable> ready;
+				synchronized (lock) {
+					durable = end;
+					flushes++;
+					lock.notifyAll();
+					ready = ready(end);
+				}
+				run(ready);
+				if (rotated > 0)
+					schedule(rotated);
+			}
+		} catch (IOException e) {
+			System.out.println("Move log disabled: " + e.getMessage());
+			fail(e);
+		} catch (InterruptedException e) {
+			fail(new InterruptedIOException());
+		}
+	}
+
+	/*
+	 * Rende il registro non piu' utilizzabile, risvegliando chi attende la
+	 * persistenza dei record ed eseguendo le azioni in attesa.
+	 */
+	private void fail(IOException e) {
+		List<Runnable> ready;
+		synchronized (lock) {
+			failure = e;
+			lock.notifyAll();
+			ready = ready(Long.MAX_VALUE);
+		}
+		run(ready);
+	}
+
+	/*
+	 * Rimuove e restituisce le azioni in attesa dei record fino alla
+	 * posizione position. Va invocato detenendo il lock del registro.
+	 */
+	private List<Runnable> ready(long position) {
+		List<Runnable> ready = new ArrayList<Runnable>();
+		Map<Long, List<Runnable>> head = waiters.headMap(position, true);
+		for (List<Runnable> l : head.values())
+			ready.addAll(l);
+		head.clear();
+		return ready;
+	}
+
+	/*
+	 * Esegue le azioni indicate: un'azione che fallisce non impedisce
+	 * l'esecuzione delle altre ne' ferma il thread di scrittura.
+	 */
+	private static void run(List<Runnable> actions) {
+		for (Runnable r : actions) {
+			try {
+				r.run();
+			} catch (RuntimeException e) {
+				System.out.println("Move log action failed: " + e);
+			}
+		}
+	}
+
+	/*
+	 * Chiude il segmento corrente e apre il successivo, restituendone il
+	 * numero. Va invocato detenendo il lock dei file; costa l'apertura di un
+	 * file, indipendentemente dal numero di partite.
+	 */
+	private int rotate() throws IOException {
+		channel.close();
+		segment++;
+		channel = new RandomAccessFile(file(LOG_PREFIX, segment, LOG_SUFFIX),
+				"rw").getChannel();
+		return segment;
+	}
+
+	/*
+	 * Affida la compattazione dei segmenti precedenti a target al thread di
+	 * compattazione. Un errore lascia intatti istantanea e segmenti: la
+	 * compattazione viene ritentata alla rotazione successiva.
+	 */
+	private void schedule(final int target) {
+		compactor.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					compact(target);
+				} catch (IOException e) {
+					System.out.println("Move log compaction failed: "
+							+ e.getMessage());
+				}
+			}
+		});
+	}
+
+	/*
+	 * Scrive l'istantanea target a partire dall'istantanea corrente e dai
+	 * segmenti chiusi che la seguono, quindi elimina i file superati.
+	 * L'istantanea viene scritta in un file temporaneo e rinominata solo dopo
+	 * essere stata resa persistente: un arresto durante la compattazione
+	 * lascia valida l'istantanea precedente.
+	 */
+	private void compact(int target) throws IOException {
+		synchronized (compactLock) {
+			if (target <= snapshot)
+				return;
+			Image image = new Image();
+			if (snapshot > 0)
+				load(file(SNAPSHOT_PREFIX, snapshot, SNAPSHOT_SUFFIX), image,
+						false);
+			for (int s = Math.max(snapshot, 1); s < target; s++) {
+				File f = file(LOG_PREFIX, s, LOG_SUFFIX);
+				if (f.exists())
+					load(f, image, false);
+			}
+			File temp = file(SNAPSHOT_PREFIX, target, TEMP_SUFFIX);
+			FileChannel c = new RandomAccessFile(temp, "rw").getChannel();
+			try {
+				c.truncate(0);
+				image.write(c);
+				c.force(true);
+			} finally {
+				c.close();
+			}
+			if (!temp.renameTo(file(SNAPSHOT_PREFIX, target, SNAPSHOT_SUFFIX)))
+				throw new IOException("Cannot rename " + temp);
+			snapshot = target;
+			discard(target);
+		}
+	}
+
+	/*
+	 * Elimina i segmenti e le istantanee precedenti a quella indicata e le
+	 * istantanee temporanee.
+	 */
+	private void discard(int current) {
+		for (int s : list(LOG_PREFIX, LOG_SUFFIX).headSet(current))
+			file(LOG_PREFIX, s, LOG_SUFFIX).delete();
+		for (int s : list(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX).headSet(current))
+			file(SNAPSHOT_PREFIX, s, SNAPSHOT_SUFFIX).delete();
+		for (int s : list(SNAPSHOT_PREFIX, TEMP_SUFFIX))
+			file(SNAPSHOT_PREFIX, s, TEMP_SUFFIX).delete();
+	}
+
+	private File file(String prefix, int n, String suffix) {
+		return new File(dir, prefix + n + suffix);
+	}
+
+	/*
+	 * Restituisce, in ordine crescente, i numeri dei file della directory
+	 * con il prefisso e il suffisso indicati.
+	 */
+	private TreeSet<Integer> list(String prefix, String suffix) {
+		TreeSet<Integer> numbers = new TreeSet<Integer>();
+		String[] names = dir.list();
+		if (names == null)
+			return numbers;
+		for (String name : names) {
+			if (!name.startsWith(prefix) || !name.endsWith(suffix)
+					|| name.length() <= prefix.length() + suffix.length())
+				continue;
+			try {
+				numbers.add(Integer.parseInt(name.substring(prefix.length(),
+						name.length() - suffix.length())));
+			} catch (NumberFormatException e) {
+				// File estraneo al registro.
+			}
+		}
+		return numbers;
+	}
+
+	/*
+	 * Rilegge i blocchi validi di un file consegnandone i record a h e
+	 * restituisce il numero di partita piu' alto incontrato. Se truncate e'
+	 * true, i blocchi non validi in coda vengono eliminati.
+	 */
+	private static int load(File f, Handler h, boolean truncate)
+			throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(f, truncate ? "rw" : "r");
+		try {
+			FileChannel c = raf.getChannel();
+			long size = c.size();
+			long position = 0;
+			int last = 0;
+			DataInputStream in = new DataInputStream(new BufferedInputStream(
+					Channels.newInputStream(c), 1 << 16));
+			while (position + HEADER <= size) {
+				int length = in.readInt();
+				int checksum = in.readInt();
+				if (length < 0 || position + HEADER + length > size)
+					break;
+				byte[] data = new byte[length];
+				in.readFully(data);
+				CRC32 crc = new CRC32();
+				crc.update(data, 0, length);
+				if ((int) crc.getValue() != checksum)
+					break;
+				last = Math.max(last, apply(data, h));
+				position += HEADER + length;
+			}
+			if (truncate && position < size)
+				c.truncate(position);
+			return last;
+		} finally {
+			raf.close();
+		}
+	}
+
+	/*
+	 * Consegna a h i record di un blocco e restituisce il numero di partita
+	 * piu' alto incontrato.
+	 */
+	private static int apply(byte[] data, Handler h) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+		int last = 0;
+		while (in.available() > 0) {
+			byte type = in.readByte();
+			int game = in.readInt();
+			if (game > last)
+				last = game;
+			switch (type) {
+			case CREATE:
+				int width = in.readUnsignedByte();
+				int height = in.readUnsignedByte();
+				int winLength = in.readUnsignedByte();
+				String idGame = in.readUTF();
+				String player1 = in.readUTF();
+				if (h != null)
+					h.created(game, idGame, player1, width, height, winLength);
+				break;
+			case JOIN:
+				String player2 = in.readUTF();
+				if (h != null)
+					h.joined(game, player2);
+				break;
+			case START:
+				boolean player1First = in.readUnsignedByte() == 1;
+				if (h != null)
+					h.started(game, player1First);
+				break;
+			case MOVE:
+				int m = in.readUnsignedShort();
+				if (h != null)
+					h.moved(game, m);
+				break;
+			case RESULT:
+				int result = in.readUnsignedByte();
+				if (h != null)
+					h.ended(game, result);
+				break;
+			case REMOVE:
+				if (h != null)
+					h.removed(game);
+				break;
+			default:
+				throw new IOException("Unknown record type " + type);
+			}
+		}
+		return last;
+	}
+
+	private static void writeBlock(FileChannel c, byte[] data, int length)
+			throws IOException {
+		CRC32 crc = new CRC32();
+		crc.update(data, 0, length);
+		ByteBuffer b = ByteBuffer.allocate(HEADER + length);
+		b.putInt(length);
+		b.putInt((int) crc.getValue());
+		b.put(data, 0, length);
+		b.flip();
+		while (b.hasRemaining())
+			c.write(b);
+	}
+
+	private static void writeHeader(DataOutputStream o, byte type, int game)
+			throws IOException {
+		o.writeByte(type);
+		o.writeInt(game);
+	}
+
+	private static void writeCreate(DataOutputStream o, int game,
+			String idGame, String player1, int width, int height,
+			int winLength) throws IOException {
+		writeHeader(o, CREATE, game);
+		o.writeByte(width);
+		o.writeByte(height);
+		o.writeByte(winLength);
+		o.writeUTF(idGame);
+		o.writeUTF(player1);
+	}
+
+	private static void writeJoin(DataOutputStream o, int game, String player2)
+			throws IOException {
+		writeHeader(o, JOIN, game);
+		o.writeUTF(player2);
+	}
+
+	private static void writeStart(DataOutputStream o, int game,
+			boolean player1First) throws IOException {
+		writeHeader(o, START, game);
+		o.writeByte(player1First ? 1 : 2);
+	}
+
+	private static void writeMove(DataOutputStream o, int game, int m)
+			throws IOException {
+		writeHeader(o, MOVE, game);
+		o.writeShort(m);
+	}
+
+	private static void writeResult(DataOutputStream o, int game, int result)
+			throws IOException {
+		writeHeader(o, RESULT, game);
+		o.writeByte(result);
+	}
+
+	/*
+	 * Stato delle partite non rimosse, ricostruito durante la compattazione.
+	 * Di ogni partita vengono conservati soltanto i giocatori e le mosse
+	 * dell'incontro in corso (o dell'ultimo concluso), nell'ordine di
+	 * creazione.
+	 */
+	private static class Image implements Handler {
+
+		private final Map<Integer, Entry> games = new LinkedHashMap<Integer, Entry>();
+
+		@Override
+		public void created(int game, String idGame, String player1,
+				int width, int height, int winLength) {
+			games.put(game, new Entry(idGame, player1, width, height,
+					winLength));
+		}
+
+		@Override
+		public void joined(int game, String player2) {
+			Entry e = games.get(game);
+			if (e != null)
+				e.player2 = player2;
+		}
+
+		@Override
+		public void started(int game, boolean player1First) {
+			Entry e = games.get(game);
+			if (e != null) {
+				e.first = player1First ? 1 : 2;
+				e.count = 0;
+				e.result = 0;
+			}
+		}
+
+		@Override
+		public void moved(int game, int m) {
+			Entry e = games.get(game);
+			if (e != null) {
+				if (e.count == e.moves.length)
+					e.moves = Arrays.copyOf(e.moves, Math.max(8, 2 * e.count));
+				e.moves[e.count++] = m;
+			}
+		}
+
+		@Override
+		public void ended(int game, int result) {
+			Entry e = games.get(game);
+			if (e != null)
+				e.result = result;
+		}
+
+		@Override
+		public void removed(int game) {
+			games.remove(game);
+		}
+
+		/*
+		 * Scrive i record che ricostruiscono le partite in blocchi di circa
+		 * SNAPSHOT_BLOCK byte, senza spezzare i record di una partita.
+		 */
+		public void write(FileChannel c) throws IOException {
+			ByteArrayOutputStream block = new ByteArrayOutputStream(
+					SNAPSHOT_BLOCK + 1024);
+			DataOutputStream o = new DataOutputStream(block);
+			for (Map.Entry<Integer, Entry> g : games.entrySet()) {
+				int game = g.getKey();
+				Entry e = g.getValue();
+				writeCreate(o, game, e.idGame, e.player1, e.width, e.height,
+						e.winLength);
+				if (e.player2 != null)
+					writeJoin(o, game, e.player2);
+				if (e.first != 0) {
+					writeStart(o, game, e.first == 1);
+					for (int i = 0; i < e.count; i++)
+						writeMove(o, game, e.moves[i]);
+				}
+				if (e.result != 0)
+					writeResult(o, game, e.result);
+				if (block.size() >= SNAPSHOT_BLOCK) {
+					writeBlock(c, block.toByteArray(), block.size());
+					block.reset();
+				}
+			}
+			if (block.size() > 0)
+				writeBlock(c, block.toByteArray(), block.size());
+		}
+
+	} // Chiusura della inner-class.
+
+	private static class Entry {
+
+		private static final int[] NO_MOVES = new int[0];
+		private final String idGame;
+		private final String player1;
+		private final int width;
+		private final int height;
+		private final int winLength;
+		private String player2;
+		private int first;
+		private int result;
+		private int[] moves = NO_MOVES;
+		private int count;
+
+		public Entry(String idGame, String player1, int width, int height,
+				int winLength) {
+			this.idGame = idGame;
+			this.player1 = player1;
+			this.width = width;
+			this.height = height;
+			this.winLength = winLength;
+		}
+
+	} // Chiusura della inner-class.
+
+}
@@ -0,0 +1,174 @@
+package server;
+
+import java.rmi.RemoteException;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import api.*;
+
+/**
+ * Coda ordinata delle notifiche da inviare a un player. Le notifiche vengono
+ * accodate senza bloccare il chiamante e sono consegnate, nell'ordine in cui
+ * sono state accodate, da un unico mittente per volta eseguito
+ * sull'esecutore del lavoro bloccante del server. Tale esecutore non fa mai
+ * attendere un mittente dietro a quelli bloccati ({@link BlockingExecutors}):
+ * un client lento o non piu' raggiungibile occupa un solo thread e rallenta
+ * soltanto la propria coda. La chiamata remota verso un client bloccato
+ * fallisce, chiudendo la coda, allo scadere del timeout di risposta RMI
+ * impostato dal server ({@link TicTacToeServerImpl#RESPONSE_TIMEOUT}).<br/>
+ * Se una consegna fallisce la coda viene chiusa: le notifiche pendenti e
+ * quelle successive vengono scartate e l'evento viene segnalato una sola
+ * volta al gestore indicato alla creazione.
+ * 
+ * @author Gennaro Capo
+ * @author Mirko Conte
+ * @author Vincenzo De Notaris
+ * @author Roberto Pacilio
+ * @version 1.0
+ * @see server.GameImpl
+ */
+public class OutboundQueue implements Runnable {
+
+	/**
+	 * Esecutore che consegna le notifiche nel thread del chiamante, prima di
+	 * restituire il controllo. Utile quando si desidera una consegna
+	 * sincrona, ad esempio nei test.
+	 */
+	public static final Executor DIRECT = new Executor() {
+		@Override
+		public void execute(Runnable r) {
+			r.run();
+		}
+	};
+
+	/**
+	 * Notifica da consegnare a un player.
+	 */
+	public interface Callback {
+
+		/**
+		 * Consegna la notifica al player <code>p</code>.
+		 * 
+		 * @param p player destinatario.
+		 * @throws RemoteException
+		 */
+		void deliver(Player p) throws RemoteException;
+	}
+
+	/**
+	 * Gestore del fallimento di una consegna.
+	 */
+	public interface FailureHandler {
+
+		/**
+		 * Invocato, una sola volta, quando il player destinatario della coda
+		 * non e' piu' raggiungibile.
+		 * 
+		 * @param q coda la cui consegna e' fallita.
+		 */
+		void unreachable(OutboundQueue q);
+	}
+
+	// Attributi privati.
+	private final Player player;
+	private final Executor executor;
+	private final FailureHandler handler;
+	private final ConcurrentLinkedQueue<Callback> queue;
+	private final AtomicBoolean scheduled;
+	private volatile boolean closed;
+
+	/**
+	 * Costruttore di classe.
+	 * 
+	 * @param player
+	 *            player destinatario delle notifiche.
+	 * @param executor
+	 *            esecutore su cui effettuare le consegne.
+	 * @param handler
+	 *            gestore del fallimento di una consegna; puo' essere null.
+	 */
+	public OutboundQueue(Player player, Executor executor,
+			FailureHandler handler) {
+		this.player = player;
+		this.executor = executor;
+		this.handler = handler;
+		this.queue = new ConcurrentLinkedQueue<Callback>();
+		this.scheduled = new AtomicBoolean();
+	}
+
+	/**
+	 * Restituisce il player destinatario delle notifiche.
+	 * 
+	 * @return player destinatario.
+	 */
+	public Player getPlayer() {
+		return player;
+	}
+
+	/**
+	 * Restituisce un flag per sapere se la coda e' stata chiusa a seguito di
+	 * una consegna fallita.
+	 * 
+	 * @return true se la coda e' chiusa, false altrimenti.
+	 */
+	public boolean isClosed() {
+		return closed;
+	}
+
+	/**
+	 * Accoda una notifica e, se non e' gia' attivo, avvia il mittente. Il
+	 * metodo non effettua chiamate remote.
+	 * 
+	 * @param c
+	 *            notifica da consegnare.
+	 */
+	public void send(Callback c) {
+		if (closed)
+			return;
+		queue.offer(c);
+		schedule();
+	}
+
+	/**
+	 * Consegna le notifiche accodate, nell'ordine di accodamento. Una
+	 * notifica che solleva un'eccezione, remota o meno, chiude la coda come
+	 * se il player non fosse raggiungibile: lo stato del player non e' piu'
+	 * noto e le notifiche successive non avrebbero senso.
+	 */
+	@Override
+	public void run() {
+		try {
+			Callback c;
+			while (!closed && (c = queue.poll()) != null) {
+				try {
+					c.deliver(player);
+				} catch (RemoteException e) {
+					fail();
+				} catch (RuntimeException e) {
+					fail();
+				}
+			}
+		} finally {
+			scheduled.set(false);
+			// Una notifica accodata dopo l'ultimo poll va comunque
+			// consegnata.
+			if (!closed && !queue.isEmpty())
+				schedule();
+		}
+	}
+
+	/*
+	 * Chiude la coda dopo una consegna fallita e avvisa il gestore.
+	 */
+	private void fail() {
+		closed = true;
+		queue.clear();
+		if (handler != null)
+			handler.unreachable(this);
+	}
+
+	private void schedule() {
+		if (scheduled.compareAndSet(false, true))
+			executor.execute(this);
+	}
+
+}
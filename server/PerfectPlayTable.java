@@ -0,0 +1,167 @@
+package server;
+
+/**
+ * Tabella di gioco perfetto per la griglia classica 3x3. Per ogni posizione
+ * raggiungibile contiene il valore minimax e la mossa migliore per il player
+ * di turno; viene calcolata una sola volta, alla creazione, esplorando
+ * l'intero albero di gioco.<br/>
+ * Le posizioni sono codificate dal punto di vista del player di turno: la
+ * casella <code>m</code> contribuisce con 3<sup>m</sup> se e' occupata dal
+ * player di turno e con 2 * 3<sup>m</sup> se e' occupata dall'avversario.
+ * Ogni elemento della tabella e' un byte che contiene la mossa migliore nei
+ * quattro bit meno significativi e il valore nei due bit successivi, cosi'
+ * che la scelta di una mossa sia un unico accesso a un array, senza ricerca
+ * e senza allocazioni.<br/>
+ * Tra le mosse di pari valore si preferisce la vittoria piu' rapida e la
+ * sconfitta piu' lenta.
+ * 
+ * @author Gennaro Capo
+ * @author Mirko Conte
+ * @author Vincenzo De Notaris
+ * @author Roberto Pacilio
+ * @version 1.0
+ * @see server.BotPlayer
+ */
+public class PerfectPlayTable {
+
+	/**
+	 * Numero di posizioni codificabili (3<sup>9</sup>).
+	 */
+	public static final int SIZE = 19683;
+
+	/**
+	 * Mossa restituita per le posizioni terminali o non raggiungibili.
+	 */
+	public static final int NO_MOVE = -1;
+
+	/**
+	 * Potenze di 3 usate dalla codifica delle posizioni.
+	 */
+	public static final int[] POW3 = { 1, 3, 9, 27, 81, 243, 729, 2187, 6561 };
+
+	// Attributi privati.
+	private static final int CELLS = 9;
+	private static final int MOVE_MASK = 0x0F;
+	private static final int VALUE_SHIFT = 4;
+	private static final int LOSS = 0;
+	private static final int DRAW = 1;
+	private static final int WIN = 2;
+	private static final int UNSOLVED = Integer.MIN_VALUE;
+	private final byte[] table;
+	private int states;
+
+	/**
+	 * Costruttore di classe. Calcola la tabella esplorando tutte le posizioni
+	 * raggiungibili a partire dalla griglia vuota.
+	 */
+	public PerfectPlayTable() {
+		table = new byte[SIZE];
+		java.util.Arrays.fill(table, (byte) MOVE_MASK);
+		int[] scores = new int[SIZE];
+		java.util.Arrays.fill(scores, UNSOLVED);
+		solve(0, 0, scores);
+	}
+
+	/**
+	 * Restituisce la mossa migliore per il player di turno.
+	 * 
+	 * @param position
+	 *            posizione codificata dal punto di vista del player di turno.
+	 * @return mossa migliore, compresa tra 0 e 8, oppure NO_MOVE se la
+	 *         partita e' finita.
+	 */
+	public int bestMove(int position) {
+		int m = table[position] & MOVE_MASK;
+		return (m < CELLS) ? m : NO_MOVE;
+	}
+
+	/**
+	 * Restituisce il valore della posizione per il player di turno,
+	 * assumendo che entrambi i player giochino in maniera perfetta.
+	 * 
+	 * @param position
+	 *            posizione codificata dal punto di vista del player di turno.
+	 * @return 1: vittoria; 0: pareggio; -1: sconfitta.
+	 */
+	public int value(int position) {
+		return (table[position] >> VALUE_SHIFT) - DRAW;
+	}
+
+	/**
+	 * Restituisce il numero di posizioni raggiungibili contenute nella
+	 * tabella.
+	 * 
+	 * @return numero di posizioni raggiungibili.
+	 */
+	public int getStateCount() {
+		return states;
+	}
+
+	/**
+	 * Codifica una posizione dal punto di vista del player di turno.
+	 * 
+	 * @param own
+	 *            maschera delle caselle occupate dal player di turno.
+	 * @param foe
+	 *            maschera delle caselle occupate dall'avversario.
+	 * @return posizione codificata.
+	 */
+	public static int encode(int own, int foe) {
+		int position = 0;
+		for (int m = 0; m < CELLS; m++) {
+			if ((own >> m & 1) != 0)
+				position += POW3[m];
+			else if ((foe >> m & 1) != 0)
+				position += 2 * POW3[m];
+		}
+		return position;
+	}
+
+	/*
+	 * Negamax con memoizzazione. Il punteggio e' positivo se il player di
+	 * turno vince e, in valore assoluto, e' tanto piu' alto quante piu'
+	 * caselle restano libere: in questo modo le vittorie rapide sono
+	 * preferite a quelle lente.
+	 */
+	private int solve(int own, int foe, int[] scores) {
+		int position = encode(own, foe);
+		if (scores[position] != UNSOLVED)
+			return scores[position];
+		states++;
+
+		int occupied = own | foe;
+		int free = CELLS - Integer.bitCount(occupied);
+		int best;
+		int bestMove = MOVE_MASK;
+		if (isWinning(foe))
+			best = -(1 + free);
+		else if (free == 0)
+			best = 0;
+		else {
+			best = Integer.MIN_VALUE;
+			for (int m = 0; m < CELLS; m++) {
+				int bit = 1 << m;
+				if ((occupied & bit) != 0)
+					continue;
+				// Dopo la mossa il turno passa all'avversario.
+				int score = -solve(foe, own | bit, scores);
+				if (score > best) {
+					best = score;
+					bestMove = m;
+				}
+			}
+		}
+		scores[position] = best;
+		int value = (best > 0) ? WIN : (best < 0) ? LOSS : DRAW;
+		table[position] = (byte) (bestMove | value << VALUE_SHIFT);
+		return best;
+	}
+
+	private static boolean isWinning(int mask) {
+		for (int w : BitBoard.WIN_MASKS)
+			if ((mask & w) == w)
+				return true;
+		return false;
+	}
+
+}
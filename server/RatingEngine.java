@@ -0,0 +1,195 @@
+package server;
+
+import java.io.IOException;
+import java.util.concurrent.*;
+
+/**
+ * Calcolo dei rating Elo dei player e mantenimento della classifica. Al
+ * termine di ogni partita i rating dei due player vengono aggiornati in base
+ * al risultato e al rating dell'avversario: la variazione e'
+ * K * (punteggio - punteggio atteso), con punteggio 1 per la vittoria, 0.5
+ * per il pareggio e 0 per la sconfitta. I player entrano in classifica con
+ * un rating iniziale INITIAL_RATING alla loro prima partita conclusa.<br/>
+ * I rating sono memorizzati nella tabella delle statistiche
+ * ({@link StatsTable}), da cui la classifica viene ricostruita all'avvio del
+ * server. Gli aggiornamenti vengono accodati dai thread delle partite, che
+ * non attendono il calcolo, e applicati in ordine da un unico thread: le
+ * partite non si contendono alcun lock della classifica.
+ * 
+ * @author Gennaro Capo
+ * @author Mirko Conte
+ * @author Vincenzo De Notaris
+ * @author Roberto Pacilio
+ * @version 1.0
+ * @see server.Leaderboard
+ */
+public class RatingEngine {
+
+	/**
+	 * Rating assegnato ai player alla loro prima partita.
+	 */
+	public static final double INITIAL_RATING = 1500;
+
+	/**
+	 * Variazione massima del rating in una partita.
+	 */
+	public static final double K = 32;
+
+	// Attributi privati.
+	private final StatsTable stats;
+	private final Leaderboard board;
+	private final ExecutorService worker;
+
+	/**
+	 * Costruttore di classe. Ricostruisce la classifica a partire dai rating
+	 * memorizzati nella tabella delle statistiche.
+	 * 
+	 * @param stats
+	 *            tabella delle statistiche dei player.
+	 */
+	public RatingEngine(StatsTable stats) {
+		this.stats = stats;
+		this.board = new Leaderboard();
+		this.worker = Executors.newSingleThreadExecutor(BlockingExecutors
+				.daemon("ratings"));
+		stats.scan(new StatsTable.Visitor() {
+			@Override
+			public void visit(long player, double rating) {
+				if (rating != 0)
+					board.put(player, 0, rating);
+			}
+		});
+	}
+
+	/**
+	 * Calcola il punteggio atteso di un player contro un avversario.
+	 * 
+	 * @param rating
+	 *            rating del player.
+	 * @param foe
+	 *            rating dell'avversario.
+	 * @return punteggio atteso, tra 0 e 1.
+	 */
+	public static double expected(double rating, double foe) {
+		return 1 / (1 + Math.pow(10, (foe - rating) / 400));
+	}
+
+	/**
+	 * Accoda l'aggiornamento dei rating dei player di una partita conclusa.
+	 * 
+	 * @param player1
+	 *            id del player 1.
+	 * @param name1
+	 *            nickname del player 1.
+	 * @param player2
+	 *            id del player 2.
+	 * @param name2
+	 *            nickname del player 2.
+	 * @param result
+	 *            1: ha vinto il player 1; 2: ha vinto il player 2; 3:
+	 *            pareggio.
+	 */
+	public void gameEnded(final long player1, final String name1,
+			final long player2, final String name2, final int result) {
+		try {
+			worker.execute(new Runnable() {
+				@Override
+				public void run() {
+					update(player1, name1, player2, name2, result);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			// Server in chiusura: il risultato non viene valutato.
+		}
+	}
+
+	/**
+	 * Restituisce il rating di un player.
+	 * 
+	 * @param player
+	 *            id del player.
+	 * @return rating del player, 0 se non ha ancora concluso una partita.
+	 */
+	public double getRating(long player) {
+		return stats.getRating(player);
+	}
+
+	/**
+	 * Restituisce la posizione in classifica di un player.
+	 * 
+	 * @param player
+	 *            id del player.
+	 * @return posizione del player, a partire da 1; 0 se il player non e' in
+	 *         classifica.
+	 */
+	public int getRank(long player) {
+		double r = stats.getRating(player);
+		return (r == 0) ? 0 : board.rank(player, r);
+	}
+
+	/**
+	 * Restituisce la classifica dei player.
+	 * 
+	 * @return classifica.
+	 */
+	public Leaderboard getLeaderboard() {
+		return board;
+	}
+
+	/**
+	 * Attende l'applicazione degli aggiornamenti accodati fino a questo
+	 * momento.
+	 * 
+	 * @throws InterruptedException
+	 */
+	public void sync() throws InterruptedException {
+		try {
+			worker.submit(new Runnable() {
+				@Override
+				public void run() {
+				}
+			}).get();
+		} catch (ExecutionException e) {
+			// Il task vuoto non solleva eccezioni.
+		}
+	}
+
+	/**
+	 * Applica gli aggiornamenti accodati e arresta il thread dei rating.
+	 */
+	public void close() {
+		worker.shutdown();
+		try {
+			worker.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/*
+	 * Aggiorna i rating dei player di una partita conclusa. Viene eseguito
+	 * soltanto dal thread dei rating.
+	 */
+	private void update(long player1, String name1, long player2,
+			String name2, int result) {
+		double old1 = stats.getRating(player1);
+		double old2 = stats.getRating(player2);
+		double r1 = (old1 == 0) ? INITIAL_RATING : old1;
+		double r2 = (old2 == 0) ? INITIAL_RATING : old2;
+		double score = (result == 1) ? 1 : (result == 2) ? 0 : 0.5;
+		double delta = K * (score - expected(r1, r2));
+		rate(player1, name1, old1, r1 + delta);
+		rate(player2, name2, old2, r2 - delta);
+	}
+
+	private void rate(long player, String name, double old, double rating) {
+		try {
+			stats.setRating(player, name, rating);
+			board.put(player, old, rating);
+		} catch (IOException e) {
+			System.out.println("Impossible to update the rating of " + name
+					+ ": " + e.getMessage());
+		}
+	}
+
+}
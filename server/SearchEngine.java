@@ -0,0 +1,502 @@
+package server;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import api.Game;
+
+/**
+ * Motore di ricerca della mossa migliore per griglie m,n,k troppo grandi per
+ * una tabella precalcolata. Effettua una ricerca alpha-beta ad
+ * approfondimento iterativo entro un tempo massimo per mossa:<br/>
+ * - le posizioni gia' valutate vengono memorizzate in una
+ * {@link TranspositionTable} indicizzata da chiavi Zobrist, aggiornate in
+ * maniera incrementale ad ogni mossa;<br/>
+ * - ad ogni iterazione la prima mossa della radice (la migliore
+ * dell'iterazione precedente) viene valutata da sola, le restanti vengono
+ * suddivise tra i thread di un {@link ForkJoinPool}, ciascuno con una propria
+ * copia della griglia e la tabella condivisa;<br/>
+ * - vengono considerate soltanto le caselle libere entro due caselle da un
+ * simbolo gia' presente;<br/>
+ * - se richiesto, le posizioni equivalenti per simmetria ({@link Symmetry})
+ * condividono lo stesso elemento della tabella: la chiave usata e' la minima
+ * tra le chiavi Zobrist dei possibili orientamenti, mantenute tutte in
+ * maniera incrementale, e la mossa memorizzata viene riportata
+ * nell'orientamento della posizione corrente.<br/>
+ * Le posizioni non concluse alla profondita' massima valgono 0; le vittorie
+ * piu' rapide valgono piu' di quelle lente.<br/>
+ * Un motore esegue una ricerca per volta; la tabella delle trasposizioni
+ * viene conservata tra una ricerca e la successiva.
+ * 
+ * @author Gennaro Capo
+ * @author Mirko Conte
+ * @author Vincenzo De Notaris
+ * @author Roberto Pacilio
+ * @version 1.0
+ * @see server.MnkBoard
+ */
+public class SearchEngine {
+
+	// Attributi privati.
+	private static final int INFINITY = 30000;
+	private static final int WIN = 20000;
+	private static final int RADIUS = 2;
+	// Ogni quanti nodi si controlla il tempo residuo.
+	private static final int CLOCK_MASK = 1023;
+	private final int width;
+	private final int height;
+	private final long[][] zobrist;
+	private final long sideKey;
+	private final Symmetry symmetry;
+	private final int[] order;
+	private final TranspositionTable tt;
+	private final ForkJoinPool pool;
+	private final AtomicLong nodes;
+	private final AtomicLong probes;
+	private final AtomicLong hits;
+	private volatile long deadline;
+	private volatile boolean aborted;
+	private long elapsed;
+	private int depth;
+
+	/**
+	 * Costruttore di classe.
+	 * 
+	 * @param width
+	 *            numero di colonne delle griglie da analizzare.
+	 * @param height
+	 *            numero di righe delle griglie da analizzare.
+	 * @param ttBits
+	 *            logaritmo in base 2 del numero di elementi della tabella
+	 *            delle trasposizioni.
+	 * @param pool
+	 *            pool su cui suddividere le mosse della radice.
+	 */
+	public SearchEngine(int width, int height, int ttBits, ForkJoinPool pool) {
+		this(width, height, ttBits, pool, true);
+	}
+
+	/**
+	 * Costruttore di classe.
+	 * 
+	 * @param width
+	 *            numero di colonne delle griglie da analizzare.
+	 * @param height
+	 *            numero di righe delle griglie da analizzare.
+	 * @param ttBits
+	 *            logaritmo in base 2 del numero di elementi della tabella
+	 *            delle trasposizioni.
+	 * @param pool
+	 *            pool su cui suddividere le mosse della radice.
+	 * @param symmetric
+	 *            true se le posizioni equivalenti per simmetria devono
+	 *            condividere gli elementi della tabella delle trasposizioni.
+	 */
+	public SearchEngine(int width, int height, int ttBits, ForkJoinPool pool,
+			boolean symmetric) {
+		this.width = width;
+		this.height = height;
+		this.tt = new TranspositionTable(ttBits);
+		this.pool = pool;
+		this.nodes = new AtomicLong();
+		this.probes = new AtomicLong();
+		this.hits = new AtomicLong();
+		Random random = new Random(0x7A1C7AC);
+		zobrist = new long[width * height][3];
+		for (long[] k : zobrist) {
+			k[Game.P1_CELL] = random.nextLong();
+			k[Game.P2_CELL] = random.nextLong();
+		}
+		sideKey = random.nextLong();
+		symmetry = symmetric ? new Symmetry(width, height) : null;
+
+		// Caselle ordinate per distanza dal centro.
+		Integer[] cells = new Integer[width * height];
+		for (int i = 0; i < cells.length; i++)
+			cells[i] = i;
+		Arrays.sort(cells, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return distance(a) - distance(b);
+			}
+		});
+		order = new int[cells.length];
+		for (int i = 0; i < cells.length; i++)
+			order[i] = cells[i];
+	}
+
+	/**
+	 * Cerca la mossa migliore per il player di turno.
+	 * 
+	 * @param board
+	 *            posizione da analizzare; non viene modificata.
+	 * @param side
+	 *            player di turno: Game.P1_CELL o Game.P2_CELL.
+	 * @param budget
+	 *            tempo massimo, in millisecondi.
+	 * @return mossa migliore, -1 se la partita e' conclusa.
+	 */
+	public int bestMove(MnkBoard board, int side, long budget) {
+		long start = System.nanoTime();
+		deadline = start + TimeUnit.MILLISECONDS.toNanos(budget);
+		aborted = false;
+		nodes.set(0);
+		probes.set(0);
+		hits.set(0);
+		depth = 0;
+
+		int free = board.getWidth() * board.getHeight() - board.getFilled();
+		int best = -1;
+		if (board.result() == 0 && free > 0) {
+			Worker root = new Worker(board, side);
+			int[] moves = new int[free];
+			int n = root.generate(moves, -1);
+			best = moves[0];
+			for (int d = 1; d <= free; d++) {
+				int[] result = searchRoot(root, moves, n, d);
+				if (result == null)
+					break;
+				best = result[0];
+				depth = d;
+				// La mossa migliore viene esaminata per prima alla prossima
+				// iterazione.
+				for (int i = 0; i < n; i++)
+					if (moves[i] == best) {
+						moves[i] = moves[0];
+						moves[0] = best;
+					}
+				if (Math.abs(result[1]) > WIN - INFINITY / 2)
+					break;
+			}
+			root.flush();
+		}
+		elapsed = System.nanoTime() - start;
+		return best;
+	}
+
+	/**
+	 * Restituisce la profondita' dell'ultima iterazione completata
+	 * dall'ultima ricerca.
+	 * 
+	 * @return profondita' raggiunta.
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+	/**
+	 * Restituisce il numero di nodi visitati dall'ultima ricerca.
+	 * 
+	 * @return nodi visitati.
+	 */
+	public long getNodes() {
+		return nodes.get();
+	}
+
+	/**
+	 * Restituisce la velocita' dell'ultima ricerca.
+	 * 
+	 * @return nodi visitati al secondo.
+	 */
+	public double getNodesPerSecond() {
+		return (elapsed == 0) ? 0 : nodes.get() * 1e9 / elapsed;
+	}
+
+	/**
+	 * Restituisce la frazione di accessi alla tabella delle trasposizioni che
+	 * hanno trovato la posizione cercata durante l'ultima ricerca.
+	 * 
+	 * @return percentuale di riscontri, tra 0 e 1.
+	 */
+	public double getHitRate() {
+		long p = probes.get();
+		return (p == 0) ? 0 : (double) hits.get() / p;
+	}
+
+	/**
+	 * Svuota la tabella delle trasposizioni.
+	 */
+	public void clear() {
+		tt.clear();
+	}
+
+	/*
+	 * Esegue un'iterazione alla profondita' d. Restituisce la mossa migliore e
+	 * il suo punteggio, null se il tempo e' scaduto.
+	 */
+	private int[] searchRoot(final Worker root, int[] moves, int n, final int d) {
+		final AtomicInteger alpha = new AtomicInteger(-INFINITY);
+		final AtomicInteger best = new AtomicInteger(moves[0]);
+		int first = root.rootMove(moves[0], d, -INFINITY);
+		if (aborted && d > 1)
+			return null;
+		alpha.set(first);
+
+		List<RecursiveAction> tasks = new ArrayList<RecursiveAction>(n);
+		for (int i = 1; i < n; i++) {
+			final int m = moves[i];
+			tasks.add(new RecursiveAction() {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected void compute() {
+					Worker w = new Worker(root);
+					int score = w.rootMove(m, d, alpha.get());
+					w.flush();
+					synchronized (alpha) {
+						if (!aborted && score > alpha.get()) {
+							alpha.set(score);
+							best.set(m);
+						}
+					}
+				}
+			});
+		}
+		if (!tasks.isEmpty())
+			pool.invoke(new Join(tasks));
+		if (aborted && d > 1)
+			return null;
+		return new int[] { best.get(), alpha.get() };
+	}
+
+	private int distance(int cell) {
+		int r = cell / width;
+		int c = cell % width;
+		return Math.abs(2 * r - (height - 1)) + Math.abs(2 * c - (width - 1));
+	}
+
+	/*
+	 * Converte i punteggi di vittoria in punteggi relativi alla posizione
+	 * memorizzata, e viceversa, cosi' che restino validi a qualsiasi distanza
+	 * dalla radice.
+	 */
+	private static int toTable(int score, int ply) {
+		if (score > WIN - INFINITY / 2)
+			return score + ply;
+		if (score < -WIN + INFINITY / 2)
+			return score - ply;
+		return score;
+	}
+
+	private static int fromTable(int score, int ply) {
+		if (score > WIN - INFINITY / 2)
+			return score - ply;
+		if (score < -WIN + INFINITY / 2)
+			return score + ply;
+		return score;
+	}
+
+	/*
+	 * Esegue in parallelo un insieme di azioni.
+	 */
+	private static class Join extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+		private final List<RecursiveAction> tasks;
+
+		public Join(List<RecursiveAction> tasks) {
+			this.tasks = tasks;
+		}
+
+		@Override
+		protected void compute() {
+			invokeAll(tasks);
+		}
+
+	} // Chiusura della inner-class.
+
+	/*
+	 * Stato di ricerca di un singolo thread: copia privata della griglia,
+	 * chiave Zobrist corrente, mosse preallocate per ogni livello e contatori
+	 * locali.
+	 */
+	private class Worker {
+
+		private final MnkBoard board;
+		private final int side;
+		// Chiave Zobrist di ogni orientamento; keys[0] e' la posizione reale.
+		private final long[] keys;
+		private long key;
+		private int orientation;
+		private final int[][] moves;
+		private long localNodes;
+		private long localProbes;
+		private long localHits;
+
+		public Worker(MnkBoard b, int side) {
+			this.board = new MnkBoard(b);
+			this.side = side;
+			int cells = width * height;
+			keys = new long[(symmetry == null) ? 1 : symmetry.size()];
+			for (int t = 0; t < keys.length; t++) {
+				for (int m = 0; m < cells; m++)
+					if (board.cell(m) != Game.FREE_CELL)
+						keys[t] ^= zobrist[cell(t, m)][board.cell(m)];
+				if (side == Game.P2_CELL)
+					keys[t] ^= sideKey;
+			}
+			canonicalize();
+			moves = new int[cells + 1][cells];
+		}
+
+		public Worker(Worker root) {
+			this(root.board, root.side);
+		}
+
+		/*
+		 * Valuta una mossa della radice con finestra (alpha, +infinito).
+		 */
+		public int rootMove(int m, int d, int alpha) {
+			int score = play(m, side, d - 1, -INFINITY, -alpha, 1);
+			return score;
+		}
+
+		public void flush() {
+			nodes.addAndGet(localNodes);
+			probes.addAndGet(localProbes);
+			hits.addAndGet(localHits);
+			localNodes = 0;
+			localProbes = 0;
+			localHits = 0;
+		}
+
+		/*
+		 * Gioca la mossa m per il player s, valuta la posizione risultante
+		 * dal punto di vista di s e annulla la mossa.
+		 */
+		private int play(int m, int s, int d, int alpha, int beta, int ply) {
+			board.play(m, s);
+			toggle(m, s);
+			int r = board.result();
+			int score;
+			if (r == s)
+				score = WIN - ply;
+			else if (r != 0)
+				score = 0;
+			else
+				score = -negamax(3 - s, d, alpha, beta, ply);
+			toggle(m, s);
+			board.undo(m);
+			return score;
+		}
+
+		/*
+		 * Aggiunge o rimuove il simbolo s nella casella m da tutte le chiavi
+		 * e passa il turno.
+		 */
+		private void toggle(int m, int s) {
+			for (int t = 0; t < keys.length; t++)
+				keys[t] ^= zobrist[cell(t, m)][s] ^ sideKey;
+			canonicalize();
+		}
+
+		/*
+		 * Sceglie come chiave la minima tra quelle degli orientamenti.
+		 */
+		private void canonicalize() {
+			key = keys[0];
+			orientation = 0;
+			for (int t = 1; t < keys.length; t++)
+				if (keys[t] < key) {
+					key = keys[t];
+					orientation = t;
+				}
+		}
+
+		private int cell(int t, int m) {
+			return (t == 0) ? m : symmetry.apply(t, m);
+		}
+
+		/*
+		 * Negamax con potature alpha-beta dal punto di vista del player s.
+		 */
+		private int negamax(int s, int d, int alpha, int beta, int ply) {
+			if ((++localNodes & CLOCK_MASK) == 0
+					&& System.nanoTime() > deadline)
+				aborted = true;
+			if (aborted)
+				return 0;
+			if (d == 0)
+				return 0;
+
+			localProbes++;
+			long entry = tt.probe(key);
+			int ttMove = -1;
+			if (entry != 0) {
+				localHits++;
+				ttMove = TranspositionTable.move(entry);
+				if (ttMove >= 0 && orientation != 0)
+					ttMove = symmetry.invert(orientation, ttMove);
+				if (TranspositionTable.depth(entry) >= d) {
+					int score = fromTable(TranspositionTable.score(entry), ply);
+					int bound = TranspositionTable.bound(entry);
+					if (bound == TranspositionTable.EXACT
+							|| (bound == TranspositionTable.LOWER && score >= beta)
+							|| (bound == TranspositionTable.UPPER && score <= alpha))
+						return score;
+				}
+			}
+
+			int[] list = moves[ply];
+			int n = generate(list, ttMove);
+			int originalAlpha = alpha;
+			int best = -INFINITY;
+			int bestMove = -1;
+			for (int i = 0; i < n; i++) {
+				int score = play(list[i], s, d - 1, -beta, -alpha, ply + 1);
+				if (aborted)
+					return 0;
+				if (score > best) {
+					best = score;
+					bestMove = list[i];
+				}
+				if (score > alpha)
+					alpha = score;
+				if (alpha >= beta)
+					break;
+			}
+
+			int bound = (best <= originalAlpha) ? TranspositionTable.UPPER
+					: (best >= beta) ? TranspositionTable.LOWER
+							: TranspositionTable.EXACT;
+			if (bestMove >= 0 && orientation != 0)
+				bestMove = symmetry.apply(orientation, bestMove);
+			tt.store(key, toTable(best, ply), d, bound, bestMove);
+			return best;
+		}
+
+		/*
+		 * Genera le caselle libere vicine ai simboli presenti, ordinate per
+		 * distanza dal centro, con la mossa della tabella in testa.
+		 */
+		private int generate(int[] list, int first) {
+			int n = 0;
+			// La mossa della tabella potrebbe provenire da una collisione.
+			if (first >= 0 && board.cell(first) == Game.FREE_CELL)
+				list[n++] = first;
+			else
+				first = -1;
+			for (int m : order) {
+				if (m == first || board.cell(m) != Game.FREE_CELL)
+					continue;
+				if (board.getFilled() == 0 || nearStone(m))
+					list[n++] = m;
+			}
+			if (n == 0)
+				list[n++] = order[0];
+			return n;
+		}
+
+		private boolean nearStone(int m) {
+			int r = m / width;
+			int c = m % width;
+			for (int rr = Math.max(0, r - RADIUS); rr <= Math.min(height - 1, r + RADIUS); rr++)
+				for (int cc = Math.max(0, c - RADIUS); cc <= Math.min(width - 1, c + RADIUS); cc++)
+					if (board.cell(rr * width + cc) != Game.FREE_CELL)
+						return true;
+			return false;
+		}
+
+	} // Chiusura della inner-class.
+
+}
@@ -0,0 +1,201 @@
+package server;
+
+import java.security.SecureRandom;
+import api.*;
+
+/**
+ * Tabella delle sessioni dei player registrati, indicizzata da token a 64
+ * bit. I 32 bit meno significativi del token contengono la posizione della
+ * sessione nella tabella (20 bit) e un numero di generazione della
+ * posizione, incrementato ad ogni riuso: un token di una sessione chiusa non
+ * identifica mai la sessione che ne ha preso il posto. I 32 bit piu'
+ * significativi sono casuali ({@link SecureRandom}): poiche' il token e'
+ * l'unica prova dell'identita' di un player, un client non puo' ricavare il
+ * token di un altro player da quello ricevuto.<br/>
+ * La ricerca di una sessione e' un accesso a un array seguito dal confronto
+ * di due long, senza acquisire lock e senza creare oggetti; l'apertura e la
+ * chiusura di una sessione acquisiscono brevemente il lock della tabella.
+ * 
+ * @author Gennaro Capo
+ * @author Mirko Conte
+ * @author Vincenzo De Notaris
+ * @author Roberto Pacilio
+ * @version 1.0
+ * @see server.TicTacToeServerImpl
+ */
+public class SessionTable {
+
+	/**
+	 * Token che non identifica alcuna sessione.
+	 */
+	public static final long NO_SESSION = TicTacToeServer.NO_SESSION;
+
+	// Attributi privati.
+	private static final int SLOT_BITS = 20;
+	private static final int SLOT_MASK = (1 << SLOT_BITS) - 1;
+	private static final int GENERATION_MASK = (1 << (31 - SLOT_BITS)) - 1;
+	private static final int INITIAL_CAPACITY = 64;
+	private final SecureRandom random;
+	private volatile Session[] slots;
+	private int[] generations;
+	private int[] free;
+	private int freeCount;
+	private int used;
+	private int size;
+
+	/**
+	 * Costruttore di classe. Crea una tabella vuota.
+	 */
+	public SessionTable() {
+		random = new SecureRandom();
+		slots = new Session[INITIAL_CAPACITY];
+		generations = new int[INITIAL_CAPACITY];
+		free = new int[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * Apre una nuova sessione.
+	 * 
+	 * @param p
+	 *            player della sessione.
+	 * @param name
+	 *            nickname del player.
+	 * @return token della sessione, sempre diverso da NO_SESSION.
+	 * @throws IllegalStateException
+	 *             se la tabella e' piena.
+	 */
+	public synchronized long open(Player p, String name) {
+		int slot;
+		if (freeCount > 0)
+			slot = free[--freeCount];
+		else {
+			if (used == slots.length)
+				grow();
+			slot = used++;
+		}
+		// La generazione parte da 1, cosi' che nessun token valga NO_SESSION.
+		int generation = (generations[slot] % GENERATION_MASK) + 1;
+		generations[slot] = generation;
+		long token = (long) random.nextInt() << 32
+				| (generation << SLOT_BITS | slot);
+		Session[] s = slots;
+		s[slot] = new Session(token, p, name);
+		// Scrittura volatile: rende visibile la sessione ai lettori.
+		slots = s;
+		size++;
+		return token;
+	}
+
+	/**
+	 * Restituisce la sessione identificata dal token.
+	 * 
+	 * @param token
+	 *            token della sessione.
+	 * @return sessione, null se il token non identifica una sessione aperta.
+	 */
+	public Session get(long token) {
+		Session[] s = slots;
+		int slot = (int) token & SLOT_MASK;
+		if (slot >= s.length)
+			return null;
+		Session session = s[slot];
+		if (session == null || session.token != token)
+			return null;
+		return session;
+	}
+
+	/**
+	 * Chiude la sessione identificata dal token.
+	 * 
+	 * @param token
+	 *            token della sessione.
+	 * @return sessione chiusa, null se il token non identifica una sessione
+	 *         aperta.
+	 */
+	public synchronized Session close(long token) {
+		Session session = get(token);
+		if (session == null)
+			return null;
+		int slot = (int) token & SLOT_MASK;
+		Session[] s = slots;
+		s[slot] = null;
+		slots = s;
+		free[freeCount++] = slot;
+		size--;
+		return session;
+	}
+
+	/**
+	 * Restituisce il numero di sessioni aperte.
+	 * 
+	 * @return numero di sessioni aperte.
+	 */
+	public synchronized int size() {
+		return size;
+	}
+
+	/*
+	 * Raddoppia la capacita' della tabella. La nuova tabella viene pubblicata
+	 * soltanto dopo la copia, cosi' che le letture concorrenti vedano sempre
+	 * una tabella completa.
+	 */
+	private void grow() {
+		if (slots.length > SLOT_MASK)
+			throw new IllegalStateException("Too many sessions.");
+		int capacity = slots.length * 2;
+		Session[] s = new Session[capacity];
+		System.arraycopy(slots, 0, s, 0, slots.length);
+		int[] g = new int[capacity];
+		System.arraycopy(generations, 0, g, 0, generations.length);
+		int[] f = new int[capacity];
+		System.arraycopy(free, 0, f, 0, freeCount);
+		generations = g;
+		free = f;
+		slots = s;
+	}
+
+	/**
+	 * Sessione di un player registrato.
+	 */
+	public static class Session {
+
+		private final long token;
+		private final Player player;
+		private final String name;
+
+		public Session(long token, Player player, String name) {
+			this.token = token;
+			this.player = player;
+			this.name = name;
+		}
+
+		/**
+		 * Restituisce il token della sessione.
+		 * 
+		 * @return token della sessione.
+		 */
+		public long getToken() {
+			return token;
+		}
+
+		/**
+		 * Restituisce il player della sessione.
+		 * 
+		 * @return player della sessione.
+		 */
+		public Player getPlayer() {
+			return player;
+		}
+
+		/**
+		 * Restituisce il nickname del player.
+		 * 
+		 * @return nickname del player.
+		 */
+		public String getName() {
+			return name;
+		}
+
+	} // Chiusura della inner-class.
+
+}
@@ -1,5 +1,6 @@
 package server;
 
+import java.io.*;
 import java.net.*;
 import java.rmi.*;
 
@@ -8,6 +9,13 @@ import api.*;
 /**
  * Questa classe contiene il metodo main per far partire l'applicazione lato server.
  * 
+ * Opzioni disponibili:<br/>
+ * --virtual-threads: le chiamate di callback verso i player e i ping di
+ * monitoraggio vengono eseguiti su thread virtuali (richiede Java 21);<br/>
+ * --data=DIR: le partite vengono registrate nella directory indicata, quelle
+ * concluse vengono archiviate e, al riavvio del server, quelle non ancora
+ * concluse vengono ricostruite.
+ * 
  * @author Gennaro Capo
  * @author Mirko Conte
  * @author Vincenzo De Notaris
@@ -19,8 +27,23 @@ public class StartServer {
 	/**
 	 * Main dell'applicazione lato server.
 	 */
-	public static void main(String[] args) throws RemoteException, MalformedURLException {
-		TicTacToeServer server = new TicTacToeServerImpl();
+	public static void main(String[] args) throws IOException, MalformedURLException {
+		BlockingExecutors.Mode mode = BlockingExecutors.Mode.PLATFORM;
+		File dataDir = null;
+		for (String arg : args) {
+			if (arg.equals("--virtual-threads")) {
+				if (BlockingExecutors.isVirtualSupported())
+					mode = BlockingExecutors.Mode.VIRTUAL;
+				else
+					System.out.println("Virtual threads require Java 21, using platform threads.");
+			} else if (arg.startsWith("--data="))
+				dataDir = new File(arg.substring("--data=".length()));
+		}
+		TicTacToeServer server;
+		if (dataDir != null)
+			server = new TicTacToeServerImpl(mode, dataDir);
+		else
+			server = new TicTacToeServerImpl(mode);
 		Naming.rebind("tictactoe", server);
 	}
 
@@ -0,0 +1,468 @@
+package server;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.locks.*;
+
+/**
+ * Statistiche dei player (vittorie, sconfitte, pareggi, abbandoni e rating),
+ * memorizzate in una tabella hash a indirizzamento aperto mappata in memoria
+ * e indicizzata dall'id del nickname ({@link GameArchive#id(String)}). I
+ * record risiedono fuori dallo heap: milioni di player non aggiungono alcun
+ * oggetto da esaminare al garbage collector.<br/>
+ * Le collisioni vengono risolte con scansione lineare; gli elementi non
+ * vengono mai eliminati, per cui la ricerca di un player si ferma al primo
+ * elemento vuoto. Quando la tabella e' occupata per tre quarti viene
+ * ricostruita in un file di capacita' doppia, che sostituisce il
+ * precedente.<br/>
+ * Ogni contatore viene incrementato detenendo il lock di uno dei gruppi
+ * (STRIPES) in cui sono suddivisi gli elementi, cosi' che le partite concluse
+ * contemporaneamente aggiornino i propri player in parallelo; le letture non
+ * acquisiscono alcun lock. Le modifiche vengono scritte su disco dal sistema
+ * operativo a partire dalla memoria mappata e rese persistenti da
+ * {@link #force()}.<br/>
+ * 
+ * Formato dell'elemento:<br/>
+ * 0: id del player (long, 0 se l'elemento e' vuoto);<br/>
+ * 8: vittorie, sconfitte, pareggi e abbandoni (un int ciascuno);<br/>
+ * 24: rating (double, 0 se il player non ha ancora un rating);<br/>
+ * 32: nickname (lunghezza in byte seguita da al piu' NAME_BYTES byte in
+ * UTF-8; i nickname piu' lunghi vengono troncati).
+ * 
+ * @author Gennaro Capo
+ * @author Mirko Conte
+ * @author Vincenzo De Notaris
+ * @author Roberto Pacilio
+ * @version 1.0
+ * @see server.TicTacToeServerImpl
+ */
+public class StatsTable {
+
+	/**
+	 * Contatore delle vittorie.
+	 */
+	public static final int WINS = 0;
+
+	/**
+	 * Contatore delle sconfitte.
+	 */
+	public static final int LOSSES = 1;
+
+	/**
+	 * Contatore dei pareggi.
+	 */
+	public static final int DRAWS = 2;
+
+	/**
+	 * Contatore delle partite abbandonate prima della conclusione.
+	 */
+	public static final int ABANDONS = 3;
+
+	/**
+	 * Lunghezza in byte di un elemento.
+	 */
+	public static final int RECORD_SIZE = 64;
+
+	/**
+	 * Numero massimo di byte memorizzati del nickname.
+	 */
+	public static final int NAME_BYTES = 31;
+
+	/**
+	 * Destinatario degli elementi della tabella durante una scansione.
+	 */
+	public interface Visitor {
+
+		/**
+		 * Riceve un player della tabella.
+		 * 
+		 * @param player
+		 *            id del player.
+		 * @param rating
+		 *            rating del player, 0 se non ne ha ancora uno.
+		 */
+		void visit(long player, double rating);
+	}
+
+	// Attributi privati.
+	private static final int MAGIC = 0x54545453;
+	private static final int VERSION = 2;
+	private static final int HEADER = 64;
+	private static final int BITS_OFFSET = 12;
+	private static final int COUNT_OFFSET = 16;
+	private static final int RATING = 24;
+	private static final int NAME = 32;
+	private static final int DEFAULT_BITS = 16;
+	// Capacita' massima: il file deve restare entro i 2 GB di una mappatura.
+	private static final int MAX_BITS = 24;
+	// Numero di lock per l'aggiornamento dei contatori (potenza di 2).
+	private static final int STRIPES = 64;
+	private final File file;
+	private final ReadWriteLock resize;
+	private final Object insertLock;
+	private final Object[] stripes;
+	private volatile MappedByteBuffer map;
+	private volatile int bits;
+	private volatile int count;
+
+	/**
+	 * Costruttore di classe. Apre, o crea, la tabella.
+	 * 
+	 * @param file
+	 *            file della tabella.
+	 * @throws IOException
+	 */
+	public StatsTable(File file) throws IOException {
+		this(file, DEFAULT_BITS);
+	}
+
+	/**
+	 * Costruttore di classe. Apre la tabella oppure, se il file non esiste,
+	 * la crea con una capacita' iniziale di 2^bits player.
+	 * 
+	 * @param file
+	 *            file della tabella.
+	 * @param bits
+	 *            logaritmo in base 2 della capacita' iniziale.
+	 * @throws IOException
+	 */
+	public StatsTable(File file, int bits) throws IOException {
+		if (bits < 1 || bits > MAX_BITS)
+			throw new IllegalArgumentException("Bits: " + bits);
+		this.file = file;
+		this.resize = new ReentrantReadWriteLock();
+		this.insertLock = new Object();
+		this.stripes = new Object[STRIPES];
+		for (int i = 0; i < STRIPES; i++)
+			stripes[i] = new Object();
+		if (file.length() == 0) {
+			map = map(file, bits, true);
+			this.bits = bits;
+		} else {
+			RandomAccessFile raf = new RandomAccessFile(file, "r");
+			try {
+				if (raf.readInt() != MAGIC)
+					throw new IOException("Not a stats table: " + file);
+				if (raf.readInt() != VERSION || raf.readInt() != RECORD_SIZE)
+					throw new IOException("Unsupported stats table: " + file);
+				this.bits = raf.readInt();
+			} finally {
+				raf.close();
+			}
+			map = map(file, this.bits, false);
+			count = map.getInt(COUNT_OFFSET);
+		}
+	}
+
+	/**
+	 * Incrementa un contatore di un player, aggiungendo il player alla
+	 * tabella se non e' ancora presente.
+	 * 
+	 * @param player
+	 *            id del player.
+	 * @param name
+	 *            nickname del player, memorizzato all'aggiunta.
+	 * @param counter
+	 *            contatore da incrementare: WINS, LOSSES, DRAWS o ABANDONS.
+	 * @throws IOException
+	 *             se la tabella e' piena e non puo' essere ingrandita.
+	 */
+	public void add(long player, String name, int counter) throws IOException {
+		if (counter < WINS || counter > ABANDONS)
+			throw new IllegalArgumentException("Counter: " + counter);
+		int slot = lock(key(player), name);
+		try {
+			MappedByteBuffer b = map;
+			int off = offset(slot) + 8 + 4 * counter;
+			synchronized (stripes[slot & (STRIPES - 1)]) {
+				b.putInt(off, b.getInt(off) + 1);
+			}
+		} finally {
+			resize.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Assegna il rating di un player, aggiungendo il player alla tabella se
+	 * non e' ancora presente.
+	 * 
+	 * @param player
+	 *            id del player.
+	 * @param name
+	 *            nickname del player, memorizzato all'aggiunta.
+	 * @param rating
+	 *            nuovo rating del player, diverso da 0.
+	 * @throws IOException
+	 *             se la tabella e' piena e non puo' essere ingrandita.
+	 */
+	public void setRating(long player, String name, double rating)
+			throws IOException {
+		int slot = lock(key(player), name);
+		try {
+			MappedByteBuffer b = map;
+			synchronized (stripes[slot & (STRIPES - 1)]) {
+				b.putDouble(offset(slot) + RATING, rating);
+			}
+		} finally {
+			resize.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Restituisce il rating di un player.
+	 * 
+	 * @param player
+	 *            id del player.
+	 * @return rating del player, 0 se il player non ne ha ancora uno.
+	 */
+	public double getRating(long player) {
+		MappedByteBuffer b = map;
+		int slot = find(b, key(player));
+		return (slot >= 0) ? b.getDouble(offset(slot) + RATING) : 0;
+	}
+
+	/**
+	 * Restituisce il nickname di un player.
+	 * 
+	 * @param player
+	 *            id del player.
+	 * @return nickname del player, eventualmente troncato; null se il player
+	 *         non e' presente.
+	 */
+	public String getName(long player) {
+		MappedByteBuffer b = map;
+		int slot = find(b, key(player));
+		if (slot < 0)
+			return null;
+		int off = offset(slot) + NAME;
+		byte[] bytes = new byte[b.get(off) & 0xFF];
+		for (int i = 0; i < bytes.length; i++)
+			bytes[i] = b.get(off + 1 + i);
+		try {
+			return new String(bytes, "UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			// UTF-8 e' sempre disponibile.
+			return null;
+		}
+	}
+
+	/**
+	 * Consegna a <code>v</code> tutti i player presenti nella tabella.
+	 * 
+	 * @param v
+	 *            destinatario dei player.
+	 */
+	public void scan(Visitor v) {
+		resize.readLock().lock();
+		try {
+			MappedByteBuffer b = map;
+			for (int i = 0; i < 1 << bits; i++) {
+				long key = b.getLong(offset(i));
+				if (key != 0)
+					v.visit(key, b.getDouble(offset(i) + RATING));
+			}
+		} finally {
+			resize.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Restituisce i contatori di un player.
+	 * 
+	 * @param player
+	 *            id del player.
+	 * @return vittorie, sconfitte, pareggi e abbandoni, nell'ordine; tutti 0
+	 *         se il player non ha mai concluso una partita.
+	 */
+	public int[] get(long player) {
+		MappedByteBuffer b = map;
+		int slot = find(b, key(player));
+		int[] counters = new int[ABANDONS + 1];
+		if (slot >= 0)
+			for (int i = 0; i < counters.length; i++)
+				counters[i] = b.getInt(offset(slot) + 8 + 4 * i);
+		return counters;
+	}
+
+	/**
+	 * Restituisce il numero di player presenti nella tabella.
+	 * 
+	 * @return numero di player.
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Restituisce il numero di elementi della tabella.
+	 * 
+	 * @return capacita' della tabella.
+	 */
+	public int getCapacity() {
+		return 1 << bits;
+	}
+
+	/**
+	 * Rende persistenti le modifiche effettuate.
+	 */
+	public void force() {
+		map.force();
+	}
+
+	/**
+	 * Rende persistenti le modifiche e chiude la tabella.
+	 */
+	public void close() {
+		force();
+	}
+
+	/*
+	 * Cerca il player key: restituisce la posizione del suo elemento oppure,
+	 * se il player non e' presente, il complemento a uno della posizione del
+	 * primo elemento vuoto incontrato.
+	 */
+	private static int find(MappedByteBuffer b, long key) {
+		int mask = (b.capacity() - HEADER) / RECORD_SIZE - 1;
+		int slot = (int) (key ^ (key >>> 32)) & mask;
+		while (true) {
+			long k = b.getLong(offset(slot));
+			if (k == key)
+				return slot;
+			if (k == 0)
+				return ~slot;
+			slot = (slot + 1) & mask;
+		}
+	}
+
+	/*
+	 * Restituisce la posizione del player key, aggiungendolo alla tabella se
+	 * necessario, dopo aver acquisito il lock in lettura della tabella, che
+	 * il chiamante deve rilasciare.
+	 */
+	private int lock(long key, String name) throws IOException {
+		while (true) {
+			resize.readLock().lock();
+			int slot = find(map, key);
+			if (slot < 0)
+				slot = insert(key, name);
+			if (slot >= 0)
+				return slot;
+			resize.readLock().unlock();
+			grow();
+		}
+	}
+
+	/*
+	 * Aggiunge il player key alla tabella e ne restituisce la posizione, -1
+	 * se la tabella va prima ingrandita. Va invocato detenendo il lock in
+	 * lettura della tabella.
+	 */
+	private int insert(long key, String name) {
+		synchronized (insertLock) {
+			MappedByteBuffer b = map;
+			int slot = find(b, key);
+			if (slot >= 0)
+				return slot;
+			if ((count + 1) * 4L > 3L << bits)
+				return -1;
+			slot = ~slot;
+			// I contatori di un elemento vuoto sono gia' a 0.
+			putName(b, offset(slot) + NAME, name);
+			b.putLong(offset(slot), key);
+			count++;
+			b.putInt(COUNT_OFFSET, count);
+			return slot;
+		}
+	}
+
+	/*
+	 * Ricostruisce la tabella in un file di capacita' doppia, che sostituisce
+	 * il precedente soltanto dopo essere stato reso persistente.
+	 */
+	private void grow() throws IOException {
+		resize.writeLock().lock();
+		try {
+			if ((count + 1) * 4L <= 3L << bits)
+				return;
+			if (bits == MAX_BITS)
+				throw new IOException("Stats table full: " + file);
+			File temp = new File(file.getPath() + ".tmp");
+			temp.delete();
+			MappedByteBuffer b = map(temp, bits + 1, true);
+			MappedByteBuffer old = map;
+			for (int i = 0; i < 1 << bits; i++) {
+				long key = old.getLong(offset(i));
+				if (key == 0)
+					continue;
+				int off = offset(~find(b, key));
+				b.putLong(off, key);
+				for (int j = 8; j < RECORD_SIZE; j += 4)
+					b.putInt(off + j, old.getInt(offset(i) + j));
+			}
+			b.putInt(COUNT_OFFSET, count);
+			b.force();
+			if (!temp.renameTo(file))
+				throw new IOException("Cannot rename " + temp);
+			map = b;
+			bits++;
+		} finally {
+			resize.writeLock().unlock();
+		}
+	}
+
+	private static MappedByteBuffer map(File f, int bits, boolean create)
+			throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(f, "rw");
+		try {
+			// La mappatura resta valida anche dopo la chiusura del file.
+			MappedByteBuffer b = raf.getChannel().map(
+					FileChannel.MapMode.READ_WRITE, 0,
+					HEADER + ((long) RECORD_SIZE << bits));
+			if (create) {
+				b.putInt(0, MAGIC);
+				b.putInt(4, VERSION);
+				b.putInt(8, RECORD_SIZE);
+				b.putInt(BITS_OFFSET, bits);
+				b.putInt(COUNT_OFFSET, 0);
+			}
+			return b;
+		} finally {
+			raf.close();
+		}
+	}
+
+	/*
+	 * Scrive il nickname in UTF-8, troncandolo a NAME_BYTES byte senza
+	 * spezzare un carattere.
+	 */
+	private static void putName(MappedByteBuffer b, int off, String name) {
+		if (name == null)
+			return;
+		byte[] bytes;
+		try {
+			bytes = name.getBytes("UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			// UTF-8 e' sempre disponibile.
+			return;
+		}
+		int length = Math.min(bytes.length, NAME_BYTES);
+		while (length < bytes.length && (bytes[length] & 0xC0) == 0x80)
+			length--;
+		b.put(off, (byte) length);
+		for (int i = 0; i < length; i++)
+			b.put(off + 1 + i, bytes[i]);
+	}
+
+	private static int offset(int slot) {
+		return HEADER + slot * RECORD_SIZE;
+	}
+
+	/*
+	 * L'id 0 indica un elemento vuoto e viene quindi sostituito.
+	 */
+	private static long key(long player) {
+		return (player == 0) ? 1 : player;
+	}
+
+}
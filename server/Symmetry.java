@@ -0,0 +1,148 @@
+package server;
+
+/**
+ * Simmetrie di una griglia di gioco. Una griglia quadrata ha otto
+ * orientamenti equivalenti (quattro rotazioni, ciascuna eventualmente
+ * riflessa), una rettangolare quattro (identita', riflessione orizzontale,
+ * riflessione verticale e rotazione di 180 gradi). Posizioni equivalenti
+ * hanno lo stesso valore e mosse migliori corrispondenti: ricondurle a un
+ * unico rappresentante permette a tabelle e cache di memorizzarle una sola
+ * volta.<br/>
+ * Per ogni simmetria viene precalcolata la permutazione delle caselle e la
+ * sua inversa.<br/>
+ * La trasformazione 0 e' sempre l'identita'.
+ * 
+ * @author Gennaro Capo
+ * @author Mirko Conte
+ * @author Vincenzo De Notaris
+ * @author Roberto Pacilio
+ * @version 1.0
+ * @see server.SearchEngine
+ */
+public class Symmetry {
+
+	// Attributi privati.
+	// Trasformazioni ammesse per le griglie rettangolari.
+	private static final int[] RECTANGULAR = { 0, 4, 5, 2 };
+	private final int cells;
+	private final int[][] forward;
+	private final int[][] backward;
+	private final int[] inverse;
+
+	/**
+	 * Costruttore di classe.
+	 * 
+	 * @param width
+	 *            numero di colonne della griglia.
+	 * @param height
+	 *            numero di righe della griglia.
+	 */
+	public Symmetry(int width, int height) {
+		int n = (width == height) ? 8 : 4;
+		cells = width * height;
+		forward = new int[n][cells];
+		backward = new int[n][cells];
+		for (int t = 0; t < n; t++) {
+			for (int r = 0; r < height; r++) {
+				for (int c = 0; c < width; c++) {
+					int m = r * width + c;
+					// Per le griglie rettangolari si usano soltanto le
+					// trasformazioni che non scambiano righe e colonne.
+					int k = (width == height) ? t : RECTANGULAR[t];
+					int to = map(k, r, c, width, height);
+					forward[t][m] = to;
+					backward[t][to] = m;
+				}
+			}
+		}
+		inverse = new int[n];
+		for (int t = 0; t < n; t++)
+			for (int u = 0; u < n; u++)
+				if (composesToIdentity(t, u))
+					inverse[t] = u;
+	}
+
+	/**
+	 * Restituisce il numero di simmetrie della griglia.
+	 * 
+	 * @return 8 per le griglie quadrate, 4 per quelle rettangolari.
+	 */
+	public int size() {
+		return forward.length;
+	}
+
+	/**
+	 * Restituisce la casella in cui la trasformazione <code>t</code> porta la
+	 * casella <code>m</code>.
+	 * 
+	 * @param t
+	 *            trasformazione.
+	 * @param m
+	 *            casella.
+	 * @return casella trasformata.
+	 */
+	public int apply(int t, int m) {
+		return forward[t][m];
+	}
+
+	/**
+	 * Riporta nell'orientamento originale una casella trasformata da
+	 * <code>t</code>.
+	 * 
+	 * @param t
+	 *            trasformazione.
+	 * @param m
+	 *            casella trasformata.
+	 * @return casella originale.
+	 */
+	public int invert(int t, int m) {
+		return backward[t][m];
+	}
+
+	/**
+	 * Restituisce la trasformazione inversa di <code>t</code>.
+	 * 
+	 * @param t
+	 *            trasformazione.
+	 * @return trasformazione inversa.
+	 */
+	public int inverse(int t) {
+		return inverse[t];
+	}
+
+	/*
+	 * Applica la trasformazione k alla casella (r, c): 0 identita', 1-3
+	 * rotazioni di 90, 180 e 270 gradi, 4 riflessione orizzontale, 5
+	 * riflessione verticale, 6 trasposizione, 7 antitrasposizione.
+	 */
+	private static int map(int k, int r, int c, int width, int height) {
+		int n = width - 1;
+		int h = height - 1;
+		switch (k) {
+		case 1:
+			return c * width + (n - r);
+		case 2:
+			return (h - r) * width + (n - c);
+		case 3:
+			return (n - c) * width + r;
+		case 4:
+			return r * width + (n - c);
+		case 5:
+			return (h - r) * width + c;
+		case 6:
+			return c * width + r;
+		case 7:
+			return (n - c) * width + (h - r);
+		default:
+			return r * width + c;
+		}
+	}
+
+	private boolean composesToIdentity(int t, int u) {
+		for (int m = 0; m < cells; m++)
+			if (forward[u][forward[t][m]] != m)
+				return false;
+		return true;
+	}
+
+}
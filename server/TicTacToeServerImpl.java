@@ -1,18 +1,27 @@
 package server;
 
+import java.io.*;
 import java.rmi.*;
 import java.rmi.server.*;
-import java.text.DateFormat;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.*;
 import api.*;
 
 /**
  * Implementazione dell'oggetto remoto {@link TicTacToeServer}. Mantiene traccia
  * dei player che si collegano al server e delle partite correntemente attive.
  * Offre inoltre metodi per creare una nuova partita, aggiungersi a una già
- * creata e ottenere la lista di tutte le partite attive.
+ * creata e ottenere la lista di tutte le partite attive.<br/>
+ * Le strutture dati condivise sono mappe concorrenti: nessun metodo acquisisce
+ * un lock globale sul server e nessuna chiamata remota verso i player viene
+ * effettuata mentre si detiene un lock condiviso.<br/>
+ * Se viene indicata una directory dei dati, la creazione, l'avvio, le mosse e
+ * la rimozione delle partite vengono registrati ({@link MoveLog}), le
+ * partite concluse vengono archiviate ({@link GameArchive}) e i risultati
+ * vengono conteggiati nelle statistiche dei player ({@link StatsTable}) e nei
+ * loro rating ({@link RatingEngine}). Al riavvio le partite non ancora
+ * concluse vengono ricostruite e riprese non appena i loro player aprono una
+ * nuova sessione con lo stesso nickname.
  * 
  * @author Gennaro Capo
  * @author Mirko Conte
@@ -24,19 +33,301 @@ import api.*;
 public class TicTacToeServerImpl extends UnicastRemoteObject implements
 		TicTacToeServer {
 
+	/**
+	 * Millisecondi dopo i quali una chiamata remota del server verso un
+	 * client che non risponde fallisce. Viene impostato come timeout di
+	 * risposta RMI della JVM (<code>sun.rmi.transport.tcp.responseTimeout</code>),
+	 * a meno che questo non sia gia' stato indicato all'avvio.
+	 */
+	public static final long RESPONSE_TIMEOUT = 15000;
+
+	static {
+		if (System.getProperty("sun.rmi.transport.tcp.responseTimeout") == null)
+			System.setProperty("sun.rmi.transport.tcp.responseTimeout",
+					String.valueOf(RESPONSE_TIMEOUT));
+	}
+
 	// Attributi privati.
 	private static final long serialVersionUID = 2461589075214891427L;
-	private Map<String, Game> listGames;
-	private Map<String, Player> listPlayers;
+	// Thread di piattaforma sempre attivi per il lavoro bloccante in modalita'
+	// PLATFORM; se sono tutti bloccati ne vengono creati altri.
+	private static final int CALLBACK_THREADS = 16;
+	private static final long HEARTBEAT_INTERVAL = 5000;
+	private static final int HEARTBEAT_THREADS = 1;
+	// Attesa massima per raccogliere piu' record in una scrittura del registro.
+	private static final long LOG_WINDOW = 2;
+	// Dimensione dei segmenti del registro oltre la quale viene compattato.
+	private static final long LOG_SEGMENT = 8L << 20;
+	// Millisecondi di inattivita' dopo i quali un cursore dell'archivio scade.
+	private static final long CURSOR_TTL = 60000;
+	private static final int MAX_CURSORS = 1024;
+	private ConcurrentMap<String, Game> listGames;
+	private ConcurrentMap<String, Player> listPlayers;
+	private LobbyIndex lobby;
+	private LobbyPublisher publisher;
+	private HeartbeatScheduler heartbeats;
+	private ExecutorService callbacks;
+	private PerfectPlayTable botTable;
+	private GameRouter router;
+	private SessionTable sessions;
+	private ConcurrentMap<String, Long> sessionNames;
+	private MoveLog log;
+	private GameArchive archive;
+	private StatsTable stats;
+	private RatingEngine ratings;
+	private ArchiveCursors cursors;
+	private ConcurrentMap<String, List<Orphan>> orphans;
+	private GameObserver recorder;
 
 	/**
-	 * Costruttore di classe
+	 * Costruttore di classe. Le chiamate di callback verso i player e i ping
+	 * di monitoraggio vengono effettuati da un pool di thread di piattaforma.
 	 * 
 	 * @throws RemoteException
 	 */
 	public TicTacToeServerImpl() throws RemoteException {
-		listGames = new HashMap<String, Game>();
-		listPlayers = new HashMap<String, Player>();
+		this(BlockingExecutors.Mode.PLATFORM);
+	}
+
+	/**
+	 * Costruttore di classe.
+	 * 
+	 * @param mode modalita' di esecuzione delle chiamate di callback verso i
+	 *             player e dei ping di monitoraggio.
+	 * @throws RemoteException
+	 * @see BlockingExecutors
+	 */
+	public TicTacToeServerImpl(BlockingExecutors.Mode mode)
+			throws RemoteException {
+		init(mode);
+	}
+
+	/**
+	 * Costruttore di classe. Le partite vengono registrate nella directory
+	 * <code>dataDir</code>; quelle non ancora concluse al momento
+	 * dell'arresto del server vengono ricostruite dall'ultima istantanea del
+	 * registro e dai record successivi, quelle concluse vengono aggiunte
+	 * all'archivio.
+	 * 
+	 * @param mode modalita' di esecuzione delle chiamate di callback verso i
+	 *             player e dei ping di monitoraggio.
+	 * @param dataDir directory del registro e dell'archivio delle partite.
+	 * @throws IOException se il registro o l'archivio non possono essere
+	 *             aperti.
+	 */
+	public TicTacToeServerImpl(BlockingExecutors.Mode mode, File dataDir)
+			throws IOException {
+		init(mode);
+		if (!dataDir.isDirectory() && !dataDir.mkdirs())
+			throw new IOException("Cannot create " + dataDir);
+		archive = new GameArchive(new File(dataDir, "games.archive"));
+		stats = new StatsTable(new File(dataDir, "players.stats"));
+		ratings = new RatingEngine(stats);
+		cursors = new ArchiveCursors(archive, stats, CURSOR_TTL, MAX_CURSORS);
+		Recovery r = new Recovery();
+		log = new MoveLog(dataDir, LOG_WINDOW, LOG_SEGMENT, r);
+		r.finish();
+	}
+
+	/*
+	 * Inizializza le strutture dati del server.
+	 */
+	private void init(BlockingExecutors.Mode mode) throws RemoteException {
+		callbacks = BlockingExecutors.create(mode, "callback", CALLBACK_THREADS);
+		listGames = new ConcurrentHashMap<String, Game>();
+		router = new GameRouter(listGames);
+		sessions = new SessionTable();
+		sessionNames = new ConcurrentHashMap<String, Long>();
+		listPlayers = new ConcurrentHashMap<String, Player>();
+		lobby = new LobbyIndex();
+		publisher = new LobbyPublisher(lobby, callbacks);
+		heartbeats = new HeartbeatScheduler(HEARTBEAT_INTERVAL,
+				HEARTBEAT_THREADS, callbacks);
+		botTable = new PerfectPlayTable();
+		orphans = new ConcurrentHashMap<String, List<Orphan>>();
+		recorder = new GameObserver() {
+			@Override
+			public void gameEnded(GameImpl g, int result) {
+				archive(g, result);
+				if (result == 3) {
+					count(g, GameImpl.PlayerNumber.P1, StatsTable.DRAWS);
+					count(g, GameImpl.PlayerNumber.P2, StatsTable.DRAWS);
+				} else {
+					boolean p1 = result == 1;
+					count(g, GameImpl.PlayerNumber.P1, p1 ? StatsTable.WINS
+							: StatsTable.LOSSES);
+					count(g, GameImpl.PlayerNumber.P2, p1 ? StatsTable.LOSSES
+							: StatsTable.WINS);
+				}
+				rate(g, result);
+			}
+
+			@Override
+			public void gameAbandoned(GameImpl g, GameImpl.PlayerNumber n) {
+				count(g, n, StatsTable.ABANDONS);
+				// Ai fini del rating l'abbandono e' una sconfitta: lasciare
+				// una partita persa non deve salvare il rating.
+				rate(g, (n == GameImpl.PlayerNumber.P1) ? 2 : 1);
+			}
+		};
+	}
+
+	/**
+	 * Arresta il server: chiude il registro delle partite, dopo averne reso
+	 * persistenti tutti i record, e ferma i thread di monitoraggio, di
+	 * notifica della lista delle partite e di callback.
+	 * 
+	 * @throws IOException se la scrittura del registro e' fallita.
+	 */
+	public void shutdown() throws IOException {
+		heartbeats.shutdown();
+		// Il publisher invia le notifiche della lista con l'esecutore delle
+		// callback: va fermato prima.
+		publisher.shutdown();
+		// La chiusura del registro passa alle code dei player le notifiche
+		// ancora in attesa: l'esecutore delle callback va fermato dopo.
+		try {
+			if (log != null)
+				log.close();
+		} finally {
+			callbacks.shutdown();
+		}
+		if (archive != null)
+			archive.close();
+		if (ratings != null)
+			ratings.close();
+		if (stats != null)
+			stats.close();
+	}
+
+	/**
+	 * Restituisce l'archivio delle partite concluse.
+	 * 
+	 * @return archivio delle partite, null se il server non ha una directory
+	 *         dei dati.
+	 */
+	public GameArchive getArchive() {
+		return archive;
+	}
+
+	/**
+	 * Restituisce le statistiche del player con il nickname indicato.
+	 * 
+	 * @param nickname nickname del player.
+	 * @return partite vinte, perse, pareggiate e abbandonate dal player; tutte
+	 *         0 se il player non ha mai concluso una partita o se il server
+	 *         non ha una directory dei dati.
+	 */
+	@Override
+	public PlayerStats getStats(String nickname) {
+		if (stats == null || nickname == null)
+			return new PlayerStats(nickname, 0, 0, 0, 0);
+		int[] c = stats.get(GameArchive.id(nickname));
+		return new PlayerStats(nickname, c[StatsTable.WINS],
+				c[StatsTable.LOSSES], c[StatsTable.DRAWS],
+				c[StatsTable.ABANDONS]);
+	}
+
+	/**
+	 * Restituisce il motore di calcolo dei rating.
+	 * 
+	 * @return motore dei rating, null se il server non ha una directory dei
+	 *         dati.
+	 */
+	public RatingEngine getRatings() {
+		return ratings;
+	}
+
+	/**
+	 * Restituisce una pagina della classifica dei player, ordinata per rating
+	 * decrescente. La pagina viene letta in tempo O(log n + limit).
+	 * 
+	 * @param offset numero di player da saltare.
+	 * @param limit numero massimo di player da restituire.
+	 * @return pagina della classifica, vuota se il server non ha una
+	 *         directory dei dati.
+	 */
+	@Override
+	public ArrayList<LeaderboardEntry> getLeaderboard(int offset, int limit) {
+		ArrayList<LeaderboardEntry> page = new ArrayList<LeaderboardEntry>();
+		if (ratings == null || offset < 0 || limit <= 0)
+			return page;
+		int n = Math.min(limit, ratings.getLeaderboard().size());
+		long[] players = new long[n];
+		double[] rs = new double[n];
+		n = ratings.getLeaderboard().page(offset, players, rs);
+		for (int i = 0; i < n; i++)
+			page.add(new LeaderboardEntry(offset + i + 1,
+					stats.getName(players[i]), (int) Math.round(rs[i])));
+		return page;
+	}
+
+	/**
+	 * Restituisce la posizione in classifica del player con il nickname
+	 * indicato, in tempo O(log n).
+	 * 
+	 * @param nickname nickname del player.
+	 * @return posizione del player, a partire da 1; 0 se il player non ha
+	 *         ancora concluso una partita o se il server non ha una directory
+	 *         dei dati.
+	 */
+	@Override
+	public int getRank(String nickname) {
+		if (ratings == null || nickname == null)
+			return 0;
+		return ratings.getRank(GameArchive.id(nickname));
+	}
+
+	/**
+	 * Apre un cursore sulle partite concluse, dalla piu' recente alla meno
+	 * recente. Il server conserva soltanto la posizione raggiunta dal
+	 * cursore: le partite vengono lette dall'archivio a ogni pagina.
+	 * 
+	 * @param nickname nickname del player di cui leggere le partite, null per
+	 *            leggere tutte le partite.
+	 * @param before vengono restituite soltanto le partite di posizione minore
+	 *            nell'archivio; Long.MAX_VALUE per partire dalla partita piu'
+	 *            recente.
+	 * @return id del cursore, NO_CURSOR se il server non ha una directory dei
+	 *         dati.
+	 */
+	@Override
+	public long openHistory(String nickname, long before) {
+		if (cursors == null)
+			return NO_CURSOR;
+		return cursors.open((nickname == null) ? 0 : GameArchive.id(nickname),
+				before);
+	}
+
+	/**
+	 * Legge la pagina successiva di un cursore.
+	 * 
+	 * @param cursor id del cursore.
+	 * @param max numero massimo di partite da restituire, al piu'
+	 *            {@link ArchiveCursors#MAX_PAGE}.
+	 * @return pagina di partite, null se il cursore non esiste o e' scaduto.
+	 * @throws RemoteException se la lettura dell'archivio e' fallita.
+	 */
+	@Override
+	public GamePage nextGames(long cursor, int max) throws RemoteException {
+		if (cursors == null)
+			return null;
+		try {
+			return cursors.next(cursor, max);
+		} catch (IOException e) {
+			throw new RemoteException("Cannot read the archive", e);
+		}
+	}
+
+	/**
+	 * Chiude un cursore prima che sia esaurito.
+	 * 
+	 * @param cursor id del cursore.
+	 */
+	@Override
+	public void closeCursor(long cursor) {
+		if (cursors != null)
+			cursors.close(cursor);
 	}
 
 	/**
@@ -47,14 +338,179 @@ public class TicTacToeServerImpl extends UnicastRemoteObject implements
 	 * 			     nickname-ora_di_creazione_partita.<br/>
 	 *               Es: mrossi-12:23:22
 	 * @throws RemoteException
+	 * @throws IllegalStateException
+	 *             se il registro delle partite non e' piu' utilizzabile.
 	 */
 	@Override
-	public synchronized void createGame(Player p, String idGame)
+	public void createGame(Player p, String idGame)
 			throws RemoteException {
 
+		createGame(p, idGame, Game.GRID_DIMENSION, Game.GRID_DIMENSION,
+				Game.GRID_DIMENSION);
+	}
+
+	/**
+	 * Consente ad un player di creare una partita su una griglia di
+	 * <code>width</code> colonne e <code>height</code> righe, in cui vince chi
+	 * allinea <code>winLength</code> simboli consecutivi.
+	 * 
+	 * @param p player che crea la partita.
+	 * @param idGame deve avere il seguente formato:
+	 *               nickname-ora_di_creazione_partita.<br/>
+	 *               Es: mrossi-12:23:22.
+	 * @param width numero di colonne della griglia.
+	 * @param height numero di righe della griglia.
+	 * @param winLength simboli consecutivi necessari per vincere.
+	 * @throws RemoteException
+	 * @throws IllegalArgumentException
+	 *             se le dimensioni della griglia non sono valide.
+	 * @throws IllegalStateException
+	 *             se il registro delle partite non e' piu' utilizzabile.
+	 */
+	@Override
+	public void createGame(Player p, String idGame, int width, int height,
+			int winLength) throws RemoteException {
+
 		// Si suppone che p sia gia' registrato
-		Game g = new GameImpl(p, idGame);
+		newGame(p, SessionTable.NO_SESSION, idGame,
+				MnkBoard.create(width, height, winLength), null);
+	}
+
+	/**
+	 * Consente di creare una nuova partita al player identificato dal token
+	 * della sua sessione, dato un idGame.
+	 * 
+	 * @param token token della sessione del player che crea la partita.
+	 * @param idGame deve avere il seguente formato:
+	 * 			     nickname-ora_di_creazione_partita.<br/>
+	 *               Es: mrossi-12:23:22
+	 * @throws RemoteException
+	 * @throws IllegalArgumentException
+	 *             se il token non identifica una sessione aperta.
+	 * @throws IllegalStateException
+	 *             se il registro delle partite non e' piu' utilizzabile.
+	 */
+	@Override
+	public void createGame(long token, String idGame) throws RemoteException {
+
+		SessionTable.Session s = sessions.get(token);
+		if (s == null)
+			throw new IllegalArgumentException("Session not valid.");
+		newGame(s.getPlayer(), token, idGame, new BitBoard(), null);
+	}
+
+	/**
+	 * Consente al player identificato dal token della sua sessione di creare
+	 * una partita su una griglia di <code>width</code> colonne e
+	 * <code>height</code> righe, in cui vince chi allinea
+	 * <code>winLength</code> simboli consecutivi.
+	 * 
+	 * @param token token della sessione del player che crea la partita.
+	 * @param idGame deve avere il seguente formato:
+	 *               nickname-ora_di_creazione_partita.<br/>
+	 *               Es: mrossi-12:23:22.
+	 * @param width numero di colonne della griglia.
+	 * @param height numero di righe della griglia.
+	 * @param winLength simboli consecutivi necessari per vincere.
+	 * @throws RemoteException
+	 * @throws IllegalArgumentException
+	 *             se il token non identifica una sessione aperta o se le
+	 *             dimensioni della griglia non sono valide.
+	 * @throws IllegalStateException
+	 *             se il registro delle partite non e' piu' utilizzabile.
+	 */
+	@Override
+	public void createGame(long token, String idGame, int width, int height,
+			int winLength) throws RemoteException {
+
+		SessionTable.Session s = sessions.get(token);
+		if (s == null)
+			throw new IllegalArgumentException("Session not valid.");
+		newGame(s.getPlayer(), token, idGame,
+				MnkBoard.create(width, height, winLength), null);
+	}
+
+	/**
+	 * Consente ad un player di creare una partita contro il bot del server,
+	 * che gioca in maniera perfetta. La partita comincia immediatamente e non
+	 * compare nella lista delle partite in attesa di uno sfidante.<br/>
+	 * Le partite contro il bot non sono monitorate dall'heartbeat: se il
+	 * player si disconnette la partita termina alla prima mossa del bot che
+	 * non puo' essere consegnata, oppure quando la partita viene rimossa.
+	 * 
+	 * @param p player che crea la partita.
+	 * @param idGame deve avere il seguente formato:
+	 *               nickname-ora_di_creazione_partita.<br/>
+	 *               Es: mrossi-12:23:22.
+	 * @throws RemoteException
+	 */
+	@Override
+	public void createBotGame(Player p, String idGame) throws RemoteException {
+
+		// Si suppone che p sia gia' registrato
+		newGame(p, SessionTable.NO_SESSION, idGame, new BitBoard(),
+				new BotPlayer(botTable, callbacks));
+	}
+
+	/**
+	 * Consente al player identificato dal token della sua sessione di creare
+	 * una partita contro il bot del server, che gioca in maniera perfetta. La
+	 * partita comincia immediatamente e non compare nella lista delle partite
+	 * in attesa di uno sfidante.
+	 * 
+	 * @param token token della sessione del player che crea la partita.
+	 * @param idGame deve avere il seguente formato:
+	 *               nickname-ora_di_creazione_partita.<br/>
+	 *               Es: mrossi-12:23:22.
+	 * @throws RemoteException
+	 * @throws IllegalArgumentException
+	 *             se il token non identifica una sessione aperta.
+	 */
+	@Override
+	public void createBotGame(long token, String idGame)
+			throws RemoteException {
+
+		SessionTable.Session s = sessions.get(token);
+		if (s == null)
+			throw new IllegalArgumentException("Session not valid.");
+		newGame(s.getPlayer(), token, idGame, new BitBoard(),
+				new BotPlayer(botTable, callbacks));
+	}
+
+	/*
+	 * Crea una partita del player p, con il token della sua sessione. Se bot
+	 * e' null la partita viene aggiunta alla game room, altrimenti bot ne
+	 * diventa lo sfidante e la partita comincia subito. Se il registro delle
+	 * partite non e' piu' utilizzabile la partita viene rifiutata: non
+	 * potrebbe essere ripresa dopo un riavvio del server. Le partite contro
+	 * il bot non vengono registrate, perche' il bot non si ricollega dopo un
+	 * riavvio.
+	 */
+	private void newGame(Player p, long token, String idGame, Board board,
+			Player bot) throws RemoteException {
+
+		if (bot == null && log != null && log.isFailed())
+			throw new IllegalStateException("Move log not available.");
+		heartbeats.touch(p);
+		GameImpl g = new GameImpl(p, idGame, callbacks, board);
+		g.setRouter(router);
+		g.setToken(GameImpl.PlayerNumber.P1, token);
+		String name = nameOf(p, token);
+		g.setPlayerName(GameImpl.PlayerNumber.P1, name);
+		g.setObserver(recorder);
+		if (bot == null && log != null && name != null) {
+			int n = log.newGame();
+			log.create(n, idGame, name, board.getWidth(), board.getHeight(),
+					board.getWinLength());
+			g.setLog(log, n);
+		}
 		listGames.put(idGame, g);
+		if (bot == null)
+			lobby.add(idGame);
+		else {
+			g.claimPlayer2(bot);
+			g.startMatch();
+		}
 	}
 
 	/**
@@ -72,25 +528,65 @@ public class TicTacToeServerImpl extends UnicastRemoteObject implements
 	 *             perche' e' stata cancellata.
 	 */
 	@Override
-	public synchronized void joinGame(Player p, String idGame)
+	public void joinGame(Player p, String idGame)
 			throws RemoteException, GameJoiningException {
 
 		// Si suppone che p sia gia' registrato
-		if (listGames.get(idGame) != null) {
-			GameImpl g = (GameImpl) listGames.get(idGame);
+		join(p, SessionTable.NO_SESSION, idGame);
+	}
+
+	/**
+	 * Consente al player identificato dal token della sua sessione di
+	 * aggiungersi a una partita, avente come id <code>idgame</code>, creata
+	 * da un altro player.
+	 * 
+	 * @param token token della sessione del player.
+	 * @param idGame deve avere il seguente formato:
+	 *               nickname-ora_di_creazione_partita.<br/>
+	 *               Es: mrossi-12:23:22.
+	 * @throws RemoteException
+	 * @throws GameJoiningException
+	 *             se la partita e' gia' completa, non e' piu' disponibile
+	 *             oppure il token non identifica una sessione aperta.
+	 */
+	@Override
+	public void joinGame(long token, String idGame) throws RemoteException,
+			GameJoiningException {
+
+		SessionTable.Session s = sessions.get(token);
+		if (s == null)
+			throw new GameJoiningException("Session not valid.");
+		join(s.getPlayer(), token, idGame);
+	}
+
+	/*
+	 * Aggiunge il player p, con il token della sua sessione, come sfidante
+	 * della partita idGame.
+	 */
+	private void join(Player p, long token, String idGame)
+			throws RemoteException, GameJoiningException {
+
+		heartbeats.touch(p);
+		GameImpl g = (GameImpl) listGames.get(idGame);
+		if (g != null) {
 			// Se la partita non e' gia' piena, si aggiunge il giocatore p.
 			if (g.getPlayer2() == null) {
 				// Si controlla se i giocatori siano la stessa persona.
 				if (g.getPlayer1().equals(p))
 					throw new GameJoiningException("Same players.");
+				// Il posto di sfidante viene prenotato in maniera atomica: se
+				// un altro player lo ha ottenuto nel frattempo la partita e'
+				// piena.
+				else if (!g.claimPlayer2(p))
+					throw new GameJoiningException("Game full.");
 				else {
-					g.setPlayer2(p);
-					Thread checkPlayer1 = new Thread(new PlayerMonitor(
-							g.getPlayer1(), g.getPlayer2(), idGame));
-					Thread checkPlayer2 = new Thread(new PlayerMonitor(
-							g.getPlayer2(), g.getPlayer1(), idGame));
-					checkPlayer1.start();
-					checkPlayer2.start();
+					g.setToken(GameImpl.PlayerNumber.P2, token);
+					String name = nameOf(p, token);
+					g.setPlayerName(GameImpl.PlayerNumber.P2, name);
+					if (log != null && g.getLogGame() != 0 && name != null)
+						log.join(g.getLogGame(), name);
+					g.startMatch();
+					g.setHeartbeat(watch(g));
 				}
 			} else
 				throw new GameJoiningException("Game full.");
@@ -111,14 +607,35 @@ public class TicTacToeServerImpl extends UnicastRemoteObject implements
 	 * @throws RemoteException
 	 */
 	@Override
-	public synchronized boolean register(Player p, String playerName) {
-		if (!listPlayers.containsKey(playerName)) {
-			listPlayers.put(playerName, p);
+	public boolean register(Player p, String playerName) {
+		if (listPlayers.putIfAbsent(playerName, p) == null) {
+			heartbeats.track(p);
 			return true;
 		}
 		return false;
 	}
 
+	/**
+	 * Consente di registrare un player al server, dato un nickname, aprendo
+	 * una sessione. Il token restituito identifica il player nelle chiamate
+	 * successive, al posto del suo oggetto remoto.
+	 * 
+	 * @param p player da registrare.
+	 * @param playerName nickname del player.
+	 * @return token della sessione, NO_SESSION se sono gia' presenti altri
+	 *         player con lo stesso nickname.
+	 * @throws RemoteException
+	 */
+	@Override
+	public long registerSession(Player p, String playerName) {
+		if (!register(p, playerName))
+			return SessionTable.NO_SESSION;
+		long token = sessions.open(p, playerName);
+		sessionNames.put(playerName, token);
+		reattach(playerName, p, token);
+		return token;
+	}
+
 	/**
 	 * Restituisce la lista di tutti i player che hanno creato una partita e che
 	 * sono in attesa di uno sfidante oppure stanno ancora giocando.
@@ -127,53 +644,114 @@ public class TicTacToeServerImpl extends UnicastRemoteObject implements
 	 * @throws RemoteException
 	 */
 	@Override
-	public synchronized ArrayList<String> getAllChallengers() {
-		Set<String> games = listGames.keySet();
-		ArrayList<String> s = new ArrayList<String>(games);
-		Collections.sort(s, new Comparator<String>() {
-			DateFormat df = new SimpleDateFormat("HH:mm:ss");
+	public ArrayList<String> getAllChallengers() {
+		return lobby.all();
+	}
 
-			@Override
-			public int compare(String s1, String s2) {
-				try {
-					Date d1 = df.parse(s1.split("-")[1].trim());
-					Date d2 = df.parse(s2.split("-")[1].trim());
-					return d2.compareTo(d1);
-				} catch (ParseException pe) {
-					return 0;
-				}
-			}
-		});
-		return s;
+	/**
+	 * Restituisce una pagina della lista dei player che hanno creato una
+	 * partita, ordinata dalla partita piu' recente alla meno recente.
+	 * 
+	 * @param offset numero di partite da saltare.
+	 * @param limit numero massimo di partite da restituire.
+	 * @return pagina della lista di player in attesa o con partita in corso.
+	 * @throws RemoteException
+	 */
+	@Override
+	public ArrayList<String> getChallengers(int offset, int limit) {
+		return lobby.page(offset, limit);
+	}
+
+	/**
+	 * Restituisce le modifiche subite dalla lista delle partite a partire
+	 * dalla versione <code>version</code>: le partite aggiunte e quelle
+	 * rimosse, oppure l'indicazione che la lista e' invariata.
+	 * 
+	 * @param version ultima versione della lista nota al client; 0 se il
+	 *                client non ha ancora ricevuto la lista.
+	 * @return modifiche subite dalla lista.
+	 * @throws RemoteException
+	 */
+	@Override
+	public LobbyDelta getChallengersSince(long version) {
+		return lobby.since(version);
+	}
+
+	/**
+	 * Sottoscrive un client alle modifiche della lista delle partite. Il
+	 * server invia le modifiche all'oggetto di callback <code>l</code>,
+	 * accorpando quelle che avvengono a breve distanza l'una dall'altra.
+	 * 
+	 * @param l oggetto di callback del client.
+	 * @param version ultima versione della lista nota al client.
+	 * @throws RemoteException
+	 */
+	@Override
+	public void subscribeLobby(LobbyListener l, long version) {
+		publisher.subscribe(l, version);
 	}
 
 	/**
-	 * Consente di deregistrare un player, dato il suo nickname quando questi si
-	 * disconnette dall'applicazione.
+	 * Annulla la sottoscrizione di un client alle modifiche della lista delle
+	 * partite.
 	 * 
-	 * @param playerName
-	 *            nickname del player da deregistrare.
+	 * @param l oggetto di callback del client.
 	 * @throws RemoteException
 	 */
 	@Override
-	public synchronized void deregister(String playerName) {
-		listPlayers.remove(playerName);
+	public void unsubscribeLobby(LobbyListener l) {
+		publisher.unsubscribe(l);
 	}
 
 	/**
-	 * Consente di rimuovere una partita dalla lista delle partite mantenuta sul
-	 * server.
+	 * Consente di deregistrare il player identificato dal token della sua
+	 * sessione, chiudendo la sessione.
 	 * 
+	 * @param token token della sessione del player da deregistrare.
+	 * @throws RemoteException
+	 */
+	@Override
+	public void deregister(long token) {
+		SessionTable.Session s = sessions.get(token);
+		if (s != null)
+			deregister(s.getName());
+	}
+
+	/*
+	 * Deregistra il player con il nickname playerName, chiudendo la sua
+	 * sessione. Il metodo non fa parte dell'interfaccia remota: il nickname
+	 * non basta ad autenticare il player.
+	 */
+	private void deregister(String playerName) {
+		Player p = listPlayers.remove(playerName);
+		if (p != null)
+			heartbeats.untrack(p);
+		Long token = sessionNames.remove(playerName);
+		if (token != null)
+			sessions.close(token);
+	}
+
+	/**
+	 * Consente al player identificato dal token della sua sessione di
+	 * rimuovere una partita a cui partecipa. Se la partita era ancora in
+	 * corso, l'abbandono viene attribuito al player nelle sue statistiche.
+	 * Se il token non identifica una sessione aperta oppure il player non
+	 * partecipa alla partita, la partita non viene rimossa.
+	 * 
+	 * @param token token della sessione del player.
 	 * @param idGame id della partita da eliminare.Deve avere il seguente formato:
 	 *               nickname-ora_di_creazione_partita.<br/>
 	 *               Es: mrossi-12:23:22.
-	 * @return lista aggiornata dei player dopo la rimozione.
+	 * @param version ultima versione della lista nota al client.
+	 * @return modifiche subite dalla lista dopo la rimozione.
 	 * @throws RemoteException
 	 */
 	@Override
-	public synchronized ArrayList<String> removeGame(String idGame) {
-		listGames.remove(idGame);
-		return getAllChallengers();
+	public LobbyDelta removeGame(long token, String idGame, long version) {
+		SessionTable.Session s = sessions.get(token);
+		if (s != null)
+			dropGame(idGame, s.getName());
+		return lobby.since(version);
 	}
 
 	/**
@@ -182,7 +760,7 @@ public class TicTacToeServerImpl extends UnicastRemoteObject implements
 	 * @return lista dei giocatori correntemente registrati
 	 * @see server.test.TicTacToeServerImplTest
 	 */
-	public synchronized Map<String, Player> getListPlayers() {
+	public Map<String, Player> getListPlayers() {
 		return listPlayers;
 	}
 
@@ -193,66 +771,269 @@ public class TicTacToeServerImpl extends UnicastRemoteObject implements
 	 * @return lista delle partite
 	 * @see server.test.TicTacToeServerImplTest
 	 */
-	public synchronized Map<String, Game> getListGames() {
+	public Map<String, Game> getListGames() {
 		return listGames;
 	}
 
 	/*
-	 * PlayerMonitor effettua il monitoraggio di un giocatore per avere un
-	 * riscontro del suo stato di connessione.
+	 * Restituisce il nickname del player p, identificato dal token della sua
+	 * sessione o, in mancanza, cercandolo tra i player registrati.
 	 */
-	private class PlayerMonitor implements Runnable {
+	private String nameOf(Player p, long token) {
+		SessionTable.Session s = sessions.get(token);
+		if (s != null)
+			return s.getName();
+		for (Map.Entry<String, Player> e : listPlayers.entrySet())
+			if (e.getValue().equals(p))
+				return e.getKey();
+		return null;
+	}
 
-		// Attributi privati.
-		private Player player1;
-		private Player player2;
-		private String idGame;
-		// Rappresenta l'intervallo di interrogazione verso il giocatore.
-		private static final int TIME = 5000;
+	/*
+	 * Aggiunge all'archivio la partita g, appena conclusa con il risultato
+	 * result.
+	 */
+	private void archive(GameImpl g, int result) {
+		String name1 = g.getPlayerName(GameImpl.PlayerNumber.P1);
+		String name2 = g.getPlayerName(GameImpl.PlayerNumber.P2);
+		if (archive == null || name1 == null || name2 == null
+				|| !GameArchive.fits(g.getWidth(), g.getHeight()))
+			return;
+		int[] moves = g.getMoves();
+		try {
+			archive.append(GameArchive.id(g.getIdGame()),
+					GameArchive.id(name1), GameArchive.id(name2),
+					g.getStartTime(), System.currentTimeMillis(),
+					(g.getFirstPlayer() == GameImpl.PlayerNumber.P1) ? 1 : 2,
+					result, g.getWidth(), g.getHeight(), g.getWinLength(),
+					moves, moves.length);
+		} catch (IOException e) {
+			System.out.println("Impossible to archive " + g.getIdGame()
+					+ ": " + e.getMessage());
+		}
+	}
 
-		/*
-		 * Costruttore della classe TicTacToeServerImpl.
-		 */
-		public PlayerMonitor(Player player1, Player player2, String idGame) {
-			super();
-			// Id del game associato alla partita tra due giocatori.
-			this.idGame = idGame;
-			// Giocatore su cui sara' realizzato il ping.
+	/*
+	 * Accoda l'aggiornamento dei rating dei player della partita g, appena
+	 * conclusa con il risultato result.
+	 */
+	private void rate(GameImpl g, int result) {
+		String name1 = g.getPlayerName(GameImpl.PlayerNumber.P1);
+		String name2 = g.getPlayerName(GameImpl.PlayerNumber.P2);
+		if (ratings != null && name1 != null && name2 != null)
+			ratings.gameEnded(GameArchive.id(name1), name1,
+					GameArchive.id(name2), name2, result);
+	}
+
+	/*
+	 * Incrementa un contatore delle statistiche del player n della partita g.
+	 */
+	private void count(GameImpl g, GameImpl.PlayerNumber n, int counter) {
+		String name = g.getPlayerName(n);
+		if (stats == null || name == null)
+			return;
+		try {
+			stats.add(GameArchive.id(name), name, counter);
+		} catch (IOException e) {
+			System.out.println("Impossible to update the stats of " + name
+					+ ": " + e.getMessage());
+		}
+	}
+
+	/*
+	 * Associa il player appena registrato alle partite ricostruite dal
+	 * registro in cui occupava un posto. Una partita torna disponibile quando
+	 * tutti i suoi player si sono ricollegati: se era in attesa di uno
+	 * sfidante ricompare nella game room, altrimenti riprende dal punto in
+	 * cui era stata interrotta.
+	 */
+	private void reattach(String name, Player p, long token) {
+		List<Orphan> games = orphans.remove(name);
+		if (games == null)
+			return;
+		for (Orphan o : games) {
+			boolean ready;
+			synchronized (o) {
+				if (name.equals(o.player1))
+					o.game.attach(GameImpl.PlayerNumber.P1, p, token);
+				else
+					o.game.attach(GameImpl.PlayerNumber.P2, p, token);
+				ready = --o.missing == 0;
+			}
+			if (!ready)
+				continue;
+			GameImpl g = o.game;
+			listGames.put(g.getIdGame(), g);
+			if (o.player2 == null) {
+				lobby.add(g.getIdGame());
+				continue;
+			}
+			try {
+				if (o.started)
+					g.resume();
+				else
+					g.startMatch();
+				// Il monitoraggio di una partita conclusa durante la
+				// ricostruzione resta sospeso fino a un'eventuale rivincita,
+				// come al termine di una partita giocata.
+				HeartbeatScheduler.Heartbeat h = watch(g);
+				g.setHeartbeat(h);
+				if (g.isEndGame())
+					h.cancel();
+			} catch (RemoteException e) {
+				System.out.println("Impossible to resume " + g.getIdGame()
+						+ ": " + e.getMessage());
+			}
+		}
+	}
+
+	/*
+	 * Rimuove una partita dal server su richiesta del player con il nickname
+	 * name, a cui viene attribuito l'eventuale abbandono. Se il player non
+	 * partecipa alla partita la richiesta viene ignorata.
+	 */
+	private void dropGame(String idGame, String name) {
+		GameImpl g = (GameImpl) listGames.get(idGame);
+		if (g == null)
+			return;
+		GameImpl.PlayerNumber n;
+		if (name.equals(g.getPlayerName(GameImpl.PlayerNumber.P1)))
+			n = GameImpl.PlayerNumber.P1;
+		else if (name.equals(g.getPlayerName(GameImpl.PlayerNumber.P2)))
+			n = GameImpl.PlayerNumber.P2;
+		else
+			return;
+		if (!listGames.remove(idGame, g))
+			return;
+		lobby.remove(idGame);
+		g.abandon(n);
+	}
+
+	/*
+	 * Avvia il monitoraggio dei player della partita g: la disconnessione di
+	 * uno dei due viene notificata dalla partita all'avversario.
+	 */
+	private HeartbeatScheduler.Heartbeat watch(final GameImpl g) {
+		return heartbeats.watch(g.getPlayer1(), g.getPlayer2(),
+				new HeartbeatScheduler.LossHandler() {
+					@Override
+					public void playerLost(Player lost) {
+						g.playerLost(lost);
+					}
+				});
+	}
+
+	/*
+	 * Partita ricostruita dal registro, in attesa che i suoi player si
+	 * ricolleghino.
+	 */
+	private static class Orphan {
+
+		private final GameImpl game;
+		private final String player1;
+		private String player2;
+		private boolean started;
+		private boolean ended;
+		private int missing;
+
+		public Orphan(GameImpl game, String player1) {
+			this.game = game;
 			this.player1 = player1;
-			// Giocatore a cui sara' notificato l'evento di disconnesione,
-			this.player2 = player2;
+		}
+
+	} // Chiusura della inner-class.
+
+	/*
+	 * Ricostruisce le partite a partire dai record del registro. Le partite
+	 * concluse o rimosse vengono scartate; la rimozione di quelle concluse
+	 * viene registrata, cosi' che non compaiano nelle istantanee successive.
+	 */
+	private class Recovery implements MoveLog.Handler {
+
+		private final Map<Integer, Orphan> games = new LinkedHashMap<Integer, Orphan>();
+
+		@Override
+		public void created(int game, String idGame, String player1,
+				int width, int height, int winLength) {
+			try {
+				GameImpl g = new GameImpl(null, idGame, callbacks,
+						MnkBoard.create(width, height, winLength));
+				g.setRouter(router);
+				g.setPlayerName(GameImpl.PlayerNumber.P1, player1);
+				g.setObserver(recorder);
+				games.put(game, new Orphan(g, player1));
+			} catch (RemoteException e) {
+				// La partita non viene esportata: non si verificano errori.
+			}
+		}
+
+		@Override
+		public void joined(int game, String player2) {
+			Orphan o = games.get(game);
+			if (o != null) {
+				o.player2 = player2;
+				o.game.setPlayerName(GameImpl.PlayerNumber.P2, player2);
+			}
+		}
+
+		@Override
+		public void started(int game, boolean player1First) {
+			Orphan o = games.get(game);
+			if (o != null) {
+				o.game.restoreStart(player1First);
+				o.started = true;
+				o.ended = false;
+			}
+		}
+
+		@Override
+		public void moved(int game, int m) {
+			Orphan o = games.get(game);
+			if (o != null)
+				o.game.restoreMove(m);
+		}
+
+		@Override
+		public void ended(int game, int result) {
+			Orphan o = games.get(game);
+			if (o != null)
+				o.ended = true;
+		}
+
+		@Override
+		public void removed(int game) {
+			games.remove(game);
 		}
 
 		/*
-		 * Il metodo interroga un player con una certa cadenza finche' non
-		 * avviene l'evento di disconnessione. In tale caso si provvedera' a
-		 * notificare l'evento all'altro giocatore, chiudendo quindi il thread.
+		 * Rende le partite ricostruite disponibili per il ricollegamento dei
+		 * loro player.
 		 */
-		@Override
-		public void run() {
-			boolean disconnect = false;
-			while (!disconnect) {
-				try {
-					Thread.sleep(TIME);
-					player1.ping(); // Operazione di ping verso il giocatore..
-					if (!Collections.synchronizedMap(listGames).containsKey(
-							idGame)) {
-						player2.foeDisconnected();
-						disconnect = true;
-					}
-				} catch (InterruptedException e) {
-					e.printStackTrace();
-				} catch (RemoteException e) {
-					try {
-						// nel caso in cui un player non ha risposto a un ping
-						// comunico l'evento all'altro player.
-						player2.foeDisconnected();
-						disconnect = true;
-					} catch (RemoteException e1) {
-						disconnect = true;
-					}
+		public void finish() {
+			for (Map.Entry<Integer, Orphan> e : games.entrySet()) {
+				Orphan o = e.getValue();
+				if (o.ended) {
+					log.remove(e.getKey());
+					continue;
 				}
+				o.game.setLog(log, e.getKey());
+				// Il server puo' essersi arrestato fra l'ultima mossa e la
+				// registrazione del risultato.
+				o.game.restoreEnd();
+				o.missing = (o.player2 == null) ? 1 : 2;
+				orphan(o.player1, o);
+				if (o.player2 != null)
+					orphan(o.player2, o);
+			}
+		}
+
+		private void orphan(String name, Orphan o) {
+			List<Orphan> l = orphans.get(name);
+			if (l == null) {
+				l = new ArrayList<Orphan>();
+				orphans.put(name, l);
 			}
+			l.add(o);
 		}
 
 	} // Chiusura della inner-class.
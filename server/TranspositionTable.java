@@ -0,0 +1,134 @@
+package server;
+
+/**
+ * Tabella delle trasposizioni di dimensione fissa, condivisa senza lock tra
+ * i thread della ricerca. Ogni elemento occupa due long: i dati (punteggio,
+ * profondita', tipo di limite e mossa) e la chiave Zobrist della posizione
+ * combinata con i dati tramite XOR. Una lettura e' valida soltanto se la
+ * chiave ricostruita coincide con quella cercata: una scrittura concorrente
+ * o parziale viene quindi scartata come un normale mancato riscontro, senza
+ * bisogno di sincronizzazione.<br/>
+ * In caso di collisione il nuovo elemento sostituisce sempre il precedente.
+ * 
+ * @author Gennaro Capo
+ * @author Mirko Conte
+ * @author Vincenzo De Notaris
+ * @author Roberto Pacilio
+ * @version 1.0
+ * @see server.SearchEngine
+ */
+public class TranspositionTable {
+
+	/**
+	 * Il punteggio e' esatto.
+	 */
+	public static final int EXACT = 0;
+
+	/**
+	 * Il punteggio e' un limite inferiore (taglio beta).
+	 */
+	public static final int LOWER = 1;
+
+	/**
+	 * Il punteggio e' un limite superiore (nessuna mossa ha superato alpha).
+	 */
+	public static final int UPPER = 2;
+
+	// Attributi privati.
+	private final long[] keys;
+	private final long[] data;
+	private final int mask;
+
+	/**
+	 * Costruttore di classe.
+	 * 
+	 * @param bits
+	 *            logaritmo in base 2 del numero di elementi.
+	 */
+	public TranspositionTable(int bits) {
+		keys = new long[1 << bits];
+		data = new long[1 << bits];
+		mask = (1 << bits) - 1;
+	}
+
+	/**
+	 * Cerca una posizione nella tabella.
+	 * 
+	 * @param key
+	 *            chiave Zobrist della posizione.
+	 * @return dati memorizzati, 0 se la posizione non e' presente.
+	 */
+	public long probe(long key) {
+		int i = (int) key & mask;
+		long d = data[i];
+		if (d != 0 && (keys[i] ^ d) == key)
+			return d;
+		return 0;
+	}
+
+	/**
+	 * Memorizza una posizione nella tabella.
+	 * 
+	 * @param key
+	 *            chiave Zobrist della posizione.
+	 * @param score
+	 *            punteggio.
+	 * @param depth
+	 *            profondita' a cui e' stato calcolato il punteggio.
+	 * @param bound
+	 *            EXACT, LOWER o UPPER.
+	 * @param move
+	 *            mossa migliore, -1 se sconosciuta.
+	 */
+	public void store(long key, int score, int depth, int bound, int move) {
+		int i = (int) key & mask;
+		long d = pack(score, depth, bound, move);
+		data[i] = d;
+		keys[i] = key ^ d;
+	}
+
+	/**
+	 * Svuota la tabella.
+	 */
+	public void clear() {
+		java.util.Arrays.fill(keys, 0);
+		java.util.Arrays.fill(data, 0);
+	}
+
+	/**
+	 * Restituisce il numero di elementi della tabella.
+	 * 
+	 * @return numero di elementi.
+	 */
+	public int capacity() {
+		return keys.length;
+	}
+
+	// Decodifica dei dati restituiti da probe.
+
+	public static int score(long d) {
+		return (short) (d >>> 32);
+	}
+
+	public static int depth(long d) {
+		return (int) (d >>> 24) & 0xFF;
+	}
+
+	public static int bound(long d) {
+		return (int) (d >>> 20) & 0x3;
+	}
+
+	public static int move(long d) {
+		return (int) (d & 0xFFFF) - 1;
+	}
+
+	/*
+	 * Il bit 48 e' sempre impostato, cosi' che un elemento valido non sia mai
+	 * uguale a 0.
+	 */
+	private static long pack(int score, int depth, int bound, int move) {
+		return 1L << 48 | (score & 0xFFFFL) << 32 | (long) (depth & 0xFF) << 24
+				| (long) bound << 20 | (move + 1) & 0xFFFF;
+	}
+
+}
@@ -0,0 +1,154 @@
+package server.bench;
+
+import java.lang.management.*;
+import java.util.*;
+
+import server.*;
+import api.Game;
+
+/**
+ * Benchmark della gestione delle mosse: confronta la griglia
+ * <code>int[3][3]</code> con scansione completa di righe, colonne, diagonali
+ * e caselle libere (come avveniva in GameImpl) con {@link BitBoard}.<br/>
+ * Vengono rigiocate partite casuali precalcolate; per ogni implementazione si
+ * misurano il tempo medio per mossa e i byte allocati dal thread di misura.
+ * 
+ * Uso: java server.bench.BoardBenchmark [partite] [ripetizioni]
+ * 
+ * @author Gennaro Capo
+ * @author Mirko Conte
+ * @author Vincenzo De Notaris
+ * @author Roberto Pacilio
+ * @version 1.0
+ */
+public class BoardBenchmark {
+
+	// Attributi privati.
+	private static final int WARMUP_ROUNDS = 5;
+	private static volatile int sink;
+
+	/**
+	 * Main del benchmark.
+	 */
+	public static void main(String[] args) {
+		int games = (args.length > 0) ? Integer.parseInt(args[0]) : 100000;
+		int rounds = (args.length > 1) ? Integer.parseInt(args[1]) : 10;
+
+		int[][] moves = randomGames(games, new Random(42));
+		System.out.println("board      ns/move   bytes/move");
+		for (int r = 0; r < WARMUP_ROUNDS; r++) {
+			sink += playGrid(moves);
+			sink += playBits(moves);
+		}
+		report("grid", moves, rounds, false);
+		report("bitboard", moves, rounds, true);
+	}
+
+	private static void report(String name, int[][] moves, int rounds,
+			boolean bits) {
+		long count = 0;
+		for (int[] g : moves)
+			count += g.length;
+		count *= rounds;
+		long bytes = allocatedBytes();
+		long start = System.nanoTime();
+		for (int r = 0; r < rounds; r++)
+			sink += bits ? playBits(moves) : playGrid(moves);
+		long elapsed = System.nanoTime() - start;
+		bytes = allocatedBytes() - bytes;
+		System.out.printf("%-9s %8.2f   %10.3f%n", name, (double) elapsed
+				/ count, (double) bytes / count);
+	}
+
+	private static int playBits(int[][] moves) {
+		BitBoard board = new BitBoard();
+		int results = 0;
+		for (int[] g : moves) {
+			board.clear();
+			int value = Game.P1_CELL;
+			for (int i = 0; i < g.length; i++) {
+				board.play(g[i], value);
+				int res = board.result();
+				if (res > 0) {
+					results += res;
+					break;
+				}
+				value = (value == Game.P1_CELL) ? Game.P2_CELL : Game.P1_CELL;
+			}
+		}
+		return results;
+	}
+
+	private static int playGrid(int[][] moves) {
+		int[][] grid = new int[3][3];
+		int results = 0;
+		for (int[] g : moves) {
+			for (int[] row : grid)
+				Arrays.fill(row, Game.FREE_CELL);
+			int value = Game.P1_CELL;
+			for (int i = 0; i < g.length; i++) {
+				grid[g[i] / 3][g[i] % 3] = value;
+				int res = checkGrid(grid);
+				if (res > 0) {
+					results += res;
+					break;
+				}
+				value = (value == Game.P1_CELL) ? Game.P2_CELL : Game.P1_CELL;
+			}
+		}
+		return results;
+	}
+
+	/*
+	 * Controllo del vincitore come effettuato in origine da GameImpl.
+	 */
+	private static int checkGrid(int[][] grid) {
+		for (int i = 0; i < 3; i++) {
+			if (grid[i][0] == grid[i][1] && grid[i][1] == grid[i][2]
+					&& grid[i][0] != Game.FREE_CELL)
+				return grid[i][0];
+			if (grid[0][i] == grid[1][i] && grid[1][i] == grid[2][i]
+					&& grid[0][i] != Game.FREE_CELL)
+				return grid[0][i];
+		}
+		if ((grid[0][0] == grid[1][1] && grid[1][1] == grid[2][2])
+				|| (grid[0][2] == grid[1][1] && grid[1][1] == grid[2][0]))
+			if (grid[1][1] != Game.FREE_CELL)
+				return grid[1][1];
+		for (int i = 0; i < 3; i++)
+			for (int j = 0; j < 3; j++)
+				if (grid[i][j] == Game.FREE_CELL)
+					return 0;
+		return 3;
+	}
+
+	/*
+	 * Genera partite casuali come permutazioni delle nove caselle.
+	 */
+	private static int[][] randomGames(int games, Random random) {
+		int[][] moves = new int[games][9];
+		for (int[] g : moves) {
+			for (int i = 0; i < 9; i++)
+				g[i] = i;
+			for (int i = 8; i > 0; i--) {
+				int j = random.nextInt(i + 1);
+				int t = g[i];
+				g[i] = g[j];
+				g[j] = t;
+			}
+		}
+		return moves;
+	}
+
+	/*
+	 * Byte allocati dal thread corrente, se la JVM lo consente.
+	 */
+	private static long allocatedBytes() {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (threads instanceof com.sun.management.ThreadMXBean)
+			return ((com.sun.management.ThreadMXBean) threads)
+					.getThreadAllocatedBytes(Thread.currentThread().getId());
+		return 0;
+	}
+
+}
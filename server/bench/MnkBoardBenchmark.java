@@ -0,0 +1,133 @@
+package server.bench;
+
+import java.util.*;
+
+import server.*;
+import api.Game;
+
+/**
+ * Benchmark del controllo del vincitore su griglie m,n,k di dimensione
+ * crescente, fino a 19x19. Confronta {@link MnkBoard}, che esamina soltanto
+ * le quattro linee passanti per l'ultima mossa, con la scansione completa
+ * della griglia dopo ogni mossa.
+ * 
+ * Uso: java server.bench.MnkBoardBenchmark [partite] [lunghezzaVincente]
+ * 
+ * @author Gennaro Capo
+ * @author Mirko Conte
+ * @author Vincenzo De Notaris
+ * @author Roberto Pacilio
+ * @version 1.0
+ */
+public class MnkBoardBenchmark {
+
+	// Attributi privati.
+	private static final int[] SIZES = { 3, 7, 11, 15, 19 };
+	private static volatile int sink;
+
+	/**
+	 * Main del benchmark.
+	 */
+	public static void main(String[] args) {
+		int games = (args.length > 0) ? Integer.parseInt(args[0]) : 2000;
+		int k = (args.length > 1) ? Integer.parseInt(args[1]) : 5;
+
+		System.out.println("size   k   incremental ns/move   full scan ns/move");
+		for (int n : SIZES) {
+			int len = Math.min(k, n);
+			int[][] moves = randomGames(games, n * n, new Random(n));
+			for (int w = 0; w < 3; w++) {
+				sink += play(moves, n, len, true);
+				sink += play(moves, n, len, false);
+			}
+			double inc = measure(moves, n, len, true);
+			double full = measure(moves, n, len, false);
+			System.out.printf("%2dx%-2d %2d   %19.1f   %17.1f%n", n, n, len,
+					inc, full);
+		}
+	}
+
+	private static double measure(int[][] moves, int n, int k,
+			boolean incremental) {
+		long start = System.nanoTime();
+		int count = play(moves, n, k, incremental);
+		return (double) (System.nanoTime() - start) / count;
+	}
+
+	/*
+	 * Rigioca le partite fino al risultato e restituisce il numero di mosse.
+	 */
+	private static int play(int[][] moves, int n, int k, boolean incremental) {
+		MnkBoard board = new MnkBoard(n, n, k);
+		int[] grid = new int[n * n];
+		int count = 0;
+		for (int[] g : moves) {
+			board.clear();
+			Arrays.fill(grid, Game.FREE_CELL);
+			int value = Game.P1_CELL;
+			for (int i = 0; i < g.length; i++) {
+				count++;
+				int res;
+				if (incremental) {
+					board.play(g[i], value);
+					res = board.result();
+				} else {
+					grid[g[i]] = value;
+					res = fullScan(grid, n, k);
+				}
+				if (res > 0)
+					break;
+				value = (value == Game.P1_CELL) ? Game.P2_CELL : Game.P1_CELL;
+			}
+		}
+		return count;
+	}
+
+	/*
+	 * Scansione completa: per ogni casella occupata si controllano le quattro
+	 * direzioni.
+	 */
+	private static int fullScan(int[] grid, int n, int k) {
+		int[] dr = { 0, 1, 1, 1 };
+		int[] dc = { 1, 0, 1, -1 };
+		boolean full = true;
+		for (int r = 0; r < n; r++) {
+			for (int c = 0; c < n; c++) {
+				int v = grid[r * n + c];
+				if (v == Game.FREE_CELL) {
+					full = false;
+					continue;
+				}
+				for (int d = 0; d < 4; d++) {
+					int len = 1;
+					int rr = r + dr[d], cc = c + dc[d];
+					while (len < k && rr >= 0 && rr < n && cc >= 0 && cc < n
+							&& grid[rr * n + cc] == v) {
+						len++;
+						rr += dr[d];
+						cc += dc[d];
+					}
+					if (len >= k)
+						return v;
+				}
+			}
+		}
+		return full ? 3 : 0;
+	}
+
+	private static int[][] randomGames(int games, int cells, Random random) {
+		int[][] moves = new int[games][cells];
+		for (int[] g : moves) {
+			for (int i = 0; i < cells; i++)
+				g[i] = i;
+			for (int i = cells - 1; i > 0; i--) {
+				int j = random.nextInt(i + 1);
+				int t = g[i];
+				g[i] = g[j];
+				g[j] = t;
+			}
+		}
+		return moves;
+	}
+
+}
@@ -0,0 +1,93 @@
+package server.bench;
+
+import java.io.*;
+
+import server.*;
+
+/**
+ * Benchmark del riavvio del server con molte partite aperte. Il registro
+ * delle partite viene popolato simulando un lungo periodo di servizio: ogni
+ * partita gioca alcuni incontri completi (rivincite) prima di quello in
+ * corso. Viene quindi misurato il tempo di avvio del server rileggendo
+ * l'intero registro e, dopo la compattazione in un'istantanea, rileggendo
+ * soltanto l'istantanea.
+ * 
+ * Uso: java server.bench.RecoveryBenchmark [partite] [rivincite]
+ * 
+ * @author Gennaro Capo
+ * @author Mirko Conte
+ * @author Vincenzo De Notaris
+ * @author Roberto Pacilio
+ * @version 1.0
+ */
+public class RecoveryBenchmark {
+
+	/**
+	 * Main del benchmark.
+	 */
+	public static void main(String[] args) throws IOException {
+		int games = (args.length > 0) ? Integer.parseInt(args[0]) : 100000;
+		int rounds = (args.length > 1) ? Integer.parseInt(args[1]) : 5;
+		File dir = File.createTempFile("recovery", "");
+		dir.delete();
+
+		// Un solo segmento: nessuna compattazione durante il popolamento.
+		MoveLog log = new MoveLog(dir, 0, Long.MAX_VALUE, null);
+		long last = 0;
+		for (int i = 0; i < games; i++) {
+			int g = log.newGame();
+			log.create(g, "p" + i + "-12:00:00", "p" + i, 3, 3, 3);
+			log.join(g, "q" + i);
+			for (int r = 0; r < rounds; r++) {
+				log.start(g, r % 2 == 0);
+				for (int m = 0; m < 9; m++)
+					log.move(g, m);
+				log.result(g, 3);
+			}
+			log.start(g, rounds % 2 == 0);
+			log.move(g, 4);
+			last = log.move(g, 0);
+		}
+		log.sync(last);
+		log.close();
+		System.out.printf("log only:      %8d KB  start %6d ms%n",
+				size(dir) / 1024, start(dir));
+
+		log = new MoveLog(dir, 0, null);
+		long t = System.nanoTime();
+		log.checkpoint();
+		long compaction = (System.nanoTime() - t) / 1000000;
+		log.close();
+		System.out.printf("snapshot:      %8d KB  start %6d ms"
+				+ "  (compaction %d ms)%n", size(dir) / 1024, start(dir),
+				compaction);
+
+		for (File f : dir.listFiles())
+			f.delete();
+		dir.delete();
+		System.exit(0);
+	}
+
+	/*
+	 * Misura il tempo di avvio di un server che ricostruisce le partite dalla
+	 * directory dir.
+	 */
+	private static long start(File dir) throws IOException {
+		System.gc();
+		long t = System.nanoTime();
+		TicTacToeServerImpl server = new TicTacToeServerImpl(
+				BlockingExecutors.Mode.PLATFORM, dir);
+		long elapsed = (System.nanoTime() - t) / 1000000;
+		server.shutdown();
+		return elapsed;
+	}
+
+	private static long size(File dir) {
+		long size = 0;
+		for (File f : dir.listFiles())
+			if (!f.getName().endsWith(".archive"))
+				size += f.length();
+		return size;
+	}
+
+}
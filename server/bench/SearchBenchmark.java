@@ -0,0 +1,74 @@
+package server.bench;
+
+import java.util.concurrent.ForkJoinPool;
+
+import server.*;
+import api.Game;
+
+/**
+ * Benchmark di {@link SearchEngine} su posizioni 4x4 e 5x5. Per ogni
+ * posizione e numero di thread riporta la mossa scelta, la profondita'
+ * raggiunta entro il tempo assegnato, i nodi visitati al secondo e la
+ * percentuale di riscontri nella tabella delle trasposizioni, con e senza
+ * la condivisione degli elementi tra posizioni simmetriche.
+ * 
+ * Uso: java server.bench.SearchBenchmark [tempoMs] [bitTabella]
+ * 
+ * @author Gennaro Capo
+ * @author Mirko Conte
+ * @author Vincenzo De Notaris
+ * @author Roberto Pacilio
+ * @version 1.0
+ */
+public class SearchBenchmark {
+
+	/**
+	 * Main del benchmark.
+	 */
+	public static void main(String[] args) {
+		long budget = (args.length > 0) ? Long.parseLong(args[0]) : 2000;
+		int bits = (args.length > 1) ? Integer.parseInt(args[1]) : 20;
+		int cpus = Runtime.getRuntime().availableProcessors();
+
+		System.out.println("position     threads  sym  move  depth     knodes/s  ttHit%");
+		for (int threads = 1; threads <= 2 * cpus; threads *= 2) {
+			ForkJoinPool pool = new ForkJoinPool(threads);
+			run("4x4 empty", position(4, 4, 4), threads, pool, budget, bits);
+			run("4x4 k=4", position(4, 4, 4, 5, 6, 10), threads, pool, budget, bits);
+			run("4x4 k=3", position(4, 4, 3, 5, 0), threads, pool, budget, bits);
+			run("5x5 k=4", position(5, 5, 4, 12, 6, 8), threads, pool, budget, bits);
+			run("5x5 k=5", position(5, 5, 5), threads, pool, budget, bits);
+			pool.shutdown();
+		}
+	}
+
+	private static void run(String name, MnkBoard board, int threads,
+			ForkJoinPool pool, long budget, int bits) {
+		for (int sym = 0; sym < 2; sym++) {
+			SearchEngine engine = new SearchEngine(board.getWidth(),
+					board.getHeight(), bits, pool, sym == 1);
+			int side = (board.getFilled() % 2 == 0) ? Game.P1_CELL
+					: Game.P2_CELL;
+			int move = engine.bestMove(board, side, budget);
+			System.out.printf("%-12s %7d  %3s  %4d  %5d  %11.0f  %6.1f%n",
+					name, threads, (sym == 1) ? "yes" : "no", move,
+					engine.getDepth(), engine.getNodesPerSecond() / 1000,
+					engine.getHitRate() * 100);
+		}
+	}
+
+	/*
+	 * Costruisce una posizione giocando le mosse indicate alternando i due
+	 * player, a partire da P1.
+	 */
+	private static MnkBoard position(int w, int h, int k, int... moves) {
+		MnkBoard b = new MnkBoard(w, h, k);
+		int side = Game.P1_CELL;
+		for (int m : moves) {
+			b.play(m, side);
+			side = 3 - side;
+		}
+		return b;
+	}
+
+}
@@ -0,0 +1,242 @@
+package server.bench;
+
+import java.lang.management.*;
+import java.rmi.RemoteException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import api.*;
+import server.*;
+
+/**
+ * Benchmark dei modelli di esecuzione delle callback lato server. Per ogni
+ * numero di partite concorrenti (di default 10k, 50k e 100k) e per ogni
+ * modalita' di {@link BlockingExecutors} gioca altrettante partite reali
+ * ({@link GameImpl}) fra player simulati, che rispondono a ogni notifica dopo
+ * una latenza di rete fissata e muovono non appena e' il loro turno. Le
+ * notifiche passano dalle code ordinate dei player ({@link OutboundQueue}),
+ * eseguite dall'esecutore creato con
+ * {@link BlockingExecutors#create(BlockingExecutors.Mode, String, int)}.<br/>
+ * Per ogni modalita' vengono misurati il numero massimo di thread, la memoria
+ * heap occupata, la latenza delle mosse (dall'invio della mossa alla sua
+ * ricezione da parte dell'avversario) e la durata complessiva. La modalita'
+ * VIRTUAL richiede Java 21: con una JVM precedente non viene misurata e il
+ * benchmark lo segnala.
+ * 
+ * Uso: java server.bench.ThreadModelBenchmark [latenzaMs] [partite...]
+ * 
+ * @author Gennaro Capo
+ * @author Mirko Conte
+ * @author Vincenzo De Notaris
+ * @author Roberto Pacilio
+ * @version 1.0
+ */
+public class ThreadModelBenchmark {
+
+	// Attributi privati.
+	private static final int CALLBACK_THREADS = 16;
+	private static final int MAX_MOVES = 9;
+	private static final long TIMEOUT = 10 * 60 * 1000;
+
+	/**
+	 * Main del benchmark.
+	 */
+	public static void main(String[] args) throws Exception {
+		long latency = (args.length > 0) ? Long.parseLong(args[0]) : 2;
+		int[] games = { 10000, 50000, 100000 };
+		if (args.length > 1) {
+			games = new int[args.length - 1];
+			for (int i = 1; i < args.length; i++)
+				games[i - 1] = Integer.parseInt(args[i]);
+		}
+
+		System.out.println("mode       games   threads  heapMB   p50ms   p99ms   maxms  totalms");
+		for (int n : games) {
+			run(BlockingExecutors.Mode.PLATFORM, n, latency);
+			if (BlockingExecutors.isVirtualSupported())
+				run(BlockingExecutors.Mode.VIRTUAL, n, latency);
+			else
+				System.out.printf("%-9s %6d   not measured: requires Java 21 (running %s)%n",
+						"VIRTUAL", n, System.getProperty("java.version"));
+		}
+	}
+
+	private static void run(BlockingExecutors.Mode mode, int games,
+			long latency) throws Exception {
+		ExecutorService callbacks = BlockingExecutors.create(mode, "callback",
+				CALLBACK_THREADS);
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		threads.resetPeakThreadCount();
+
+		CountDownLatch done = new CountDownLatch(2 * games);
+		AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		long[] latencies = new long[games * MAX_MOVES];
+		AtomicInteger measured = new AtomicInteger();
+		List<GameImpl> started = new ArrayList<GameImpl>(games);
+
+		long start = System.nanoTime();
+		try {
+			for (int i = 0; i < games; i++) {
+				Match match = new Match();
+				SlowPlayer p1 = new SlowPlayer(match, 2 * i + 1, latency,
+						latencies, measured, done, failure);
+				SlowPlayer p2 = new SlowPlayer(match, 2 * i + 2, latency,
+						latencies, measured, done, failure);
+				GameImpl g = new GameImpl(p1, "bench" + i + "-12:00:00",
+						callbacks);
+				match.game = g;
+				g.setToken(GameImpl.PlayerNumber.P1, p1.token);
+				g.setToken(GameImpl.PlayerNumber.P2, p2.token);
+				g.claimPlayer2(p2);
+				g.startMatch();
+				started.add(g);
+			}
+		} catch (Throwable e) {
+			failure.compareAndSet(null, e);
+		}
+		boolean finished = failure.get() == null
+				&& done.await(TIMEOUT, TimeUnit.MILLISECONDS);
+		long total = System.nanoTime() - start;
+		int peak = threads.getPeakThreadCount();
+		System.gc();
+		long heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage()
+				.getUsed();
+
+		for (GameImpl g : started)
+			g.abandon();
+		callbacks.shutdownNow();
+		callbacks.awaitTermination(1, TimeUnit.MINUTES);
+
+		if (!finished) {
+			Throwable e = failure.get();
+			System.out.printf("%-9s %6d  %7d  failed after %d of %d games started: %s%n",
+					mode, games, peak, started.size(), games,
+					(e != null) ? e : "timeout");
+			return;
+		}
+		int n = measured.get();
+		long[] sorted = Arrays.copyOf(latencies, n);
+		Arrays.sort(sorted);
+		System.out.printf("%-9s %6d  %7d  %6d  %6.1f  %6.1f  %6.1f  %7.0f%n",
+				mode, games, peak, heap >> 20, ms(sorted[n / 2]),
+				ms(sorted[(int) (n * 0.99)]), ms(sorted[n - 1]), ms(total));
+	}
+
+	private static double ms(long nanos) {
+		return nanos / 1e6;
+	}
+
+	/*
+	 * Stato condiviso dai due player simulati di una partita.
+	 */
+	private static class Match {
+
+		private volatile GameImpl game;
+		private volatile long sentAt;
+
+	} // Chiusura della inner-class.
+
+	/*
+	 * Player simulato: ogni notifica lo impegna per la latenza di rete. Quando
+	 * e' il suo turno occupa la casella successiva all'ultima giocata, per cui
+	 * ogni partita termina in al piu' MAX_MOVES mosse. Il player non viene
+	 * esportato: le chiamate del server restano locali.
+	 */
+	private static class SlowPlayer implements Player {
+
+		private final Match match;
+		private final long token;
+		private final long latency;
+		private final long[] latencies;
+		private final AtomicInteger measured;
+		private final CountDownLatch done;
+		private final AtomicReference<Throwable> failure;
+
+		SlowPlayer(Match match, long token, long latency, long[] latencies,
+				AtomicInteger measured, CountDownLatch done,
+				AtomicReference<Throwable> failure) {
+			this.match = match;
+			this.token = token;
+			this.latency = latency;
+			this.latencies = latencies;
+			this.measured = measured;
+			this.done = done;
+			this.failure = failure;
+		}
+
+		@Override
+		public void receiveEvents(EventBatch batch) throws RemoteException {
+			try {
+				Thread.sleep(latency);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+			// Nella notifica della mossa finale YOUR_TURN precede il
+			// risultato: in quel caso il player non muove.
+			boolean ended = false;
+			for (int i = 0; i < batch.size(); i++) {
+				Event e = batch.getEvent(i);
+				ended |= e == Event.YOU_WIN || e == Event.YOU_LOSE
+						|| e == Event.DRAW;
+			}
+			for (int i = 0; i < batch.size(); i++) {
+				switch (batch.getEvent(i)) {
+				case FOE_MOVED:
+					latencies[measured.getAndIncrement()] = System.nanoTime()
+							- match.sentAt;
+					break;
+				case YOUR_TURN:
+					if (ended)
+						break;
+					int m = match.game.getMoves().length;
+					match.sentAt = System.nanoTime();
+					try {
+						match.game.sendMovement(token, m, m);
+					} catch (Throwable e) {
+						failure.compareAndSet(null, e);
+					}
+					break;
+				case YOU_WIN:
+				case YOU_LOSE:
+				case DRAW:
+					done.countDown();
+					break;
+				default:
+					break;
+				}
+			}
+		}
+
+		@Override
+		public void joinGame(Game g) {
+		}
+
+		@Override
+		public void isYourTurn() {
+		}
+
+		@Override
+		public void foeTurn() {
+		}
+
+		@Override
+		public void ping() {
+		}
+
+		@Override
+		public void foeDisconnected() {
+		}
+
+		@Override
+		public void foeHasMoved(int m) {
+		}
+
+		@Override
+		public void sendGameResult(Event res) {
+		}
+
+	} // Chiusura della inner-class.
+
+}
@@ -0,0 +1,117 @@
+package server.test;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import server.*;
+
+public class ArchiveAnalyticsTest {
+
+	private File file;
+	private static ForkJoinPool pool;
+
+	@BeforeClass
+	public static void initPool() {
+
+		pool = new ForkJoinPool(4);
+	}
+
+	@AfterClass
+	public static void closePool() {
+
+		pool.shutdown();
+	}
+
+	@Before
+	public void init() throws IOException {
+
+		file = File.createTempFile("games", ".archive");
+		file.delete();
+	}
+
+	@After
+	public void close() {
+
+		file.delete();
+	}
+
+	@Test
+	public void testEmpty() throws IOException {
+
+		GameArchive a = new GameArchive(file, 4);
+		ArchiveAnalytics.Totals t = ArchiveAnalytics.analyze(a, 3, 3, 3, pool);
+		assertEquals(0, t.getGames());
+		assertEquals(0, t.getAverageLength(), 0);
+		a.close();
+	}
+
+	@Test
+	public void testMainRejectsLargeBoard() throws IOException {
+
+		// La griglia non puo' essere archiviata: l'archivio non viene
+		// neppure aperto.
+		ArchiveAnalytics.main(new String[] { file.getPath(), "5", "5", "4" });
+		assertFalse(file.exists());
+	}
+
+	@Test
+	public void testAnalyze() throws IOException {
+
+		// Segmenti di 16 partite: la lettura e' divisa in molti task.
+		GameArchive a = new GameArchive(file, 4);
+		Random random = new Random(42);
+		long games = 0;
+		long moves = 0;
+		long[] opening = new long[9];
+		long[] openingWins = new long[9];
+		long p2Draws = 0;
+		long p1First = 0;
+		int[] m = new int[16];
+		for (int i = 0; i < 1000; i++) {
+			if (i % 10 == 9) {
+				// Partita su un'altra griglia.
+				a.append(i, 1, 2, 0, 0, 1, 1, 4, 4, 4, m, 7);
+				continue;
+			}
+			int count = 5 + random.nextInt(5);
+			for (int j = 0; j < count; j++)
+				m[j] = random.nextInt(9);
+			int first = 1 + random.nextInt(2);
+			int result = 1 + random.nextInt(3);
+			a.append(i, 1, 2, 0, 0, first, result, 3, 3, 3, m, count);
+			games++;
+			moves += count;
+			opening[m[0]]++;
+			if (result == first)
+				openingWins[m[0]]++;
+			if (first == 1)
+				p1First++;
+			else if (result == 3)
+				p2Draws++;
+		}
+
+		ArchiveAnalytics.Totals t = ArchiveAnalytics.analyze(a, 3, 3, 3, pool);
+		assertEquals(games, t.getGames());
+		assertEquals(100, t.getSkipped());
+		assertEquals((double) moves / games, t.getAverageLength(), 1e-9);
+		for (int c = 0; c < 9; c++) {
+			assertEquals(opening[c], t.getOpeningGames(c));
+			assertEquals(openingWins[c], t.getOpeningWins(c));
+		}
+		assertEquals(p1First, t.getMoverGames(1));
+		assertEquals(games - p1First, t.getMoverGames(2));
+		assertEquals(p2Draws, t.getMoverDraws(2));
+
+		ArchiveAnalytics.Totals big = ArchiveAnalytics.analyze(a, 4, 4, 4,
+				pool);
+		assertEquals(100, big.getGames());
+		assertEquals(100, big.getMoverWins(1));
+		assertEquals(7, big.getAverageLength(), 1e-9);
+		a.close();
+	}
+
+}
@@ -0,0 +1,130 @@
+package server.test;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+import java.io.*;
+
+import api.*;
+import server.*;
+
+public class ArchiveCursorsTest {
+
+	private File archiveFile;
+	private File statsFile;
+	private GameArchive archive;
+	private StatsTable stats;
+
+	@Before
+	public void init() throws IOException {
+
+		archiveFile = File.createTempFile("games", ".archive");
+		archiveFile.delete();
+		statsFile = File.createTempFile("players", ".stats");
+		statsFile.delete();
+		archive = new GameArchive(archiveFile);
+		stats = new StatsTable(statsFile);
+		String[] names = { "bappo", "bicienzo", "terzo" };
+		for (int i = 0; i < names.length; i++)
+			stats.add(GameArchive.id(names[i]), names[i], StatsTable.WINS);
+		// Le partite pari sono di bappo contro bicienzo, le dispari di
+		// bicienzo contro terzo.
+		int[] moves = { 0, 3, 1, 4, 2 };
+		for (int i = 0; i < 1000; i++)
+			archive.append(i + 1, GameArchive.id((i % 2 == 0) ? "bappo"
+					: "terzo"), GameArchive.id("bicienzo"),
+					1000000000000L + i * 1000L, 1000000060000L + i * 1000L, 1,
+					1, 3, 3, 3, moves, 5);
+	}
+
+	@After
+	public void close() throws IOException {
+
+		archive.close();
+		stats.close();
+		archiveFile.delete();
+		statsFile.delete();
+	}
+
+	@Test
+	public void testPages() throws IOException {
+
+		ArchiveCursors c = new ArchiveCursors(archive, stats, 60000, 16);
+		long cursor = c.open(0, Long.MAX_VALUE);
+		long expected = 999;
+		GamePage page;
+		do {
+			page = c.next(cursor, 300);
+			assertTrue(page.size() <= ArchiveCursors.MAX_PAGE);
+			for (int i = 0; i < page.size(); i++) {
+				assertEquals(expected, page.getOrdinal(i));
+				assertEquals(expected + 1, page.getGameId(i));
+				assertEquals((expected % 2 == 0) ? "bappo" : "terzo",
+						page.getPlayer1(i));
+				assertEquals("bicienzo", page.getPlayer2(i));
+				assertEquals(1000000000000L + expected * 1000L,
+						page.getStartTime(i));
+				assertEquals(5, page.getMoveCount(i));
+				assertEquals(4, page.getMove(i, 3));
+				assertEquals(1, page.getResult(i));
+				assertEquals(3, page.getWidth(i));
+				expected--;
+			}
+		} while (!page.isLast());
+		assertEquals(-1, expected);
+		// Il cursore esaurito viene chiuso.
+		assertEquals(0, c.size());
+		assertNull(c.next(cursor, 10));
+	}
+
+	@Test
+	public void testPlayerAndBefore() throws IOException {
+
+		ArchiveCursors c = new ArchiveCursors(archive, stats, 60000, 16);
+		long cursor = c.open(GameArchive.id("terzo"), Long.MAX_VALUE);
+		GamePage page = c.next(cursor, 1000);
+		assertEquals(ArchiveCursors.MAX_PAGE, page.size());
+		assertEquals(999, page.getOrdinal(0));
+		assertEquals(997, page.getOrdinal(1));
+		assertFalse(page.isLast());
+		page = c.next(cursor, 1000);
+		assertEquals(500 - ArchiveCursors.MAX_PAGE, page.size());
+		assertEquals(1, page.getOrdinal(page.size() - 1));
+		assertTrue(page.isLast());
+
+		cursor = c.open(GameArchive.id("bappo"), 500);
+		page = c.next(cursor, 10);
+		assertEquals(498, page.getOrdinal(0));
+		assertEquals("bappo", page.getPlayer1(0));
+		c.close(cursor);
+		assertEquals(0, c.size());
+
+		cursor = c.open(GameArchive.id("nobody"), Long.MAX_VALUE);
+		page = c.next(cursor, 10);
+		assertEquals(0, page.size());
+		assertTrue(page.isLast());
+	}
+
+	@Test
+	public void testExpiry() throws IOException, InterruptedException {
+
+		ArchiveCursors c = new ArchiveCursors(archive, stats, 50, 2);
+		long a = c.open(0, Long.MAX_VALUE);
+		Thread.sleep(10);
+		long b = c.open(0, Long.MAX_VALUE);
+		Thread.sleep(10);
+		// Con due cursori aperti viene eliminato quello meno recente.
+		long d = c.open(0, Long.MAX_VALUE);
+		assertEquals(2, c.size());
+		assertNull(c.next(a, 10));
+		assertNotNull(c.next(b, 10));
+		assertNotNull(c.next(d, 10));
+
+		Thread.sleep(100);
+		c.open(0, Long.MAX_VALUE);
+		assertEquals(1, c.size());
+		assertNull(c.next(b, 10));
+		c.close(d);
+	}
+
+}
@@ -0,0 +1,55 @@
+package server.test;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+import server.*;
+import api.*;
+
+public class BitBoardTest {
+
+	private BitBoard board;
+
+	@Before
+	public void init() {
+
+		board = new BitBoard();
+	}
+
+	@Test
+	public void testPlay() {
+
+		assertTrue(board.play(4, Game.P1_CELL));
+		assertFalse(board.play(4, Game.P2_CELL));
+		assertTrue(board.play(0, Game.P2_CELL));
+		assertEquals(Game.P1_CELL, board.cell(4));
+		assertEquals(Game.P2_CELL, board.cell(0));
+		assertEquals(Game.FREE_CELL, board.cell(8));
+		assertEquals(0, board.result());
+	}
+
+	@Test
+	public void testWinMasks() {
+
+		for (int w : BitBoard.WIN_MASKS) {
+			board.clear();
+			for (int m = 0; m < 9; m++)
+				if ((w >> m & 1) != 0)
+					board.play(m, Game.P2_CELL);
+			assertEquals(Game.P2_CELL, board.result());
+		}
+	}
+
+	@Test
+	public void testDraw() {
+
+		int[] p1 = { 0, 2, 3, 7, 8 };
+		int[] p2 = { 1, 4, 5, 6 };
+		for (int m : p1)
+			board.play(m, Game.P1_CELL);
+		for (int m : p2)
+			board.play(m, Game.P2_CELL);
+		assertEquals(3, board.result());
+	}
+
+}
@@ -0,0 +1,54 @@
+package server.test;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+import java.rmi.RemoteException;
+import java.util.concurrent.*;
+
+import server.*;
+import api.*;
+
+public class BotPlayerTest {
+
+	private static PerfectPlayTable table;
+	private ExecutorService executor;
+
+	@BeforeClass
+	public static void initTable() {
+
+		table = new PerfectPlayTable();
+	}
+
+	@Before
+	public void init() {
+
+		executor = Executors.newFixedThreadPool(4);
+	}
+
+	@After
+	public void close() {
+
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void testBotVsBot() throws RemoteException, InterruptedException {
+
+		for (int i = 0; i < 200; i++) {
+			BotPlayer b1 = new BotPlayer(table, executor);
+			BotPlayer b2 = new BotPlayer(table, executor);
+			GameImpl game = new GameImpl(b1, "bot-00:00:0" + (i % 10), executor);
+			game.claimPlayer2(b2);
+			game.startMatch();
+			long deadline = System.currentTimeMillis() + 5000;
+			while ((b1.getResult() == null || b2.getResult() == null)
+					&& System.currentTimeMillis() < deadline)
+				Thread.sleep(1);
+			assertEquals(Event.DRAW, b1.getResult());
+			assertEquals(Event.DRAW, b2.getResult());
+			assertTrue(game.isEndGame());
+		}
+	}
+
+}
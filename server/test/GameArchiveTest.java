@@ -0,0 +1,103 @@
+package server.test;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+import java.io.*;
+
+import server.*;
+
+public class GameArchiveTest {
+
+	private File file;
+
+	@Before
+	public void init() throws IOException {
+
+		file = File.createTempFile("games", ".archive");
+		file.delete();
+	}
+
+	@After
+	public void close() {
+
+		file.delete();
+	}
+
+	@Test
+	public void testAppendGet() throws IOException {
+
+		GameArchive a = new GameArchive(file);
+		int[] moves = { 4, 0, 8, 2, 6, 3, 5, 1, 7 };
+		long n = a.append(GameArchive.id("bappo-12:23:22"),
+				GameArchive.id("bappo"), GameArchive.id("bicienzo"),
+				1000000000000L, 1000000060000L, 2, 3, 3, 3, 3, moves, 9);
+		assertEquals(0, n);
+		assertEquals(1, a.size());
+
+		GameArchive.Record r = a.get(0);
+		assertEquals(GameArchive.id("bappo-12:23:22"), r.getGameId());
+		assertEquals(GameArchive.id("bappo"), r.getPlayer1());
+		assertEquals(GameArchive.id("bicienzo"), r.getPlayer2());
+		assertEquals(1000000000000L, r.getStartTime());
+		assertEquals(1000000060000L, r.getEndTime());
+		assertEquals(2, r.getFirstPlayer());
+		assertEquals(3, r.getResult());
+		assertEquals(3, r.getWidth());
+		assertEquals(3, r.getHeight());
+		assertEquals(3, r.getWinLength());
+		assertEquals(9, r.getMoveCount());
+		for (int i = 0; i < moves.length; i++)
+			assertEquals(moves[i], r.getMove(i));
+		a.close();
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testMissingGame() throws IOException {
+
+		GameArchive a = new GameArchive(file);
+		try {
+			a.get(0);
+		} finally {
+			a.close();
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testBoardTooLarge() throws IOException {
+
+		GameArchive a = new GameArchive(file);
+		try {
+			a.append(1, 2, 3, 0, 0, 1, 1, 5, 5, 4, new int[0], 0);
+		} finally {
+			a.close();
+		}
+	}
+
+	@Test
+	public void testSegmentsAndReopen() throws IOException {
+
+		// Segmenti di 16 record: 100 partite occupano 7 segmenti.
+		GameArchive a = new GameArchive(file, 4);
+		int[] moves = new int[GameArchive.MAX_CELLS];
+		for (int i = 0; i < 100; i++) {
+			moves[0] = i % 9;
+			a.append(i, i + 1, i + 2, 0, 0, 1, 1 + i % 3, 3, 3, 3, moves, 1);
+		}
+		a.close();
+
+		a = new GameArchive(file, 4);
+		assertEquals(100, a.size());
+		GameArchive.Record r = a.get(0);
+		for (int i = 99; i >= 0; i--) {
+			r.moveTo(i);
+			assertEquals(i, r.getGameId());
+			assertEquals(i + 2, r.getPlayer2());
+			assertEquals(1 + i % 3, r.getResult());
+			assertEquals(i % 9, r.getMove(0));
+		}
+		assertEquals(101, a.append(0, 0, 0, 0, 0, 1, 1, 3, 3, 3, moves, 0) + 1);
+		a.close();
+	}
+
+}
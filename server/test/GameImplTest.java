@@ -3,7 +3,10 @@ package server.test;
 import org.junit.*;
 import static org.junit.Assert.*;
 
+import java.io.File;
 import java.rmi.RemoteException;
+import java.util.List;
+import java.util.concurrent.*;
 
 import server.*;
 import server.GameImpl.PlayerNumber;
@@ -169,4 +172,301 @@ public class GameImplTest {
 		assertEquals(Event.DRAW, p2.getEvent());
 	}
 
+	@Test
+	public void testSendSequencedMovement() throws RemoteException {
+		game2.setToken(PlayerNumber.P1, 11);
+		game2.setToken(PlayerNumber.P2, 22);
+		boolean first = game2.getCurrentPlayer() == PlayerNumber.P1;
+		PlayerImpl mover = first ? p1 : p2;
+		PlayerImpl foe = first ? p2 : p1;
+		int moverToken = first ? 11 : 22;
+		int foeToken = first ? 22 : 11;
+
+		// Mossa fuori turno: rifiutata.
+		game2.sendMovement(foeToken, 0, 4);
+		assertEquals(Event.MOVE_REJECTED, foe.getEvent());
+		assertEquals(0, foe.getLastSeq());
+
+		// Numero di sequenza errato: rifiutata.
+		game2.sendMovement(moverToken, 1, 4);
+		assertEquals(Event.MOVE_REJECTED, mover.getEvent());
+
+		game2.sendMovement(moverToken, 0, 4);
+		assertEquals(Event.FOE_TURN, mover.getEvent());
+		assertEquals(0, mover.getLastSeq());
+		assertEquals(Event.YOUR_TURN, foe.getEvent());
+		assertEquals(4, foe.getFoeSelectedMove());
+
+		// Ritrasmissione: ignorata.
+		mover.setEvent(null);
+		game2.sendMovement(moverToken, 0, 4);
+		assertNull(mover.getEvent());
+
+		// Casella occupata: rifiutata.
+		game2.sendMovement(foeToken, 1, 4);
+		assertEquals(Event.MOVE_REJECTED, foe.getEvent());
+		assertEquals(1, foe.getLastSeq());
+
+		game2.sendMovement(foeToken, 1, 0);
+		assertEquals(Event.FOE_TURN, foe.getEvent());
+		assertEquals(1, foe.getLastSeq());
+		assertEquals(Event.YOUR_TURN, mover.getEvent());
+	}
+
+	@Test
+	public void testRematch() throws RemoteException {
+		game2.setToken(PlayerNumber.P1, 11);
+		game2.setToken(PlayerNumber.P2, 22);
+		boolean first = game2.getCurrentPlayer() == PlayerNumber.P1;
+		PlayerImpl mover = first ? p1 : p2;
+		PlayerImpl foe = first ? p2 : p1;
+		int moverToken = first ? 11 : 22;
+		int foeToken = first ? 22 : 11;
+
+		// Partita in corso: la richiesta viene ignorata.
+		game2.rematch(moverToken);
+		assertEquals(Event.FOE_TURN, foe.getEvent());
+
+		game2.sendMovement(moverToken, 0);
+		game2.sendMovement(foeToken, 3);
+		game2.sendMovement(moverToken, 1);
+		game2.sendMovement(foeToken, 4);
+		game2.sendMovement(moverToken, 2);
+		assertTrue(game2.isEndGame());
+		assertEquals(Event.YOU_WIN, mover.getEvent());
+
+		game2.rematch(foeToken);
+		assertEquals(Event.REMATCH_OFFERED, mover.getEvent());
+		assertTrue(game2.isEndGame());
+
+		// La rivincita comincia dal player che ha perso il primo turno.
+		game2.rematch(moverToken);
+		assertFalse(game2.isEndGame());
+		assertEquals(first ? PlayerNumber.P2 : PlayerNumber.P1,
+				game2.getCurrentPlayer());
+		assertEquals(Event.YOUR_TURN, foe.getEvent());
+		assertEquals(Event.FOE_TURN, mover.getEvent());
+
+		// La griglia e' stata svuotata.
+		game2.sendMovement(foeToken, 0, 0);
+		assertEquals(Event.FOE_TURN, foe.getEvent());
+		assertEquals(0, mover.getFoeSelectedMove());
+	}
+
+	@Test
+	public void testRematchAfterLeave() throws RemoteException {
+		game2.setToken(PlayerNumber.P1, 11);
+		game2.setToken(PlayerNumber.P2, 22);
+		game2.abandon();
+		game2.rematch(11);
+		assertEquals(Event.FOE_DISCONNECTED, p1.getEvent());
+	}
+
+	@Test
+	public void testSlowPlayerDoesNotBlockJoin() throws Exception {
+
+		final CountDownLatch release = new CountDownLatch(1);
+		PlayerImpl slow = new PlayerImpl() {
+			@Override
+			public void joinGame(Game g) {
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+				}
+				super.joinGame(g);
+			}
+		};
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		PlayerImpl joiner = new PlayerImpl();
+		GameImpl g = new GameImpl(slow, id, executor);
+		long t = System.nanoTime();
+		g.setPlayer2(joiner);
+		// Il player 1 bloccato non ritarda lo sfidante.
+		assertTrue(System.nanoTime() - t < 1000000000L);
+		for (int i = 0; i < 200 && joiner.getGame() == null; i++)
+			Thread.sleep(10);
+		assertSame(g, joiner.getGame());
+		release.countDown();
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+		assertSame(g, slow.getGame());
+	}
+
+	@Test
+	public void testBlockedPlayersDoNotStarveOtherGames() throws Exception {
+
+		final CountDownLatch release = new CountDownLatch(1);
+		ExecutorService executor = BlockingExecutors.create(
+				BlockingExecutors.Mode.PLATFORM, "callback", 2);
+		// Piu' player bloccati che thread sempre attivi nel pool.
+		for (int i = 0; i < 6; i++) {
+			PlayerImpl blocked = new PlayerImpl() {
+				@Override
+				public void receiveEvents(EventBatch batch) {
+					try {
+						release.await();
+					} catch (InterruptedException e) {
+					}
+					super.receiveEvents(batch);
+				}
+			};
+			GameImpl g = new GameImpl(blocked, "blocked" + i + "-12:00:00",
+					executor);
+			g.setPlayer2(new PlayerImpl());
+		}
+		PlayerImpl a = new PlayerImpl();
+		PlayerImpl b = new PlayerImpl();
+		GameImpl g = new GameImpl(a, id, executor);
+		g.setPlayer2(b);
+		for (int i = 0; i < 200
+				&& (a.getGame() == null || b.getGame() == null); i++)
+			Thread.sleep(10);
+		assertSame(g, a.getGame());
+		assertSame(g, b.getGame());
+		release.countDown();
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void testLogDoesNotBlockDelivery() throws Exception {
+
+		File dir = File.createTempFile("moves", "");
+		dir.delete();
+		dir.mkdir();
+		MoveLog log = new MoveLog(dir, 500, null);
+		ExecutorService executor = Executors.newFixedThreadPool(1);
+		PlayerImpl a = new PlayerImpl();
+		PlayerImpl b = new PlayerImpl();
+		GameImpl g = new GameImpl(a, id, executor);
+		g.setLog(log, log.newGame());
+		g.setPlayer2(b);
+		// Mentre l'inizio della partita attende la scrittura del registro,
+		// l'unico thread dell'esecutore resta libero.
+		Future<?> f = executor.submit(new Runnable() {
+			@Override
+			public void run() {
+			}
+		});
+		f.get(150, TimeUnit.MILLISECONDS);
+		assertNull(a.getGame());
+		for (int i = 0; i < 200
+				&& (a.getGame() == null || b.getGame() == null); i++)
+			Thread.sleep(10);
+		assertSame(g, a.getGame());
+		assertSame(g, b.getGame());
+		log.close();
+		executor.shutdown();
+		for (File file : dir.listFiles())
+			file.delete();
+		dir.delete();
+	}
+
+	@Test
+	public void testPlayerLostIsQueued() throws Exception {
+
+		// Il player 2 registra gli eventi e trattiene la prima notifica.
+		final CountDownLatch release = new CountDownLatch(1);
+		final List<Event> events = new CopyOnWriteArrayList<Event>();
+		PlayerImpl recorder = new PlayerImpl() {
+			@Override
+			public void receiveEvents(EventBatch batch) {
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+				}
+				for (int i = 0; i < batch.size(); i++)
+					events.add(batch.getEvent(i));
+				super.receiveEvents(batch);
+			}
+
+			@Override
+			public void foeDisconnected() {
+				events.add(Event.FOE_DISCONNECTED);
+			}
+		};
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		GameImpl g = new GameImpl(p1, id, executor);
+		g.setToken(PlayerNumber.P1, 1);
+		g.setToken(PlayerNumber.P2, 2);
+		g.setPlayer2(recorder);
+		boolean moved = g.getCurrentPlayer() == PlayerNumber.P1;
+		if (moved)
+			g.sendMovement(1, 0, 4);
+		g.playerLost(p1);
+		release.countDown();
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+		// La disconnessione non precede gli eventi gia' accodati.
+		assertEquals(Event.FOE_DISCONNECTED, events.get(events.size() - 1));
+		assertTrue(events.contains(Event.MATCH_STARTED));
+		if (moved)
+			assertTrue(events.contains(Event.FOE_MOVED));
+	}
+
+	@Test
+	public void testMatchStartIsOneCall() throws RemoteException {
+
+		final int[] calls = new int[2];
+		PlayerImpl[] players = new PlayerImpl[2];
+		for (int i = 0; i < 2; i++) {
+			final int n = i;
+			players[i] = new PlayerImpl() {
+				@Override
+				public void joinGame(Game g) {
+					calls[n] += 100;
+				}
+
+				@Override
+				public void isYourTurn() {
+					calls[n] += 100;
+				}
+
+				@Override
+				public void foeTurn() {
+					calls[n] += 100;
+				}
+
+				@Override
+				public void receiveEvents(EventBatch batch) {
+					calls[n]++;
+					super.receiveEvents(batch);
+				}
+			};
+		}
+		GameImpl g = new GameImpl(players[0], id);
+		g.setPlayer2(players[1]);
+		assertEquals(1, calls[0]);
+		assertEquals(1, calls[1]);
+		assertSame(g, players[0].getGame());
+		assertSame(g, players[1].getGame());
+		boolean p1First = g.getCurrentPlayer() == PlayerNumber.P1;
+		assertEquals(p1First ? Event.YOUR_TURN : Event.FOE_TURN,
+				players[0].getEvent());
+		assertEquals(p1First ? Event.FOE_TURN : Event.YOUR_TURN,
+				players[1].getEvent());
+	}
+
+	@Test
+	public void testDegenerateBoardEnds() throws RemoteException {
+
+		// Su una griglia 3x1 con k=3 nessuno puo' vincere: la griglia piena
+		// chiude la partita in pareggio.
+		GameImpl g = new GameImpl(p1, id, OutboundQueue.DIRECT,
+				MnkBoard.create(3, 1, 3));
+		g.setPlayer2(p2);
+		g.setToken(PlayerNumber.P1, 11);
+		g.setToken(PlayerNumber.P2, 22);
+		boolean p1First = g.getCurrentPlayer() == PlayerNumber.P1;
+		long first = p1First ? 11 : 22;
+		long second = p1First ? 22 : 11;
+		g.sendMovement(first, 0);
+		g.sendMovement(second, 1);
+		assertFalse(g.isEndGame());
+		g.sendMovement(first, 2);
+		assertTrue(g.isEndGame());
+		assertEquals(Event.DRAW, p1.getEvent());
+		assertEquals(Event.DRAW, p2.getEvent());
+	}
+
 }
@@ -0,0 +1,77 @@
+package server.test;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.concurrent.ConcurrentHashMap;
+
+import server.*;
+import api.*;
+import client.*;
+
+public class GameRouterTest {
+
+	private ConcurrentHashMap<String, Game> games;
+	private GameRouter router;
+	private PlayerImpl p1;
+	private PlayerImpl p2;
+
+	@Before
+	public void init() throws RemoteException {
+
+		games = new ConcurrentHashMap<String, Game>();
+		router = new GameRouter(games);
+		p1 = new PlayerImpl();
+		p2 = new PlayerImpl();
+	}
+
+	@After
+	public void close() throws RemoteException {
+
+		UnicastRemoteObject.unexportObject(router, true);
+	}
+
+	@Test
+	public void testHandle() throws Exception {
+
+		GameImpl g = new GameImpl(p1, "mygame-10:00:00");
+		g.setRouter(router);
+		games.put(g.getIdGame(), g);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(g);
+		out.close();
+		Object o = new ObjectInputStream(new ByteArrayInputStream(
+				bytes.toByteArray())).readObject();
+		assertTrue(o instanceof GameHandle);
+		GameHandle h = (GameHandle) o;
+		assertEquals("mygame-10:00:00", h.getIdGame());
+		assertEquals(Game.GRID_DIMENSION, h.getWidth());
+	}
+
+	@Test
+	public void testRoute() throws RemoteException {
+
+		GameImpl g = new GameImpl(p1, "mygame-10:00:01");
+		g.setRouter(router);
+		games.put(g.getIdGame(), g);
+		g.setPlayer2(p2);
+
+		GameHandle h = new GameHandle(router, g.getIdGame(), 3, 3, 3);
+		PlayerImpl first = (p1.getEvent() == Event.YOUR_TURN) ? p1 : p2;
+		PlayerImpl second = (first == p1) ? p2 : p1;
+		h.sendMovement(first, 4);
+		assertEquals(Event.YOUR_TURN, second.getEvent());
+		assertEquals(4, second.getFoeSelectedMove());
+
+		// Le mosse verso partite rimosse vengono ignorate.
+		games.remove(g.getIdGame());
+		h.sendMovement(second, 0);
+		assertEquals(Event.FOE_TURN, first.getEvent());
+	}
+
+}
@@ -0,0 +1,177 @@
+package server.test;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+import java.rmi.RemoteException;
+import java.util.concurrent.atomic.*;
+
+import api.*;
+import client.*;
+import server.*;
+
+public class HeartbeatSchedulerTest {
+
+	private HeartbeatScheduler heartbeats;
+	private PlayerImpl p1;
+	private PlayerImpl p2;
+
+	@Before
+	public void init() throws RemoteException {
+
+		heartbeats = new HeartbeatScheduler(50, 2);
+		p1 = new PlayerImpl();
+		p2 = new PlayerImpl();
+	}
+
+	@After
+	public void close() {
+
+		heartbeats.shutdown();
+	}
+
+	@Test
+	public void testWatchCancel() throws InterruptedException {
+
+		HeartbeatScheduler.Heartbeat h[] = new HeartbeatScheduler.Heartbeat[100];
+		for (int i = 0; i < h.length; i++)
+			h[i] = heartbeats.watch(p1, p2);
+		assertEquals(100, heartbeats.getWatchedCount());
+		assertEquals(2, heartbeats.getWorkerCount());
+
+		Thread.sleep(200);
+		assertNull(p1.getEvent());
+		assertNull(p2.getEvent());
+
+		for (int i = 0; i < h.length; i++) {
+			h[i].cancel();
+			h[i].cancel();
+		}
+		assertEquals(0, heartbeats.getWatchedCount());
+	}
+
+	@Test
+	public void testResume() {
+
+		HeartbeatScheduler.Heartbeat h = heartbeats.watch(p1, p2);
+		h.resume();
+		assertEquals(1, heartbeats.getWatchedCount());
+		h.cancel();
+		assertEquals(0, heartbeats.getWatchedCount());
+		h.resume();
+		h.resume();
+		assertEquals(1, heartbeats.getWatchedCount());
+		h.cancel();
+		assertEquals(0, heartbeats.getWatchedCount());
+	}
+
+	@Test
+	public void testTouchSkipsPing() throws InterruptedException {
+
+		heartbeats.watch(p1, p2);
+		for (int i = 0; i < 10; i++) {
+			heartbeats.touch(p1);
+			heartbeats.touch(p2);
+			Thread.sleep(20);
+		}
+		assertEquals(0, heartbeats.getPingCount());
+
+		Thread.sleep(300);
+		assertTrue(heartbeats.getPingCount() > 0);
+	}
+
+	@Test
+	public void testSharedPlayer() throws Exception {
+
+		final AtomicInteger pinged = new AtomicInteger();
+		PlayerImpl busy = new PlayerImpl() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public void ping() {
+				pinged.incrementAndGet();
+			}
+		};
+		// Il player e' impegnato in molte partite, ma viene interrogato una
+		// sola volta per intervallo.
+		for (int i = 0; i < 50; i++)
+			heartbeats.watch(busy, new PlayerImpl());
+		Thread.sleep(230);
+		assertTrue(pinged.get() > 0);
+		assertTrue(pinged.get() <= 5);
+	}
+
+	@Test
+	public void testPingFailure() throws Exception {
+
+		heartbeats.watch(new DeadPlayer(p1), p2);
+		Thread.sleep(300);
+
+		assertEquals(Event.FOE_DISCONNECTED, p2.getEvent());
+		assertEquals(0, heartbeats.getWatchedCount());
+	}
+
+	@Test
+	public void testLossHandler() throws Exception {
+
+		// La perdita del player viene affidata al gestore della partita,
+		// senza notificare direttamente l'avversario.
+		final AtomicReference<Player> lost = new AtomicReference<Player>();
+		Player dead = new DeadPlayer(p1);
+		heartbeats.watch(dead, p2, new HeartbeatScheduler.LossHandler() {
+			@Override
+			public void playerLost(Player p) {
+				lost.set(p);
+			}
+		});
+		Thread.sleep(300);
+
+		assertSame(dead, lost.get());
+		assertNull(p2.getEvent());
+		assertEquals(0, heartbeats.getWatchedCount());
+	}
+
+	/*
+	 * Player che non risponde al ping.
+	 */
+	private static class DeadPlayer implements Player {
+
+		private final Player p;
+
+		public DeadPlayer(Player p) {
+			this.p = p;
+		}
+
+		public void joinGame(Game g) throws RemoteException {
+			p.joinGame(g);
+		}
+
+		public void isYourTurn() throws RemoteException {
+			p.isYourTurn();
+		}
+
+		public void foeTurn() throws RemoteException {
+			p.foeTurn();
+		}
+
+		public void ping() throws RemoteException {
+			throw new RemoteException("dead");
+		}
+
+		public void foeDisconnected() throws RemoteException {
+			p.foeDisconnected();
+		}
+
+		public void foeHasMoved(int m) throws RemoteException {
+			p.foeHasMoved(m);
+		}
+
+		public void sendGameResult(Event res) throws RemoteException {
+			p.sendGameResult(res);
+		}
+
+		public void receiveEvents(EventBatch batch) throws RemoteException {
+			p.receiveEvents(batch);
+		}
+	}
+}
@@ -0,0 +1,82 @@
+package server.test;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import server.*;
+
+public class LeaderboardTest {
+
+	@Test
+	public void testRankAndPage() {
+
+		Leaderboard b = new Leaderboard();
+		b.put(1, 0, 1500);
+		b.put(2, 0, 1600);
+		b.put(3, 0, 1400);
+		// A parita' di rating precede l'id minore.
+		b.put(4, 0, 1500);
+		assertEquals(4, b.size());
+		assertEquals(1, b.rank(2, 1600));
+		assertEquals(2, b.rank(1, 1500));
+		assertEquals(3, b.rank(4, 1500));
+		assertEquals(4, b.rank(3, 1400));
+
+		long[] players = new long[3];
+		double[] ratings = new double[3];
+		assertEquals(3, b.page(1, players, ratings));
+		assertTrue(Arrays.equals(new long[] { 1, 4, 3 }, players));
+		assertEquals(1400, ratings[2], 0);
+		assertEquals(0, b.page(4, players, ratings));
+
+		// Il player 3 supera tutti: il suo vecchio nodo viene rimosso.
+		b.put(3, 1400, 1700);
+		assertEquals(4, b.size());
+		assertEquals(1, b.rank(3, 1700));
+		assertEquals(2, b.page(2, players, ratings));
+		assertEquals(1, players[0]);
+		assertEquals(4, players[1]);
+	}
+
+	@Test
+	public void testRandomUpdates() {
+
+		Leaderboard b = new Leaderboard();
+		Random random = new Random(42);
+		int n = 5000;
+		double[] current = new double[n];
+		for (int round = 0; round < 4 * n; round++) {
+			int p = random.nextInt(n);
+			double r = 1000 + random.nextInt(1000);
+			b.put(p, current[p], r);
+			current[p] = r;
+		}
+
+		// Classifica attesa, calcolata ordinando tutti i player.
+		List<Integer> expected = new ArrayList<Integer>();
+		for (int p = 0; p < n; p++)
+			if (current[p] != 0)
+				expected.add(p);
+		final double[] r = current;
+		Collections.sort(expected, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer c) {
+				if (r[a] != r[c])
+					return (r[a] > r[c]) ? -1 : 1;
+				return a.compareTo(c);
+			}
+		});
+		assertEquals(expected.size(), b.size());
+		for (int i = 0; i < expected.size(); i += 97)
+			assertEquals(i + 1, b.rank(expected.get(i), r[expected.get(i)]));
+		long[] players = new long[50];
+		double[] ratings = new double[50];
+		int offset = expected.size() / 2;
+		assertEquals(50, b.page(offset, players, ratings));
+		for (int i = 0; i < 50; i++)
+			assertEquals((long) expected.get(offset + i), players[i]);
+	}
+
+}
@@ -0,0 +1,116 @@
+package server.test;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import api.*;
+import server.*;
+
+public class LobbyIndexTest {
+
+	private LobbyIndex lobby;
+
+	@Before
+	public void init() {
+
+		lobby = new LobbyIndex();
+		lobby.add("mirko-15:47:22");
+		lobby.add("genni-15:50:20");
+		lobby.add("bappo-09:02:01");
+		lobby.add("senzaora");
+	}
+
+	@Test
+	public void testAll() {
+
+		ArrayList<String> all = lobby.all();
+		assertEquals(4, all.size());
+		assertEquals("genni-15:50:20", all.get(0));
+		assertEquals("mirko-15:47:22", all.get(1));
+		assertEquals("bappo-09:02:01", all.get(2));
+		assertEquals("senzaora", all.get(3));
+	}
+
+	@Test
+	public void testPage() {
+
+		ArrayList<String> page = lobby.page(1, 2);
+		assertEquals(2, page.size());
+		assertEquals("mirko-15:47:22", page.get(0));
+		assertEquals("bappo-09:02:01", page.get(1));
+
+		assertEquals(1, lobby.page(3, 10).size());
+		assertTrue(lobby.page(4, 10).isEmpty());
+		assertTrue(lobby.page(0, 0).isEmpty());
+	}
+
+	@Test
+	public void testDeepPages() {
+
+		// Le pagine, a qualunque profondita', coincidono con quelle della
+		// lista completa, anche dopo inserimenti e rimozioni casuali.
+		LobbyIndex big = new LobbyIndex();
+		Random random = new Random(42);
+		List<String> ids = new ArrayList<String>();
+		for (int i = 0; i < 2000; i++) {
+			String id = "p" + i + String.format("-%02d:%02d:%02d",
+					random.nextInt(24), random.nextInt(60), random.nextInt(60));
+			big.add(id);
+			ids.add(id);
+			if (i % 3 == 2)
+				big.remove(ids.remove(random.nextInt(ids.size())));
+		}
+		ArrayList<String> all = big.all();
+		assertEquals(ids.size(), all.size());
+		assertEquals(big.size(), all.size());
+		assertTrue(all.containsAll(ids));
+		for (int offset = 0; offset < all.size(); offset += 97) {
+			ArrayList<String> page = big.page(offset, 50);
+			assertEquals(all.subList(offset, Math.min(offset + 50, all.size())),
+					page);
+		}
+		assertTrue(big.page(all.size(), 10).isEmpty());
+	}
+
+	@Test
+	public void testAddRemove() {
+
+		lobby.add("mirko-15:47:22");
+		assertEquals(4, lobby.size());
+
+		lobby.remove("mirko-15:47:22");
+		lobby.remove("mirko-15:47:22");
+		assertEquals(3, lobby.size());
+		assertFalse(lobby.all().contains("mirko-15:47:22"));
+	}
+
+	@Test
+	public void testSince() {
+
+		LobbyDelta full = lobby.since(0);
+		assertTrue(full.isSnapshot());
+		assertEquals(4, full.getAdded().size());
+		assertEquals("genni-15:50:20", full.getAdded().get(0));
+
+		long v = full.getVersion();
+		assertTrue(lobby.since(v).isUnchanged());
+
+		lobby.add("nuova-18:00:00");
+		lobby.add("effimera-18:00:01");
+		lobby.remove("effimera-18:00:01");
+		lobby.remove("mirko-15:47:22");
+
+		LobbyDelta d = lobby.since(v);
+		assertFalse(d.isUnchanged());
+		assertFalse(d.isSnapshot());
+		assertEquals(v, d.getFromVersion());
+		assertEquals(1, d.getAdded().size());
+		assertEquals("nuova-18:00:00", d.getAdded().get(0));
+		assertEquals(18 * 3600, d.getAddedTime(0));
+		assertEquals(1, d.getRemoved().size());
+		assertEquals("mirko-15:47:22", d.getRemoved().get(0));
+		assertEquals(lobby.getVersion(), d.getVersion());
+	}
+}
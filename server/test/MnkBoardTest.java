@@ -0,0 +1,80 @@
+package server.test;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+import server.*;
+import api.*;
+
+public class MnkBoardTest {
+
+	@Test
+	public void testCreate() {
+
+		assertTrue(MnkBoard.create(3, 3, 3) instanceof BitBoard);
+		Board b = MnkBoard.create(15, 15, 5);
+		assertTrue(b instanceof MnkBoard);
+		assertEquals(15, b.getWidth());
+		assertEquals(15, b.getHeight());
+		assertEquals(5, b.getWinLength());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalid() {
+
+		new MnkBoard(15, 15, 16);
+	}
+
+	@Test
+	public void testLines() {
+
+		// Orizzontale, verticale, diagonale e antidiagonale.
+		int[][] dirs = { { 0, 1 }, { 1, 0 }, { 1, 1 }, { 1, -1 } };
+		for (int[] d : dirs) {
+			MnkBoard b = new MnkBoard(15, 15, 5);
+			int r = 7, c = 7;
+			// Si completa la linea partendo dagli estremi.
+			int[] order = { -2, 2, -1, 1 };
+			for (int k : order) {
+				assertTrue(b.play((r + k * d[0]) * 15 + c + k * d[1], Game.P2_CELL));
+				assertEquals(0, b.result());
+			}
+			assertTrue(b.play(r * 15 + c, Game.P2_CELL));
+			assertEquals(Game.P2_CELL, b.result());
+		}
+	}
+
+	@Test
+	public void testEdges() {
+
+		MnkBoard b = new MnkBoard(6, 4, 4);
+		// Quattro in fila che non devono proseguire sulla riga successiva.
+		b.play(4, Game.P1_CELL);
+		b.play(5, Game.P1_CELL);
+		b.play(6, Game.P1_CELL);
+		b.play(7, Game.P1_CELL);
+		assertEquals(0, b.result());
+		assertFalse(b.play(5, Game.P2_CELL));
+		b.play(3, Game.P1_CELL);
+		b.play(2, Game.P1_CELL);
+		assertEquals(Game.P1_CELL, b.result());
+	}
+
+	@Test
+	public void testDraw() {
+
+		MnkBoard b = new MnkBoard(2, 2, 2);
+		b.play(0, Game.P1_CELL);
+		b.play(1, Game.P2_CELL);
+		assertEquals(0, b.result());
+		b.clear();
+		assertEquals(Game.FREE_CELL, b.cell(0));
+		b = new MnkBoard(4, 1, 3);
+		b.play(0, Game.P1_CELL);
+		b.play(1, Game.P1_CELL);
+		b.play(2, Game.P2_CELL);
+		b.play(3, Game.P2_CELL);
+		assertEquals(3, b.result());
+	}
+
+}
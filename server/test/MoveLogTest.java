@@ -0,0 +1,276 @@
+package server.test;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import server.*;
+
+public class MoveLogTest {
+
+	private File dir;
+	private File file;
+
+	@Before
+	public void init() throws IOException {
+
+		dir = File.createTempFile("moves", "");
+		dir.delete();
+		dir.mkdir();
+		file = new File(dir, "moves.1.log");
+	}
+
+	@After
+	public void close() {
+
+		for (File f : dir.listFiles())
+			f.delete();
+		dir.delete();
+	}
+
+	@Test
+	public void testReplay() throws IOException {
+
+		MoveLog log = new MoveLog(dir, 0, null);
+		int g = log.newGame();
+		log.create(g, "bappo-12:23:22", "bappo", 3, 3, 3);
+		log.join(g, "bicienzo");
+		log.start(g, false);
+		log.move(g, 4);
+		long last = log.move(g, 300);
+		log.result(g, 3);
+		log.remove(g);
+		assertTrue(log.sync(last));
+		assertEquals(7, log.getRecordCount());
+		log.close();
+
+		Recorder r = new Recorder();
+		log = new MoveLog(dir, 0, r);
+		assertEquals(Arrays.asList("created 1 bappo-12:23:22 bappo 3x3x3",
+				"joined 1 bicienzo", "started 1 false", "moved 1 4",
+				"moved 1 300", "ended 1 3", "removed 1"), r.records);
+		// La numerazione delle partite prosegue da quella registrata.
+		assertEquals(2, log.newGame());
+		log.close();
+	}
+
+	@Test
+	public void testTornTail() throws IOException {
+
+		MoveLog log = new MoveLog(dir, 0, null);
+		log.sync(log.move(1, 4));
+		log.sync(log.move(1, 5));
+		log.close();
+		long valid = file.length();
+
+		// Blocco scritto a meta' da un arresto del server.
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		raf.seek(valid);
+		raf.writeInt(100);
+		raf.writeInt(0);
+		raf.write(new byte[10]);
+		raf.close();
+
+		Recorder r = new Recorder();
+		log = new MoveLog(dir, 0, r);
+		assertEquals(Arrays.asList("moved 1 4", "moved 1 5"), r.records);
+		assertEquals(valid, file.length());
+		log.sync(log.move(1, 6));
+		log.close();
+
+		r = new Recorder();
+		new MoveLog(dir, 0, r).close();
+		assertEquals(Arrays.asList("moved 1 4", "moved 1 5", "moved 1 6"),
+				r.records);
+	}
+
+	@Test
+	public void testWhenDurable() throws Exception {
+
+		final MoveLog log = new MoveLog(dir, 200, null);
+		int g = log.newGame();
+		long p = log.move(g, 4);
+		final List<Long> flushes = new CopyOnWriteArrayList<Long>();
+		Runnable action = new Runnable() {
+			@Override
+			public void run() {
+				flushes.add(log.getFlushCount());
+			}
+		};
+		// L'azione viene eseguita soltanto dopo la scrittura del record.
+		log.whenDurable(p, action);
+		log.whenDurable(p, action);
+		assertTrue(flushes.isEmpty());
+		for (int i = 0; i < 100 && flushes.size() < 2; i++)
+			Thread.sleep(20);
+		assertEquals(Arrays.asList(1L, 1L), flushes);
+		// Un record gia' persistente non fa attendere l'azione.
+		log.whenDurable(p, action);
+		assertEquals(3, flushes.size());
+		log.close();
+	}
+
+	@Test
+	public void testGroupCommit() throws Exception {
+
+		final MoveLog log = new MoveLog(dir, 2, null);
+		final int games = 8;
+		final int moves = 50;
+		ExecutorService pool = Executors.newFixedThreadPool(games);
+		List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+		for (int i = 0; i < games; i++) {
+			final int g = log.newGame();
+			results.add(pool.submit(new Callable<Boolean>() {
+				@Override
+				public Boolean call() {
+					boolean ok = true;
+					for (int m = 0; m < moves; m++)
+						ok &= log.sync(log.move(g, m));
+					return ok;
+				}
+			}));
+		}
+		for (Future<Boolean> f : results)
+			assertTrue(f.get());
+		pool.shutdown();
+		assertEquals(games * moves, log.getRecordCount());
+		// Le mosse delle partite attive condividono le scritture.
+		assertTrue(log.getFlushCount() < games * moves);
+		log.close();
+
+		Recorder r = new Recorder();
+		new MoveLog(dir, 0, r).close();
+		assertEquals(games * moves, r.records.size());
+	}
+
+	@Test
+	public void testCheckpoint() throws IOException {
+
+		MoveLog log = new MoveLog(dir, 0, null);
+		int g1 = log.newGame();
+		log.create(g1, "bappo-12:23:22", "bappo", 3, 3, 3);
+		log.join(g1, "bicienzo");
+		log.start(g1, true);
+		log.move(g1, 0);
+		log.move(g1, 1);
+		log.result(g1, 1);
+		// Rivincita: dell'incontro precedente non resta traccia.
+		log.start(g1, false);
+		log.move(g1, 4);
+		int g2 = log.newGame();
+		log.create(g2, "bappo-12:23:23", "bappo", 4, 4, 3);
+		log.remove(g2);
+		int g3 = log.newGame();
+		log.sync(log.create(g3, "bicienzo-12:23:24", "bicienzo", 3, 3, 3));
+		log.checkpoint();
+		assertEquals(2, log.getSnapshot());
+		assertFalse(file.exists());
+		assertTrue(new File(dir, "snapshot.2.snap").exists());
+		// I record successivi all'istantanea finiscono nel nuovo segmento.
+		log.sync(log.join(g3, "bappo"));
+		log.close();
+
+		Recorder r = new Recorder();
+		log = new MoveLog(dir, 0, r);
+		assertEquals(Arrays.asList("created 1 bappo-12:23:22 bappo 3x3x3",
+				"joined 1 bicienzo", "started 1 false", "moved 1 4",
+				"created 3 bicienzo-12:23:24 bicienzo 3x3x3",
+				"joined 3 bappo"), r.records);
+		assertEquals(4, log.newGame());
+		log.close();
+	}
+
+	@Test
+	public void testAutomaticCompaction() throws Exception {
+
+		// Segmenti minuscoli: ogni scrittura provoca una rotazione.
+		MoveLog log = new MoveLog(dir, 0, 64, null);
+		int g = log.newGame();
+		log.create(g, "bappo-12:23:22", "bappo", 3, 3, 3);
+		log.join(g, "bicienzo");
+		for (int round = 0; round < 20; round++) {
+			log.sync(log.start(g, round % 2 == 0));
+			for (int m = 0; m < 9; m++)
+				log.sync(log.move(g, m));
+			log.sync(log.result(g, 3));
+		}
+		log.close();
+		assertTrue(log.getSnapshot() > 1);
+		// Restano l'ultima istantanea e i segmenti successivi.
+		assertTrue(dir.listFiles().length < 10);
+
+		Recorder r = new Recorder();
+		new MoveLog(dir, 0, r).close();
+		assertEquals(Arrays.asList("created 1 bappo-12:23:22 bappo 3x3x3",
+				"joined 1 bicienzo", "started 1 false", "moved 1 0",
+				"moved 1 1", "moved 1 2", "moved 1 3", "moved 1 4",
+				"moved 1 5", "moved 1 6", "moved 1 7", "moved 1 8",
+				"ended 1 3"), r.records);
+	}
+
+	@Test
+	public void testInterruptedCompaction() throws IOException {
+
+		MoveLog log = new MoveLog(dir, 0, null);
+		int g = log.newGame();
+		log.sync(log.create(g, "bappo-12:23:22", "bappo", 3, 3, 3));
+		log.checkpoint();
+		log.sync(log.join(g, "bicienzo"));
+		log.close();
+
+		// Istantanea lasciata a meta' da un arresto durante la compattazione.
+		FileOutputStream partial = new FileOutputStream(new File(dir,
+				"snapshot.3.tmp"));
+		partial.write(new byte[] { 0, 0, 0, 100 });
+		partial.close();
+
+		Recorder r = new Recorder();
+		log = new MoveLog(dir, 0, r);
+		assertEquals(Arrays.asList("created 1 bappo-12:23:22 bappo 3x3x3",
+				"joined 1 bicienzo"), r.records);
+		assertFalse(new File(dir, "snapshot.3.tmp").exists());
+		log.close();
+	}
+
+	private static class Recorder implements MoveLog.Handler {
+
+		private final List<String> records = new ArrayList<String>();
+
+		@Override
+		public void created(int game, String idGame, String player1,
+				int width, int height, int winLength) {
+			records.add("created " + game + " " + idGame + " " + player1 + " "
+					+ width + "x" + height + "x" + winLength);
+		}
+
+		@Override
+		public void joined(int game, String player2) {
+			records.add("joined " + game + " " + player2);
+		}
+
+		@Override
+		public void started(int game, boolean player1First) {
+			records.add("started " + game + " " + player1First);
+		}
+
+		@Override
+		public void moved(int game, int m) {
+			records.add("moved " + game + " " + m);
+		}
+
+		@Override
+		public void ended(int game, int result) {
+			records.add("ended " + game + " " + result);
+		}
+
+		@Override
+		public void removed(int game) {
+			records.add("removed " + game);
+		}
+
+	}
+
+}
@@ -0,0 +1,147 @@
+package server.test;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+import java.rmi.RemoteException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import api.*;
+import client.*;
+import server.*;
+
+public class OutboundQueueTest {
+
+	private ExecutorService executor;
+	private PlayerImpl p;
+
+	@Before
+	public void init() throws RemoteException {
+
+		executor = Executors.newFixedThreadPool(4);
+		p = new PlayerImpl();
+	}
+
+	@After
+	public void close() {
+
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void testOrder() throws InterruptedException {
+
+		final List<Integer> delivered = Collections
+				.synchronizedList(new ArrayList<Integer>());
+		final CountDownLatch done = new CountDownLatch(1);
+		OutboundQueue q = new OutboundQueue(p, executor, null);
+		for (int i = 0; i < 1000; i++) {
+			final int n = i;
+			q.send(new OutboundQueue.Callback() {
+				@Override
+				public void deliver(Player p) {
+					delivered.add(n);
+					if (n == 999)
+						done.countDown();
+				}
+			});
+		}
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		for (int i = 0; i < 1000; i++)
+			assertEquals(i, (int) delivered.get(i));
+	}
+
+	@Test
+	public void testSlowPlayer() throws InterruptedException {
+
+		final CountDownLatch release = new CountDownLatch(1);
+		OutboundQueue q = new OutboundQueue(p, executor, null);
+		long start = System.nanoTime();
+		q.send(new OutboundQueue.Callback() {
+			@Override
+			public void deliver(Player p) {
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+				}
+			}
+		});
+		q.send(new OutboundQueue.Callback() {
+			@Override
+			public void deliver(Player p) throws RemoteException {
+				p.isYourTurn();
+			}
+		});
+		assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+		assertNull(p.getEvent());
+		release.countDown();
+		Thread.sleep(100);
+		assertEquals(Event.YOUR_TURN, p.getEvent());
+	}
+
+	@Test
+	public void testFailure() throws InterruptedException {
+
+		final AtomicInteger failures = new AtomicInteger();
+		final AtomicInteger delivered = new AtomicInteger();
+		OutboundQueue q = new OutboundQueue(p, OutboundQueue.DIRECT,
+				new OutboundQueue.FailureHandler() {
+					@Override
+					public void unreachable(OutboundQueue q) {
+						failures.incrementAndGet();
+					}
+				});
+		OutboundQueue.Callback fail = new OutboundQueue.Callback() {
+			@Override
+			public void deliver(Player p) throws RemoteException {
+				throw new RemoteException("unreachable");
+			}
+		};
+		OutboundQueue.Callback ok = new OutboundQueue.Callback() {
+			@Override
+			public void deliver(Player p) {
+				delivered.incrementAndGet();
+			}
+		};
+		q.send(ok);
+		q.send(fail);
+		q.send(ok);
+		q.send(fail);
+		assertTrue(q.isClosed());
+		assertEquals(1, failures.get());
+		assertEquals(1, delivered.get());
+	}
+
+	@Test
+	public void testUncheckedFailure() {
+
+		final AtomicInteger failures = new AtomicInteger();
+		final AtomicInteger delivered = new AtomicInteger();
+		OutboundQueue q = new OutboundQueue(p, OutboundQueue.DIRECT,
+				new OutboundQueue.FailureHandler() {
+					@Override
+					public void unreachable(OutboundQueue q) {
+						failures.incrementAndGet();
+					}
+				});
+		q.send(new OutboundQueue.Callback() {
+			@Override
+			public void deliver(Player p) {
+				throw new IllegalStateException("broken");
+			}
+		});
+		// La coda e' chiusa, non bloccata: il player viene dato per perso.
+		assertTrue(q.isClosed());
+		assertEquals(1, failures.get());
+		q.send(new OutboundQueue.Callback() {
+			@Override
+			public void deliver(Player p) {
+				delivered.incrementAndGet();
+			}
+		});
+		assertEquals(0, delivered.get());
+	}
+
+}
@@ -0,0 +1,74 @@
+package server.test;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import server.*;
+import api.*;
+
+public class PerfectPlayTableTest {
+
+	private static PerfectPlayTable table;
+
+	@BeforeClass
+	public static void init() {
+
+		table = new PerfectPlayTable();
+	}
+
+	@Test
+	public void testEmptyBoard() {
+
+		assertEquals(0, table.value(0));
+		assertTrue(table.bestMove(0) >= 0);
+		assertTrue(table.getStateCount() > 5000);
+	}
+
+	@Test
+	public void testImmediateWin() {
+
+		// Il player di turno ha 0 e 1, l'avversario 3 e 4: deve giocare 2.
+		int position = PerfectPlayTable.encode(0x003, 0x018);
+		assertEquals(1, table.value(position));
+		assertEquals(2, table.bestMove(position));
+	}
+
+	@Test
+	public void testTerminal() {
+
+		int position = PerfectPlayTable.encode(0x018, 0x007);
+		assertEquals(-1, table.value(position));
+		assertEquals(PerfectPlayTable.NO_MOVE, table.bestMove(position));
+	}
+
+	@Test
+	public void testNeverLoses() {
+
+		Random random = new Random(7);
+		BitBoard board = new BitBoard();
+		for (int game = 0; game < 2000; game++) {
+			board.clear();
+			// Il bot gioca come P2; la prima mossa spetta a chi capita.
+			boolean botTurn = random.nextBoolean();
+			while (board.result() == 0) {
+				if (botTurn) {
+					int own = board.getMask(Game.P2_CELL);
+					int foe = board.getMask(Game.P1_CELL);
+					int m = table.bestMove(PerfectPlayTable.encode(own, foe));
+					assertTrue(board.play(m, Game.P2_CELL));
+				} else {
+					int m;
+					do
+						m = random.nextInt(9);
+					while (board.cell(m) != Game.FREE_CELL);
+					board.play(m, Game.P1_CELL);
+				}
+				botTurn = !botTurn;
+			}
+			assertTrue(board.result() != Game.P1_CELL);
+		}
+	}
+
+}
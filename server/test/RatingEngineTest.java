@@ -0,0 +1,70 @@
+package server.test;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+import java.io.*;
+
+import server.*;
+
+public class RatingEngineTest {
+
+	private File file;
+
+	@Before
+	public void init() throws IOException {
+
+		file = File.createTempFile("players", ".stats");
+		file.delete();
+	}
+
+	@After
+	public void close() {
+
+		file.delete();
+	}
+
+	@Test
+	public void testExpected() {
+
+		assertEquals(0.5, RatingEngine.expected(1500, 1500), 1e-9);
+		assertEquals(0.909, RatingEngine.expected(1800, 1400), 1e-3);
+		assertEquals(1, RatingEngine.expected(1800, 1400)
+				+ RatingEngine.expected(1400, 1800), 1e-9);
+	}
+
+	@Test
+	public void testGameEnded() throws Exception {
+
+		StatsTable stats = new StatsTable(file);
+		RatingEngine e = new RatingEngine(stats);
+		long bappo = GameArchive.id("bappo");
+		long bicienzo = GameArchive.id("bicienzo");
+		long terzo = GameArchive.id("terzo");
+		e.gameEnded(bappo, "bappo", bicienzo, "bicienzo", 1);
+		e.sync();
+		assertEquals(1516, e.getRating(bappo), 1e-9);
+		assertEquals(1484, e.getRating(bicienzo), 1e-9);
+		assertEquals(1, e.getRank(bappo));
+		assertEquals(2, e.getRank(bicienzo));
+		assertEquals(0, e.getRank(terzo));
+
+		// Il pareggio con un avversario piu' forte fa guadagnare punti.
+		e.gameEnded(terzo, "terzo", bappo, "bappo", 3);
+		e.sync();
+		assertTrue(e.getRating(terzo) > RatingEngine.INITIAL_RATING);
+		assertEquals(3, e.getLeaderboard().size());
+		assertEquals(3, e.getRank(bicienzo));
+		e.close();
+		stats.close();
+
+		// La classifica viene ricostruita dai rating memorizzati.
+		stats = new StatsTable(file);
+		e = new RatingEngine(stats);
+		assertEquals(3, e.getLeaderboard().size());
+		assertEquals(3, e.getRank(bicienzo));
+		e.close();
+		stats.close();
+	}
+
+}
@@ -0,0 +1,70 @@
+package server.test;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+import java.util.concurrent.ForkJoinPool;
+
+import server.*;
+import api.*;
+
+public class SearchEngineTest {
+
+	private static ForkJoinPool pool;
+
+	@BeforeClass
+	public static void init() {
+
+		pool = new ForkJoinPool(4);
+	}
+
+	@AfterClass
+	public static void close() {
+
+		pool.shutdownNow();
+	}
+
+	@Test
+	public void testImmediateWin() {
+
+		MnkBoard b = new MnkBoard(3, 3, 3);
+		b.play(0, Game.P1_CELL);
+		b.play(3, Game.P2_CELL);
+		b.play(1, Game.P1_CELL);
+		b.play(4, Game.P2_CELL);
+		SearchEngine engine = new SearchEngine(3, 3, 16, pool);
+		assertEquals(2, engine.bestMove(b, Game.P1_CELL, 1000));
+		assertEquals(5, engine.bestMove(b, Game.P2_CELL, 1000));
+	}
+
+	@Test
+	public void testBlock() {
+
+		MnkBoard b = new MnkBoard(4, 4, 3);
+		b.play(5, Game.P1_CELL);
+		b.play(0, Game.P2_CELL);
+		b.play(6, Game.P1_CELL);
+		b.play(15, Game.P2_CELL);
+		// P1 minaccia 4 e 7: P2 non puo' bloccare entrambe.
+		SearchEngine engine = new SearchEngine(4, 4, 18, pool);
+		int m = engine.bestMove(b, Game.P1_CELL, 2000);
+		assertTrue(m == 4 || m == 7);
+		assertTrue(engine.getNodes() > 0);
+	}
+
+	@Test
+	public void testPerfectPlayDraws() {
+
+		MnkBoard b = new MnkBoard(3, 3, 3);
+		SearchEngine engine = new SearchEngine(3, 3, 16, pool);
+		int side = Game.P1_CELL;
+		while (b.result() == 0) {
+			int m = engine.bestMove(b, side, 2000);
+			assertTrue(b.play(m, side));
+			side = 3 - side;
+		}
+		assertEquals(3, b.result());
+		assertTrue(engine.getHitRate() >= 0 && engine.getHitRate() <= 1);
+	}
+
+}
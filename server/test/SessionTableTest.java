@@ -0,0 +1,76 @@
+package server.test;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+import java.rmi.RemoteException;
+
+import server.*;
+import client.*;
+
+public class SessionTableTest {
+
+	private SessionTable sessions;
+	private PlayerImpl p;
+
+	@Before
+	public void init() throws RemoteException {
+
+		sessions = new SessionTable();
+		p = new PlayerImpl();
+	}
+
+	@Test
+	public void testOpenClose() {
+
+		long t = sessions.open(p, "bappo");
+		assertTrue(t != SessionTable.NO_SESSION);
+		assertSame(p, sessions.get(t).getPlayer());
+		assertEquals("bappo", sessions.get(t).getName());
+		assertEquals(1, sessions.size());
+		assertNotNull(sessions.close(t));
+		assertNull(sessions.get(t));
+		assertNull(sessions.close(t));
+		assertEquals(0, sessions.size());
+		assertNull(sessions.get(SessionTable.NO_SESSION));
+	}
+
+	@Test
+	public void testReuse() {
+
+		long t1 = sessions.open(p, "bappo");
+		sessions.close(t1);
+		long t2 = sessions.open(p, "bicienzo");
+		// Stessa posizione, generazione diversa.
+		assertTrue(t1 != t2);
+		assertNull(sessions.get(t1));
+		assertEquals("bicienzo", sessions.get(t2).getName());
+	}
+
+	@Test
+	public void testForgedToken() {
+
+		long t = sessions.open(p, "bappo");
+		// Generazione successiva della stessa posizione.
+		assertNull(sessions.get(t + (1 << 20)));
+		assertNull(sessions.get(t - (1 << 20)));
+		// Stessa posizione e generazione, parte casuale diversa.
+		assertNull(sessions.get(t ^ (1L << 40)));
+		assertNull(sessions.get(t & 0xFFFFFFFFL));
+		assertNull(sessions.close(t + (1 << 20)));
+		assertEquals(1, sessions.size());
+		assertSame(p, sessions.get(t).getPlayer());
+	}
+
+	@Test
+	public void testGrow() {
+
+		long[] tokens = new long[1000];
+		for (int i = 0; i < tokens.length; i++)
+			tokens[i] = sessions.open(p, "p" + i);
+		for (int i = 0; i < tokens.length; i++)
+			assertEquals("p" + i, sessions.get(tokens[i]).getName());
+		assertEquals(1000, sessions.size());
+	}
+
+}
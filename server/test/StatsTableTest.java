@@ -0,0 +1,132 @@
+package server.test;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import server.*;
+
+public class StatsTableTest {
+
+	private File file;
+
+	@Before
+	public void init() throws IOException {
+
+		file = File.createTempFile("players", ".stats");
+		file.delete();
+	}
+
+	@After
+	public void close() {
+
+		file.delete();
+		new File(file.getPath() + ".tmp").delete();
+	}
+
+	@Test
+	public void testAddAndGet() throws IOException {
+
+		StatsTable t = new StatsTable(file);
+		long bappo = GameArchive.id("bappo");
+		t.add(bappo, "bappo", StatsTable.WINS);
+		t.add(bappo, "bappo", StatsTable.WINS);
+		t.add(bappo, "bappo", StatsTable.ABANDONS);
+		t.add(GameArchive.id("bicienzo"), "bicienzo", StatsTable.LOSSES);
+		assertArrayEquals(new int[] { 2, 0, 0, 1 }, t.get(bappo));
+		assertArrayEquals(new int[] { 0, 1, 0, 0 },
+				t.get(GameArchive.id("bicienzo")));
+		assertArrayEquals(new int[] { 0, 0, 0, 0 },
+				t.get(GameArchive.id("nobody")));
+		// L'id 0 e' riservato agli elementi vuoti, ma resta utilizzabile.
+		t.add(0, null, StatsTable.DRAWS);
+		assertArrayEquals(new int[] { 0, 0, 1, 0 }, t.get(0));
+		assertEquals(3, t.size());
+		t.close();
+
+		t = new StatsTable(file);
+		assertEquals(3, t.size());
+		assertArrayEquals(new int[] { 2, 0, 0, 1 }, t.get(bappo));
+		t.close();
+	}
+
+	@Test
+	public void testRatingAndName() throws IOException {
+
+		StatsTable t = new StatsTable(file);
+		long bappo = GameArchive.id("bappo");
+		assertEquals(0, t.getRating(bappo), 0);
+		assertNull(t.getName(bappo));
+		t.setRating(bappo, "bappo", 1516);
+		// Il troncamento non spezza il carattere a cavallo del limite.
+		String longName = "bappo";
+		while (longName.length() < StatsTable.NAME_BYTES - 1)
+			longName += "o";
+		longName += "\u00e8";
+		t.add(GameArchive.id(longName), longName, StatsTable.WINS);
+		t.close();
+
+		t = new StatsTable(file);
+		assertEquals(1516, t.getRating(bappo), 0);
+		assertEquals("bappo", t.getName(bappo));
+		assertEquals(longName.substring(0, StatsTable.NAME_BYTES - 1),
+				t.getName(GameArchive.id(longName)));
+		final List<Long> rated = new ArrayList<Long>();
+		t.scan(new StatsTable.Visitor() {
+			@Override
+			public void visit(long player, double rating) {
+				if (rating != 0)
+					rated.add(player);
+			}
+		});
+		assertEquals(Arrays.asList(bappo), rated);
+		t.close();
+	}
+
+	@Test
+	public void testGrow() throws IOException {
+
+		StatsTable t = new StatsTable(file, 4);
+		for (int i = 0; i < 1000; i++)
+			for (int j = 0; j <= i % 3; j++)
+				t.add(GameArchive.id("p" + i), "p" + i, StatsTable.DRAWS);
+		assertEquals(1000, t.size());
+		assertTrue(t.getCapacity() >= 1000 * 4 / 3);
+		t.close();
+
+		t = new StatsTable(file);
+		for (int i = 0; i < 1000; i++)
+			assertEquals(i % 3 + 1, t.get(GameArchive.id("p" + i))[StatsTable.DRAWS]);
+		t.close();
+	}
+
+	@Test
+	public void testConcurrentUpdates() throws Exception {
+
+		final StatsTable t = new StatsTable(file, 2);
+		final int threads = 8;
+		final int players = 500;
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		List<Future<?>> done = new ArrayList<Future<?>>();
+		for (int i = 0; i < threads; i++)
+			done.add(pool.submit(new Callable<Void>() {
+				@Override
+				public Void call() throws IOException {
+					for (int p = 0; p < players; p++)
+						t.add(GameArchive.id("p" + p), "p" + p, StatsTable.WINS);
+					return null;
+				}
+			}));
+		for (Future<?> f : done)
+			f.get();
+		pool.shutdown();
+		assertEquals(players, t.size());
+		for (int p = 0; p < players; p++)
+			assertEquals(threads, t.get(GameArchive.id("p" + p))[StatsTable.WINS]);
+		t.close();
+	}
+
+}
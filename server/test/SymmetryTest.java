@@ -0,0 +1,49 @@
+package server.test;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+import server.*;
+
+public class SymmetryTest {
+
+	@Test
+	public void testSquare() {
+
+		Symmetry s = new Symmetry(3, 3);
+		assertEquals(8, s.size());
+		for (int t = 0; t < s.size(); t++) {
+			// Il centro e' invariante.
+			assertEquals(4, s.apply(t, 4));
+			for (int m = 0; m < 9; m++) {
+				assertEquals(m, s.invert(t, s.apply(t, m)));
+				assertEquals(m, s.apply(s.inverse(t), s.apply(t, m)));
+			}
+		}
+	}
+
+	@Test
+	public void testRectangular() {
+
+		Symmetry s = new Symmetry(4, 2);
+		assertEquals(4, s.size());
+		for (int t = 0; t < s.size(); t++) {
+			int[] seen = new int[8];
+			for (int m = 0; m < 8; m++)
+				seen[s.apply(t, m)]++;
+			for (int c : seen)
+				assertEquals(1, c);
+		}
+	}
+
+	@Test
+	public void testLargeBoard() {
+
+		Symmetry s = new Symmetry(15, 15);
+		assertEquals(8, s.size());
+		assertEquals(112, s.apply(3, 112));
+		for (int t = 0; t < s.size(); t++)
+			assertEquals(17, s.invert(t, s.apply(t, 17)));
+	}
+
+}
@@ -3,8 +3,11 @@ package server.test;
 import org.junit.*;
 import static org.junit.Assert.*;
 
+import java.io.*;
 import java.rmi.RemoteException;
 import java.util.ArrayList;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import api.*;
 import client.*;
@@ -35,8 +38,8 @@ public class TicTacToeServerImplTest {
 	@Test
 	public void testDeregister() {
 
-		server.register(player1, "bappo");
-		server.deregister("bappo");
+		long t = server.registerSession(player1, "bappo");
+		server.deregister(t);
 		assertFalse(server.getListPlayers().containsKey("bappo"));
 
 	}
@@ -49,20 +52,491 @@ public class TicTacToeServerImplTest {
 	}
 
 	@Test
-	public void testJoinGame() throws RemoteException, GameJoiningException {
+	public void testCreateBotGame() throws RemoteException,
+			InterruptedException {
+
+		server.register(player1, "bappo");
+		server.createBotGame(player1, "bappo-20:22:13");
+		assertTrue(server.getListGames().containsKey("bappo-20:22:13"));
+		assertFalse(server.getAllChallengers().contains("bappo-20:22:13"));
+		assertNotNull(started(player1));
+	}
+
+	@Test
+	public void testCreateBotGameWithToken() throws RemoteException,
+			InterruptedException {
+
+		long t = server.registerSession(player1, "bappo");
+		server.createBotGame(t, "bappo-20:22:14");
+		assertFalse(server.getAllChallengers().contains("bappo-20:22:14"));
+		GameImpl g = started(player1);
+		assertEquals("bappo", g.getPlayerName(GameImpl.PlayerNumber.P1));
+		// Il player gioca attraverso il token della sua sessione.
+		for (int i = 0; i < 100 && player1.getEvent() != Event.YOUR_TURN; i++)
+			Thread.sleep(10);
+		assertEquals(Event.YOUR_TURN, player1.getEvent());
+		int[] moves = g.getMoves();
+		int before = moves.length;
+		int m = 0;
+		while (contains(moves, m))
+			m++;
+		g.sendMovement(t, m);
+		for (int i = 0; i < 100 && g.getMoves().length < before + 2; i++)
+			Thread.sleep(10);
+		assertTrue(g.getMoves().length >= before + 2);
+	}
+
+	@Test
+	public void testCreateMnkGame() throws RemoteException {
+
+		server.createGame(player1, "gomoku-20:22:12", 15, 15, 5);
+		Game g = server.getListGames().get("gomoku-20:22:12");
+		assertEquals(15, g.getWidth());
+		assertEquals(15, g.getHeight());
+		assertEquals(5, g.getWinLength());
+	}
+
+	@Test
+	public void testJoinGame() throws RemoteException, GameJoiningException,
+			InterruptedException {
 
 		server.register(player1, "bappo");
 		server.register(player2, "bicienzo");
 		server.createGame(player1, "partita1-22:12:12");
 		server.joinGame(player2, "partita1-22:12:12");
 
-		GameImpl g1 = (GameImpl) player1.getGame();
-		GameImpl g2 = (GameImpl) player2.getGame();
+		GameImpl g1 = started(player1);
+		GameImpl g2 = started(player2);
 
 		assertEquals("partita1-22:12:12", g1.getIdGame());
 		assertEquals("partita1-22:12:12", g2.getIdGame());
 	}
 
+	@Test
+	public void testSessionTokens() throws RemoteException,
+			GameJoiningException, InterruptedException {
+
+		long t1 = server.registerSession(player1, "bappo");
+		long t2 = server.registerSession(player2, "bicienzo");
+		assertTrue(t1 != TicTacToeServer.NO_SESSION && t1 != t2);
+		assertEquals(TicTacToeServer.NO_SESSION, server.registerSession(player2, "bappo"));
+
+		server.createGame(t1, "partita2-22:12:13");
+		server.joinGame(t2, "partita2-22:12:13");
+		started(player2);
+		GameImpl g = started(player1);
+		PlayerImpl first = (player1.getEvent() == Event.YOUR_TURN) ? player1 : player2;
+		PlayerImpl second = (first == player1) ? player2 : player1;
+		// Un token sconosciuto viene ignorato.
+		g.sendMovement(12345, 4);
+		g.sendMovement((first == player1) ? t1 : t2, 4);
+		// Le notifiche vengono consegnate in maniera asincrona.
+		for (int i = 0; i < 100 && second.getEvent() != Event.YOUR_TURN; i++)
+			Thread.sleep(10);
+		assertEquals(4, second.getFoeSelectedMove());
+		assertEquals(Event.YOUR_TURN, second.getEvent());
+
+		server.deregister(t1);
+		assertTrue(server.register(player1, "bappo"));
+	}
+
+	@Test
+	public void testForgedToken() throws RemoteException {
+
+		long t1 = server.registerSession(player1, "bappo");
+		// Token della stessa posizione con la generazione successiva.
+		long forged = t1 + (1 << 20);
+		try {
+			server.createGame(forged, "bappo-22:12:13");
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+		server.deregister(forged);
+		assertFalse(server.register(player2, "bappo"));
+
+		server.createGame(t1, "bappo-22:12:13", 4, 4, 3);
+		GameImpl g = (GameImpl) server.getListGames().get("bappo-22:12:13");
+		assertEquals(4, g.getWidth());
+		assertEquals(3, g.getWinLength());
+		try {
+			server.createGame(forged, "bappo-22:12:14", 4, 4, 3);
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	@Test
+	public void testRecoveryFromLog() throws IOException,
+			GameJoiningException, InterruptedException {
+
+		File f = dataDir();
+		TicTacToeServerImpl s = new TicTacToeServerImpl(
+				BlockingExecutors.Mode.PLATFORM, f);
+		long t1 = s.registerSession(player1, "bappo");
+		long t2 = s.registerSession(player2, "bicienzo");
+		s.createGame(t1, "bappo-22:12:13");
+		s.createGame(t1, "bappo-22:12:14");
+		s.joinGame(t2, "bappo-22:12:13");
+		GameImpl g = started(player1);
+		boolean p1First = g.getCurrentPlayer() == GameImpl.PlayerNumber.P1;
+		g.sendMovement(p1First ? t1 : t2, 4);
+		PlayerImpl second = p1First ? player2 : player1;
+		for (int i = 0; i < 100 && second.getEvent() != Event.YOUR_TURN; i++)
+			Thread.sleep(10);
+		s.shutdown();
+
+		// Riavvio: le partite riprendono quando i player si ricollegano.
+		PlayerImpl q1 = new PlayerImpl();
+		PlayerImpl q2 = new PlayerImpl();
+		TicTacToeServerImpl r = new TicTacToeServerImpl(
+				BlockingExecutors.Mode.PLATFORM, f);
+		assertTrue(r.getListGames().isEmpty());
+		r.registerSession(q1, "bappo");
+		assertTrue(r.getAllChallengers().contains("bappo-22:12:14"));
+		assertFalse(r.getListGames().containsKey("bappo-22:12:13"));
+		r.registerSession(q2, "bicienzo");
+		assertTrue(r.getListGames().containsKey("bappo-22:12:13"));
+
+		PlayerImpl mover = p1First ? q1 : q2;
+		PlayerImpl foe = p1First ? q2 : q1;
+		for (int i = 0; i < 100 && (foe.getEvent() != Event.YOUR_TURN
+				|| mover.getEvent() != Event.FOE_TURN); i++)
+			Thread.sleep(10);
+		assertEquals(Event.YOUR_TURN, foe.getEvent());
+		assertEquals(Event.FOE_TURN, mover.getEvent());
+		assertEquals(Game.P1_CELL, mover.getRestoredCells()[4]);
+		assertEquals(Game.P2_CELL, foe.getRestoredCells()[4]);
+		assertEquals(Game.FREE_CELL, foe.getRestoredCells()[0]);
+		r.shutdown();
+		delete(f);
+	}
+
+	@Test
+	public void testRecoveryOfUnloggedResult() throws IOException,
+			InterruptedException {
+
+		// Il server si arresta dopo la mossa vincente ma prima di
+		// registrarne il risultato.
+		File f = dataDir();
+		MoveLog log = new MoveLog(f, 0, null);
+		int n = log.newGame();
+		log.create(n, "bappo-22:12:15", "bappo", 3, 3, 3);
+		log.join(n, "bicienzo");
+		log.start(n, true);
+		log.move(n, 0);
+		log.move(n, 3);
+		log.move(n, 1);
+		log.move(n, 4);
+		log.sync(log.move(n, 2));
+		log.close();
+
+		TicTacToeServerImpl r = new TicTacToeServerImpl(
+				BlockingExecutors.Mode.PLATFORM, f);
+		// La partita viene conclusa durante la ricostruzione.
+		assertEquals(1, r.getStats("bappo").getWins());
+		assertEquals(1, r.getStats("bicienzo").getLosses());
+		r.registerSession(player1, "bappo");
+		r.registerSession(player2, "bicienzo");
+		for (int i = 0; i < 100 && (player1.getEvent() != Event.YOU_WIN
+				|| player2.getEvent() != Event.YOU_LOSE); i++)
+			Thread.sleep(10);
+		assertEquals(Event.YOU_WIN, player1.getEvent());
+		assertEquals(Event.YOU_LOSE, player2.getEvent());
+		assertEquals(Game.P1_CELL, player1.getRestoredCells()[2]);
+		r.shutdown();
+
+		// Il risultato e' stato registrato: la partita non viene
+		// ricostruita una seconda volta.
+		r = new TicTacToeServerImpl(BlockingExecutors.Mode.PLATFORM, f);
+		assertEquals(1, r.getStats("bappo").getWins());
+		r.registerSession(new PlayerImpl(), "bappo");
+		assertFalse(r.getListGames().containsKey("bappo-22:12:15"));
+		r.shutdown();
+		delete(f);
+	}
+
+	@Test
+	public void testArchiveFinishedGame() throws IOException,
+			GameJoiningException, InterruptedException {
+
+		File f = dataDir();
+		TicTacToeServerImpl s = new TicTacToeServerImpl(
+				BlockingExecutors.Mode.PLATFORM, f);
+		long t1 = s.registerSession(player1, "bappo");
+		long t2 = s.registerSession(player2, "bicienzo");
+		s.createGame(t1, "bappo-22:12:13");
+		s.joinGame(t2, "bappo-22:12:13");
+		GameImpl g = started(player1);
+		boolean p1First = g.getCurrentPlayer() == GameImpl.PlayerNumber.P1;
+		long first = p1First ? t1 : t2;
+		long second = p1First ? t2 : t1;
+		g.sendMovement(first, 0);
+		g.sendMovement(second, 3);
+		g.sendMovement(first, 1);
+		g.sendMovement(second, 4);
+		g.sendMovement(first, 2);
+		assertTrue(g.isEndGame());
+		assertEquals(1, s.getArchive().size());
+		s.shutdown();
+
+		GameArchive a = new GameArchive(new File(f, "games.archive"));
+		assertEquals(1, a.size());
+		GameArchive.Record r = a.get(0);
+		assertEquals(GameArchive.id("bappo-22:12:13"), r.getGameId());
+		assertEquals(GameArchive.id("bappo"), r.getPlayer1());
+		assertEquals(GameArchive.id("bicienzo"), r.getPlayer2());
+		assertEquals(p1First ? 1 : 2, r.getFirstPlayer());
+		assertEquals(p1First ? 1 : 2, r.getResult());
+		assertEquals(5, r.getMoveCount());
+		assertEquals(3, r.getMove(1));
+		assertEquals(2, r.getMove(4));
+		assertTrue(r.getEndTime() >= r.getStartTime());
+		a.close();
+		delete(f);
+	}
+
+	@Test
+	public void testStats() throws IOException, GameJoiningException,
+			InterruptedException {
+
+		File f = dataDir();
+		TicTacToeServerImpl s = new TicTacToeServerImpl(
+				BlockingExecutors.Mode.PLATFORM, f);
+		long t1 = s.registerSession(player1, "bappo");
+		long t2 = s.registerSession(player2, "bicienzo");
+		s.createGame(t1, "bappo-22:12:13");
+		s.joinGame(t2, "bappo-22:12:13");
+		GameImpl g = started(player1);
+		boolean p1First = g.getCurrentPlayer() == GameImpl.PlayerNumber.P1;
+		long first = p1First ? t1 : t2;
+		long second = p1First ? t2 : t1;
+		g.sendMovement(first, 0);
+		g.sendMovement(second, 3);
+		g.sendMovement(first, 1);
+		g.sendMovement(second, 4);
+		g.sendMovement(first, 2);
+		String winner = p1First ? "bappo" : "bicienzo";
+		String loser = p1First ? "bicienzo" : "bappo";
+		assertEquals(1, s.getStats(winner).getWins());
+		assertEquals(1, s.getStats(loser).getLosses());
+		s.removeGame(t1, "bappo-22:12:13", 0);
+
+		// La partita rimossa mentre e' in corso conta come abbandonata
+		// soltanto per il player che l'ha rimossa.
+		s.createGame(t1, "bappo-22:12:14");
+		s.joinGame(t2, "bappo-22:12:14");
+		s.removeGame(t2, "bappo-22:12:14", 0);
+		assertEquals(1, s.getStats("bicienzo").getAbandons());
+		assertEquals(0, s.getStats("bappo").getAbandons());
+		assertEquals(0, s.getStats("nobody").getGames());
+		s.shutdown();
+
+		// Le statistiche sopravvivono al riavvio del server.
+		s = new TicTacToeServerImpl(BlockingExecutors.Mode.PLATFORM, f);
+		PlayerStats ps = s.getStats(loser);
+		assertEquals(1, ps.getLosses());
+		assertEquals(loser.equals("bicienzo") ? 1 : 0, ps.getAbandons());
+		assertEquals(ps.getLosses() + ps.getAbandons(), ps.getGames());
+		s.shutdown();
+		delete(f);
+	}
+
+	@Test
+	public void testLeaderboard() throws IOException, GameJoiningException,
+			InterruptedException {
+
+		File f = dataDir();
+		TicTacToeServerImpl s = new TicTacToeServerImpl(
+				BlockingExecutors.Mode.PLATFORM, f);
+		long t1 = s.registerSession(player1, "bappo");
+		long t2 = s.registerSession(player2, "bicienzo");
+		s.createGame(t1, "bappo-22:12:13");
+		s.joinGame(t2, "bappo-22:12:13");
+		GameImpl g = started(player1);
+		boolean p1First = g.getCurrentPlayer() == GameImpl.PlayerNumber.P1;
+		long first = p1First ? t1 : t2;
+		long second = p1First ? t2 : t1;
+		g.sendMovement(first, 0);
+		g.sendMovement(second, 3);
+		g.sendMovement(first, 1);
+		g.sendMovement(second, 4);
+		g.sendMovement(first, 2);
+		s.getRatings().sync();
+		String winner = p1First ? "bappo" : "bicienzo";
+		String loser = p1First ? "bicienzo" : "bappo";
+		assertEquals(1, s.getRank(winner));
+		assertEquals(2, s.getRank(loser));
+		assertEquals(0, s.getRank("nobody"));
+		ArrayList<LeaderboardEntry> top = s.getLeaderboard(0, 10);
+		assertEquals(2, top.size());
+		assertEquals(winner, top.get(0).getNickname());
+		assertEquals(1516, top.get(0).getRating());
+		assertEquals(2, top.get(1).getRank());
+		assertEquals(1484, top.get(1).getRating());
+		assertEquals(1, s.getLeaderboard(1, 10).size());
+		assertTrue(s.getLeaderboard(2, 10).isEmpty());
+		s.shutdown();
+		delete(f);
+	}
+
+	@Test
+	public void testAbandonIsRated() throws IOException,
+			GameJoiningException, InterruptedException {
+
+		File f = dataDir();
+		TicTacToeServerImpl s = new TicTacToeServerImpl(
+				BlockingExecutors.Mode.PLATFORM, f);
+		long t1 = s.registerSession(player1, "bappo");
+		long t2 = s.registerSession(player2, "bicienzo");
+		s.createGame(t1, "bappo-22:12:13");
+		s.joinGame(t2, "bappo-22:12:13");
+		started(player1);
+		// Chi abbandona la partita in corso perde come se fosse stato
+		// sconfitto.
+		s.removeGame(t2, "bappo-22:12:13", 0);
+		s.getRatings().sync();
+		assertEquals(1, s.getRank("bappo"));
+		assertEquals(2, s.getRank("bicienzo"));
+		ArrayList<LeaderboardEntry> top = s.getLeaderboard(0, 10);
+		assertEquals(1516, top.get(0).getRating());
+		assertEquals(1484, top.get(1).getRating());
+		assertEquals(1, s.getStats("bicienzo").getAbandons());
+		s.shutdown();
+		delete(f);
+	}
+
+	@Test
+	public void testFailedMoveLog() throws IOException,
+			GameJoiningException, InterruptedException {
+
+		File f = dataDir();
+		TicTacToeServerImpl s = new TicTacToeServerImpl(
+				BlockingExecutors.Mode.PLATFORM, f);
+		long t1 = s.registerSession(player1, "bappo");
+		long t2 = s.registerSession(player2, "bicienzo");
+		s.createGame(t1, "bappo-22:12:13");
+		s.joinGame(t2, "bappo-22:12:13");
+		GameImpl g = started(player1);
+		// L'interruzione del thread di scrittura rende il registro
+		// inutilizzabile.
+		for (Thread t : Thread.getAllStackTraces().keySet())
+			if (t.getName().equals("move-log"))
+				t.interrupt();
+		Thread.sleep(100);
+
+		// La partita in corso prosegue senza attendere il registro.
+		boolean p1First = g.getCurrentPlayer() == GameImpl.PlayerNumber.P1;
+		PlayerImpl foe = p1First ? player2 : player1;
+		g.sendMovement(p1First ? t1 : t2, 4);
+		for (int i = 0; i < 100 && foe.getFoeSelectedMove() != 4; i++)
+			Thread.sleep(20);
+		assertEquals(4, foe.getFoeSelectedMove());
+
+		// Le nuove partite vengono rifiutate.
+		try {
+			s.createGame(t1, "bappo-22:12:14");
+			fail();
+		} catch (IllegalStateException e) {
+		}
+		assertFalse(s.getChallengers(0, 10).contains("bappo-22:12:14"));
+		try {
+			s.shutdown();
+		} catch (IOException e) {
+			// La chiusura segnala l'errore del registro.
+		}
+		delete(f);
+	}
+
+	@Test
+	public void testHistory() throws IOException, GameJoiningException,
+			InterruptedException {
+
+		File f = dataDir();
+		TicTacToeServerImpl s = new TicTacToeServerImpl(
+				BlockingExecutors.Mode.PLATFORM, f);
+		long t1 = s.registerSession(player1, "bappo");
+		long t2 = s.registerSession(player2, "bicienzo");
+		s.createGame(t1, "bappo-22:12:13");
+		s.joinGame(t2, "bappo-22:12:13");
+		GameImpl g = started(player1);
+		boolean p1First = g.getCurrentPlayer() == GameImpl.PlayerNumber.P1;
+		long first = p1First ? t1 : t2;
+		long second = p1First ? t2 : t1;
+		g.sendMovement(first, 0);
+		g.sendMovement(second, 3);
+		g.sendMovement(first, 1);
+		g.sendMovement(second, 4);
+		g.sendMovement(first, 2);
+
+		long cursor = s.openHistory("bicienzo", Long.MAX_VALUE);
+		assertTrue(cursor != TicTacToeServer.NO_CURSOR);
+		GamePage page = s.nextGames(cursor, 10);
+		assertEquals(1, page.size());
+		assertTrue(page.isLast());
+		assertEquals("bappo", page.getPlayer1(0));
+		assertEquals("bicienzo", page.getPlayer2(0));
+		assertEquals(5, page.getMoveCount(0));
+		assertEquals(2, page.getMove(0, 4));
+		assertEquals(p1First ? 1 : 2, page.getResult(0));
+		assertNull(s.nextGames(cursor, 10));
+
+		cursor = s.openHistory("nobody", Long.MAX_VALUE);
+		assertEquals(0, s.nextGames(cursor, 10).size());
+		s.shutdown();
+		delete(f);
+
+		TicTacToeServerImpl memory = new TicTacToeServerImpl();
+		assertEquals(TicTacToeServer.NO_CURSOR,
+				memory.openHistory(null, Long.MAX_VALUE));
+		memory.shutdown();
+	}
+
+	/*
+	 * Attende che le notifiche di inizio partita, consegnate in maniera
+	 * asincrona, raggiungano il player p.
+	 */
+	private static GameImpl started(PlayerImpl p) throws InterruptedException {
+		for (int i = 0; i < 200 && (p.getGame() == null
+				|| (p.getEvent() != Event.YOUR_TURN
+				&& p.getEvent() != Event.FOE_TURN)); i++)
+			Thread.sleep(10);
+		return (GameImpl) p.getGame();
+	}
+
+	/*
+	 * Verifica se la mossa v compare fra le mosse a.
+	 */
+	private static boolean contains(int[] a, int v) {
+		for (int x : a)
+			if (x == v)
+				return true;
+		return false;
+	}
+
+	/*
+	 * Conta i thread attivi il cui nome ha il prefisso indicato.
+	 */
+	private static int threads(String name) {
+		int n = 0;
+		for (Thread t : Thread.getAllStackTraces().keySet())
+			if (t.getName().startsWith(name + "-") && t.isAlive())
+				n++;
+		return n;
+	}
+
+	private static File dataDir() throws IOException {
+		File f = File.createTempFile("data", "");
+		f.delete();
+		f.mkdir();
+		return f;
+	}
+
+	private static void delete(File dir) {
+		for (File f : dir.listFiles())
+			f.delete();
+		dir.delete();
+	}
+
 	@Test
 	public void testJoinGameNotAvailable() throws RemoteException {
 		
@@ -115,6 +589,43 @@ public class TicTacToeServerImplTest {
 		}
 	}
 
+	@Test
+	public void testConcurrentJoinGame() throws Exception {
+
+		server.register(player1, "bappo");
+		server.createGame(player1, "partita1-22:12:12");
+
+		final int joiners = 8;
+		final CountDownLatch start = new CountDownLatch(1);
+		final AtomicInteger joined = new AtomicInteger();
+		final AtomicInteger full = new AtomicInteger();
+		ExecutorService pool = Executors.newFixedThreadPool(joiners);
+		for (int i = 0; i < joiners; i++) {
+			final PlayerImpl p = new PlayerImpl();
+			pool.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+						server.joinGame(p, "partita1-22:12:12");
+						joined.incrementAndGet();
+					} catch (GameJoiningException e) {
+						assertEquals("Game full.", e.getMessage());
+						full.incrementAndGet();
+					} catch (Exception e) {
+						e.printStackTrace();
+					}
+				}
+			});
+		}
+		start.countDown();
+		pool.shutdown();
+		assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+
+		assertEquals(1, joined.get());
+		assertEquals(joiners - 1, full.get());
+	}
+
 	@Test
 	public void testGetAllChallengers() throws RemoteException {
 
@@ -131,15 +642,111 @@ public class TicTacToeServerImplTest {
 	}
 
 	@Test
-	public void testRemoveGame() throws RemoteException {
+	public void testGetChallengers() throws RemoteException {
 
-		server.register(player1, "mirko");
-		server.register(player2, "genni");
+		server.createGame(player1, "mirko-15:47:22");
+		server.createGame(player2, "genni-15:50:20");
+		long t = server.registerSession(new PlayerImpl(), "bappo");
+		server.createGame(t, "bappo-16:01:00");
+
+		ArrayList<String> ch = server.getChallengers(0, 2);
+		assertEquals(2, ch.size());
+		assertEquals("bappo-16:01:00", ch.get(0));
+		assertEquals("genni-15:50:20", ch.get(1));
+
+		ch = server.getChallengers(2, 2);
+		assertEquals(1, ch.size());
+		assertEquals("mirko-15:47:22", ch.get(0));
+	}
+
+	@Test
+	public void testSubscribeLobby() throws Exception {
+
+		final LobbyCache cache = new LobbyCache();
+		final AtomicInteger pushes = new AtomicInteger();
+		LobbyListener l = new LobbyListener() {
+			@Override
+			public void lobbyChanged(LobbyDelta delta) {
+				cache.apply(delta);
+				pushes.incrementAndGet();
+			}
+		};
+		server.subscribeLobby(l, 0);
+
+		server.createGame(player1, "mirko-15:47:22");
+		server.createGame(player2, "genni-15:50:20");
+		long t = server.registerSession(new PlayerImpl(), "bappo");
+		server.createGame(t, "bappo-16:01:00");
+		Thread.sleep(500);
+
+		// Le tre aggiunte ravvicinate vengono accorpate.
+		assertEquals(3, cache.list().size());
+		assertTrue(pushes.get() <= 2);
+
+		server.unsubscribeLobby(l);
+		server.removeGame(t, "bappo-16:01:00", 0);
+		Thread.sleep(300);
+		assertEquals(3, cache.list().size());
+	}
+
+	@Test
+	public void testSubscribeIdleLobby() throws Exception {
 
 		server.createGame(player1, "mirko-15:47:22");
 		server.createGame(player2, "genni-15:50:20");
+		Thread.sleep(300);
+
+		// La lista non cambia piu': il nuovo sottoscrittore riceve comunque
+		// le partite gia' presenti.
+		final LobbyCache cache = new LobbyCache();
+		LobbyListener l = new LobbyListener() {
+			@Override
+			public void lobbyChanged(LobbyDelta delta) {
+				cache.apply(delta);
+			}
+		};
+		server.subscribeLobby(l, 0);
+		Thread.sleep(300);
+		assertEquals(2, cache.list().size());
+		server.unsubscribeLobby(l);
+	}
+
+	@Test
+	public void testShutdownStopsPublisher() throws Exception {
+
+		int before = threads("lobby-flush");
+		LobbyListener l = new LobbyListener() {
+			@Override
+			public void lobbyChanged(LobbyDelta delta) {
+			}
+		};
+		server.subscribeLobby(l, 0);
+		assertEquals(before + 1, threads("lobby-flush"));
+		server.shutdown();
+		for (int i = 0; i < 100 && threads("lobby-flush") > before; i++)
+			Thread.sleep(10);
+		assertEquals(before, threads("lobby-flush"));
+		// Una sottoscrizione dopo l'arresto non riavvia il publisher.
+		server.subscribeLobby(l, 0);
+		assertEquals(before, threads("lobby-flush"));
+	}
+
+	@Test
+	public void testRemoveGame() throws RemoteException {
+
+		long t1 = server.registerSession(player1, "mirko");
+		long t2 = server.registerSession(player2, "genni");
+
+		server.createGame(t1, "mirko-15:47:22");
+		server.createGame(t2, "genni-15:50:20");
+
+		// Ne' un token sconosciuto ne' un player estraneo alla partita
+		// possono rimuoverla.
+		server.removeGame(12345, "mirko-15:47:22", 0);
+		server.removeGame(t2, "mirko-15:47:22", 0);
+		assertTrue(server.getAllChallengers().contains("mirko-15:47:22"));
 
-		server.removeGame("mirko-15:47:22");
+		server.removeGame(t1, "mirko-15:47:22", 0);
 
 		ArrayList<String> ch = server.getAllChallengers();
 